@@ -2,10 +2,48 @@ create database AiAssistant;
 use AiAssistant;
 
 CREATE TABLE IF NOT EXISTS chat_history (
-   	id VARCHAR(36) PRIMARY KEY,  -- Java에서 생성한 UUID 저장
+   	id BINARY(16) PRIMARY KEY,   -- Java에서 생성한 시간순 UUIDv7 (IdGenerator, 16바이트)
    	role VARCHAR(10) NOT NULL,   -- 'user' 또는 'model' (혹은 'ai')
    	content TEXT NOT NULL,       -- 대화 내용
-	timestamp DATETIME DEFAULT CURRENT_TIMESTAMP -- DB에 저장되는 순간의 시간 자동 기록
+	timestamp DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3), -- DB에 저장되는 순간의 시간 자동 기록 (같은 초 안의 순서 구분)
+	INDEX idx_history_ts_id (timestamp, id) -- 최근/이전 메시지 키셋 페이지네이션
+);
+
+-- 대화 요약 (end_msg_id 이후가 아직 요약되지 않은 메시지)
+CREATE TABLE IF NOT EXISTS chat_summaries (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    level TINYINT NOT NULL DEFAULT 0, -- 요약 트리 단계 (0: 메시지 묶음, 1 이상: 아래 단계 요약들의 요약)
+    summary_content TEXT NOT NULL,
+    start_msg_id BINARY(16),
+    end_msg_id BINARY(16),
+    start_timestamp DATETIME(3),
+    end_timestamp DATETIME(3),
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_summaries_level_start (level, start_timestamp) -- 단계별 마지막 요약/구간 조회
+);
+
+-- 스트리밍 중인 답변의 중간 저장 조각 (답변 완료 시 chat_history.content로 합치고 삭제)
+CREATE TABLE IF NOT EXISTS chat_message_segments (
+    message_id BINARY(16) NOT NULL,
+    seq INT NOT NULL,
+    content MEDIUMTEXT NOT NULL,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (message_id, seq)
+);
+
+-- 도구 호출 기록 (AI 답변 하나에 여러 건, 요청 순서 = id 순서, 큰 결과 전체는 blob_id로 BlobStore에)
+CREATE TABLE IF NOT EXISTS chat_tool_calls (
+    id BINARY(16) PRIMARY KEY,           -- 시간순 UUIDv7
+    message_id BINARY(16) NOT NULL,      -- 도구를 요청한 AI 답변 (chat_history.id)
+    tool_name VARCHAR(100) NOT NULL,
+    params TEXT,                         -- 파라미터 JSON
+    status VARCHAR(16) NOT NULL,
+    output MEDIUMTEXT,                   -- 모델/화면에 보인 결과 (큰 결과는 앞부분만)
+    blob_id CHAR(64),
+    output_length INT NOT NULL DEFAULT 0, -- 전체 결과 길이 (글자)
+    created_at DATETIME(3),
+    INDEX idx_tool_calls_message (message_id, id),
+    CONSTRAINT fk_tool_calls_message FOREIGN KEY (message_id) REFERENCES chat_history (id) ON DELETE CASCADE
 );
 
 CREATE TABLE IF NOT EXISTS todo_categories (
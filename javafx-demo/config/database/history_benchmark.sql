@@ -0,0 +1,110 @@
+-- chat_history 조회 성능 측정 (MySQL 8.0.18 이상, EXPLAIN ANALYZE 사용)
+-- 별도 스키마(AiAssistant_bench)에 1년 치 대화(120만 행)를 만들고,
+-- 기존 쿼리(인덱스 없음, OFFSET, 세 번 조회)와 키셋 쿼리(ChatRepository와 같은 SQL)를 비교합니다.
+--
+-- 사용법: mysql -u app_admin -p < config/database/history_benchmark.sql
+-- 각 EXPLAIN ANALYZE 결과의 "actual time=시작..끝" 중 끝 값(ms)이 실행 시간입니다.
+
+CREATE DATABASE IF NOT EXISTS AiAssistant_bench;
+USE AiAssistant_bench;
+
+DROP TABLE IF EXISTS chat_history;
+DROP TABLE IF EXISTS chat_summaries;
+
+-- 마이그레이션 전 스키마 그대로
+CREATE TABLE chat_history (
+    id VARCHAR(36) PRIMARY KEY,
+    role VARCHAR(10) NOT NULL,
+    content TEXT NOT NULL,
+    timestamp DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE chat_summaries (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    summary_content TEXT NOT NULL,
+    start_msg_id VARCHAR(36),
+    end_msg_id VARCHAR(36),
+    start_timestamp DATETIME(3),
+    end_timestamp DATETIME(3),
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+-- ---------------------------------------------------------------
+-- 1. 데이터 생성: 120만 메시지, 26초 간격 (약 1년), 내용 20~800자
+-- ---------------------------------------------------------------
+SET SESSION cte_max_recursion_depth = 1300000;
+
+INSERT INTO chat_history (id, role, content, timestamp)
+WITH RECURSIVE seq (n) AS (
+    SELECT 1
+    UNION ALL
+    SELECT n + 1 FROM seq WHERE n < 1200000
+)
+SELECT UUID(),
+       IF(n % 2 = 0, 'ai', 'user'),
+       REPEAT('오늘 일정 정리해줘 ', 1 + n % 40),
+       TIMESTAMP('2025-01-01') + INTERVAL n * 26 SECOND
+FROM seq;
+
+-- 요약 20개마다 한 번: 마지막 요약 이후 25개가 남은 상태
+INSERT INTO chat_summaries (summary_content, start_msg_id, end_msg_id)
+SELECT 'bench summary', id, id FROM chat_history ORDER BY timestamp DESC LIMIT 1 OFFSET 25;
+
+ANALYZE TABLE chat_history, chat_summaries;
+
+-- ---------------------------------------------------------------
+-- 2. 이전: 인덱스 없음
+-- ---------------------------------------------------------------
+-- findRecentMessages (시작 화면)
+EXPLAIN ANALYZE
+SELECT id, role, content, timestamp FROM chat_history ORDER BY timestamp DESC LIMIT 20;
+
+-- findMessagesForSummary(offset, 30) - 요약 안 된 구간까지 OFFSET으로 건너뜀
+EXPLAIN ANALYZE
+SELECT id, role, content, timestamp FROM chat_history ORDER BY timestamp ASC LIMIT 30 OFFSET 1199970;
+
+-- countMessagesAfterLastSummary - 세 번 조회 중 마지막 COUNT
+SET @end_id = (SELECT end_msg_id FROM chat_summaries ORDER BY id DESC LIMIT 1);
+SET @end_ts = (SELECT timestamp FROM chat_history WHERE id = @end_id);
+EXPLAIN ANALYZE
+SELECT COUNT(*) FROM chat_history WHERE timestamp > @end_ts;
+
+-- ---------------------------------------------------------------
+-- 3. 마이그레이션 2 적용 (SchemaMigrator와 같은 DDL)
+-- ---------------------------------------------------------------
+ALTER TABLE chat_history MODIFY timestamp DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3);
+CREATE INDEX idx_history_ts_id ON chat_history (timestamp, id);
+ANALYZE TABLE chat_history;
+
+-- ---------------------------------------------------------------
+-- 4. 이후: (timestamp, id) 인덱스 + 키셋
+-- ---------------------------------------------------------------
+-- findRecentMessages
+EXPLAIN ANALYZE
+SELECT id, role, content, timestamp FROM chat_history ORDER BY timestamp DESC, id DESC LIMIT 20;
+
+-- findMessagesBefore: 중간(약 6개월 전) 지점에서 이전 페이지
+SELECT timestamp, id INTO @cur_ts, @cur_id FROM chat_history ORDER BY timestamp, id LIMIT 1 OFFSET 600000;
+EXPLAIN ANALYZE
+SELECT id, role, content, timestamp FROM chat_history
+WHERE timestamp <= @cur_ts AND (timestamp < @cur_ts OR id < @cur_id)
+ORDER BY timestamp DESC, id DESC LIMIT 20;
+
+-- findUnsummarizedMessages (한 번의 조회)
+EXPLAIN ANALYZE
+SELECT h.id, h.role, h.content, h.timestamp FROM
+  (SELECT COALESCE(MAX(e.timestamp), TIMESTAMP('1000-01-01')) AS ts, COALESCE(MAX(e.id), '') AS id
+     FROM (SELECT end_msg_id FROM chat_summaries ORDER BY id DESC LIMIT 1) s
+     JOIN chat_history e ON e.id = s.end_msg_id) c
+  JOIN chat_history h ON h.timestamp >= c.ts AND (h.timestamp > c.ts OR h.id > c.id)
+ORDER BY h.timestamp, h.id LIMIT 30;
+
+-- countMessagesAfterLastSummary (한 번의 조회)
+EXPLAIN ANALYZE
+SELECT COUNT(*) FROM
+  (SELECT COALESCE(MAX(e.timestamp), TIMESTAMP('1000-01-01')) AS ts, COALESCE(MAX(e.id), '') AS id
+     FROM (SELECT end_msg_id FROM chat_summaries ORDER BY id DESC LIMIT 1) s
+     JOIN chat_history e ON e.id = s.end_msg_id) c
+  JOIN chat_history h ON h.timestamp >= c.ts AND (h.timestamp > c.ts OR h.id > c.id);
+
+-- 정리하려면: DROP DATABASE AiAssistant_bench;
@@ -0,0 +1,85 @@
+-- 메시지 ID 형식별 삽입 처리량과 인덱스 크기 측정 (MySQL 8.0)
+-- 랜덤 UUID 문자열 VARCHAR(36) 기본 키(이전)와 시간순 UUIDv7 BINARY(16) 기본 키(마이그레이션 3 이후)를
+-- 같은 데이터로 200만 행까지 채우면서, 마지막 20만 행의 초당 삽입 수와 인덱스별 크기를 비교합니다.
+--
+-- 사용법: mysql -u app_admin -p < config/database/id_benchmark.sql
+-- 차이는 표가 버퍼 풀보다 커질 때 드러나므로 innodb_buffer_pool_size는 기본값(128MB) 정도로 둡니다.
+
+CREATE DATABASE IF NOT EXISTS AiAssistant_bench;
+USE AiAssistant_bench;
+
+DROP TABLE IF EXISTS history_v4;
+DROP TABLE IF EXISTS history_v7;
+DROP PROCEDURE IF EXISTS fill_history;
+
+CREATE TABLE history_v4 (
+    id VARCHAR(36) PRIMARY KEY,
+    role VARCHAR(10) NOT NULL,
+    content TEXT NOT NULL,
+    timestamp DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_history_ts_id (timestamp, id)
+);
+
+CREATE TABLE history_v7 (
+    id BINARY(16) PRIMARY KEY,
+    role VARCHAR(10) NOT NULL,
+    content TEXT NOT NULL,
+    timestamp DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_history_ts_id (timestamp, id)
+);
+
+-- 1000행씩 트랜잭션으로 삽입 (ChatWriteQueue 배치와 비슷한 단위), 26초 간격 메시지
+DELIMITER //
+CREATE PROCEDURE fill_history(IN kind VARCHAR(2), IN total INT)
+BEGIN
+    DECLARE done INT DEFAULT 0;
+    DECLARE started DATETIME(6);
+    WHILE done < total DO
+        IF done = total - 200000 THEN SET started = NOW(6); END IF;
+        START TRANSACTION;
+        IF kind = 'v4' THEN
+            INSERT INTO history_v4 (id, role, content, timestamp)
+            WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < 1000)
+            SELECT LOWER(INSERT(INSERT(INSERT(INSERT(HEX(RANDOM_BYTES(16)), 9, 0, '-'), 14, 0, '-'), 19, 0, '-'), 24, 0, '-')),
+                   IF(n % 2 = 0, 'ai', 'user'),
+                   REPEAT('오늘 일정 정리해줘 ', 12),
+                   TIMESTAMP('2025-01-01') + INTERVAL (done + n) * 26 SECOND
+            FROM seq;
+        ELSE
+            INSERT INTO history_v7 (id, role, content, timestamp)
+            WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < 1000)
+            SELECT UNHEX(CONCAT(LPAD(HEX((1735689600 + (done + n) * 26) * 1000), 12, '0'), '7',
+                                SUBSTRING(HEX(RANDOM_BYTES(10)), 1, 19))),
+                   IF(n % 2 = 0, 'ai', 'user'),
+                   REPEAT('오늘 일정 정리해줘 ', 12),
+                   TIMESTAMP('2025-01-01') + INTERVAL (done + n) * 26 SECOND
+            FROM seq;
+        END IF;
+        COMMIT;
+        SET done = done + 1000;
+    END WHILE;
+    SELECT kind AS id_format,
+           ROUND(200000 / TIMESTAMPDIFF(MICROSECOND, started, NOW(6)) * 1000000) AS rows_per_sec_last_200k;
+END//
+DELIMITER ;
+
+-- ---------------------------------------------------------------
+-- 1. 삽입 처리량
+-- ---------------------------------------------------------------
+CALL fill_history('v4', 2000000);
+CALL fill_history('v7', 2000000);
+
+-- ---------------------------------------------------------------
+-- 2. 인덱스 크기 (PRIMARY = 데이터 자체, idx_history_ts_id = 보조 인덱스)
+-- ---------------------------------------------------------------
+ANALYZE TABLE history_v4, history_v7;
+
+SELECT table_name, index_name,
+       ROUND(stat_value * @@innodb_page_size / 1024 / 1024, 1) AS size_mb
+FROM mysql.innodb_index_stats
+WHERE database_name = 'AiAssistant_bench'
+  AND table_name IN ('history_v4', 'history_v7')
+  AND stat_name = 'size'
+ORDER BY index_name, table_name;
+
+-- 정리하려면: DROP DATABASE AiAssistant_bench;
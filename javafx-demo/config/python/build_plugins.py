@@ -21,7 +21,7 @@ else:
 
 
 # 제외할 파일 (내부 전용 또는 인터페이스)
-EXCLUDE_FILES = ["HelpTool.java", "Tool.java"]
+EXCLUDE_FILES = ["HelpTool.java", "SearchHistoryTool.java", "Tool.java"]
 
 def build_plugins():
     # 1. 플러그인 디렉토리 생성
@@ -4,6 +4,10 @@ import io
 import re
 import json
 import os
+import struct
+import queue
+import threading
+import time
 from datetime import datetime
 
 # 윈도우 인코딩 설정
@@ -13,8 +17,156 @@ sys.stdin = io.TextIOWrapper(sys.stdin.detach(), encoding='utf-8')
 # 전역 변수
 MODEL_NAME = "gemma3:12b" 
 SYSTEM_PROMPT = ""
+NUM_CTX = 8192  # config.json의 context_tokens (Java가 이 크기에 맞춰 문맥을 보냄)
 history = []
 
+# 중단(CANCEL) 처리: 입력 스레드가 이벤트를 세우면 생성 루프가 다음 청크에서 스트림을 닫음
+cancel_event = threading.Event()
+cancel_requested_at = 0.0
+commands = queue.Queue()
+
+class TextBridge:
+    """ 구버전 줄 단위 프로토콜 (TOKEN:/SUMMARY_RESULT: 접두어 + [NEWLINE] 이스케이프) """
+
+    @staticmethod
+    def _escape(text):
+        return text.replace("\r\n", "[NEWLINE]").replace("\n", "[NEWLINE]").replace("\r", "")
+
+    def _print(self, line):
+        print(line)
+        sys.stdout.flush()
+
+    def thinking(self):
+        self._print("TOKEN:[Thinking]")
+
+    def token(self, text):
+        self._print(f"TOKEN:{self._escape(text)}")
+
+    def done(self):
+        self._print("TOKEN:[DONE]")
+
+    def summary(self, text):
+        self._print(f"SUMMARY_RESULT:{self._escape(text)}")
+
+    def cancelled(self, elapsed_ms):
+        self._print(f"CANCELLED:{elapsed_ms}")
+
+    def message(self, text):
+        self._print(self._escape(text))
+
+    def read_command(self):
+        line = sys.stdin.readline()
+        if not line:
+            return None
+        return line.strip()
+
+
+class FramedBridge:
+    """
+    길이 접두 프레임 프로토콜: [타입 1바이트][길이 4바이트 big-endian][UTF-8 페이로드]
+    토큰은 짧은 시간(TOKEN_BATCH_DELAY) 동안 모아서 한 프레임으로 보냄
+    """
+    TOKEN_BATCH_DELAY = 0.02   # 초
+    TOKEN_BATCH_BYTES = 512
+
+    def __init__(self):
+        # 래퍼가 GC되면 내부 버퍼도 닫히므로 참조를 유지
+        self._stdout_wrapper = sys.stdout
+        self.out = sys.stdout.buffer
+        self.inp = sys.stdin.buffer
+        # 라이브러리 등의 print()가 프레임 스트림을 깨지 않도록 stderr로 돌림
+        sys.stdout = sys.stderr
+        self.cond = threading.Condition()
+        self.pending = []
+        self.pending_bytes = 0
+        self.pending_since = 0.0
+        self.last_flush = 0.0
+        threading.Thread(target=self._flusher, daemon=True).start()
+
+    def _write_frame(self, kind, text):
+        payload = text.encode('utf-8')
+        self.out.write(struct.pack('>cI', kind, len(payload)))
+        self.out.write(payload)
+        self.out.flush()
+
+    def _flush_locked(self):
+        if self.pending:
+            self._write_frame(b'T', "".join(self.pending))
+            self.pending = []
+            self.pending_bytes = 0
+            self.last_flush = time.monotonic()
+
+    def _flusher(self):
+        # 모인 토큰이 TOKEN_BATCH_DELAY 이상 기다리지 않도록 주기적으로 내보냄
+        with self.cond:
+            while True:
+                while not self.pending:
+                    self.cond.wait()
+                remaining = self.pending_since + self.TOKEN_BATCH_DELAY - time.monotonic()
+                if remaining > 0:
+                    self.cond.wait(remaining)
+                    continue
+                self._flush_locked()
+
+    def _send(self, kind, text=""):
+        with self.cond:
+            self._flush_locked()  # 앞서 모인 토큰이 먼저 나가도록
+            self._write_frame(kind, text)
+
+    def thinking(self):
+        self._send(b'K')
+
+    def token(self, text):
+        with self.cond:
+            now = time.monotonic()
+            if not self.pending and now - self.last_flush >= self.TOKEN_BATCH_DELAY:
+                # 한동안 조용했다면 (첫 토큰 등) 기다리지 않고 바로 전송
+                self.pending.append(text)
+                self._flush_locked()
+                return
+            if not self.pending:
+                self.pending_since = now
+                self.cond.notify()
+            self.pending.append(text)
+            self.pending_bytes += len(text.encode('utf-8'))
+            if self.pending_bytes >= self.TOKEN_BATCH_BYTES:
+                self._flush_locked()
+
+    def done(self):
+        self._send(b'D')
+
+    def summary(self, text):
+        self._send(b'S', text)
+
+    def cancelled(self, elapsed_ms):
+        self._send(b'X', str(elapsed_ms))
+
+    def message(self, text):
+        self._send(b'M', text)
+
+    def _read_exact(self, n):
+        data = b''
+        while len(data) < n:
+            chunk = self.inp.read(n - len(data))
+            if not chunk:
+                return None
+            data += chunk
+        return data
+
+    def read_command(self):
+        header = self._read_exact(5)
+        if header is None:
+            return None
+        kind, length = struct.unpack('>cI', header)
+        payload = self._read_exact(length) if length else b''
+        if payload is None:
+            return None
+        return payload.decode('utf-8').strip()
+
+
+# 실행 인자로 프로토콜 선택 (Java PythonService가 --protocol=framed|text 전달)
+bridge = FramedBridge() if "--protocol=framed" in sys.argv else TextBridge()
+
 def get_base_path():
     """ 실행 파일(또는 스크립트)의 절대 경로 반환 """
     if getattr(sys, 'frozen', False):
@@ -23,7 +175,7 @@ def get_base_path():
 
 def load_config():
     """ config.json과 system_prompt.txt 로드 """
-    global MODEL_NAME, SYSTEM_PROMPT, history
+    global MODEL_NAME, SYSTEM_PROMPT, NUM_CTX, history
     
     base_path = get_base_path()
     # 경로가 틀릴 경우를 대비해 상위 폴더 등 경로 확인 필요 (현재 구조 유지)
@@ -35,6 +187,7 @@ def load_config():
         with open(config_path, 'r', encoding='utf-8') as f:
             config = json.load(f)
             MODEL_NAME = config.get("model_name", "gemma3:12b")
+            NUM_CTX = config.get("context_tokens", 8192)
             
         # 2. system_prompt.txt 읽기
         with open(prompt_path, 'r', encoding='utf-8') as f:
@@ -44,8 +197,7 @@ def load_config():
         history = [{'role': 'system', 'content': SYSTEM_PROMPT}]
         
     except Exception as e:
-        print(f"TOKEN:Error loading config: {e}") # Java가 알 수 있게 토큰으로 출력
-        sys.stdout.flush()
+        bridge.token(f"Error loading config: {e}") # Java가 알 수 있게 토큰으로 출력
         # 설정 로드 실패 시에도 일단 기본값으로 진행하거나 종료
         # sys.exit(1) 
 
@@ -65,53 +217,75 @@ def get_current_time_info():
 
 def chat_and_stream(messages):
     """ Ollama 스트리밍 채팅 및 출력 함수 """
-    print("TOKEN:[Thinking]")
-    sys.stdout.flush()
+    if cancel_event.is_set():
+        # 중단 요청 전에 이미 큐에 들어와 있던 명령은 시작하지 않음
+        return ""
+    bridge.thinking()
 
     try:
         response = ollama.chat(
             model=MODEL_NAME, 
             messages=messages,
-            options={'num_ctx': 8192, 'temperature': 0.1},
+            options={'num_ctx': NUM_CTX, 'temperature': 0.1},
             stream=True,
             keep_alive='0s'
         )
         
         full_response = ""
         for chunk in response:
+            if cancel_event.is_set():
+                # 제너레이터를 닫으면 HTTP 연결이 끊기고 Ollama도 생성을 멈춤
+                response.close()
+                return full_response
+
             content = chunk['message']['content']
             full_response += content
             
             if content:
-                safe_content = content.replace("\r\n", "[NEWLINE]").replace("\n", "[NEWLINE]").replace("\r", "")
-                print(f"TOKEN:{safe_content}")
-                sys.stdout.flush()
+                bridge.token(content)
                 
-        print("TOKEN:[DONE]")
-        sys.stdout.flush()
+        bridge.done()
         return full_response
         
     except Exception as e:
         error_msg = f"Ollama Error: {str(e)}"
-        print(f"TOKEN:{error_msg}")
-        print("TOKEN:[DONE]")
-        sys.stdout.flush()
+        bridge.token(error_msg)
+        bridge.done()
         return error_msg
 
+def read_commands():
+    """ stdin 입력 스레드: 생성 중에도 CANCEL을 바로 받을 수 있도록 메인 루프와 분리 """
+    global cancel_requested_at
+    while True:
+        user_input = bridge.read_command()
+        if user_input == "CANCEL":
+            cancel_requested_at = time.monotonic()
+            cancel_event.set()
+        commands.put(user_input)
+        if user_input is None or user_input == "EXIT":
+            break
+
 def main():
-    global history
+    global history, MODEL_NAME, SYSTEM_PROMPT, NUM_CTX
     load_config()
     
-    print("실행 준비 완료")
-    sys.stdout.flush()
+    bridge.message("실행 준비 완료")
+    threading.Thread(target=read_commands, daemon=True).start()
 
     while True:
         try:
-            line = sys.stdin.readline()
-            if not line: break
-            
-            user_input = line.strip()
+            user_input = commands.get()
+            if user_input is None: break
             if user_input == "EXIT": break
+
+            # -------------------------------------------------------------
+            # 0. 생성 중단 (CANCEL): 앞선 명령들이 모두 정리된 시점에 확인 응답
+            # -------------------------------------------------------------
+            if user_input == "CANCEL":
+                cancel_event.clear()
+                elapsed_ms = int((time.monotonic() - cancel_requested_at) * 1000)
+                bridge.cancelled(elapsed_ms)
+                continue
             
             # -------------------------------------------------------------
             # 1. 도구 결과 수신 (TOOL_RESULT)
@@ -162,9 +336,8 @@ def main():
                     history.append({'role': 'assistant', 'content': ai_reply})
                     
                 except Exception as e:
-                    print(f"TOKEN:Error restoring history: {e}")
-                    print("TOKEN:[DONE]")
-                    sys.stdout.flush()
+                    bridge.token(f"Error restoring history: {e}")
+                    bridge.done()
 
             # -------------------------------------------------------------
             # 3. 요약 요청 처리 (SUMMARIZE)
@@ -204,18 +377,36 @@ def main():
                     )
                     
                     summary_result = response['message']['content']
-                    # 줄바꿈 처리하여 전송
-                    safe_summary = summary_result.replace("\r\n", "[NEWLINE]").replace("\n", "[NEWLINE]").replace("\r", "")
-                    
-                    print(f"SUMMARY_RESULT:{safe_summary}")
-                    sys.stdout.flush()
+                    bridge.summary(summary_result)
 
                 except Exception as e:
-                    print(f"SUMMARY_RESULT:Error summarizing: {e}")
-                    sys.stdout.flush()
+                    bridge.summary(f"Error summarizing: {e}")
+
+            # -------------------------------------------------------------
+            # 4. 일반 대화 (CHAT): Java가 토큰 예산에 맞춰 만든 문맥으로 기록을 교체
+            #    (요약 + 최근 대화, 사용자 메시지에는 시간 정보 포함)
+            # -------------------------------------------------------------
+            elif user_input.startswith("CHAT:"):
+                data = json.loads(user_input[len("CHAT:"):].strip())
+                NUM_CTX = data.get("num_ctx", NUM_CTX)
+                history = [{'role': 'system', 'content': SYSTEM_PROMPT}] + data.get("messages", [])
+                ai_reply = chat_and_stream(history)
+                history.append({'role': 'assistant', 'content': ai_reply})
+
+            # -------------------------------------------------------------
+            # 5. 설정 변경 (SET_CONFIG): 모델은 다음 요청부터, 프롬프트는 system 메시지 교체
+            # -------------------------------------------------------------
+            elif user_input.startswith("SET_CONFIG:"):
+                data = json.loads(user_input[len("SET_CONFIG:"):].strip())
+                if data.get("model_name"):
+                    MODEL_NAME = data["model_name"]
+                if data.get("system_prompt") is not None:
+                    SYSTEM_PROMPT = data["system_prompt"]
+                    if history and history[0].get('role') == 'system':
+                        history[0] = {'role': 'system', 'content': SYSTEM_PROMPT}
 
             # -------------------------------------------------------------
-            # 4. 일반 메시지 수신 (기본)
+            # 6. 일반 메시지 수신 (기본, 구버전 호환)
             # -------------------------------------------------------------
             else:
                 # [수정] 일반 대화일 때만 시간 정보를 계산하여 주입
@@ -229,9 +420,8 @@ def main():
         except Exception as e:
             # 치명적 에러 발생 시에도 Java 루프가 안 끊기게 처리
             error_msg = f"Critical Python Error: {str(e)}"
-            print(f"TOKEN:{error_msg}")
-            print("TOKEN:[DONE]")
-            sys.stdout.flush()
+            bridge.token(error_msg)
+            bridge.done()
 
 if __name__ == "__main__":
     main()
\ No newline at end of file
@@ -0,0 +1,187 @@
+import sys
+import io
+import os
+import json
+import traceback
+import importlib
+
+# run_python 도구용 상주 파이썬 작업자 (PythonWorkerPool이 띄워 두고 재사용)
+# 프로토콜: 한 줄에 JSON 하나
+#   Java -> 작업자 (stdin):  {"id": 1, "code": "...", "cwd": "...", "session": false}
+#   작업자 -> Java (원래 stdout):
+#     {"type": "ready", "pid": 123, "preloaded": ["numpy"]}           시작 완료
+#     {"id": 1, "type": "out", "data": "..."}                          실행 중 출력 (print, 에러 메시지)
+#     {"id": 1, "type": "done", "ok": true, "rss": 12345678}           실행 끝 (rss: 현재 메모리, 모르면 0)
+# 사용자 코드의 print는 out 메시지로 보내고, 자식 프로세스가 fd 1에 직접 쓰는 출력은 stderr로 돌려서
+# 프로토콜 줄이 깨지지 않게 합니다. (Java가 stderr도 읽어서 같은 출력으로 보여줌)
+# session: true면 호출 사이에 변수를 유지 (세션 전용 작업자), false면 매번 빈 namespace (import는 캐시되어 빠름)
+
+OUT_FLUSH_CHARS = 4096
+
+proto = os.fdopen(os.dup(1), 'w', encoding='utf-8', buffering=1)
+os.dup2(2, 1)
+sys.stdout = io.TextIOWrapper(os.fdopen(1, 'wb', buffering=0), encoding='utf-8', write_through=True)
+stdin = io.TextIOWrapper(sys.stdin.buffer, encoding='utf-8')
+
+
+def send(message):
+    proto.write(json.dumps(message, ensure_ascii=False) + "\n")
+    proto.flush()
+
+
+class OutputStream(io.TextIOBase):
+    """ 실행 중 print 출력을 모았다가 줄 단위(또는 4KB)로 out 메시지 전송 """
+
+    def __init__(self, request_id):
+        self.request_id = request_id
+        self.parts = []
+        self.size = 0
+
+    def writable(self):
+        return True
+
+    def write(self, text):
+        if not text:
+            return 0
+        self.parts.append(text)
+        self.size += len(text)
+        if "\n" in text or self.size >= OUT_FLUSH_CHARS:
+            self.flush()
+        return len(text)
+
+    def flush(self):
+        if self.parts:
+            send({"id": self.request_id, "type": "out", "data": "".join(self.parts)})
+            self.parts = []
+            self.size = 0
+
+
+def _windows_rss_reader():
+    """ 윈도우: GetProcessMemoryInfo의 WorkingSetSize (현재 메모리) """
+    import ctypes
+    from ctypes import wintypes
+
+    class ProcessMemoryCounters(ctypes.Structure):
+        _fields_ = [("cb", wintypes.DWORD), ("PageFaultCount", wintypes.DWORD),
+                    ("PeakWorkingSetSize", ctypes.c_size_t), ("WorkingSetSize", ctypes.c_size_t),
+                    ("QuotaPeakPagedPoolUsage", ctypes.c_size_t), ("QuotaPagedPoolUsage", ctypes.c_size_t),
+                    ("QuotaPeakNonPagedPoolUsage", ctypes.c_size_t), ("QuotaNonPagedPoolUsage", ctypes.c_size_t),
+                    ("PagefileUsage", ctypes.c_size_t), ("PeakPagefileUsage", ctypes.c_size_t)]
+
+    get_process = ctypes.windll.kernel32.GetCurrentProcess
+    get_process.restype = wintypes.HANDLE
+    get_info = ctypes.windll.psapi.GetProcessMemoryInfo
+    get_info.argtypes = [wintypes.HANDLE, ctypes.POINTER(ProcessMemoryCounters), wintypes.DWORD]
+    get_info.restype = wintypes.BOOL
+
+    def read():
+        counters = ProcessMemoryCounters()
+        counters.cb = ctypes.sizeof(counters)
+        if not get_info(get_process(), ctypes.byref(counters), counters.cb):
+            return 0
+        return counters.WorkingSetSize
+    return read
+
+
+def _rss_reader():
+    """ 플랫폼에 맞는 메모리(바이트) 측정 함수, 방법이 없으면 None """
+    if os.path.exists("/proc/self/statm"):  # 리눅스: 현재 RSS
+        page_size = os.sysconf("SC_PAGE_SIZE")
+
+        def read():
+            with open("/proc/self/statm") as f:
+                return int(f.read().split()[1]) * page_size
+        return read
+    try:
+        import psutil  # 설치되어 있으면 (macOS, 윈도우 등) 현재 RSS
+        process = psutil.Process()
+        return lambda: process.memory_info().rss
+    except ImportError:
+        pass
+    if sys.platform == "win32":
+        try:
+            return _windows_rss_reader()
+        except (OSError, AttributeError):
+            return None
+    try:
+        import resource
+    except ImportError:
+        return None
+    # 최대값(현재값 아님): ru_maxrss 단위가 macOS는 바이트, 그 밖의 유닉스는 KiB
+    scale = 1 if sys.platform == "darwin" else 1024
+    return lambda: resource.getrusage(resource.RUSAGE_SELF).ru_maxrss * scale
+
+
+_read_rss = _rss_reader()
+
+
+def current_rss():
+    """ 현재 메모리(바이트), 알 수 없으면 0 (Java는 실행 횟수 기준으로만 재시작) """
+    if _read_rss is None:
+        return 0
+    try:
+        return int(_read_rss())
+    except Exception:
+        return 0
+
+
+def new_namespace():
+    return {"__name__": "__main__", "__builtins__": __builtins__}
+
+
+def run(request, session_globals):
+    request_id = request.get("id")
+    out = OutputStream(request_id)
+    saved = (sys.stdout, sys.stderr, sys.stdin)
+    sys.stdout = sys.stderr = out
+    sys.stdin = io.StringIO("")  # input()이 프로토콜 입력을 읽지 않도록
+    ok = True
+    try:
+        cwd = request.get("cwd")
+        if cwd:
+            os.chdir(cwd)
+        namespace = session_globals if request.get("session") else new_namespace()
+        exec(compile(request.get("code", ""), "<run_python>", "exec"), namespace)
+    except SystemExit as e:
+        ok = e.code in (None, 0)
+        if not ok:
+            out.write("SystemExit: %s\n" % e.code)
+    except BaseException as e:
+        ok = False
+        # 작업자 자신의 프레임은 빼고 사용자 코드 부분만
+        tb = e.__traceback__.tb_next if e.__traceback__ is not None else None
+        out.write("".join(traceback.format_exception(type(e), e, tb)))
+    finally:
+        out.flush()
+        sys.stdout, sys.stderr, sys.stdin = saved
+    sys.stdout.flush()
+    send({"id": request_id, "type": "done", "ok": ok, "rss": current_rss()})
+
+
+def main():
+    preloaded = []
+    for arg in sys.argv[1:]:
+        if arg.startswith("--preload="):
+            for name in filter(None, arg[len("--preload="):].split(",")):
+                try:
+                    importlib.import_module(name.strip())
+                    preloaded.append(name.strip())
+                except Exception:
+                    pass  # 설치되지 않은 모듈은 건너뜀
+    send({"type": "ready", "pid": os.getpid(), "preloaded": preloaded})
+
+    session_globals = new_namespace()
+    for line in stdin:
+        line = line.strip()
+        if not line:
+            continue
+        try:
+            request = json.loads(line)
+        except ValueError:
+            continue
+        run(request, session_globals)
+    # stdin이 닫히면 (Java 종료) 작업자도 종료
+
+
+if __name__ == "__main__":
+    main()
@@ -1,6 +1,10 @@
 package com.example;
 
 import com.example.controller.AiController;
+import com.example.repository.ChatRepository;
+import com.example.repository.ChatWriteQueue;
+import com.example.service.AppConfigService;
+import com.example.service.ConfigHolder;
 import com.example.service.DatabaseService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -16,10 +20,16 @@ public class AiAssistantFX extends Application {
 
     @Override
     public void start(Stage stage) throws IOException {
-        // 데이터베이스 미리 연결 (관리자 계정)
-        // 백그라운드 스레드에서 실행해서 UI 멈춤 방지하면 더 좋겠지만, 일단 여기서 심플하게 호출
+        // 설정 파일이 바뀌면 다시 읽어서 구독자(DB 풀, 백엔드, 설정 창)에 알림
+        ConfigHolder.getInstance().startWatching();
+
+        // 저장소 미리 준비 (MySQL: 관리자 계정 풀의 최소 커넥션, 내장: 파일 열고 인덱스 생성)
+        // 백그라운드 스레드에서 실행해서 UI 멈춤 방지
         new Thread(() -> {
-            DatabaseService.getInstance().getAppConnection();
+            if (!AppConfigService.load().isEmbeddedStorage()) {
+                DatabaseService.getInstance().warmUp();
+            }
+            ChatRepository.getDefaultStore();
         }).start();
 
         Font font1=Font.loadFont(getClass().getResourceAsStream("/com/example/fonts/Pretendard-Regular.ttf"), 12);
@@ -54,8 +64,11 @@ public class AiAssistantFX extends Application {
         if (controller != null) {
             controller.shutdown();
         }
-        // 데이터베이스 연결 종료
+        // 저장 대기 중인 메시지를 모두 기록한 뒤 데이터베이스 연결 종료
+        ChatWriteQueue.getInstance().shutdown();
+        ChatRepository.closeDefaultStore();
         DatabaseService.getInstance().closeAll();
+        ConfigHolder.getInstance().stopWatching();
     }
 
     public static void main(String[] args) {
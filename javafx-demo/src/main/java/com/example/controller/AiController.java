@@ -1,21 +1,33 @@
 package com.example.controller;
 
+import com.example.model.SearchHit;
 import com.example.service.ChatService;
 import com.example.view.ChatWebView;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.scene.web.WebView;
 
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
 public class AiController {
 
+    private static final int SEARCH_LIMIT = 30;
+    private static final DateTimeFormatter SEARCH_TIME_FORMAT = DateTimeFormatter.ofPattern("yy.MM.dd HH:mm");
+
     @FXML private VBox settingsOverlay;
     @FXML private WebView webView;
     @FXML private TextField inputField;
     @FXML private SettingsController settingsOverlayController;
     @FXML private Button sendButton;
     @FXML private TextField modelNameField;
+    @FXML private TextField searchField;
+    @FXML private ListView<SearchHit> searchResults;
 
     // 분리된 클래스 사용
     private ChatWebView chatWebView;
@@ -34,7 +46,51 @@ public class AiController {
         chatWebView.setChatService(chatService);
         
         settingsOverlay.setVisible(false);
-        
+
+        setupSearchResults();
+    }
+
+    // 검색 결과: "날짜 · 역할" + 본문 조각, 클릭하면 해당 메시지로 이동
+    private void setupSearchResults() {
+        searchResults.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(SearchHit hit, boolean empty) {
+                super.updateItem(hit, empty);
+                if (empty || hit == null) {
+                    setText(null);
+                    return;
+                }
+                String time = hit.getTimestamp() != null ? hit.getTimestamp().format(SEARCH_TIME_FORMAT) : "";
+                String role = "user".equals(hit.getRole()) ? "나" : "AI";
+                setText(time + " · " + role + "\n" + hit.getSnippet());
+                setWrapText(true);
+                setPrefWidth(0); // 목록 너비에 맞춰 줄바꿈
+            }
+        });
+        searchResults.getSelectionModel().selectedItemProperty().addListener((obs, old, hit) -> {
+            if (hit != null) chatService.jumpToMessage(hit.getMessageId());
+        });
+    }
+
+    @FXML
+    protected void onSearch() {
+        String query = searchField.getText();
+        if (query == null || query.isBlank()) {
+            showSearchResults(List.of());
+            return;
+        }
+        // 본문 조각은 저장소에서 읽으므로 백그라운드에서 검색
+        new Thread(() -> {
+            List<SearchHit> hits = chatService.searchHistory(query.trim(), SEARCH_LIMIT);
+            Platform.runLater(() -> showSearchResults(hits));
+        }).start();
+    }
+
+    private void showSearchResults(List<SearchHit> hits) {
+        searchResults.getItems().setAll(hits);
+        boolean show = !hits.isEmpty();
+        searchResults.setVisible(show);
+        searchResults.setManaged(show);
     }
 
     @FXML
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.example.service.AppConfigService;
+import com.example.service.ConfigHolder;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -49,11 +50,11 @@ public class SettingsController {
 
         // 3. 초기 선택값 설정
         menuList.getSelectionModel().select(0);
-        AppConfigService config = AppConfigService.load();
-        modelComboBox.setValue(config.getModelName());
-        if (config.getSystemPrompt() != null) {
-            promptTextArea.setText(config.getSystemPrompt());
-        }
+        showConfig(AppConfigService.load());
+        // 설정 파일을 직접 고친 경우에도 (창이 닫혀 있을 때) 화면 값을 맞춤
+        ConfigHolder.getInstance().subscribe((previous, current) -> Platform.runLater(() -> {
+            if (!isVisible()) showConfig(current);
+        }));
         fetchOllamaModels();
         // 1. 너비: 전체 화면의 70% (단, 최대 1000px은 넘지 않게)
         settingsWindow.prefWidthProperty().bind(rootBox.widthProperty().multiply(0.7));
@@ -136,9 +137,16 @@ public class SettingsController {
     }
     
 
+    private void showConfig(AppConfigService config) {
+        modelComboBox.setValue(config.getModelName());
+        if (config.getSystemPrompt() != null) {
+            promptTextArea.setText(config.getSystemPrompt());
+        }
+    }
+
     @FXML
     private void closeSettings() {
-        AppConfigService config = AppConfigService.load();
+        AppConfigService config = AppConfigService.load().copy(); // 공유 스냅샷은 수정 불가
         String selectedModel = modelComboBox.getValue();
         config.setModelName(selectedModel);
         config.setSystemPrompt(promptTextArea.getText());
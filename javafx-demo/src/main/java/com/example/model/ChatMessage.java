@@ -1,20 +1,26 @@
 package com.example.model;
 
+import com.example.util.IdGenerator;
+
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ChatMessage {
     private String id;
     private String role; // "user", "model", "tool", "system" 등
     private String content; // 내용
     private LocalDateTime timestamp; // 생성 시간
+    // 이 답변에서 실행한 도구 호출 (요청 순서), 문맥 구성 스레드에서도 읽으므로 추가할 때마다 새 목록으로 교체
+    private volatile List<ToolCall> toolCalls = List.of();
 
     // 1. 새 메시지 생성용 (ID 자동 생성)
     public ChatMessage(String role, String content) {
-        this.id = UUID.randomUUID().toString();
+        this.id = IdGenerator.newId(); // 시간순 UUIDv7
         this.role = role;
         this.content = content;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS); // 저장소 정밀도(ms)와 같게: 이 메시지를 커서로 쓸 때 저장된 행과 일치
     }
 
     // 2. DB 데이터 복원용 (ID, 시간 지정 가능)
@@ -50,4 +56,18 @@ public class ChatMessage {
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
+
+    public List<ToolCall> getToolCalls() {
+        return toolCalls;
+    }
+
+    public void setToolCalls(List<ToolCall> toolCalls) {
+        this.toolCalls = List.copyOf(toolCalls);
+    }
+
+    public void addToolCall(ToolCall call) {
+        List<ToolCall> added = new ArrayList<>(toolCalls);
+        added.add(call);
+        this.toolCalls = List.copyOf(added);
+    }
 }
@@ -0,0 +1,54 @@
+package com.example.model;
+
+import java.time.LocalDateTime;
+
+// 요약 트리의 노드 한 개 (chat_summaries 한 행)
+// 0단계는 메시지 묶음의 요약, 그 위로 일/주/월/년 단위로 아래 단계 요약을 다시 요약
+public class ChatSummary {
+    public static final int CHUNK = 0;
+    public static final int DAY = 1;
+    public static final int WEEK = 2;
+    public static final int MONTH = 3;
+    public static final int YEAR = 4;
+
+    private final int level;
+    private final String content;
+    private final String startId;           // 포함된 첫/마지막 메시지
+    private final String endId;
+    private final LocalDateTime startTs;
+    private final LocalDateTime endTs;
+
+    public ChatSummary(int level, String content, String startId, String endId,
+                       LocalDateTime startTs, LocalDateTime endTs) {
+        this.level = level;
+        this.content = content;
+        this.startId = startId;
+        this.endId = endId;
+        this.startTs = startTs;
+        this.endTs = endTs;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getStartId() {
+        return startId;
+    }
+
+    public String getEndId() {
+        return endId;
+    }
+
+    public LocalDateTime getStartTs() {
+        return startTs;
+    }
+
+    public LocalDateTime getEndTs() {
+        return endTs;
+    }
+}
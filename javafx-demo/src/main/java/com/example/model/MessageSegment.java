@@ -0,0 +1,26 @@
+package com.example.model;
+
+// 스트리밍 중인 답변의 중간 저장 조각 (chat_message_segments 한 행)
+public class MessageSegment {
+    private final String messageId;
+    private final int seq;          // 메시지 안에서의 순서 (0부터)
+    private final String content;   // 이전 조각 이후 새로 받은 텍스트
+
+    public MessageSegment(String messageId, int seq, String content) {
+        this.messageId = messageId;
+        this.seq = seq;
+        this.content = content;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public String getContent() {
+        return content;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.model;
+
+import java.time.LocalDateTime;
+
+// 대화 기록 검색 결과 한 건
+public class SearchHit {
+    private final String messageId;
+    private final String role;
+    private final LocalDateTime timestamp;
+    private final double score;     // 높을수록 관련도 높음 (BM25)
+    private final String snippet;   // 검색어 주변 본문 (HTML 제거된 일반 텍스트)
+
+    public SearchHit(String messageId, String role, LocalDateTime timestamp, double score, String snippet) {
+        this.messageId = messageId;
+        this.role = role;
+        this.timestamp = timestamp;
+        this.score = score;
+        this.snippet = snippet;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+}
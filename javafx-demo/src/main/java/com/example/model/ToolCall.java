@@ -0,0 +1,91 @@
+package com.example.model;
+
+import com.example.util.IdGenerator;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// 도구 호출 한 번 (chat_tool_calls 한 행): 어느 답변이 어떤 도구를 어떤 파라미터로 불렀고 결과가 어땠는지
+// 화면용 HTML은 저장하지 않고 그릴 때 만듦 (HtmlUtil.toolCallHtml)
+public class ToolCall {
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String REJECTED = "rejected";
+    public static final String CANCELLED = "cancelled";
+
+    private final String id;                // 시간순 UUIDv7 (같은 메시지 안의 순서)
+    private final String messageId;         // 도구를 요청한 AI 답변
+    private final String toolName;
+    private final String params;            // 파라미터 JSON (없으면 null)
+    private final String status;
+    private final String output;            // 모델/화면에 보인 결과 (큰 결과는 앞부분만)
+    private final String blobId;            // 전체 결과가 BlobStore에 있으면 그 ID, 아니면 null
+    private final int outputLength;         // 전체 결과 길이 (글자)
+    private final LocalDateTime timestamp;
+
+    // 1. 새 호출 기록용 (ID, 시간 자동)
+    public ToolCall(String messageId, String toolName, String params, String status,
+                    String output, String blobId, int outputLength) {
+        this(IdGenerator.newId(), messageId, toolName, params, status, output, blobId, outputLength,
+                LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    // 2. DB 데이터 복원용
+    public ToolCall(String id, String messageId, String toolName, String params, String status,
+                    String output, String blobId, int outputLength, LocalDateTime timestamp) {
+        this.id = id;
+        this.messageId = messageId;
+        this.toolName = toolName;
+        this.params = params;
+        this.status = status;
+        this.output = output;
+        this.blobId = blobId;
+        this.outputLength = outputLength;
+        this.timestamp = timestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public int getOutputLength() {
+        return outputLength;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isSuccess() {
+        return SUCCESS.equals(status);
+    }
+
+    // 실행까지 간 호출 (거절/취소는 결과 없이 상태만)
+    public boolean hasResult() {
+        return SUCCESS.equals(status) || ERROR.equals(status);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 큰 도구 실행 결과를 내용 해시(SHA-256)로 한 번만 저장하는 압축 파일 저장소.
+ * - 경로: config/data/blobs/ab/abcdef...gz (해시 앞 두 글자로 폴더를 나눔)
+ * - 같은 내용은 파일 하나만 저장 (같은 파일을 여러 번 열어도 중복 저장 없음)
+ * - 임시 파일에 쓴 뒤 이동하므로 중간에 종료되어도 깨진 파일이 남지 않음
+ * 메시지 본문에는 ID(해시)와 앞부분 미리보기만 넣고, 전체 내용은 화면에서 펼칠 때 읽습니다.
+ * 대화 저장소(MySQL/내장)와 상관없이 같은 방식으로 동작합니다.
+ */
+public final class BlobStore {
+
+    private static final Path DEFAULT_ROOT = Paths.get("config", "data", "blobs");
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static BlobStore instance;
+
+    private final Path root;
+
+    public BlobStore(Path root) {
+        this.root = root;
+    }
+
+    public static synchronized BlobStore getInstance() {
+        if (instance == null) {
+            instance = new BlobStore(DEFAULT_ROOT);
+        }
+        return instance;
+    }
+
+    // 저장 후 ID(해시) 반환, 실패 시 null
+    public String put(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String id = sha256(bytes);
+        Path file = pathOf(id);
+        if (Files.exists(file)) return id; // 이미 같은 내용이 있음
+
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), id, ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+                out.write(bytes);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            return id;
+        } catch (FileAlreadyExistsException e) {
+            return id; // 다른 스레드가 같은 내용을 먼저 저장함
+        } catch (IOException e) {
+            System.err.println("도구 결과 저장 실패!");
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // 없거나 읽을 수 없으면 null
+    public String get(String id) {
+        if (!isValidId(id)) return null;
+        Path file = pathOf(id);
+        if (!Files.exists(file)) return null;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("도구 결과 읽기 실패: " + id);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static boolean isValidId(String id) {
+        return id != null && ID_PATTERN.matcher(id).matches();
+    }
+
+    private Path pathOf(String id) {
+        return root.resolve(id.substring(0, 2)).resolve(id + ".gz");
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // 모든 JVM에 있음
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.repository;
+
+import com.example.model.ChatMessage;
+import com.example.model.ChatSummary;
+import com.example.model.MessageSegment;
+import com.example.model.ToolCall;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 대화 기록 저장소 SPI (ChatRepository가 설정의 storage_backend에 따라 구현체를 고름)
+ * - "mysql": MySqlChatStore (기존 MySQL 서버)
+ * - "embedded": EmbeddedChatStore (단일 파일, 서버 필요 없음)
+ *
+ * 조회 결과는 모두 과거순이며, 같은 시각의 메시지는 ID 순서로 정렬합니다.
+ * 조회한 메시지에는 그 메시지의 도구 호출 기록(ToolCall)이 요청 순서대로 붙어 있습니다.
+ * writeBatch를 제외한 메서드는 실패해도 예외를 던지지 않고 로그만 남깁니다.
+ */
+public interface ChatStore {
+
+    void save(ChatMessage message);
+
+    // 최근 메시지 limit개
+    List<ChatMessage> findRecentMessages(int limit);
+
+    // cursor보다 이전 메시지 limit개
+    List<ChatMessage> findMessagesBefore(ChatMessage cursor, int limit);
+
+    // cursor보다 이후 메시지 limit개 (위로 스크롤했다가 다시 내려올 때)
+    List<ChatMessage> findMessagesAfter(ChatMessage cursor, int limit);
+
+    // ID로 여러 메시지 조회 (검색 결과 본문용), 순서는 보장하지 않고 없는 ID는 빠짐
+    List<ChatMessage> findMessagesByIds(Collection<String> ids);
+
+    void updateContent(String id, String newContent);
+
+    // --- 스트리밍 중간 저장 ---
+
+    void appendSegment(MessageSegment segment);
+
+    // 최종 내용 저장 + 조각 삭제
+    void completeMessage(String id, String content);
+
+    // 답변 도중 종료되어 남은 조각을 본문에 합침 (시작 시 한 번), 복구한 메시지 수 반환
+    int recoverInterruptedMessages(String interruptedNotice);
+
+    // --- 도구 호출 기록 (메시지 본문과 따로, 화면용 HTML 없이) ---
+
+    void saveToolCall(ToolCall call);
+
+    /**
+     * 저장/조각 추가/수정/조각 정리/도구 호출 기록을 한 번에 원자적으로 기록 (ChatWriteQueue 전용)
+     * 실패 시 예외를 그대로 던져서 호출 측이 다시 시도할 수 있게 함
+     */
+    void writeBatch(List<ChatMessage> inserts, List<MessageSegment> segments,
+                    List<ChatMessage> updates, List<String> completedIds, List<ToolCall> toolCalls) throws Exception;
+
+    // --- 요약 (트리: ChatSummary.CHUNK ~ YEAR 단계) ---
+
+    void saveSummary(int level, String content, String startId, String endId, LocalDateTime startTs, LocalDateTime endTs);
+
+    // 해당 단계의 가장 최근 요약, 없으면 null
+    ChatSummary findLastSummary(int level);
+
+    // 해당 단계에서 시작 시각이 [startFrom, startTo]인 요약 (시간순, null이면 제한 없음)
+    List<ChatSummary> findSummaries(int level, LocalDateTime startFrom, LocalDateTime startTo);
+
+    int getMessageCount();
+
+    int countMessagesAfterLastSummary();
+
+    // 마지막 0단계 요약 이후의 메시지를 오래된 순서로 최대 limit개
+    List<ChatMessage> findUnsummarizedMessages(int limit);
+
+    // 앱 종료 시 호출 (기본: 할 일 없음)
+    default void close() {
+    }
+}
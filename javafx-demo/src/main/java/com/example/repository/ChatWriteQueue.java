@@ -0,0 +1,406 @@
+package com.example.repository;
+
+import com.example.model.ChatMessage;
+import com.example.model.MessageSegment;
+import com.example.model.ToolCall;
+import com.example.service.AppConfigService;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 메시지 저장(write-behind) 큐.
+ * save/updateContent는 큐에 넣고 바로 반환하며, 전용 스레드 하나가 모아서 한 번의 배치로 저장합니다 (MySQL은 JDBC 배치, 내장 저장소는 레코드 하나).
+ * - 같은 메시지 ID에 대한 여러 번의 수정은 마지막 내용 한 번으로 합쳐짐
+ * - 아직 저장되지 않은 INSERT 뒤의 수정은 INSERT 내용에 합쳐짐
+ * - 스트리밍 중간 저장 조각(appendSegment)은 순서대로 추가되며, 완료(completeMessage) 시 아직 안 쓴 조각은 버림
+ * - 도구 호출 기록(saveToolCall)은 합치지 않고 순서대로, 같은 배치의 메시지 저장 뒤에 기록
+ * - 큐가 가득 차면 호출 스레드가 잠시 대기 (메모리 무한 증가 방지)
+ * - 동기 모드(persistence_mode = "sync")에서는 바로 ChatRepository에 저장
+ */
+public class ChatWriteQueue {
+
+    private static final int MAX_PENDING = 1_000;       // 저장 대기 중인 메시지 ID 수 상한
+    private static final long RETRY_DELAY_MS = 1_000;
+    private static final int MAX_ATTEMPTS = 3;          // 계속 실패하는 작업은 버리고 로그만 남김
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 5_000;
+
+    private static ChatWriteQueue instance;
+
+    // 저장 대기 중인 작업 (ID별 하나)
+    private static final class PendingWrite {
+        final ChatMessage message;   // 큐에 넣은 시점의 스냅샷
+        final boolean insert;
+        final long enqueuedAt;
+        boolean complete;            // 스트리밍 완료: 저장 후 중간 저장 조각 삭제
+        int attempts;
+
+        PendingWrite(ChatMessage message, boolean insert, long enqueuedAt) {
+            this.message = message;
+            this.insert = insert;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        // older 다음에 newer가 들어왔을 때 하나로 합침
+        static PendingWrite merge(PendingWrite older, PendingWrite newer) {
+            PendingWrite merged;
+            if (older.insert && !newer.insert) {
+                ChatMessage message = copy(older.message);
+                message.setContent(newer.message.getContent());
+                merged = new PendingWrite(message, true, older.enqueuedAt);
+            } else {
+                merged = new PendingWrite(newer.message, newer.insert || older.insert, older.enqueuedAt);
+            }
+            merged.complete = older.complete || newer.complete;
+            merged.attempts = Math.max(older.attempts, newer.attempts);
+            return merged;
+        }
+    }
+
+    private final ChatRepository repository;
+    private final boolean synchronous;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final LinkedHashMap<String, PendingWrite> pending = new LinkedHashMap<>();
+    private final List<MessageSegment> pendingSegments = new ArrayList<>();
+    private final List<ToolCall> pendingToolCalls = new ArrayList<>();
+    private int inFlight = 0;        // 작성 스레드가 가져가서 저장 중인 건수
+    private int consecutiveFailures = 0;
+    private boolean running = true;
+    private Thread writerThread;
+
+    // 통계
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong flushNanosTotal = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();   // 큐에 넣은 뒤 DB에 반영되기까지
+    private volatile int maxDepth = 0;
+
+    public ChatWriteQueue(ChatRepository repository, boolean synchronous) {
+        this.repository = repository;
+        this.synchronous = synchronous;
+        if (!synchronous) {
+            writerThread = new Thread(this::writerLoop, "chat-write-behind");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    public static synchronized ChatWriteQueue getInstance() {
+        if (instance == null) {
+            boolean sync = "sync".equalsIgnoreCase(AppConfigService.load().getPersistenceMode());
+            instance = new ChatWriteQueue(new ChatRepository(), sync);
+        }
+        return instance;
+    }
+
+    // 새 메시지 저장
+    public void save(ChatMessage message) {
+        if (synchronous) {
+            repository.save(message);
+            return;
+        }
+        enqueue(new PendingWrite(copy(message), true, System.nanoTime()));
+    }
+
+    // 메시지 내용 수정
+    public void updateContent(String id, String content) {
+        if (synchronous) {
+            repository.updateContent(id, content);
+            return;
+        }
+        enqueue(new PendingWrite(new ChatMessage(id, null, content, null), false, System.nanoTime()));
+    }
+
+    // 스트리밍 중간 저장: 직전 조각 이후 새로 받은 텍스트를 추가
+    public void appendSegment(MessageSegment segment) {
+        if (synchronous) {
+            repository.appendSegment(segment);
+            return;
+        }
+        lock.lock();
+        try {
+            if (!running) {
+                repository.appendSegment(segment);
+                return;
+            }
+            PendingWrite existing = pending.get(segment.getMessageId());
+            if (existing != null && existing.complete) {
+                coalesced.incrementAndGet(); // 이미 최종본이 대기 중
+                return;
+            }
+            pendingSegments.add(segment);
+            enqueued.incrementAndGet();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 도구 호출 기록 추가 (메시지 본문은 건드리지 않음)
+    public void saveToolCall(ToolCall call) {
+        if (synchronous) {
+            repository.saveToolCall(call);
+            return;
+        }
+        lock.lock();
+        try {
+            if (!running) {
+                repository.saveToolCall(call);
+                return;
+            }
+            pendingToolCalls.add(call);
+            enqueued.incrementAndGet();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 스트리밍 완료: 최종 내용 저장과 조각 삭제를 한 트랜잭션으로 (컴팩션)
+    public void completeMessage(String id, String content) {
+        if (synchronous) {
+            repository.completeMessage(id, content);
+            return;
+        }
+        PendingWrite write = new PendingWrite(new ChatMessage(id, null, content, null), false, System.nanoTime());
+        write.complete = true;
+        lock.lock();
+        try {
+            // 아직 쓰지 않은 조각은 필요 없음
+            int before = pendingSegments.size();
+            pendingSegments.removeIf(seg -> seg.getMessageId().equals(id));
+            coalesced.addAndGet(before - pendingSegments.size());
+        } finally {
+            lock.unlock();
+        }
+        enqueue(write);
+    }
+
+    private void enqueue(PendingWrite write) {
+        lock.lock();
+        try {
+            if (!running) {
+                // 종료 후 들어온 쓰기는 바로 저장 (유실 방지)
+                writeDirect(write);
+                return;
+            }
+            PendingWrite existing = pending.get(write.message.getId());
+            if (existing != null) {
+                pending.put(write.message.getId(), PendingWrite.merge(existing, write));
+                coalesced.incrementAndGet();
+            } else {
+                while (pending.size() >= MAX_PENDING && running) {
+                    notFull.awaitUninterruptibly();
+                }
+                pending.put(write.message.getId(), write);
+                maxDepth = Math.max(maxDepth, pending.size());
+            }
+            enqueued.incrementAndGet();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeDirect(PendingWrite write) {
+        if (write.insert) repository.save(write.message);
+        if (write.complete) repository.completeMessage(write.message.getId(), write.message.getContent());
+        else if (!write.insert) repository.updateContent(write.message.getId(), write.message.getContent());
+    }
+
+    private void writerLoop() {
+        while (true) {
+            List<PendingWrite> batch;
+            List<MessageSegment> segments;
+            List<ToolCall> toolCalls;
+            lock.lock();
+            try {
+                while (isIdle() && running) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (isIdle()) return; // 종료 요청 + 남은 작업 없음
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                segments = new ArrayList<>(pendingSegments);
+                pendingSegments.clear();
+                toolCalls = new ArrayList<>(pendingToolCalls);
+                pendingToolCalls.clear();
+                inFlight = batch.size() + segments.size() + toolCalls.size();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            boolean ok = writeBatch(batch, segments, toolCalls);
+
+            lock.lock();
+            try {
+                inFlight = 0;
+                consecutiveFailures = ok ? 0 : consecutiveFailures + 1;
+                if (!ok && consecutiveFailures < MAX_ATTEMPTS) {
+                    // 조각은 순서가 중요하므로 새로 들어온 조각보다 앞에 되돌림 (그 사이 완료된 메시지 제외)
+                    segments.removeIf(seg -> {
+                        PendingWrite w = pending.get(seg.getMessageId());
+                        return w != null && w.complete;
+                    });
+                    pendingSegments.addAll(0, segments);
+                    pendingToolCalls.addAll(0, toolCalls);
+                } else if (!ok) {
+                    System.err.println("답변 중간 저장 조각 " + segments.size() + "건 포기 (" + MAX_ATTEMPTS + "회 연속 실패)");
+                    if (!toolCalls.isEmpty()) {
+                        System.err.println("도구 호출 기록 " + toolCalls.size() + "건 포기 (" + MAX_ATTEMPTS + "회 연속 실패)");
+                    }
+                }
+                if (!ok) {
+                    // 실패한 작업을 되돌려 놓되, 그 사이 들어온 더 새로운 작업과 합침
+                    LinkedHashMap<String, PendingWrite> retry = new LinkedHashMap<>();
+                    for (PendingWrite w : batch) {
+                        if (++w.attempts >= MAX_ATTEMPTS) {
+                            System.err.println("메시지 저장 포기 (" + MAX_ATTEMPTS + "회 실패): " + w.message.getId());
+                            continue;
+                        }
+                        retry.put(w.message.getId(), w);
+                    }
+                    for (Map.Entry<String, PendingWrite> e : pending.entrySet()) {
+                        retry.merge(e.getKey(), e.getValue(), PendingWrite::merge);
+                    }
+                    pending.clear();
+                    pending.putAll(retry);
+                }
+                if (isIdle()) drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (!ok) {
+                if (!running) return; // 종료 중에는 재시도하지 않음 (남은 작업은 로그로 확인)
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // 호출 시 lock을 잡고 있어야 함
+    private boolean isIdle() {
+        return pending.isEmpty() && pendingSegments.isEmpty() && pendingToolCalls.isEmpty();
+    }
+
+    private boolean writeBatch(List<PendingWrite> batch, List<MessageSegment> segments, List<ToolCall> toolCalls) {
+        List<ChatMessage> inserts = new ArrayList<>();
+        List<ChatMessage> updates = new ArrayList<>();
+        List<String> completedIds = new ArrayList<>();
+        for (PendingWrite w : batch) {
+            if (w.insert) {
+                inserts.add(w.message);
+            } else {
+                updates.add(w.message);
+            }
+            if (w.complete) completedIds.add(w.message.getId());
+        }
+
+        long start = System.nanoTime();
+        try {
+            repository.writeBatch(inserts, segments, updates, completedIds, toolCalls);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            System.err.println("메시지 저장 배치 실패 (" + (batch.size() + segments.size() + toolCalls.size()) + "건, 재시도 예정): " + e.getMessage());
+            return false;
+        }
+        long end = System.nanoTime();
+
+        long elapsed = end - start;
+        batches.incrementAndGet();
+        written.addAndGet(batch.size() + segments.size() + toolCalls.size());
+        flushNanosTotal.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        for (PendingWrite w : batch) {
+            maxLagNanos.accumulateAndGet(end - w.enqueuedAt, Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * 지금까지 큐에 들어온 작업이 모두 DB에 반영될 때까지 대기 (DB를 직접 조회하기 전에 호출)
+     * @return 시간 안에 모두 반영되었으면 true
+     */
+    public boolean flush(long timeoutMs) {
+        if (synchronous) return true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (!isIdle() || inFlight > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                drained.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 앱 종료 시 남은 작업을 모두 저장하고 작성 스레드 종료
+    public void shutdown() {
+        if (synchronous) return;
+        boolean flushed = flush(SHUTDOWN_FLUSH_TIMEOUT_MS);
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            if (!flushed) {
+                System.err.println("종료 전에 저장하지 못한 메시지: " + (pending.size() + pendingSegments.size() + pendingToolCalls.size() + inFlight) + "건");
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (writerThread != null) writerThread.join(SHUTDOWN_FLUSH_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println(getStats());
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size() + pendingSegments.size() + pendingToolCalls.size() + inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getStats() {
+        long batchCount = batches.get();
+        double avgFlushMs = batchCount == 0 ? 0 : flushNanosTotal.get() / 1e6 / batchCount;
+        return String.format("[write-behind] 대기 %d (최대 %d) | 요청 %d, 병합 %d, 저장 %d건 / 배치 %d회"
+                        + " | 배치 평균 %.2f ms, 최대 %.2f ms, 반영 지연 최대 %.2f ms | 실패 %d",
+                getQueueDepth(), maxDepth, enqueued.get(), coalesced.get(), written.get(), batchCount,
+                avgFlushMs, maxFlushNanos.get() / 1e6, maxLagNanos.get() / 1e6, failures.get());
+    }
+
+    private static ChatMessage copy(ChatMessage m) {
+        return new ChatMessage(m.getId(), m.getRole(), m.getContent(), m.getTimestamp());
+    }
+}
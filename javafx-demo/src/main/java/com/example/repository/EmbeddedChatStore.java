@@ -0,0 +1,806 @@
+package com.example.repository;
+
+import com.example.model.ChatMessage;
+import com.example.model.ChatSummary;
+import com.example.model.MessageSegment;
+import com.example.model.ToolCall;
+import com.example.util.IdGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * 단일 파일 내장 저장소 (MySQL 서버 없이 사용, storage_backend = "embedded").
+ * - 모든 변경은 파일 끝에 레코드로 추가만 함 (append-only, 순차 쓰기)
+ * - 쓰기 호출 한 번 = 레코드 하나 = CRC로 검증되는 원자적 단위 (writeBatch도 레코드 하나)
+ * - 파일은 메모리 매핑하고, 메시지 인덱스(ID별/시간순)와 본문의 파일 위치만 메모리에 둠 (본문은 읽을 때 꺼냄)
+ * - 시작 시 파일을 처음부터 읽어 인덱스를 만들며, 기록 도중 끊긴 마지막 레코드는 버림
+ * - 수정/조각 정리로 버려진 내용이 절반을 넘으면 시작 시 살아 있는 내용만 새 파일로 다시 씀
+ *
+ * 레코드: [본문 길이 int][CRC32 int][작업 수 int][작업...], 길이 0은 기록의 끝
+ * 파일 버전 1은 도구 결과를 본문 HTML로 저장하던 형식이며, 열 때 한 번 도구 호출 기록(버전 2)으로 옮깁니다.
+ */
+public class EmbeddedChatStore implements ChatStore {
+
+    private static final byte[] MAGIC = "AICHATLG".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 2;
+    private static final int LEGACY_TOOL_HTML_VERSION = 1;
+    private static final int HEADER_SIZE = 16;              // MAGIC + 버전 + 예약
+    private static final int RECORD_HEADER = 8;             // 본문 길이 + CRC32
+    private static final int MIN_CAPACITY = 1 << 20;        // 매핑 최소 크기 1MB (부족하면 두 배씩)
+    private static final long COMPACT_MIN_BYTES = 4L << 20; // 파일이 4MB 이상이고
+    private static final double COMPACT_DEAD_RATIO = 0.5;   // 절반 이상이 버려진 내용이면 정리
+    private static final int COMPACT_OPS_PER_RECORD = 1_000;
+
+    // 작업 종류
+    private static final byte OP_MESSAGE = 1;         // 새 메시지 (같은 ID가 있으면 덮어씀)
+    private static final byte OP_CONTENT = 2;         // 내용 수정
+    private static final byte OP_SEGMENT = 3;         // 스트리밍 중간 저장 조각
+    private static final byte OP_CLEAR_SEGMENTS = 4;  // 조각 삭제
+    private static final byte OP_SUMMARY = 5;         // 단계 없는 예전 요약 (0단계로 읽음)
+    private static final byte OP_TREE_SUMMARY = 6;    // 요약 트리 노드 (단계 포함)
+    private static final byte OP_TOOL_CALL = 7;       // 도구 호출 기록
+
+    // 파일 안의 UTF-8 문자열 위치
+    private record Span(int pos, int len) {
+    }
+
+    private record Segment(int seq, Span content) {
+    }
+
+    private record SummaryEntry(int level, Span content, String startId, String endId, long startTs, long endTs) {
+    }
+
+    // 긴 파라미터/결과는 위치만, 나머지는 짧은 값이라 그대로
+    private record ToolCallEntry(String id, String toolName, Span params, String status, Span output,
+                                 String blobId, int outputLength, long timestampMs) {
+    }
+
+    // 메모리 인덱스 항목 (본문은 위치만)
+    private static final class MessageEntry {
+        final String id;
+        final String role;
+        final long timestampMs;
+        Span content;
+
+        MessageEntry(String id, String role, long timestampMs, Span content) {
+            this.id = id;
+            this.role = role;
+            this.timestampMs = timestampMs;
+            this.content = content;
+        }
+    }
+
+    // 시간순, 같은 시각이면 ID순 (MySQL의 (timestamp, id) 인덱스와 같은 순서)
+    private static final Comparator<MessageEntry> TIME_ORDER =
+            Comparator.comparingLong((MessageEntry e) -> e.timestampMs).thenComparing(e -> e.id);
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer; // 열기(open)가 끝난 뒤에만 매핑
+    private int version;             // 파일 형식 버전 (헤더)
+    private int end;                 // 마지막 레코드 다음 위치 (다음 쓰기 위치)
+    private long deadBytes;          // 덮어쓰거나 삭제되어 더 이상 안 쓰는 본문 크기
+    private boolean closed = false;
+
+    private final Map<String, MessageEntry> messages = new HashMap<>();
+    private final NavigableSet<MessageEntry> timeline = new TreeSet<>(TIME_ORDER);
+    private final Map<String, List<Segment>> segments = new LinkedHashMap<>();
+    private final Map<Integer, List<SummaryEntry>> summaries = new TreeMap<>(); // 단계 -> 저장 순서 (= 시간순)
+    private final Map<String, List<ToolCallEntry>> toolCalls = new HashMap<>();  // 메시지 ID -> 요청 순서
+
+    private EmbeddedChatStore(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 파일을 열어 인덱스를 만든 뒤 매핑 (파일이 없으면 새로 만듦).
+     * 정리가 필요하면 매핑 전에 새 파일로 옮겨 씀 (Windows는 매핑된 파일을 교체할 수 없음)
+     */
+    public static EmbeddedChatStore open(String file) throws IOException {
+        Path path = Paths.get(file);
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+
+        EmbeddedChatStore store = new EmbeddedChatStore(path);
+        if (store.end >= COMPACT_MIN_BYTES && store.deadBytes >= store.end * COMPACT_DEAD_RATIO) {
+            store = store.compact();
+        }
+        store.map(Math.max(MIN_CAPACITY, store.end + RECORD_HEADER));
+        if (store.version == LEGACY_TOOL_HTML_VERSION) {
+            store.migrateToolHtml();
+        }
+        return store;
+    }
+
+    // --- ChatStore ---
+
+    @Override
+    public synchronized void save(ChatMessage message) {
+        try {
+            append(new Batch().message(message));
+        } catch (IOException e) {
+            System.err.println("메시지 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized List<ChatMessage> findRecentMessages(int limit) {
+        return collectNewestFirst(timeline.descendingIterator(), limit);
+    }
+
+    @Override
+    public synchronized List<ChatMessage> findMessagesBefore(ChatMessage cursor, int limit) {
+        MessageEntry probe = new MessageEntry(cursor.getId(), null, toMillis(cursor.getTimestamp()), null);
+        return collectNewestFirst(timeline.headSet(probe, false).descendingIterator(), limit);
+    }
+
+    @Override
+    public synchronized List<ChatMessage> findMessagesAfter(ChatMessage cursor, int limit) {
+        MessageEntry probe = new MessageEntry(cursor.getId(), null, toMillis(cursor.getTimestamp()), null);
+        List<ChatMessage> result = new ArrayList<>();
+        Iterator<MessageEntry> oldestFirst = timeline.tailSet(probe, false).iterator();
+        while (oldestFirst.hasNext() && result.size() < limit) {
+            result.add(toMessage(oldestFirst.next()));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<ChatMessage> findMessagesByIds(Collection<String> ids) {
+        List<ChatMessage> result = new ArrayList<>();
+        for (String id : ids) {
+            MessageEntry entry = messages.get(id);
+            if (entry != null) result.add(toMessage(entry));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void updateContent(String id, String newContent) {
+        if (!messages.containsKey(id)) {
+            System.err.println("메시지 업데이트 실패: ID를 찾을 수 없음 -> " + id);
+            return;
+        }
+        try {
+            append(new Batch().content(id, newContent));
+        } catch (IOException e) {
+            System.err.println("메시지 업데이트 중 오류 발생!");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void appendSegment(MessageSegment segment) {
+        try {
+            append(new Batch().segment(segment));
+        } catch (IOException e) {
+            System.err.println("답변 중간 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void completeMessage(String id, String content) {
+        try {
+            append(new Batch().content(id, content).clearSegments(id));
+        } catch (IOException e) {
+            System.err.println("메시지 완료 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized int recoverInterruptedMessages(String interruptedNotice) {
+        if (segments.isEmpty()) return 0;
+        try {
+            Batch batch = new Batch();
+            for (Map.Entry<String, List<Segment>> entry : segments.entrySet()) {
+                String id = entry.getKey();
+                List<Segment> parts = new ArrayList<>(entry.getValue());
+                parts.sort(Comparator.comparingInt(Segment::seq));
+                StringBuilder partial = new StringBuilder();
+                for (Segment part : parts) partial.append(read(part.content()));
+
+                MessageEntry saved = messages.get(id);
+                String savedContent = saved != null ? read(saved.content) : null;
+                // 이미 더 긴 내용이 저장되어 있으면 (최종본) 조각만 정리
+                if (savedContent != null && savedContent.length() > partial.length()) continue;
+
+                String recovered = partial + interruptedNotice;
+                if (saved != null) batch.content(id, recovered);
+                else batch.message(new ChatMessage(id, "ai", recovered, LocalDateTime.now()));
+            }
+            int count = segments.size();
+            for (String id : new ArrayList<>(segments.keySet())) batch.clearSegments(id);
+            append(batch);
+            return count;
+        } catch (IOException e) {
+            System.err.println("중단된 답변 복구 실패!");
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized void saveToolCall(ToolCall call) {
+        try {
+            append(new Batch().toolCall(call));
+        } catch (IOException e) {
+            System.err.println("도구 호출 기록 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void writeBatch(List<ChatMessage> inserts, List<MessageSegment> segments,
+                                        List<ChatMessage> updates, List<String> completedIds,
+                                        List<ToolCall> toolCalls) throws IOException {
+        Batch batch = new Batch();
+        for (ChatMessage message : inserts) batch.message(message);
+        for (MessageSegment segment : segments) batch.segment(segment);
+        for (ChatMessage message : updates) batch.content(message.getId(), message.getContent());
+        for (String id : completedIds) batch.clearSegments(id);
+        for (ToolCall call : toolCalls) batch.toolCall(call);
+        append(batch);
+    }
+
+    @Override
+    public synchronized void saveSummary(int level, String content, String startId, String endId, LocalDateTime startTs, LocalDateTime endTs) {
+        try {
+            append(new Batch().summary(level, content, startId, endId, startTs, endTs));
+        } catch (IOException e) {
+            System.err.println("요약 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized ChatSummary findLastSummary(int level) {
+        List<SummaryEntry> entries = summaries.get(level);
+        if (entries == null || entries.isEmpty()) return null; // 요약 없음
+        return toSummary(entries.get(entries.size() - 1));
+    }
+
+    @Override
+    public synchronized List<ChatSummary> findSummaries(int level, LocalDateTime startFrom, LocalDateTime startTo) {
+        List<ChatSummary> result = new ArrayList<>();
+        List<SummaryEntry> entries = summaries.get(level);
+        if (entries == null) return result;
+        long from = startFrom != null ? toMillis(startFrom) : Long.MIN_VALUE;
+        long to = startTo != null ? toMillis(startTo) : Long.MAX_VALUE;
+
+        // 시작 시각순이므로 이진 탐색으로 첫 위치를 찾음
+        int lo = 0;
+        int hi = entries.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries.get(mid).startTs() < from) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int i = lo; i < entries.size() && entries.get(i).startTs() <= to; i++) {
+            if (entries.get(i).startTs() != Long.MIN_VALUE) result.add(toSummary(entries.get(i)));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int getMessageCount() {
+        return messages.size();
+    }
+
+    @Override
+    public synchronized int countMessagesAfterLastSummary() {
+        return unsummarized().size();
+    }
+
+    @Override
+    public synchronized List<ChatMessage> findUnsummarizedMessages(int limit) {
+        List<ChatMessage> result = new ArrayList<>();
+        for (MessageEntry entry : unsummarized()) {
+            if (result.size() >= limit) break;
+            result.add(toMessage(entry));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            if (buffer != null) buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("내장 저장소 닫기 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized String getStats() {
+        return String.format("메시지 %d개, 파일 %d KB, 정리 대상 %d KB",
+                messages.size(), end / 1024, deadBytes / 1024);
+    }
+
+    // --- 조회 도우미 ---
+
+    // 마지막 0단계 요약의 끝 메시지 이후 (끝 메시지를 찾을 수 없으면 처음부터)
+    private NavigableSet<MessageEntry> unsummarized() {
+        List<SummaryEntry> chunks = summaries.get(ChatSummary.CHUNK);
+        if (chunks == null || chunks.isEmpty()) return timeline;
+        String endId = chunks.get(chunks.size() - 1).endId();
+        MessageEntry last = endId != null ? messages.get(endId) : null;
+        return last != null ? timeline.tailSet(last, false) : timeline;
+    }
+
+    // 최신순 반복자에서 limit개를 꺼내 과거순으로 반환
+    private List<ChatMessage> collectNewestFirst(Iterator<MessageEntry> newestFirst, int limit) {
+        List<ChatMessage> result = new ArrayList<>();
+        while (newestFirst.hasNext() && result.size() < limit) {
+            result.add(toMessage(newestFirst.next()));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private ChatMessage toMessage(MessageEntry entry) {
+        ChatMessage message = new ChatMessage(entry.id, entry.role, read(entry.content), toDateTime(entry.timestampMs));
+        List<ToolCallEntry> calls = toolCalls.get(entry.id);
+        if (calls != null) {
+            List<ToolCall> attached = new ArrayList<>(calls.size());
+            for (ToolCallEntry call : calls) attached.add(toToolCall(entry.id, call));
+            message.setToolCalls(attached);
+        }
+        return message;
+    }
+
+    private ToolCall toToolCall(String messageId, ToolCallEntry entry) {
+        return new ToolCall(entry.id(), messageId, entry.toolName(),
+                entry.params() != null ? read(entry.params()) : null, entry.status(),
+                entry.output() != null ? read(entry.output()) : null,
+                entry.blobId(), entry.outputLength(), toDateTime(entry.timestampMs()));
+    }
+
+    private ChatSummary toSummary(SummaryEntry entry) {
+        return new ChatSummary(entry.level(), read(entry.content()), entry.startId(), entry.endId(),
+                entry.startTs() != Long.MIN_VALUE ? toDateTime(entry.startTs()) : null,
+                entry.endTs() != Long.MIN_VALUE ? toDateTime(entry.endTs()) : null);
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        LocalDateTime t = time != null ? time : LocalDateTime.now();
+        return t.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private String read(Span span) {
+        byte[] bytes = new byte[span.len()];
+        if (buffer != null) {
+            buffer.get(span.pos(), bytes);
+        } else {
+            // 매핑 전(열기/정리 중)에는 채널에서 직접 읽음
+            try {
+                ByteBuffer dst = ByteBuffer.wrap(bytes);
+                long pos = span.pos();
+                while (dst.hasRemaining()) {
+                    int n = channel.read(dst, pos);
+                    if (n < 0) throw new EOFException();
+                    pos += n;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("내장 저장소 읽기 실패: " + path, e);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- 기록 ---
+
+    // 레코드 하나를 끝에 추가하고 디스크에 반영한 뒤 인덱스에 적용
+    private void append(Batch batch) throws IOException {
+        if (closed) throw new IOException("내장 저장소가 이미 닫혔습니다: " + path);
+        if (batch.count == 0) return;
+
+        byte[] body = batch.toBody();
+        int recordSize = RECORD_HEADER + body.length;
+        ensureCapacity((long) end + recordSize + 4);
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        buffer.putInt(end, body.length);
+        buffer.putInt(end + 4, (int) crc.getValue());
+        buffer.put(end + RECORD_HEADER, body);
+        buffer.putInt(end + recordSize, 0); // 끝 표시 (예전에 끊긴 레코드 잔해가 있어도 여기서 멈춤)
+        buffer.force(end, recordSize + 4);
+
+        apply(ByteBuffer.wrap(body), end + RECORD_HEADER);
+        end += recordSize;
+    }
+
+    private void ensureCapacity(long needed) throws IOException {
+        if (needed <= buffer.capacity()) return;
+        long capacity = Math.max(needed, (long) buffer.capacity() * 2);
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("내장 저장소 파일이 2GB를 넘었습니다: " + path);
+        }
+        map(Math.min(capacity, Integer.MAX_VALUE));
+    }
+
+    private void map(long capacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    // 레코드 본문(작업 목록)을 인덱스에 반영 (bodyPos: 파일 안의 본문 시작 위치)
+    private void apply(ByteBuffer body, int bodyPos) {
+        int count = body.getInt();
+        for (int i = 0; i < count; i++) {
+            byte op = body.get();
+            switch (op) {
+                case OP_MESSAGE -> {
+                    String id = readId(body);
+                    String role = readString(body);
+                    long timestampMs = body.getLong();
+                    Span content = readSpan(body, bodyPos);
+                    MessageEntry old = messages.remove(id);
+                    if (old != null) {
+                        timeline.remove(old);
+                        deadBytes += old.content.len();
+                    }
+                    MessageEntry entry = new MessageEntry(id, role, timestampMs, content);
+                    messages.put(id, entry);
+                    timeline.add(entry);
+                }
+                case OP_CONTENT -> {
+                    String id = readId(body);
+                    Span content = readSpan(body, bodyPos);
+                    MessageEntry entry = messages.get(id);
+                    if (entry != null) {
+                        deadBytes += entry.content.len();
+                        entry.content = content;
+                    } else {
+                        deadBytes += content.len();
+                    }
+                }
+                case OP_SEGMENT -> {
+                    String id = readId(body);
+                    int seq = body.getInt();
+                    Span content = readSpan(body, bodyPos);
+                    segments.computeIfAbsent(id, k -> new ArrayList<>()).add(new Segment(seq, content));
+                }
+                case OP_CLEAR_SEGMENTS -> {
+                    List<Segment> removed = segments.remove(readId(body));
+                    if (removed != null) {
+                        for (Segment segment : removed) deadBytes += segment.content().len();
+                    }
+                }
+                case OP_SUMMARY, OP_TREE_SUMMARY -> {
+                    int level = op == OP_TREE_SUMMARY ? body.get() : ChatSummary.CHUNK;
+                    Span content = readSpan(body, bodyPos);
+                    String startId = readNullableId(body);
+                    String endId = readNullableId(body);
+                    long startTs = body.getLong();
+                    long endTs = body.getLong();
+                    summaries.computeIfAbsent(level, k -> new ArrayList<>())
+                            .add(new SummaryEntry(level, content, startId, endId, startTs, endTs));
+                }
+                case OP_TOOL_CALL -> {
+                    String id = readId(body);
+                    String messageId = readId(body);
+                    String toolName = readString(body);
+                    Span params = body.get() == 0 ? null : readSpan(body, bodyPos);
+                    String status = readString(body);
+                    Span output = body.get() == 0 ? null : readSpan(body, bodyPos);
+                    String blobId = body.get() == 0 ? null : readString(body);
+                    int outputLength = body.getInt();
+                    long timestampMs = body.getLong();
+                    toolCalls.computeIfAbsent(messageId, k -> new ArrayList<>())
+                            .add(new ToolCallEntry(id, toolName, params, status, output, blobId, outputLength, timestampMs));
+                }
+                default -> throw new IllegalStateException("알 수 없는 작업 종류: " + op);
+            }
+        }
+    }
+
+    private static String readId(ByteBuffer body) {
+        byte[] bytes = new byte[16];
+        body.get(bytes);
+        return IdGenerator.fromBytes(bytes);
+    }
+
+    private static String readNullableId(ByteBuffer body) {
+        return body.get() == 0 ? null : readId(body);
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 문자열은 복사하지 않고 파일 위치만 기억
+    private static Span readSpan(ByteBuffer body, int bodyPos) {
+        int len = body.getInt();
+        Span span = new Span(bodyPos + body.position(), len);
+        body.position(body.position() + len);
+        return span;
+    }
+
+    // --- 열기/정리 ---
+
+    // 파일 전체를 순서대로 읽어 인덱스 생성 (매핑 전이라 스트림으로 읽음)
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).putInt(FORMAT_VERSION).putInt(0);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+            version = FORMAT_VERSION;
+            end = HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        byte[] magic = Arrays.copyOf(header.array(), MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("대화 기록 파일이 아닙니다: " + path);
+        }
+        version = header.getInt(MAGIC.length);
+        if (version != FORMAT_VERSION && version != LEGACY_TOOL_HTML_VERSION) {
+            throw new IOException("지원하지 않는 파일 버전(" + version + "): " + path);
+        }
+
+        channel.position(HEADER_SIZE);
+        // 채널을 닫지 않도록 스트림은 닫지 않음
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        long pos = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (pos + RECORD_HEADER <= size) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0) break; // 기록의 끝
+            if (pos + RECORD_HEADER + length > size) {
+                System.err.println("[STORE] 끝이 잘린 레코드를 버립니다 (위치 " + pos + ")");
+                break;
+            }
+            byte[] body = in.readNBytes(length);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                System.err.println("[STORE] 손상된 레코드부터 버립니다 (위치 " + pos + ")");
+                break;
+            }
+            apply(ByteBuffer.wrap(body), (int) (pos + RECORD_HEADER));
+            pos += RECORD_HEADER + length;
+        }
+        end = (int) pos;
+    }
+
+    // 살아 있는 메시지/조각/요약만 새 파일에 쓰고 교체한 뒤 다시 열기
+    private EmbeddedChatStore compact() throws IOException {
+        long start = System.nanoTime();
+        long before = end;
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // 버전은 그대로 (예전 형식이면 정리한 뒤에 도구 결과를 옮김)
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).putInt(version).putInt(0);
+            header.flip();
+            out.write(header);
+
+            Batch batch = new Batch();
+            for (MessageEntry entry : timeline) {
+                batch.message(toMessage(entry));
+                if (batch.count >= COMPACT_OPS_PER_RECORD) batch = writeRecord(out, batch);
+            }
+            for (Map.Entry<String, List<Segment>> entry : segments.entrySet()) {
+                for (Segment segment : entry.getValue()) {
+                    batch.segment(new MessageSegment(entry.getKey(), segment.seq(), read(segment.content())));
+                }
+            }
+            for (List<SummaryEntry> level : summaries.values()) {
+                for (SummaryEntry summary : level) {
+                    batch.summary(summary.level(), read(summary.content()), summary.startId(), summary.endId(),
+                            summary.startTs(), summary.endTs());
+                }
+            }
+            for (Map.Entry<String, List<ToolCallEntry>> entry : toolCalls.entrySet()) {
+                if (!messages.containsKey(entry.getKey())) continue;
+                for (ToolCallEntry call : entry.getValue()) {
+                    batch.toolCall(toToolCall(entry.getKey(), call));
+                    if (batch.count >= COMPACT_OPS_PER_RECORD) batch = writeRecord(out, batch);
+                }
+            }
+            writeRecord(out, batch);
+            out.force(true);
+        }
+
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        EmbeddedChatStore compacted = new EmbeddedChatStore(path);
+        System.out.println("[STORE] 대화 기록 파일 정리: " + before / 1024 + " KB -> " + compacted.end / 1024
+                + " KB (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        return compacted;
+    }
+
+    // 버전 1 파일: 본문에 붙은 도구 결과 HTML을 도구 호출 기록으로 옮기고 버전 2로 표시 (처음 열 때 한 번)
+    // 중간에 종료되면 버전이 그대로라 다음에 남은 메시지만 다시 변환 (변환된 본문에는 HTML이 없음)
+    private void migrateToolHtml() throws IOException {
+        long start = System.nanoTime();
+        int converted = 0;
+        Batch batch = new Batch();
+        for (MessageEntry entry : new ArrayList<>(timeline)) {
+            String content = read(entry.content);
+            if (!LegacyToolHtml.isLegacy(content)) continue;
+            LegacyToolHtml.Parsed parsed = LegacyToolHtml.parse(entry.id, content, toDateTime(entry.timestampMs));
+            batch.content(entry.id, parsed.text());
+            for (ToolCall call : parsed.calls()) batch.toolCall(call);
+            converted++;
+            if (batch.count >= COMPACT_OPS_PER_RECORD) {
+                append(batch);
+                batch = new Batch();
+            }
+        }
+        append(batch);
+
+        buffer.putInt(MAGIC.length, FORMAT_VERSION);
+        buffer.force(0, HEADER_SIZE);
+        version = FORMAT_VERSION;
+        System.out.println("[STORE] 도구 결과가 붙은 메시지 " + converted + "개 변환 ("
+                + (System.nanoTime() - start) / 1_000_000 + " ms)");
+    }
+
+    private static Batch writeRecord(FileChannel out, Batch batch) throws IOException {
+        if (batch.count == 0) return batch;
+        byte[] body = batch.toBody();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + body.length)
+                .putInt(body.length).putInt((int) crc.getValue()).put(body);
+        record.flip();
+        while (record.hasRemaining()) out.write(record);
+        return new Batch();
+    }
+
+    // 레코드 하나에 들어갈 작업 목록
+    private static final class Batch {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count;
+
+        Batch message(ChatMessage message) throws IOException {
+            out.writeByte(OP_MESSAGE);
+            writeId(message.getId());
+            writeString(message.getRole() != null ? message.getRole() : "");
+            out.writeLong(toMillis(message.getTimestamp()));
+            writeString(message.getContent() != null ? message.getContent() : "");
+            count++;
+            return this;
+        }
+
+        Batch content(String id, String content) throws IOException {
+            out.writeByte(OP_CONTENT);
+            writeId(id);
+            writeString(content != null ? content : "");
+            count++;
+            return this;
+        }
+
+        Batch segment(MessageSegment segment) throws IOException {
+            out.writeByte(OP_SEGMENT);
+            writeId(segment.getMessageId());
+            out.writeInt(segment.getSeq());
+            writeString(segment.getContent());
+            count++;
+            return this;
+        }
+
+        Batch clearSegments(String id) throws IOException {
+            out.writeByte(OP_CLEAR_SEGMENTS);
+            writeId(id);
+            count++;
+            return this;
+        }
+
+        Batch summary(int level, String content, String startId, String endId, LocalDateTime startTs, LocalDateTime endTs) throws IOException {
+            return summary(level, content, startId, endId,
+                    startTs != null ? toMillis(startTs) : Long.MIN_VALUE,
+                    endTs != null ? toMillis(endTs) : Long.MIN_VALUE);
+        }
+
+        Batch summary(int level, String content, String startId, String endId, long startTs, long endTs) throws IOException {
+            out.writeByte(OP_TREE_SUMMARY);
+            out.writeByte(level);
+            writeString(content);
+            writeNullableId(startId);
+            writeNullableId(endId);
+            out.writeLong(startTs);
+            out.writeLong(endTs);
+            count++;
+            return this;
+        }
+
+        Batch toolCall(ToolCall call) throws IOException {
+            out.writeByte(OP_TOOL_CALL);
+            writeId(call.getId());
+            writeId(call.getMessageId());
+            writeString(call.getToolName() != null ? call.getToolName() : "");
+            writeNullableString(call.getParams());
+            writeString(call.getStatus());
+            writeNullableString(call.getOutput());
+            writeNullableString(call.getBlobId());
+            out.writeInt(call.getOutputLength());
+            out.writeLong(toMillis(call.getTimestamp()));
+            count++;
+            return this;
+        }
+
+        byte[] toBody() {
+            byte[] ops = bytes.toByteArray();
+            return ByteBuffer.allocate(4 + ops.length).putInt(count).put(ops).array();
+        }
+
+        private void writeId(String id) throws IOException {
+            out.write(IdGenerator.toBytes(id));
+        }
+
+        private void writeNullableId(String id) throws IOException {
+            out.writeByte(id != null ? 1 : 0);
+            if (id != null) writeId(id);
+        }
+
+        private void writeNullableString(String value) throws IOException {
+            out.writeByte(value != null ? 1 : 0);
+            if (value != null) writeString(value);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.example.repository;
+
+import com.example.model.ChatMessage;
+import com.example.model.SearchHit;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * 대화 기록 전문 검색용 메모리 색인 (역색인 + BM25 순위).
+ * - 한국어는 띄어쓰기/조사 때문에 단어로 자르면 잘 안 맞으므로 두 글자씩(bigram) 자름 ("일정을" -> "일정", "정을")
+ * - 영문/숫자는 단어 단위, 한 글자 검색어는 그 글자가 들어간 두 글자 항목으로 넓혀서 찾음
+ * - 시작 시 백그라운드에서 저장소 전체를 읽어 만들고, 이후 ChatRepository의 저장/수정 때마다 바로 반영
+ * - 항목별 문서 목록은 문서 번호 차이를 가변 길이 정수로 압축 (수십만 개 메시지에서도 메모리 부담이 작음)
+ * 내용이 바뀐 메시지는 새 문서 번호로 다시 색인하고 예전 번호는 삭제 표시만 함 (앱을 다시 켜면 새로 만들어짐)
+ */
+public final class HistorySearchIndex {
+
+    private static final HistorySearchIndex instance = new HistorySearchIndex();
+
+    private static final int BUILD_PAGE_SIZE = 500;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int SNIPPET_BEFORE = 30;
+    private static final int SNIPPET_LENGTH = 120;
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]+>");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    // 한 항목의 문서 목록: (문서 번호 차이, 등장 횟수)를 가변 길이 정수로 이어 붙임
+    private static final class Postings {
+        byte[] data = new byte[8];
+        int size;
+        int lastDoc = -1;
+        int docCount;
+
+        void add(int doc, int tf) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(tf);
+            lastDoc = doc;
+            docCount++;
+        }
+
+        private void writeVarInt(int value) {
+            if (size + 5 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        // 문서 번호 순서로 풀어서 docs/tfs에 채움
+        void decode(int[] docs, int[] tfs) {
+            int pos = 0;
+            int doc = -1;
+            for (int i = 0; i < docCount; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += value;
+
+                int tf = 0;
+                shift = 0;
+                do {
+                    b = data[pos++];
+                    tf |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                docs[i] = doc;
+                tfs[i] = tf;
+            }
+        }
+    }
+
+    // 검색어 항목 하나(또는 넓힌 항목 묶음)에 해당하는 문서 목록
+    private record Clause(int[] docs, int[] tfs) {
+    }
+
+    // 점수를 매긴 후보 문서 (앞에서 size개만 유효)
+    private record Ranked(int[] docs, double[] scores, int size) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private String[] docIds = new String[1024];
+    private String[] docRoles = new String[1024];
+    private long[] docTimes = new long[1024];   // 같은 점수일 때 최신순 정렬용 (epoch ms)
+    private int[] docLengths = new int[1024];
+    private int docCount = 0;
+    private int deletedCount = 0;
+    private long totalLength = 0;
+
+    private volatile boolean building = false;
+    private volatile boolean ready = false;
+
+    private HistorySearchIndex() {
+    }
+
+    public static HistorySearchIndex getInstance() {
+        return instance;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // 저장소 전체를 최신 메시지부터 읽어 색인 (백그라운드, 한 번만)
+    public void buildAsync() {
+        synchronized (this) {
+            if (building || ready) return;
+            building = true;
+        }
+        Thread thread = new Thread(this::build, "history-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        ChatStore store = ChatRepository.getDefaultStore();
+        int scanned = 0;
+        try {
+            List<ChatMessage> page = store.findRecentMessages(BUILD_PAGE_SIZE);
+            while (!page.isEmpty()) {
+                lock.writeLock().lock();
+                try {
+                    // 그 사이 실시간으로 들어온 메시지가 더 최신이므로 이미 있으면 건너뜀
+                    for (ChatMessage message : page) {
+                        if (!docById.containsKey(message.getId())) addDocument(message);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                scanned += page.size();
+                if (page.size() < BUILD_PAGE_SIZE) break;
+                page = store.findMessagesBefore(page.get(0), BUILD_PAGE_SIZE);
+            }
+            ready = true;
+            System.out.println("[SEARCH] 대화 기록 색인 완료: 메시지 " + scanned + "개, "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms (" + getStats() + ")");
+        } catch (RuntimeException e) {
+            System.err.println("대화 기록 색인 생성 실패!");
+            e.printStackTrace();
+        } finally {
+            building = false;
+        }
+    }
+
+    // --- 실시간 반영 (ChatRepository에서 저장/수정 후 호출) ---
+
+    public void onSaved(ChatMessage message) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(message.getId());
+            addDocument(message);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onContentUpdated(String id, String content) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docById.get(id);
+            if (doc == null) return; // 아직 색인 안 된 메시지 (생성 중인 색인이 나중에 읽음)
+            long time = docTimes[doc];
+            String role = docRoles[doc];
+            removeDocument(id);
+            addDocument(new ChatMessage(id, role, content, null), time);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- 검색 ---
+
+    /**
+     * 관련도 순으로 최대 limit개 (모든 검색어 항목이 들어간 메시지 우선, 없으면 일부만 맞는 메시지)
+     * 본문 조각(snippet)은 결과 메시지만 저장소에서 읽어서 만듦
+     */
+    public List<SearchHit> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query).keySet());
+        if (terms.isEmpty() || limit <= 0) return List.of();
+
+        List<String> ids = new ArrayList<>();
+        Map<String, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            List<Clause> clauses = new ArrayList<>();
+            for (String term : terms) {
+                Clause clause = clauseFor(term);
+                if (clause != null) clauses.add(clause);
+                else clauses.add(new Clause(new int[0], new int[0]));
+            }
+            Ranked ranked = scoreAll(clauses);
+            if (ranked.size() == 0) {
+                clauses.removeIf(c -> c.docs().length == 0);
+                ranked = scoreAny(clauses);
+            }
+            for (int i : topDocuments(ranked, limit)) {
+                ids.add(docIds[ranked.docs()[i]]);
+                scores.put(docIds[ranked.docs()[i]], ranked.scores()[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (ids.isEmpty()) return List.of();
+
+        // 본문은 색인에 두지 않으므로 결과만 저장소에서 읽음
+        Map<String, ChatMessage> byId = new HashMap<>();
+        for (ChatMessage message : ChatRepository.getDefaultStore().findMessagesByIds(ids)) {
+            byId.put(message.getId(), message);
+        }
+        List<String> needles = needlesOf(query, terms);
+        List<SearchHit> hits = new ArrayList<>();
+        for (String id : ids) {
+            ChatMessage message = byId.get(id);
+            if (message == null) continue;
+            hits.add(new SearchHit(id, message.getRole(), message.getTimestamp(), scores.get(id),
+                    snippet(message.getContent(), needles)));
+        }
+        return hits;
+    }
+
+    public String getStats() {
+        lock.readLock().lock();
+        try {
+            long postingBytes = 0;
+            for (Postings p : postings.values()) postingBytes += p.data.length;
+            return String.format("문서 %d개(삭제 %d), 항목 %d개, 문서 목록 %d KB",
+                    docCount - deletedCount, deletedCount, postings.size(), postingBytes / 1024);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- 색인 내부 (writeLock 안에서 호출) ---
+
+    private void addDocument(ChatMessage message) {
+        LocalDateTime ts = message.getTimestamp();
+        long time = ts != null ? ts.toInstant(ZoneOffset.UTC).toEpochMilli() : System.currentTimeMillis();
+        addDocument(message, time);
+    }
+
+    private void addDocument(ChatMessage message, long time) {
+        int doc = docCount++;
+        if (doc == docIds.length) {
+            int capacity = docIds.length * 2;
+            docIds = Arrays.copyOf(docIds, capacity);
+            docRoles = Arrays.copyOf(docRoles, capacity);
+            docTimes = Arrays.copyOf(docTimes, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+        }
+        docIds[doc] = message.getId();
+        docRoles[doc] = message.getRole() != null ? message.getRole().intern() : null;
+        docTimes[doc] = time;
+        docById.put(message.getId(), doc);
+
+        Map<String, Integer> terms = tokenize(message.getContent());
+        int length = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), k -> new Postings()).add(doc, term.getValue());
+            length += term.getValue();
+        }
+        docLengths[doc] = length;
+        totalLength += length;
+    }
+
+    private void removeDocument(String id) {
+        Integer doc = docById.remove(id);
+        if (doc == null) return;
+        deleted.set(doc);
+        deletedCount++;
+        totalLength -= docLengths[doc];
+    }
+
+    // --- 검색 내부 (readLock 안에서 호출) ---
+
+    private Clause clauseFor(String term) {
+        if (term.length() == 1 && isCjk(term.codePointAt(0))) {
+            // 한 글자: 그 글자가 들어간 두 글자 항목을 모두 합침
+            int[] merged = new int[docCount];
+            int count = 0;
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                String key = entry.getKey();
+                if (key.equals(term) || (key.length() == 2 && key.contains(term))) {
+                    Clause c = decode(entry.getValue());
+                    for (int i = 0; i < c.docs().length; i++) {
+                        if (merged[c.docs()[i]] == 0) count++;
+                        merged[c.docs()[i]] += c.tfs()[i];
+                    }
+                }
+            }
+            if (count == 0) return null;
+            int[] docs = new int[count];
+            int[] tfs = new int[count];
+            for (int doc = 0, i = 0; doc < merged.length; doc++) {
+                if (merged[doc] == 0) continue;
+                docs[i] = doc;
+                tfs[i++] = merged[doc];
+            }
+            return new Clause(docs, tfs);
+        }
+        Postings p = postings.get(term);
+        return p != null ? decode(p) : null;
+    }
+
+    private static Clause decode(Postings p) {
+        int[] docs = new int[p.docCount];
+        int[] tfs = new int[p.docCount];
+        p.decode(docs, tfs);
+        return new Clause(docs, tfs);
+    }
+
+    // 모든 항목이 들어간 문서만 (가장 짧은 목록을 기준으로 나머지 목록을 앞으로만 훑으며 교집합)
+    private Ranked scoreAll(List<Clause> clauses) {
+        List<Clause> sorted = new ArrayList<>(clauses);
+        sorted.sort((a, b) -> Integer.compare(a.docs().length, b.docs().length));
+        Clause first = sorted.get(0);
+        double avgLength = averageLength();
+        int liveDocs = Math.max(1, docCount - deletedCount);
+
+        double[] idfs = new double[sorted.size()];
+        for (int c = 0; c < sorted.size(); c++) idfs[c] = idf(sorted.get(c).docs().length, liveDocs);
+        int[] docs = new int[first.docs().length];
+        double[] scores = new double[first.docs().length];
+        int[] cursors = new int[sorted.size()];
+        int size = 0;
+
+        outer:
+        for (int i = 0; i < first.docs().length; i++) {
+            int doc = first.docs()[i];
+            if (deleted.get(doc)) continue;
+            double score = bm25(first.tfs()[i], idfs[0], doc, avgLength);
+            for (int c = 1; c < sorted.size(); c++) {
+                int[] other = sorted.get(c).docs();
+                int at = cursors[c];
+                while (at < other.length && other[at] < doc) at++;
+                cursors[c] = at;
+                if (at == other.length) break outer;
+                if (other[at] != doc) continue outer;
+                score += bm25(sorted.get(c).tfs()[at], idfs[c], doc, avgLength);
+            }
+            docs[size] = doc;
+            scores[size++] = score;
+        }
+        return new Ranked(docs, scores, size);
+    }
+
+    // 하나라도 들어간 문서 (많이 맞을수록 점수가 높음)
+    private Ranked scoreAny(List<Clause> clauses) {
+        double[] dense = new double[docCount];
+        double avgLength = averageLength();
+        int liveDocs = Math.max(1, docCount - deletedCount);
+        for (Clause clause : clauses) {
+            double idf = idf(clause.docs().length, liveDocs);
+            for (int i = 0; i < clause.docs().length; i++) {
+                int doc = clause.docs()[i];
+                if (!deleted.get(doc)) dense[doc] += bm25(clause.tfs()[i], idf, doc, avgLength);
+            }
+        }
+        int size = 0;
+        for (double score : dense) if (score > 0) size++;
+        int[] docs = new int[size];
+        double[] scores = new double[size];
+        for (int doc = 0, i = 0; doc < dense.length; doc++) {
+            if (dense[doc] <= 0) continue;
+            docs[i] = doc;
+            scores[i++] = dense[doc];
+        }
+        return new Ranked(docs, scores, size);
+    }
+
+    private static double idf(int df, int liveDocs) {
+        return Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+    }
+
+    private double bm25(int tf, double idf, int doc, double avgLength) {
+        double norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    private double averageLength() {
+        int liveDocs = docCount - deletedCount;
+        return liveDocs > 0 && totalLength > 0 ? (double) totalLength / liveDocs : 1.0;
+    }
+
+    // 점수 순 상위 limit개의 후보 위치 (같으면 최신 메시지 먼저)
+    private List<Integer> topDocuments(Ranked ranked, int limit) {
+        Comparator<Integer> order = (a, b) -> {
+            int byScore = Double.compare(ranked.scores()[a], ranked.scores()[b]);
+            return byScore != 0 ? byScore : Long.compare(docTimes[ranked.docs()[a]], docTimes[ranked.docs()[b]]);
+        };
+        PriorityQueue<Integer> heap = new PriorityQueue<>(order);
+        for (int i = 0; i < ranked.size(); i++) {
+            if (heap.size() == limit && order.compare(i, heap.peek()) <= 0) continue;
+            heap.add(i);
+            if (heap.size() > limit) heap.poll();
+        }
+        List<Integer> top = new ArrayList<>();
+        while (!heap.isEmpty()) top.add(heap.poll());
+        Collections.reverse(top);
+        return top;
+    }
+
+    // --- 토큰화 ---
+
+    /**
+     * 항목 -> 등장 횟수. HTML 태그는 버리고 소문자로 맞춤
+     * 한중일 문자가 이어진 구간은 두 글자씩, 그 외 글자/숫자는 단어 단위 (한 글자 영문은 버림)
+     */
+    public static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null || text.isEmpty()) return terms;
+        String normalized = HTML_TAG.matcher(text).replaceAll(" ").toLowerCase(Locale.ROOT);
+
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int cp = normalized.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                int prevStart = -1;
+                int count = 0;
+                while (i < length && isCjk(normalized.codePointAt(i))) {
+                    int next = i + Character.charCount(normalized.codePointAt(i));
+                    if (prevStart >= 0) terms.merge(normalized.substring(prevStart, next), 1, Integer::sum);
+                    prevStart = i;
+                    i = next;
+                    count++;
+                }
+                if (count == 1) terms.merge(normalized.substring(start, i), 1, Integer::sum);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < length) {
+                    int c = normalized.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) break;
+                    i += Character.charCount(c);
+                }
+                if (i - start >= 2 || Character.isDigit(cp)) terms.merge(normalized.substring(start, i), 1, Integer::sum);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return terms;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HANGUL || script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA || script == Character.UnicodeScript.KATAKANA;
+    }
+
+    // --- 본문 조각 ---
+
+    // 본문에서 찾을 문자열: 검색어 단어 그대로, 그다음 색인 항목
+    private static List<String> needlesOf(String query, Set<String> terms) {
+        List<String> needles = new ArrayList<>();
+        for (String word : SPACES.split(query.toLowerCase(Locale.ROOT).trim())) {
+            if (!word.isEmpty()) needles.add(word);
+        }
+        needles.addAll(terms);
+        return needles;
+    }
+
+    static String snippet(String content, List<String> needles) {
+        if (content == null) return "";
+        String text = SPACES.matcher(HTML_TAG.matcher(content).replaceAll(" ")).replaceAll(" ").trim();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int at = -1;
+        for (String needle : needles) {
+            at = lower.indexOf(needle);
+            if (at >= 0) break;
+        }
+        int start = Math.max(0, at - SNIPPET_BEFORE);
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+        return (start > 0 ? "…" : "") + text.substring(start, end) + (end < text.length() ? "…" : "");
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.repository;
+
+import com.example.model.ToolCall;
+import com.example.util.IdGenerator;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 예전 형식의 메시지(본문 뒤에 도구 결과 approval-container HTML을 붙여 저장)를 본문 + ToolCall 기록으로 나눕니다.
+ * 저장소를 열 때(마이그레이션) 한 번만 사용하며, 변환한 메시지에는 더 이상 HTML이 남지 않으므로 다시 실행해도 안전합니다.
+ */
+final class LegacyToolHtml {
+
+    static final String MARKER = "<div class='approval-container'";
+
+    private static final Pattern HEADER = Pattern.compile(
+            "<div class='approval-content'><b>\\[(.*?)]</b>\\s*(.*?)</div>", Pattern.DOTALL);
+    private static final Pattern RESULT = Pattern.compile(
+            "<div class='approval-result'[^>]*>(.*?)</div>", Pattern.DOTALL);
+    private static final Pattern BLOB = Pattern.compile("toggleBlob\\(this, '([0-9a-f]{64})'\\)");
+
+    record Parsed(String text, List<ToolCall> calls) {
+    }
+
+    private LegacyToolHtml() {
+    }
+
+    static boolean isLegacy(String content) {
+        return content != null && content.contains(MARKER);
+    }
+
+    static Parsed parse(String messageId, String content, LocalDateTime timestamp) {
+        StringBuilder text = new StringBuilder();
+        List<ToolCall> calls = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+            int start = content.indexOf(MARKER, pos);
+            if (start < 0) break;
+            text.append(content, pos, start);
+            int end = containerEnd(content, start);
+            ToolCall call = toCall(messageId, content.substring(start, end), timestamp);
+            if (call != null) calls.add(call);
+            pos = end;
+        }
+        text.append(content.substring(pos));
+
+        // 요청 JSON(TOOL_REQUEST:)은 본문에 그대로 있으므로 첫 호출의 도구 이름/파라미터로 사용
+        String body = text.toString().strip();
+        if (!calls.isEmpty()) {
+            JsonObject request = toolRequest(body);
+            if (request != null) {
+                ToolCall first = calls.get(0);
+                String toolName = request.has("tool") ? request.get("tool").getAsString() : first.getToolName();
+                String params = request.has("params") ? request.get("params").toString() : null;
+                calls.set(0, new ToolCall(first.getId(), messageId, toolName, params, first.getStatus(),
+                        first.getOutput(), first.getBlobId(), first.getOutputLength(), timestamp));
+            }
+        }
+        return new Parsed(body, calls);
+    }
+
+    // 여는 div부터 짝이 맞는 닫는 div 다음 위치 (안쪽 div도 셈)
+    private static int containerEnd(String content, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < content.length()) {
+            int open = content.indexOf("<div", i);
+            int close = content.indexOf("</div>", i);
+            if (close < 0) return content.length();
+            if (open >= 0 && open < close) {
+                depth++;
+                i = open + 4;
+            } else {
+                depth--;
+                i = close + 6;
+                if (depth == 0) return i;
+            }
+        }
+        return content.length();
+    }
+
+    private static ToolCall toCall(String messageId, String html, LocalDateTime timestamp) {
+        Matcher header = HEADER.matcher(html);
+        if (!header.find()) return null;
+        String label = header.group(1);
+        Matcher result = RESULT.matcher(html);
+        if (!result.find()) {
+            // 거절/취소 박스: [거절됨] / [취소됨]
+            boolean rejected = label.contains("거절");
+            return new ToolCall(IdGenerator.newId(), messageId, "unknown", null,
+                    rejected ? ToolCall.REJECTED : ToolCall.CANCELLED, rejected ? "User rejected." : null, null, 0, timestamp);
+        }
+
+        String output = unescape(result.group(1));
+        Matcher blob = BLOB.matcher(html);
+        String blobId = blob.find() ? blob.group(1) : null;
+        int length = output.length();
+        if (blobId != null) {
+            String full = BlobStore.getInstance().get(blobId);
+            if (full != null) length = full.length();
+        }
+        String status = header.group(2).contains("✅") ? ToolCall.SUCCESS : ToolCall.ERROR;
+        return new ToolCall(IdGenerator.newId(), messageId, label, null, status, output, blobId, length, timestamp);
+    }
+
+    private static JsonObject toolRequest(String text) {
+        int at = text.indexOf("TOOL_REQUEST:");
+        int brace = at >= 0 ? text.indexOf('{', at) : -1;
+        if (brace < 0) return null;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(text.substring(brace)));
+            reader.setLenient(true);
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (RuntimeException e) {
+            return null; // 깨진 JSON이면 이름/파라미터 없이 결과만 남김
+        }
+    }
+
+    private static String unescape(String html) {
+        return html.replaceAll("<br\\s*/?>", "\n")
+                .replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&amp;", "&")
+                .strip();
+    }
+}
@@ -0,0 +1,594 @@
+package com.example.repository;
+
+import com.example.model.ChatMessage;
+import com.example.model.ChatSummary;
+import com.example.model.MessageSegment;
+import com.example.model.ToolCall;
+import com.example.service.DatabaseService;
+import com.example.util.IdGenerator;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MySQL 저장소 (DatabaseService의 앱 계정 커넥션 풀 사용).
+ * 스키마는 DatabaseService가 처음 연결할 때 SchemaMigrator로 맞춥니다.
+ */
+public class MySqlChatStore implements ChatStore {
+
+    private static final String INSERT_SQL = "INSERT INTO chat_history (id, role, content, timestamp) VALUES (?, ?, ?, ?)";
+    // 모든 조회는 (timestamp, id) 인덱스를 따라 키셋 방식으로 페이지를 넘김 (OFFSET 사용 안 함)
+    private static final String SELECT_RECENT_SQL =
+        "SELECT id, role, content, timestamp FROM chat_history ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String SELECT_BEFORE_SQL =
+        "SELECT id, role, content, timestamp FROM chat_history " +
+        "WHERE timestamp <= ? AND (timestamp < ? OR id < ?) " + // 앞 조건으로 인덱스 범위 검색
+        "ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String SELECT_AFTER_SQL =
+        "SELECT id, role, content, timestamp FROM chat_history " +
+        "WHERE timestamp >= ? AND (timestamp > ? OR id > ?) " +
+        "ORDER BY timestamp ASC, id ASC LIMIT ?";
+    private static final String SELECT_BY_IDS_SQL = "SELECT id, role, content, timestamp FROM chat_history WHERE id IN (%s)";
+    private static final String UPDATE_CONTENT_SQL = "UPDATE chat_history SET content = ? WHERE id = ?";
+
+    // 커넥션 공급 (앱: DatabaseService 풀, 테스트: 별도 DB)
+    @FunctionalInterface
+    interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private final ConnectionSource connections;
+
+    public MySqlChatStore() {
+        this(() -> DatabaseService.getInstance().getAppConnection());
+    }
+
+    MySqlChatStore(ConnectionSource connections) {
+        this.connections = connections;
+    }
+
+    // 메시지 저장 (앱 전용 연결 사용)
+    @Override
+    public void save(ChatMessage message) {
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            bindId(pstmt, 1, message.getId());
+            pstmt.setString(2, message.getRole());
+            pstmt.setString(3, message.getContent());
+            pstmt.setObject(4, toDb(message.getTimestamp())); // LocalDateTime 바로 저장 가능 (JDBC 드라이버 버전에 따라 다름)
+            
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("메시지 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    // 최근 메시지 불러오기
+    @Override
+    public List<ChatMessage> findRecentMessages(int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_RECENT_SQL)) {
+            pstmt.setInt(1, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapMessage(rs));
+                }
+            }
+            attachToolCalls(conn, messages);
+        } catch (SQLException e) {
+            System.err.println("최근 메시지 불러오기 실패!");
+            e.printStackTrace();
+        }
+
+        // 최신순(DESC) -> 과거순(ASC)으로 뒤집어서 리턴
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    // cursor(화면에 보이는 가장 오래된 메시지)보다 이전 메시지 limit개 (과거순)
+    @Override
+    public List<ChatMessage> findMessagesBefore(ChatMessage cursor, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_BEFORE_SQL)) {
+            pstmt.setObject(1, toDb(cursor.getTimestamp()));
+            pstmt.setObject(2, toDb(cursor.getTimestamp()));
+            bindId(pstmt, 3, cursor.getId());
+            pstmt.setInt(4, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapMessage(rs));
+                }
+            }
+            attachToolCalls(conn, messages);
+        } catch (SQLException e) {
+            System.err.println("이전 메시지 불러오기 실패!");
+            e.printStackTrace();
+        }
+
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    // ID는 화면/자바에서는 문자열, DB에는 BINARY(16)
+    @Override
+    public List<ChatMessage> findMessagesAfter(ChatMessage cursor, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_AFTER_SQL)) {
+            pstmt.setObject(1, toDb(cursor.getTimestamp()));
+            pstmt.setObject(2, toDb(cursor.getTimestamp()));
+            bindId(pstmt, 3, cursor.getId());
+            pstmt.setInt(4, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapMessage(rs));
+                }
+            }
+            attachToolCalls(conn, messages);
+        } catch (SQLException e) {
+            System.err.println("이후 메시지 불러오기 실패!");
+            e.printStackTrace();
+        }
+        return messages;
+    }
+
+    @Override
+    public List<ChatMessage> findMessagesByIds(Collection<String> ids) {
+        List<ChatMessage> messages = new ArrayList<>();
+        if (ids.isEmpty()) return messages;
+
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(String.format(SELECT_BY_IDS_SQL, placeholders))) {
+            int index = 1;
+            for (String id : ids) {
+                bindId(pstmt, index++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapMessage(rs));
+                }
+            }
+            attachToolCalls(conn, messages);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return messages;
+    }
+
+    private static void bindId(PreparedStatement pstmt, int index, String id) throws SQLException {
+        if (id == null) pstmt.setNull(index, Types.BINARY);
+        else pstmt.setBytes(index, IdGenerator.toBytes(id));
+    }
+
+    // DATETIME(3)는 밀리초 아래를 반올림해서 저장하므로, 쓰기와 커서 비교 모두 밀리초로 잘라서 보냄 (내장 저장소와 같은 기준)
+    private static LocalDateTime toDb(LocalDateTime time) {
+        return time != null ? time.truncatedTo(ChronoUnit.MILLIS) : null;
+    }
+
+    private static ChatMessage mapMessage(ResultSet rs) throws SQLException {
+        String id = IdGenerator.fromBytes(rs.getBytes("id"));
+        String role = rs.getString("role");
+        String content = rs.getString("content");
+
+        // Timestamp -> LocalDateTime 변환
+        Timestamp ts = rs.getTimestamp("timestamp");
+        LocalDateTime timestamp = (ts != null) ? ts.toLocalDateTime() : null;
+
+        // DB 데이터로 객체 복원
+        return new ChatMessage(id, role, content, timestamp);
+    }
+
+    // 메시지 내용 업데이트 (스트리밍 완료 후 또는 툴 실행 결과 추가 시)
+    @Override
+    public void updateContent(String id, String newContent) {
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(UPDATE_CONTENT_SQL)) {
+            pstmt.setString(1, newContent);
+            bindId(pstmt, 2, id);
+            
+            int rows = pstmt.executeUpdate();
+            if (rows == 0) {
+                System.err.println("메시지 업데이트 실패: ID를 찾을 수 없음 -> " + id);
+            }
+        } catch (SQLException e) {
+            System.err.println("메시지 업데이트 중 오류 발생!");
+            e.printStackTrace();
+        }
+    }
+
+    // --- 스트리밍 중간 저장 (chat_message_segments) ---
+    // 답변을 받는 동안 새로 받은 부분만 조각으로 추가하고, 완료 시 content에 합친 뒤 조각을 삭제
+
+    private static final String INSERT_SEGMENT_SQL = "INSERT INTO chat_message_segments (message_id, seq, content) VALUES (?, ?, ?)";
+    private static final String DELETE_SEGMENTS_SQL = "DELETE FROM chat_message_segments WHERE message_id = ?";
+    private static final String SELECT_SEGMENTS_SQL = "SELECT message_id, content FROM chat_message_segments ORDER BY message_id, seq";
+    private static final String SELECT_CONTENT_SQL = "SELECT content FROM chat_history WHERE id = ?";
+
+    // 조각 하나 추가 (동기 모드용)
+    @Override
+    public void appendSegment(MessageSegment segment) {
+        try {
+            writeBatch(List.of(), List.of(segment), List.of(), List.of(), List.of());
+        } catch (SQLException e) {
+            System.err.println("답변 중간 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    // 최종 내용 저장 + 조각 삭제 (동기 모드용)
+    @Override
+    public void completeMessage(String id, String content) {
+        try {
+            writeBatch(List.of(), List.of(), List.of(new ChatMessage(id, null, content, null)), List.of(id), List.of());
+        } catch (SQLException e) {
+            System.err.println("메시지 완료 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 앱/파이썬이 답변 도중 종료되어 남아 있는 조각을 chat_history.content에 합침 (시작 시 한 번)
+     * @return 복구한 메시지 수
+     */
+    @Override
+    public int recoverInterruptedMessages(String interruptedNotice) {
+        try (Connection conn = connections.get()) {
+            Map<String, StringBuilder> partials = new LinkedHashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT_SEGMENTS_SQL);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    partials.computeIfAbsent(IdGenerator.fromBytes(rs.getBytes("message_id")), k -> new StringBuilder())
+                            .append(rs.getString("content"));
+                }
+            }
+            if (partials.isEmpty()) return 0;
+
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, StringBuilder> entry : partials.entrySet()) {
+                    String id = entry.getKey();
+                    String saved = "";
+                    boolean rowExists = false;
+                    try (PreparedStatement pstmt = conn.prepareStatement(SELECT_CONTENT_SQL)) {
+                        bindId(pstmt, 1, id);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            if (rs.next()) {
+                                rowExists = true;
+                                saved = rs.getString("content");
+                            }
+                        }
+                    }
+                    // 이미 더 긴 내용이 저장되어 있으면 (최종본) 조각만 정리
+                    if (saved != null && saved.length() > entry.getValue().length()) continue;
+                    // 조각은 처음부터 이어진 델타이므로 저장된 내용(보통 빈 문자열) 대신 조각 전체를 사용
+                    String recovered = entry.getValue() + interruptedNotice;
+
+                    String sql = rowExists ? UPDATE_CONTENT_SQL : INSERT_SQL;
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        if (rowExists) {
+                            pstmt.setString(1, recovered);
+                            bindId(pstmt, 2, id);
+                        } else {
+                            bindId(pstmt, 1, id);
+                            pstmt.setString(2, "ai");
+                            pstmt.setString(3, recovered);
+                            pstmt.setObject(4, toDb(LocalDateTime.now()));
+                        }
+                        pstmt.executeUpdate();
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(DELETE_SEGMENTS_SQL)) {
+                    for (String id : partials.keySet()) {
+                        bindId(pstmt, 1, id);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return partials.size();
+        } catch (SQLException e) {
+            System.err.println("중단된 답변 복구 실패!");
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * 여러 건의 저장/조각 추가/수정/조각 정리/도구 호출 기록을 한 트랜잭션의 JDBC 배치로 실행 (ChatWriteQueue 전용)
+     * 실패 시 예외를 그대로 던져서 호출 측이 다시 시도할 수 있게 함
+     * @param completedIds 최종 내용이 updates에 들어 있어 조각을 지워도 되는 메시지 ID
+     */
+    @Override
+    public void writeBatch(List<ChatMessage> inserts, List<MessageSegment> segments,
+                           List<ChatMessage> updates, List<String> completedIds, List<ToolCall> toolCalls) throws SQLException {
+        try (Connection conn = connections.get()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!inserts.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                        for (ChatMessage message : inserts) {
+                            bindId(pstmt, 1, message.getId());
+                            pstmt.setString(2, message.getRole());
+                            pstmt.setString(3, message.getContent());
+                            pstmt.setObject(4, toDb(message.getTimestamp()));
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                if (!segments.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SEGMENT_SQL)) {
+                        for (MessageSegment segment : segments) {
+                            bindId(pstmt, 1, segment.getMessageId());
+                            pstmt.setInt(2, segment.getSeq());
+                            pstmt.setString(3, segment.getContent());
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                if (!updates.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_CONTENT_SQL)) {
+                        for (ChatMessage message : updates) {
+                            pstmt.setString(1, message.getContent());
+                            bindId(pstmt, 2, message.getId());
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                if (!completedIds.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(DELETE_SEGMENTS_SQL)) {
+                        for (String id : completedIds) {
+                            bindId(pstmt, 1, id);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                insertToolCalls(conn, toolCalls);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // --- 도구 호출 기록 (chat_tool_calls) ---
+    // 메시지 본문에는 모델이 쓴 텍스트만 두고, 도구 이름/파라미터/상태/결과(큰 결과는 BlobStore 참조)는 여기에
+
+    private static final String INSERT_TOOL_CALL_SQL =
+        "INSERT INTO chat_tool_calls (id, message_id, tool_name, params, status, output, blob_id, output_length, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_TOOL_CALLS_SQL =
+        "SELECT id, message_id, tool_name, params, status, output, blob_id, output_length, created_at " +
+        "FROM chat_tool_calls WHERE message_id IN (%s) ORDER BY message_id, id";
+
+    @Override
+    public void saveToolCall(ToolCall call) {
+        try {
+            writeBatch(List.of(), List.of(), List.of(), List.of(), List.of(call));
+        } catch (SQLException e) {
+            System.err.println("도구 호출 기록 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    // 트랜잭션은 호출 측에서 (SchemaMigrator의 예전 메시지 변환에서도 사용)
+    static void insertToolCalls(Connection conn, List<ToolCall> calls) throws SQLException {
+        if (calls.isEmpty()) return;
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_TOOL_CALL_SQL)) {
+            for (ToolCall call : calls) {
+                bindId(pstmt, 1, call.getId());
+                bindId(pstmt, 2, call.getMessageId());
+                pstmt.setString(3, call.getToolName());
+                pstmt.setString(4, call.getParams());
+                pstmt.setString(5, call.getStatus());
+                pstmt.setString(6, call.getOutput());
+                pstmt.setString(7, call.getBlobId());
+                pstmt.setInt(8, call.getOutputLength());
+                pstmt.setObject(9, toDb(call.getTimestamp()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    // 조회한 AI 답변에 도구 호출 기록을 붙임 (메시지 페이지당 쿼리 한 번, message_id 인덱스)
+    private static void attachToolCalls(Connection conn, List<ChatMessage> messages) throws SQLException {
+        Map<String, ChatMessage> answers = new HashMap<>();
+        for (ChatMessage m : messages) {
+            if ("ai".equals(m.getRole())) answers.put(m.getId(), m);
+        }
+        if (answers.isEmpty()) return;
+
+        String placeholders = String.join(", ", Collections.nCopies(answers.size(), "?"));
+        Map<String, List<ToolCall>> calls = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(String.format(SELECT_TOOL_CALLS_SQL, placeholders))) {
+            int index = 1;
+            for (String id : answers.keySet()) {
+                bindId(pstmt, index++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ToolCall call = mapToolCall(rs);
+                    calls.computeIfAbsent(call.getMessageId(), k -> new ArrayList<>()).add(call);
+                }
+            }
+        }
+        for (Map.Entry<String, List<ToolCall>> entry : calls.entrySet()) {
+            answers.get(entry.getKey()).setToolCalls(entry.getValue());
+        }
+    }
+
+    private static ToolCall mapToolCall(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return new ToolCall(IdGenerator.fromBytes(rs.getBytes("id")), IdGenerator.fromBytes(rs.getBytes("message_id")),
+                rs.getString("tool_name"), rs.getString("params"), rs.getString("status"), rs.getString("output"),
+                rs.getString("blob_id"), rs.getInt("output_length"),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+
+    // --- 요약(Summary) 관련 기능 추가 ---
+
+    private static final String INSERT_SUMMARY_SQL = 
+        "INSERT INTO chat_summaries (level, summary_content, start_msg_id, end_msg_id, start_timestamp, end_timestamp) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SUMMARY_COLUMNS =
+        "SELECT level, summary_content, start_msg_id, end_msg_id, start_timestamp, end_timestamp FROM chat_summaries ";
+    // (level, start_timestamp) 인덱스로 끝에서 한 행만 읽음
+    private static final String SELECT_LAST_SUMMARY_SQL =
+        SUMMARY_COLUMNS + "WHERE level = ? ORDER BY start_timestamp DESC, id DESC LIMIT 1";
+    private static final String SELECT_SUMMARIES_SQL =
+        SUMMARY_COLUMNS + "WHERE level = ? AND start_timestamp BETWEEN ? AND ? ORDER BY start_timestamp, id";
+    private static final LocalDateTime MIN_TS = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TS = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final String COUNT_MESSAGES_SQL = "SELECT COUNT(*) FROM chat_history";
+
+    // 마지막 요약이 끝난 메시지 위치 (항상 한 행: 요약이 없으면 맨 처음을 가리킴)
+    // 한 행짜리 파생 테이블이라 상수로 취급되어, 본 조회는 (timestamp, id) 인덱스 범위 검색이 됨
+    private static final String LAST_SUMMARY_CURSOR =
+        "(SELECT COALESCE(MAX(e.timestamp), TIMESTAMP('1000-01-01')) AS ts, COALESCE(MAX(e.id), X'') AS id " +
+        "   FROM (SELECT end_msg_id FROM chat_summaries WHERE level = 0 ORDER BY start_timestamp DESC, id DESC LIMIT 1) s " +
+        "   JOIN chat_history e ON e.id = s.end_msg_id) c";
+    private static final String UNSUMMARIZED_WHERE =
+        " JOIN chat_history h ON h.timestamp >= c.ts AND (h.timestamp > c.ts OR h.id > c.id)";
+    // 아직 요약되지 않은 메시지 (오래된 순서, 요약하기 좋게)
+    private static final String SELECT_UNSUMMARIZED_SQL =
+        "SELECT h.id, h.role, h.content, h.timestamp FROM " + LAST_SUMMARY_CURSOR + UNSUMMARIZED_WHERE +
+        " ORDER BY h.timestamp, h.id LIMIT ?";
+    private static final String COUNT_UNSUMMARIZED_SQL =
+        "SELECT COUNT(*) FROM " + LAST_SUMMARY_CURSOR + UNSUMMARIZED_WHERE;
+
+    @Override
+    public void saveSummary(int level, String content, String startId, String endId, LocalDateTime startTs, LocalDateTime endTs) {
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SUMMARY_SQL)) {
+            pstmt.setInt(1, level);
+            pstmt.setString(2, content);
+            bindId(pstmt, 3, startId);
+            bindId(pstmt, 4, endId);
+            pstmt.setObject(5, toDb(startTs));
+            pstmt.setObject(6, toDb(endTs));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("요약 저장 실패!");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public ChatSummary findLastSummary(int level) {
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_LAST_SUMMARY_SQL)) {
+            pstmt.setInt(1, level);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return mapSummary(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null; // 요약 없음
+    }
+
+    @Override
+    public List<ChatSummary> findSummaries(int level, LocalDateTime startFrom, LocalDateTime startTo) {
+        List<ChatSummary> summaries = new ArrayList<>();
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_SUMMARIES_SQL)) {
+            pstmt.setInt(1, level);
+            pstmt.setObject(2, startFrom != null ? toDb(startFrom) : MIN_TS);
+            pstmt.setObject(3, startTo != null ? toDb(startTo) : MAX_TS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) summaries.add(mapSummary(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return summaries;
+    }
+
+    private static ChatSummary mapSummary(ResultSet rs) throws SQLException {
+        byte[] startId = rs.getBytes("start_msg_id");
+        byte[] endId = rs.getBytes("end_msg_id");
+        Timestamp startTs = rs.getTimestamp("start_timestamp");
+        Timestamp endTs = rs.getTimestamp("end_timestamp");
+        return new ChatSummary(rs.getInt("level"), rs.getString("summary_content"),
+                startId != null ? IdGenerator.fromBytes(startId) : null,
+                endId != null ? IdGenerator.fromBytes(endId) : null,
+                startTs != null ? startTs.toLocalDateTime() : null,
+                endTs != null ? endTs.toLocalDateTime() : null);
+    }
+
+    @Override
+    public int getMessageCount() {
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(COUNT_MESSAGES_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) return rs.getInt(1);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    // 마지막 요약 이후 쌓인 메시지 개수 조회 (쿼리 한 번)
+    @Override
+    public int countMessagesAfterLastSummary() {
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(COUNT_UNSUMMARIZED_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) return rs.getInt(1);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    // 마지막 요약 이후의 메시지를 오래된 순서로 최대 limit개 (쿼리 한 번)
+    @Override
+    public List<ChatMessage> findUnsummarizedMessages(int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+
+        try (Connection conn = connections.get();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_UNSUMMARIZED_SQL)) {
+            pstmt.setInt(1, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapMessage(rs));
+                }
+            }
+            attachToolCalls(conn, messages);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.repository;
+
+import com.example.util.IdGenerator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 기존 DB를 현재 스키마로 맞추는 마이그레이션.
+ * 적용한 버전은 schema_version 테이블에 기록하며, 앱 계정 커넥션을 처음 빌릴 때 한 번 실행됩니다.
+ * MySQL의 DDL은 트랜잭션으로 묶이지 않으므로 각 단계는 여러 번 실행해도 안전하게 작성합니다.
+ */
+public final class SchemaMigrator {
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "요약 및 중간 저장 테이블", SchemaMigrator::createSupportTables),
+        new Migration(2, "chat_history 밀리초 타임스탬프 + (timestamp, id) 인덱스", SchemaMigrator::addHistoryIndexes),
+        new Migration(3, "메시지 ID를 시간순 BINARY(16)으로 변환", SchemaMigrator::convertMessageIds),
+        new Migration(4, "요약 트리 단계(level) + (level, start_timestamp) 인덱스", SchemaMigrator::addSummaryLevels),
+        new Migration(5, "도구 호출 기록 테이블 + 본문의 도구 결과 HTML 변환", SchemaMigrator::extractToolCalls),
+        new Migration(6, "chat_tool_calls.message_id -> chat_history 외래 키", SchemaMigrator::addToolCallForeignKey)
+    );
+
+    private SchemaMigrator() {
+    }
+
+    public static void migrate(Connection conn) throws SQLException {
+        execute(conn, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                " version INT PRIMARY KEY," +
+                " description VARCHAR(200) NOT NULL," +
+                " applied_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+
+        int current = 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            if (rs.next()) current = rs.getInt(1);
+        }
+
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) continue;
+            long start = System.nanoTime();
+            System.out.println("[DB] 마이그레이션 " + migration.version() + " 적용 중: " + migration.description());
+            migration.step().apply(conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                pstmt.setInt(1, migration.version());
+                pstmt.setString(2, migration.description());
+                pstmt.executeUpdate();
+            }
+            System.out.println("[DB] 마이그레이션 " + migration.version() + " 완료 ("
+                    + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        }
+    }
+
+    // --- 1. 초기 스키마에 없던 테이블 ---
+    private static void createSupportTables(Connection conn) throws SQLException {
+        execute(conn, "CREATE TABLE IF NOT EXISTS chat_summaries (" +
+                " id INT AUTO_INCREMENT PRIMARY KEY," +
+                " summary_content TEXT NOT NULL," +
+                " start_msg_id VARCHAR(36)," +
+                " end_msg_id VARCHAR(36)," +
+                " start_timestamp DATETIME(3)," +
+                " end_timestamp DATETIME(3)," +
+                " created_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+        execute(conn, "CREATE TABLE IF NOT EXISTS chat_message_segments (" +
+                " message_id VARCHAR(36) NOT NULL," +
+                " seq INT NOT NULL," +
+                " content MEDIUMTEXT NOT NULL," +
+                " created_at DATETIME DEFAULT CURRENT_TIMESTAMP," +
+                " PRIMARY KEY (message_id, seq))");
+    }
+
+    // --- 2. 키셋 페이지네이션용 인덱스 ---
+    private static void addHistoryIndexes(Connection conn) throws SQLException {
+        // 초 단위 DATETIME은 같은 초의 메시지 순서를 구분하지 못함
+        if (columnPrecision(conn, "chat_history", "timestamp") == 0) {
+            execute(conn, "ALTER TABLE chat_history MODIFY timestamp DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3)");
+        }
+        if (!indexExists(conn, "chat_history", "idx_history_ts_id")) {
+            execute(conn, "CREATE INDEX idx_history_ts_id ON chat_history (timestamp, id)");
+        }
+    }
+
+    // --- 3. 메시지 ID: 랜덤 UUID 문자열 VARCHAR(36) -> 시간순 UUIDv7 BINARY(16) ---
+    // 기존 ID도 메시지 시각(밀리초)을 앞 48비트에 넣고 원래 UUID의 랜덤 비트를 이어 붙여 다시 만듦.
+    // 그래서 테이블이 시간순으로 다시 정렬되고, 이후 새 ID(IdGenerator)는 인덱스 끝에만 추가됨.
+    // 순서: 새 ID 계산 -> 참조 테이블(조각/요약) 변환 -> chat_history 키 교체 (중간에 실패해도 다시 실행 가능)
+    private static final String REKEY_EXPR =
+        "COALESCE(UNHEX(CONCAT(" +
+        "LPAD(HEX(CAST(COALESCE(UNIX_TIMESTAMP(timestamp), 0) * 1000 AS UNSIGNED)), 12, '0'), '7', " +
+        "SUBSTRING(REPLACE(id, '-', ''), 14, 3), SUBSTRING(REPLACE(id, '-', ''), 17, 16))), " +
+        "UNHEX(MD5(id)))"; // UUID 형식이 아닌 ID 대비
+
+    private static void convertMessageIds(Connection conn) throws SQLException {
+        boolean historyPending = !"binary".equals(dataType(conn, "chat_history", "id"));
+        if (historyPending) {
+            if (!columnExists(conn, "chat_history", "new_id")) {
+                execute(conn, "ALTER TABLE chat_history ADD COLUMN new_id BINARY(16) NULL");
+            }
+            execute(conn, "UPDATE chat_history SET new_id = " + REKEY_EXPR + " WHERE new_id IS NULL");
+        }
+
+        convertReference(conn, "chat_message_segments", "message_id", "FIRST", "message_id, seq");
+        convertReference(conn, "chat_summaries", "start_msg_id", "AFTER summary_content", null);
+        convertReference(conn, "chat_summaries", "end_msg_id", "AFTER start_msg_id", null);
+
+        if (historyPending) {
+            // 키 교체와 인덱스 재생성을 한 번의 테이블 재구성으로 처리
+            execute(conn, "ALTER TABLE chat_history" +
+                    " DROP INDEX idx_history_ts_id, DROP PRIMARY KEY, DROP COLUMN id," +
+                    " CHANGE new_id id BINARY(16) NOT NULL FIRST," +
+                    " ADD PRIMARY KEY (id), ADD INDEX idx_history_ts_id (timestamp, id)");
+        }
+    }
+
+    // chat_history.id를 가리키는 컬럼을 새 ID로 바꿈 (원본 메시지가 없으면 기존 UUID 비트를 그대로 사용)
+    private static void convertReference(Connection conn, String table, String column,
+                                         String position, String primaryKey) throws SQLException {
+        if (!"varchar".equals(dataType(conn, table, column))) return;
+
+        String temp = column + "_bin";
+        if (!columnExists(conn, table, temp)) {
+            execute(conn, "ALTER TABLE " + table + " ADD COLUMN " + temp + " BINARY(16) NULL");
+        }
+        boolean mapped = columnExists(conn, "chat_history", "new_id");
+        execute(conn, "UPDATE " + table + " t" +
+                (mapped ? " LEFT JOIN chat_history h ON h.id = t." + column : "") +
+                " SET t." + temp + " = COALESCE(" + (mapped ? "h.new_id, " : "") +
+                "UNHEX(REPLACE(t." + column + ", '-', '')))" +
+                " WHERE t." + column + " IS NOT NULL");
+
+        execute(conn, "ALTER TABLE " + table +
+                (primaryKey != null ? " DROP PRIMARY KEY," : "") +
+                " DROP COLUMN " + column + "," +
+                " CHANGE " + temp + " " + column + " BINARY(16)" + (primaryKey != null ? " NOT NULL " : " NULL ") + position +
+                (primaryKey != null ? ", ADD PRIMARY KEY (" + primaryKey + ")" : ""));
+    }
+
+    // --- 4. 요약 트리: 기존 요약은 모두 0단계(메시지 묶음) ---
+    private static void addSummaryLevels(Connection conn) throws SQLException {
+        if (!columnExists(conn, "chat_summaries", "level")) {
+            execute(conn, "ALTER TABLE chat_summaries ADD COLUMN level TINYINT NOT NULL DEFAULT 0 AFTER id");
+        }
+        if (!indexExists(conn, "chat_summaries", "idx_summaries_level_start")) {
+            execute(conn, "CREATE INDEX idx_summaries_level_start ON chat_summaries (level, start_timestamp)");
+        }
+    }
+
+    // --- 5. 도구 호출: 본문에 붙어 있던 approval-container HTML -> chat_tool_calls ---
+    private static final int TOOL_MIGRATION_PAGE = 500;
+    private static final String TOOL_CALLS_FK = "fk_tool_calls_message";
+
+    private record LegacyRow(byte[] id, String content, LocalDateTime timestamp) {
+    }
+
+    private static void extractToolCalls(Connection conn) throws SQLException {
+        execute(conn, "CREATE TABLE IF NOT EXISTS chat_tool_calls (" +
+                " id BINARY(16) PRIMARY KEY," +
+                " message_id BINARY(16) NOT NULL," +
+                " tool_name VARCHAR(100) NOT NULL," +
+                " params TEXT," +
+                " status VARCHAR(16) NOT NULL," +
+                " output MEDIUMTEXT," +
+                " blob_id CHAR(64)," +
+                " output_length INT NOT NULL DEFAULT 0," +
+                " created_at DATETIME(3)," +
+                " INDEX idx_tool_calls_message (message_id, id)," +
+                " CONSTRAINT " + TOOL_CALLS_FK + " FOREIGN KEY (message_id) REFERENCES chat_history (id) ON DELETE CASCADE)");
+
+        // 변환한 메시지는 HTML이 없어져 다시 걸리지 않음 (메시지 하나 = 트랜잭션 하나라 중간에 실패해도 이어서 실행)
+        byte[] after = new byte[0];
+        int converted = 0;
+        while (true) {
+            List<LegacyRow> page = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT id, content, timestamp FROM chat_history" +
+                    " WHERE content LIKE '%approval-container%' AND id > ? ORDER BY id LIMIT ?")) {
+                pstmt.setBytes(1, after);
+                pstmt.setInt(2, TOOL_MIGRATION_PAGE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Timestamp ts = rs.getTimestamp("timestamp");
+                        page.add(new LegacyRow(rs.getBytes("id"), rs.getString("content"), ts != null ? ts.toLocalDateTime() : null));
+                    }
+                }
+            }
+            if (page.isEmpty()) break;
+
+            conn.setAutoCommit(false);
+            try {
+                for (LegacyRow row : page) {
+                    LegacyToolHtml.Parsed parsed = LegacyToolHtml.parse(IdGenerator.fromBytes(row.id()), row.content(), row.timestamp());
+                    MySqlChatStore.insertToolCalls(conn, parsed.calls());
+                    try (PreparedStatement pstmt = conn.prepareStatement("UPDATE chat_history SET content = ? WHERE id = ?")) {
+                        pstmt.setString(1, parsed.text());
+                        pstmt.setBytes(2, row.id());
+                        pstmt.executeUpdate();
+                    }
+                    conn.commit();
+                    converted++;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            after = page.get(page.size() - 1).id();
+        }
+        System.out.println("[DB] 도구 결과가 붙은 메시지 " + converted + "개 변환");
+    }
+
+    // --- 6. 외래 키 없이 만들어진 chat_tool_calls: 답변이 없는 기록은 정리하고 외래 키 추가 ---
+    private static void addToolCallForeignKey(Connection conn) throws SQLException {
+        if (foreignKeyExists(conn, "chat_tool_calls", TOOL_CALLS_FK)) return;
+        int orphans;
+        try (Statement stmt = conn.createStatement()) {
+            orphans = stmt.executeUpdate("DELETE t FROM chat_tool_calls t" +
+                    " LEFT JOIN chat_history h ON h.id = t.message_id WHERE h.id IS NULL");
+        }
+        if (orphans > 0) System.out.println("[DB] 답변이 없는 도구 호출 기록 " + orphans + "개 삭제");
+        execute(conn, "ALTER TABLE chat_tool_calls ADD CONSTRAINT " + TOOL_CALLS_FK +
+                " FOREIGN KEY (message_id) REFERENCES chat_history (id) ON DELETE CASCADE");
+    }
+
+    // --- Helpers ---
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static boolean indexExists(Connection conn, String table, String index) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, index);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean foreignKeyExists(Connection conn, String table, String constraint) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM information_schema.table_constraints " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND constraint_name = ? " +
+                "AND constraint_type = 'FOREIGN KEY' LIMIT 1")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, constraint);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        return dataType(conn, table, column) != null;
+    }
+
+    // information_schema의 DATA_TYPE (소문자, 예: "varchar", "binary"), 컬럼이 없으면 null
+    private static String dataType(Connection conn, String table, String column) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT LOWER(data_type) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, column);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static int columnPrecision(Connection conn, String table, String column) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT COALESCE(datetime_precision, 0) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, column);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+}
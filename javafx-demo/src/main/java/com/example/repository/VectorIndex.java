@@ -0,0 +1,624 @@
+package com.example.repository;
+
+import com.example.util.IdGenerator;
+import com.example.util.VectorMath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 임베딩 벡터의 근사 최근접 검색 인덱스 (HNSW, 디스크 파일을 메모리 매핑).
+ * - vectors.bin: 노드별 벡터 (float32, 단위 벡터) / links.bin: 0층 이웃 목록 (노드당 고정 크기)
+ *   nodes.bin: 노드별 층 수, 종류, 원본 ID(16바이트), 시간 / upper.bin: 위층 이웃 (노드의 약 1/M만 있어 힙에 두고 flush 때 저장)
+ * - index.meta: 노드 수, 진입점, 호출한 쪽의 진행 위치(checkpoint) - 임시 파일에 쓴 뒤 이동하므로 항상 온전함
+ * 노드는 추가만 됩니다. flush 전에 종료되면 마지막 flush 이후 노드는 무시되고 같은 번호에 다시 씁니다
+ * (예전 이웃 목록이 그 번호를 가리키고 있을 수 있지만 간선 하나가 덜 좋아질 뿐 검색 결과는 항상 실제 유사도 순).
+ * 검색은 여러 스레드에서 동시에, 추가는 쓰기 락으로 한 번에 하나씩 진행합니다.
+ */
+public final class VectorIndex implements Closeable {
+
+    public static final byte TYPE_MESSAGE = 0;
+    public static final byte TYPE_SUMMARY = 1;
+
+    private static final int MAGIC = 0x564E5357; // "VNSW"
+    private static final int VERSION = 1;
+    private static final int M = 16;                // 위층 최대 이웃 수
+    private static final int M0 = 2 * M;            // 0층 최대 이웃 수
+    private static final int EF_CONSTRUCTION = 100;
+    private static final double LEVEL_FACTOR = 1 / Math.log(M);
+    private static final int NODE_RECORD = 32;      // level(1) type(1) 여백(6) key(16) time(8)
+    private static final int LINK_RECORD = (1 + M0) * Integer.BYTES;
+    private static final long CHUNK_BYTES = 64L << 20;
+
+    /** 검색 결과: 원본 ID(메시지 ID 또는 요약의 끝 메시지 ID)와 코사인 유사도 */
+    public record Hit(String id, byte type, long timeMs, float score) {
+    }
+
+    private final Path dir;
+    private final int dim;
+    private final MappedFile vectors;
+    private final MappedFile links;
+    private final MappedFile nodes;
+    private final Map<Integer, int[][]> upper = new HashMap<>(); // node -> [층-1][0]=개수, [1..]=이웃
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ThreadLocal<SearchState> searchState;
+
+    private volatile int count;
+    private int entry = -1;
+    private int maxLevel = -1;
+    private String checkpoint = "";
+
+    private VectorIndex(Path dir, int dim) throws IOException {
+        this.dir = dir;
+        this.dim = dim;
+        this.searchState = ThreadLocal.withInitial(() -> new SearchState(dim));
+        Files.createDirectories(dir);
+        this.vectors = new MappedFile(dir.resolve("vectors.bin"), dim * Float.BYTES);
+        this.links = new MappedFile(dir.resolve("links.bin"), LINK_RECORD);
+        this.nodes = new MappedFile(dir.resolve("nodes.bin"), NODE_RECORD);
+    }
+
+    /**
+     * 인덱스 열기. 차원이 다르면 (임베딩 모델이 바뀜) 비우고 새로 만듭니다.
+     */
+    public static VectorIndex open(Path dir, int dim) throws IOException {
+        Path meta = dir.resolve("index.meta");
+        if (Files.exists(meta)) {
+            int storedDim = readDimension(meta);
+            if (storedDim != dim) {
+                System.out.println("[MEMORY] 임베딩 차원이 바뀌어 인덱스를 새로 만듭니다: " + storedDim + " -> " + dim);
+                for (String name : List.of("index.meta", "upper.bin", "vectors.bin", "links.bin", "nodes.bin")) {
+                    Files.deleteIfExists(dir.resolve(name));
+                }
+            }
+        }
+        VectorIndex index = new VectorIndex(dir, dim);
+        index.load();
+        return index;
+    }
+
+    public int dimension() {
+        return dim;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // 호출한 쪽이 저장해 둔 진행 위치 (마지막 flush 기준)
+    public String getCheckpoint() {
+        lock.readLock().lock();
+        try {
+            return checkpoint;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- 추가 ---
+
+    /**
+     * @param vector 단위 벡터 (dim 길이)
+     */
+    public void add(byte type, String id, long timeMs, float[] vector) throws IOException {
+        if (vector.length != dim) throw new IllegalArgumentException("차원 불일치: " + vector.length + " != " + dim);
+        lock.writeLock().lock();
+        try {
+            int node = count;
+            int level = (int) (-Math.log(1 - random.nextDouble()) * LEVEL_FACTOR);
+            writeNode(node, level, type, id, timeMs, vector);
+
+            if (entry < 0) {
+                entry = node;
+                maxLevel = level;
+                count = node + 1;
+                return;
+            }
+
+            SearchState state = searchState.get();
+            int current = entry;
+            float currentSim = similarity(vector, current, state.scratch);
+            for (int l = maxLevel; l > level; l--) {
+                int[] best = greedy(vector, current, currentSim, l, state);
+                current = best[0];
+                currentSim = Float.intBitsToFloat(best[1]);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                NodeHeap candidates = searchLayer(vector, current, EF_CONSTRUCTION, l, node, state);
+                float[] scores = new float[candidates.size()];
+                int[] nearest = candidates.drainBestFirst(scores);
+                int[] selected = selectNeighbors(nearest, scores, M, state);
+                setNeighbors(node, l, selected, selected.length);
+                for (int neighbor : selected) connect(neighbor, node, l, state);
+                current = nearest[0];
+            }
+
+            count = node + 1; // 이웃 연결이 끝난 뒤 공개
+            if (level > maxLevel) {
+                maxLevel = level;
+                entry = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- 검색 ---
+
+    public List<Hit> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entry < 0 || count == 0) return List.of();
+            SearchState state = searchState.get();
+            int current = entry;
+            float currentSim = similarity(query, current, state.scratch);
+            for (int l = maxLevel; l > 0; l--) {
+                int[] best = greedy(query, current, currentSim, l, state);
+                current = best[0];
+                currentSim = Float.intBitsToFloat(best[1]);
+            }
+            NodeHeap results = searchLayer(query, current, Math.max(ef, k), 0, count, state);
+            float[] scores = new float[results.size()];
+            int[] order = results.drainBestFirst(scores);
+            List<Hit> hits = new ArrayList<>(Math.min(k, order.length));
+            byte[] key = new byte[16];
+            for (int i = 0; i < order.length && hits.size() < k; i++) {
+                ByteBuffer chunk = nodes.chunk(order[i]);
+                int offset = nodes.offset(order[i]);
+                chunk.get(offset + 8, key);
+                hits.add(new Hit(IdGenerator.fromBytes(key), chunk.get(offset + 1), chunk.getLong(offset + 24), scores[i]));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 한 층에서 더 가까운 이웃이 없을 때까지 이동 -> {노드, 유사도 비트}
+    private int[] greedy(float[] query, int current, float currentSim, int level, SearchState state) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] list = neighbors(current, level, state);
+            int size = list[0];
+            for (int i = 1; i <= size; i++) {
+                int n = list[i];
+                if (n >= count) continue;
+                float sim = similarity(query, n, state.scratch);
+                if (sim > currentSim) {
+                    currentSim = sim;
+                    current = n;
+                    changed = true;
+                }
+            }
+        }
+        return new int[]{current, Float.floatToIntBits(currentSim)};
+    }
+
+    // limit: 이 번호 이상의 노드는 무시 (추가 중인 노드 자신, flush 전에 끊긴 노드)
+    private NodeHeap searchLayer(float[] query, int start, int ef, int level, int limit, SearchState state) {
+        int stamp = state.nextStamp(Math.max(limit, count) + 1);
+        NodeHeap candidates = state.candidates; // 가까운 순으로 꺼냄
+        NodeHeap results = new NodeHeap(ef + 1, false); // 가장 먼 것이 맨 위
+        candidates.clear();
+
+        float startSim = similarity(query, start, state.scratch);
+        state.visited[start] = stamp;
+        candidates.push(start, startSim);
+        results.push(start, startSim);
+
+        while (!candidates.isEmpty()) {
+            float sim = candidates.topScore();
+            if (results.size() >= ef && sim < results.topScore()) break;
+            int node = candidates.pop();
+            int[] list = neighbors(node, level, state);
+            int size = list[0];
+            for (int i = 1; i <= size; i++) {
+                int n = list[i];
+                if (n >= limit || state.visited[n] == stamp) continue;
+                state.visited[n] = stamp;
+                float s = similarity(query, n, state.scratch);
+                if (results.size() < ef || s > results.topScore()) {
+                    candidates.push(n, s);
+                    results.push(n, s);
+                    if (results.size() > ef) results.pop();
+                }
+            }
+        }
+        return results;
+    }
+
+    // 휴리스틱 선택: 이미 고른 이웃보다 기준점에 더 가까운 후보만 (방향이 겹치는 간선을 줄임)
+    private int[] selectNeighbors(int[] nodesByScore, float[] scores, int max, SearchState state) {
+        int[] selected = new int[Math.min(max, nodesByScore.length)];
+        float[][] selectedVectors = state.selected;
+        int size = 0;
+        float[] candidate = state.candidate;
+        for (int i = 0; i < nodesByScore.length && size < max; i++) {
+            readVector(nodesByScore[i], candidate);
+            boolean keep = true;
+            for (int j = 0; j < size; j++) {
+                if (VectorMath.dot(candidate, selectedVectors[j], dim) > scores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                System.arraycopy(candidate, 0, selectedVectors[size], 0, dim);
+                selected[size++] = nodesByScore[i];
+            }
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    // neighbor의 이웃 목록에 node 추가, 넘치면 neighbor 기준으로 다시 골라냄
+    private void connect(int neighbor, int node, int level, SearchState state) {
+        int max = level == 0 ? M0 : M;
+        int[] list = neighbors(neighbor, level, state);
+        // flush 전에 끊긴 노드를 가리키는 예전 간선은 버림 (그 번호의 벡터는 아직 없거나 매핑 밖일 수 있음)
+        int size = 0;
+        for (int i = 1; i <= list[0]; i++) {
+            if (list[i] < count) list[++size] = list[i];
+        }
+        if (size < max) {
+            list[size + 1] = node;
+            setNeighbors(neighbor, level, Arrays.copyOfRange(list, 1, size + 2), size + 1);
+            return;
+        }
+        float[] base = state.base;
+        readVector(neighbor, base);
+        NodeHeap all = new NodeHeap(size + 2, false);
+        for (int i = 1; i <= size; i++) {
+            all.push(list[i], similarity(base, list[i], state.scratch));
+        }
+        all.push(node, similarity(base, node, state.scratch));
+        float[] scores = new float[all.size()];
+        int[] selected = selectNeighbors(all.drainBestFirst(scores), scores, max, state);
+        setNeighbors(neighbor, level, selected, selected.length);
+    }
+
+    // --- 저장 형식 ---
+
+    private float similarity(float[] query, int node, float[] scratch) {
+        readVector(node, scratch);
+        return VectorMath.dot(query, scratch, dim);
+    }
+
+    private void readVector(int node, float[] dst) {
+        vectors.floats(node).get(vectors.offset(node) / Float.BYTES, dst, 0, dim);
+    }
+
+    // 결과 배열: [0]=개수, [1..]=이웃 (state의 버퍼를 재사용하므로 다음 호출 전까지만 유효)
+    private int[] neighbors(int node, int level, SearchState state) {
+        int[] out = level == 0 ? state.links0 : state.linksUpper;
+        if (level == 0) {
+            IntBuffer buffer = links.ints(node);
+            int base = links.offset(node) / Integer.BYTES;
+            int size = Math.min(buffer.get(base), M0);
+            out[0] = size;
+            buffer.get(base + 1, out, 1, size);
+        } else {
+            int[][] levels = upper.get(node);
+            if (levels == null || level > levels.length) {
+                out[0] = 0;
+            } else {
+                System.arraycopy(levels[level - 1], 0, out, 0, levels[level - 1][0] + 1);
+            }
+        }
+        return out;
+    }
+
+    private void setNeighbors(int node, int level, int[] list, int size) {
+        if (level == 0) {
+            IntBuffer buffer = links.ints(node);
+            int base = links.offset(node) / Integer.BYTES;
+            buffer.put(base, size);
+            buffer.put(base + 1, list, 0, size);
+        } else {
+            int[] target = upper.get(node)[level - 1];
+            target[0] = size;
+            System.arraycopy(list, 0, target, 1, size);
+        }
+    }
+
+    private void writeNode(int node, int level, byte type, String id, long timeMs, float[] vector) throws IOException {
+        vectors.ensure(node);
+        links.ensure(node);
+        nodes.ensure(node);
+        vectors.floats(node).put(vectors.offset(node) / Float.BYTES, vector, 0, dim);
+        links.ints(node).put(links.offset(node) / Integer.BYTES, 0);
+        ByteBuffer chunk = nodes.chunk(node);
+        int offset = nodes.offset(node);
+        chunk.put(offset, (byte) level);
+        chunk.put(offset + 1, type);
+        chunk.put(offset + 8, IdGenerator.toBytes(id));
+        chunk.putLong(offset + 24, timeMs);
+        if (level > 0) {
+            int[][] levels = new int[level][M + 1];
+            upper.put(node, levels);
+        } else {
+            upper.remove(node); // flush 전에 끊겼던 노드 번호를 다시 쓰는 경우
+        }
+    }
+
+    /**
+     * 지금까지 추가한 노드를 디스크에 확정하고 진행 위치를 함께 저장합니다.
+     */
+    public void flush(String newCheckpoint) throws IOException {
+        lock.writeLock().lock();
+        try {
+            vectors.force();
+            links.force();
+            nodes.force();
+            writeAtomically(dir.resolve("upper.bin"), out -> {
+                for (Map.Entry<Integer, int[][]> e : upper.entrySet()) {
+                    if (e.getKey() >= count) continue;
+                    out.writeInt(e.getKey());
+                    out.writeInt(e.getValue().length);
+                    for (int[] level : e.getValue()) {
+                        out.writeInt(level[0]);
+                        for (int i = 1; i <= level[0]; i++) out.writeInt(level[i]);
+                    }
+                }
+                out.writeInt(-1);
+            });
+            checkpoint = newCheckpoint != null ? newCheckpoint : "";
+            writeAtomically(dir.resolve("index.meta"), out -> {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dim);
+                out.writeInt(count);
+                out.writeInt(entry);
+                out.writeInt(maxLevel);
+                out.writeUTF(checkpoint);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        Path meta = dir.resolve("index.meta");
+        if (!Files.exists(meta)) return;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(meta))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("알 수 없는 인덱스 형식: " + meta);
+            in.readInt(); // dim (open에서 확인)
+            int storedCount = in.readInt();
+            entry = in.readInt();
+            maxLevel = in.readInt();
+            checkpoint = in.readUTF();
+            if (storedCount > 0) {
+                vectors.ensure(storedCount - 1);
+                links.ensure(storedCount - 1);
+                nodes.ensure(storedCount - 1);
+            }
+            count = storedCount;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(dir.resolve("upper.bin"))))) {
+            int node;
+            while ((node = in.readInt()) >= 0) {
+                int[][] levels = new int[in.readInt()][M + 1];
+                for (int[] level : levels) {
+                    level[0] = in.readInt();
+                    for (int i = 1; i <= level[0]; i++) level[i] = in.readInt();
+                }
+                upper.put(node, levels);
+            }
+        } catch (NoSuchFileException e) {
+            // 위층이 없는 작은 인덱스
+        }
+    }
+
+    private static int readDimension(Path meta) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(meta))) {
+            in.readInt();
+            in.readInt();
+            return in.readInt();
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(Path target, Writer writer) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            writer.write(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            vectors.close();
+            links.close();
+            nodes.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- 도우미 ---
+
+    // 고정 크기 레코드 파일을 64MB 단위로 나눠 매핑 (레코드가 조각 경계에 걸치지 않도록 조각 크기를 맞춤)
+    private static final class MappedFile implements Closeable {
+        private final FileChannel channel;
+        private final int recordSize;
+        private final int perChunk;
+        private final List<MappedByteBuffer> chunks = new ArrayList<>();
+        private final List<FloatBuffer> floatViews = new ArrayList<>();
+        private final List<IntBuffer> intViews = new ArrayList<>();
+
+        MappedFile(Path path, int recordSize) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.recordSize = recordSize;
+            this.perChunk = (int) Math.max(1, CHUNK_BYTES / recordSize);
+        }
+
+        void ensure(int index) throws IOException {
+            while (chunks.size() <= index / perChunk) {
+                long position = (long) chunks.size() * perChunk * recordSize;
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) perChunk * recordSize);
+                chunk.order(ByteOrder.nativeOrder());
+                chunks.add(chunk);
+                floatViews.add(chunk.asFloatBuffer());
+                intViews.add(chunk.asIntBuffer());
+            }
+        }
+
+        ByteBuffer chunk(int index) {
+            return chunks.get(index / perChunk);
+        }
+
+        FloatBuffer floats(int index) {
+            return floatViews.get(index / perChunk);
+        }
+
+        IntBuffer ints(int index) {
+            return intViews.get(index / perChunk);
+        }
+
+        int offset(int index) {
+            return (index % perChunk) * recordSize;
+        }
+
+        void force() {
+            for (MappedByteBuffer chunk : chunks) chunk.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            force();
+            channel.close();
+        }
+    }
+
+    // 검색 스레드별 재사용 버퍼
+    private static final class SearchState {
+        final float[] scratch;
+        final float[] candidate;
+        final float[] base;
+        final float[][] selected;
+        final int[] links0 = new int[M0 + 2];
+        final int[] linksUpper = new int[M + 2];
+        final NodeHeap candidates = new NodeHeap(256, true);
+        int[] visited = new int[0];
+        int stamp = 0;
+
+        SearchState(int dim) {
+            scratch = new float[dim];
+            candidate = new float[dim];
+            base = new float[dim];
+            selected = new float[M0][dim];
+        }
+
+        int nextStamp(int size) {
+            if (visited.length < size) {
+                visited = new int[Math.max(size, visited.length * 2)];
+                stamp = 0;
+            }
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+    }
+
+    // (노드, 유사도) 이진 힙 - maxFirst면 가장 가까운 것이, 아니면 가장 먼 것이 맨 위
+    private static final class NodeHeap {
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+        private final boolean maxFirst;
+
+        NodeHeap(int capacity, boolean maxFirst) {
+            this.nodes = new int[Math.max(capacity, 4)];
+            this.scores = new float[nodes.length];
+            this.maxFirst = maxFirst;
+        }
+
+        int size() { return size; }
+        boolean isEmpty() { return size == 0; }
+        void clear() { size = 0; }
+        float topScore() { return scores[0]; }
+
+        private boolean above(float a, float b) {
+            return maxFirst ? a > b : a < b;
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!above(score, scores[parent])) break;
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && above(scores[child + 1], scores[child])) child++;
+                if (!above(scores[child], lastScore)) break;
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        // 가장 먼 것이 맨 위인 힙을 비우면서 유사도 높은 순으로 (outScores 길이 = size())
+        int[] drainBestFirst(float[] outScores) {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                outScores[i] = scores[0];
+                result[i] = pop();
+            }
+            return result;
+        }
+    }
+}
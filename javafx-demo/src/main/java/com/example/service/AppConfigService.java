@@ -2,16 +2,26 @@ package com.example.service;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
 
+/**
+ * 앱 설정 (config.json + system_prompt.txt + db_config.json).
+ * load()는 ConfigHolder가 한 번 읽어 둔 스냅샷을 돌려주며, 파일이 바뀌면 ConfigHolder가 새 스냅샷으로 교체합니다.
+ * 스냅샷은 여러 스레드가 공유하므로 수정할 수 없고, 설정을 바꿀 때는 copy()로 복사해서 수정한 뒤 save() 합니다.
+ */
 public class AppConfigService {
-    // 설정 파일 경로와 Gson 객체는 여기서만 관리합니다.
-    private static final String CONFIG_PATH = "config\\modelConfig\\config.json";
-    private static final String SYSTEM_PROMPT_PATH = "config\\modelConfig\\system_prompt.txt";
-    private static final String DB_CONFIG_PATH = "config\\database\\db_config.json"; // DB 설정 파일 경로
+    // 설정 파일 경로와 Gson 객체는 여기서만 관리합니다. (OS에 맞는 구분자로 조합)
+    static final Path CONFIG_PATH = Paths.get("config", "modelConfig", "config.json");
+    static final Path SYSTEM_PROMPT_PATH = Paths.get("config", "modelConfig", "system_prompt.txt");
+    static final Path DB_CONFIG_PATH = Paths.get("config", "database", "db_config.json"); // DB 설정 파일 경로
+    private static final String DEFAULT_STORAGE_PATH = Paths.get("config", "data", "chat_history.log").toString();
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
     @SerializedName("model_name")
@@ -20,12 +30,79 @@ public class AppConfigService {
     @SerializedName("system_prompt_file")
     private String systemPromptFile;
 
+    // 스트리밍 토큰을 화면에 반영하는 최소 간격(ms). 토큰이 화면에 늦게 뜨는 최대 지연 시간이기도 함
+    @SerializedName("stream_flush_interval_ms")
+    private Integer streamFlushIntervalMs;
+
+    // Python 브리지 프로토콜: "framed"(기본) 또는 "text"(구버전 줄 단위 프로토콜)
+    @SerializedName("bridge_protocol")
+    private String bridgeProtocol;
+
+    // 답변 생성 백엔드: "python"(기본, test.py 경유) 또는 "ollama"(Java에서 직접 호출)
+    @SerializedName("inference_backend")
+    private String inferenceBackend;
+
+    @SerializedName("ollama_url")
+    private String ollamaUrl;
+
+    // 모델 문맥 크기(num_ctx)와 그중 답변용으로 남겨 둘 토큰 (나머지에 대화 기록을 채움)
+    @SerializedName("context_tokens")
+    private Integer contextTokens;
+
+    @SerializedName("reply_reserve_tokens")
+    private Integer replyReserveTokens;
+
+    // 대화 요약 전용 모델 (채팅 모델과 따로, 백그라운드에서 동시에 실행)
+    @SerializedName("summary_model")
+    private String summaryModel;
+
+    // 과거 대화 기억(SemanticMemory): 임베딩 방식 "hashing"(기본, 로컬) 또는 "ollama"(embedding_model 사용)
+    @SerializedName("embedding_backend")
+    private String embeddingBackend;
+
+    @SerializedName("embedding_model")
+    private String embeddingModel;
+
+    // 매 턴 문맥에 넣을 관련 기억 수 (0이면 사용 안 함)
+    @SerializedName("memory_top_k")
+    private Integer memoryTopK;
+
+    // 메시지 저장 방식: "write_behind"(기본, 별도 스레드에서 모아서 저장) 또는 "sync"(즉시 저장)
+    @SerializedName("persistence_mode")
+    private String persistenceMode;
+
+    // 대화 기록 저장소: "mysql"(기본, db_config.json의 서버) 또는 "embedded"(단일 파일, 서버 불필요)
+    @SerializedName("storage_backend")
+    private String storageBackend;
+
+    // 내장 저장소 파일 경로
+    @SerializedName("storage_path")
+    private String storagePath;
+
+    // run_python 실행 방식: "pool"(기본, 상주 작업자 재사용) 또는 "spawn"(호출마다 새 프로세스)
+    @SerializedName("python_tool_mode")
+    private String pythonToolMode;
+
+    // 상주 작업자를 새로 띄우는 기준: 실행 횟수 / 메모리(MB)
+    @SerializedName("python_worker_max_runs")
+    private Integer pythonWorkerMaxRuns;
+
+    @SerializedName("python_worker_max_memory_mb")
+    private Integer pythonWorkerMaxMemoryMb;
+
+    // 작업자 시작 때 미리 import할 모듈 (쉼표 구분, 설치되지 않은 모듈은 건너뜀)
+    @SerializedName("python_worker_preload")
+    private String pythonWorkerPreload;
+
     // 시스템 프롬프트 내용 (파일에 별도 저장)
     private transient String systemPrompt;
     
     // DB 설정 객체 (파일에 별도 저장)
     private transient DatabaseConfig databaseConfig;
 
+    // ConfigHolder가 공유하는 스냅샷이면 true (setter 사용 불가)
+    private transient boolean frozen;
+
     // 기본 생성자 (기본값 설정)
     public AppConfigService() {
         
@@ -41,53 +118,209 @@ public class AppConfigService {
         
         @SerializedName("ai_user")
         private UserCredentials aiUser;
+
+        // 커넥션 풀 설정 (없으면 기본값)
+        @SerializedName("app_pool")
+        private PoolConfig appPool;
+
+        @SerializedName("ai_pool")
+        private PoolConfig aiPool;
+
+        private transient boolean frozen;
         
         public static class UserCredentials {
             @SerializedName("user")
             private String user;
             @SerializedName("password")
             private String password;
+
+            private transient boolean frozen;
             
             public String getUser() { return user; }
-            public void setUser(String user) { this.user = user; }
+            public void setUser(String user) { checkMutable(frozen); this.user = user; }
             public String getPassword() { return password; }
-            public void setPassword(String password) { this.password = password; }
+            public void setPassword(String password) { checkMutable(frozen); this.password = password; }
         }
         
         public String getUrl() { return url; }
-        public void setUrl(String url) { this.url = url; }
+        public void setUrl(String url) { checkMutable(frozen); this.url = url; }
         
         public UserCredentials getAppUser() { return appUser; }
-        public void setAppUser(UserCredentials appUser) { this.appUser = appUser; }
+        public void setAppUser(UserCredentials appUser) { checkMutable(frozen); this.appUser = appUser; }
         
         public UserCredentials getAiUser() { return aiUser; }
-        public void setAiUser(UserCredentials aiUser) { this.aiUser = aiUser; }
+        public void setAiUser(UserCredentials aiUser) { checkMutable(frozen); this.aiUser = aiUser; }
+
+        public PoolConfig getAppPool() { return appPool; }
+        public void setAppPool(PoolConfig appPool) { checkMutable(frozen); this.appPool = appPool; }
+
+        public PoolConfig getAiPool() { return aiPool; }
+        public void setAiPool(PoolConfig aiPool) { checkMutable(frozen); this.aiPool = aiPool; }
+
+        // 하위 설정까지 모두 잠금
+        private void freeze() {
+            frozen = true;
+            if (appUser != null) appUser.frozen = true;
+            if (aiUser != null) aiUser.frozen = true;
+            if (appPool != null) appPool.frozen = true;
+            if (aiPool != null) aiPool.frozen = true;
+        }
+
+        public static class PoolConfig {
+            @SerializedName("min_idle")
+            private Integer minIdle;
+            @SerializedName("max_size")
+            private Integer maxSize;
+            @SerializedName("borrow_timeout_ms")
+            private Long borrowTimeoutMs;
+            @SerializedName("idle_timeout_ms")
+            private Long idleTimeoutMs;
+            @SerializedName("leak_threshold_ms")
+            private Long leakThresholdMs;
+            @SerializedName("leak_stack_trace")
+            private Boolean leakStackTrace;
+
+            private transient boolean frozen;
+
+            public Integer getMinIdle() { return minIdle; }
+            public void setMinIdle(Integer minIdle) { checkMutable(frozen); this.minIdle = minIdle; }
+            public Integer getMaxSize() { return maxSize; }
+            public void setMaxSize(Integer maxSize) { checkMutable(frozen); this.maxSize = maxSize; }
+            public Long getBorrowTimeoutMs() { return borrowTimeoutMs; }
+            public void setBorrowTimeoutMs(Long borrowTimeoutMs) { checkMutable(frozen); this.borrowTimeoutMs = borrowTimeoutMs; }
+            public Long getIdleTimeoutMs() { return idleTimeoutMs; }
+            public void setIdleTimeoutMs(Long idleTimeoutMs) { checkMutable(frozen); this.idleTimeoutMs = idleTimeoutMs; }
+            public Long getLeakThresholdMs() { return leakThresholdMs; }
+            public void setLeakThresholdMs(Long leakThresholdMs) { checkMutable(frozen); this.leakThresholdMs = leakThresholdMs; }
+            public Boolean getLeakStackTrace() { return leakStackTrace; }
+            public void setLeakStackTrace(Boolean leakStackTrace) { checkMutable(frozen); this.leakStackTrace = leakStackTrace; }
+        }
     }
 
     public String getModelName() { return modelName; }
-    public void setModelName(String modelName) { this.modelName = modelName; }
+    public void setModelName(String modelName) { checkMutable(); this.modelName = modelName; }
 
     public String getSystemPromptFile() { return systemPromptFile; }
-    public void setSystemPromptFile(String systemPromptFile) { this.systemPromptFile = systemPromptFile; }
+    public void setSystemPromptFile(String systemPromptFile) { checkMutable(); this.systemPromptFile = systemPromptFile; }
+
+    public long getStreamFlushIntervalMs() { return streamFlushIntervalMs != null ? streamFlushIntervalMs : 16; }
+    public void setStreamFlushIntervalMs(Integer streamFlushIntervalMs) { checkMutable(); this.streamFlushIntervalMs = streamFlushIntervalMs; }
+
+    public String getBridgeProtocol() { return bridgeProtocol != null ? bridgeProtocol : "framed"; }
+    public void setBridgeProtocol(String bridgeProtocol) { checkMutable(); this.bridgeProtocol = bridgeProtocol; }
+
+    public String getInferenceBackend() { return inferenceBackend != null ? inferenceBackend : "python"; }
+    public void setInferenceBackend(String inferenceBackend) { checkMutable(); this.inferenceBackend = inferenceBackend; }
+
+    public String getOllamaUrl() { return ollamaUrl != null ? ollamaUrl : "http://localhost:11434"; }
+    public void setOllamaUrl(String ollamaUrl) { checkMutable(); this.ollamaUrl = ollamaUrl; }
+
+    public int getContextTokens() { return contextTokens != null ? contextTokens : 8192; }
+    public void setContextTokens(Integer contextTokens) { checkMutable(); this.contextTokens = contextTokens; }
+
+    public int getReplyReserveTokens() { return replyReserveTokens != null ? replyReserveTokens : 1024; }
+    public void setReplyReserveTokens(Integer replyReserveTokens) { checkMutable(); this.replyReserveTokens = replyReserveTokens; }
+
+    public String getSummaryModel() { return summaryModel != null ? summaryModel : "exaone3.5:7.8b"; }
+    public void setSummaryModel(String summaryModel) { checkMutable(); this.summaryModel = summaryModel; }
+
+    public String getEmbeddingBackend() { return embeddingBackend != null ? embeddingBackend : "hashing"; }
+    public void setEmbeddingBackend(String embeddingBackend) { checkMutable(); this.embeddingBackend = embeddingBackend; }
+
+    public String getEmbeddingModel() { return embeddingModel != null ? embeddingModel : "nomic-embed-text"; }
+    public void setEmbeddingModel(String embeddingModel) { checkMutable(); this.embeddingModel = embeddingModel; }
+
+    public int getMemoryTopK() { return memoryTopK != null ? memoryTopK : 3; }
+    public void setMemoryTopK(Integer memoryTopK) { checkMutable(); this.memoryTopK = memoryTopK; }
+
+    public String getPersistenceMode() { return persistenceMode != null ? persistenceMode : "write_behind"; }
+    public void setPersistenceMode(String persistenceMode) { checkMutable(); this.persistenceMode = persistenceMode; }
+
+    public String getStorageBackend() { return storageBackend != null ? storageBackend : "mysql"; }
+    public void setStorageBackend(String storageBackend) { checkMutable(); this.storageBackend = storageBackend; }
+    public boolean isEmbeddedStorage() { return "embedded".equalsIgnoreCase(getStorageBackend()); }
+
+    // 윈도우에서 만든 설정("config\\data\\...")도 다른 OS에서 열리도록 구분자를 맞춤
+    public String getStoragePath() {
+        return storagePath != null ? storagePath.replace('\\', File.separatorChar).replace('/', File.separatorChar) : DEFAULT_STORAGE_PATH;
+    }
+    public void setStoragePath(String storagePath) { checkMutable(); this.storagePath = storagePath; }
+
+    public String getPythonToolMode() { return pythonToolMode != null ? pythonToolMode : "pool"; }
+    public void setPythonToolMode(String pythonToolMode) { checkMutable(); this.pythonToolMode = pythonToolMode; }
+
+    public int getPythonWorkerMaxRuns() { return pythonWorkerMaxRuns != null ? pythonWorkerMaxRuns : 200; }
+    public void setPythonWorkerMaxRuns(Integer pythonWorkerMaxRuns) { checkMutable(); this.pythonWorkerMaxRuns = pythonWorkerMaxRuns; }
+
+    public int getPythonWorkerMaxMemoryMb() { return pythonWorkerMaxMemoryMb != null ? pythonWorkerMaxMemoryMb : 512; }
+    public void setPythonWorkerMaxMemoryMb(Integer pythonWorkerMaxMemoryMb) { checkMutable(); this.pythonWorkerMaxMemoryMb = pythonWorkerMaxMemoryMb; }
+
+    public String getPythonWorkerPreload() { return pythonWorkerPreload != null ? pythonWorkerPreload : "numpy,pandas"; }
+    public void setPythonWorkerPreload(String pythonWorkerPreload) { checkMutable(); this.pythonWorkerPreload = pythonWorkerPreload; }
 
     public String getSystemPrompt() { return systemPrompt; }
-    public void setSystemPrompt(String systemPrompt) { this.systemPrompt = systemPrompt; }
+    public void setSystemPrompt(String systemPrompt) { checkMutable(); this.systemPrompt = systemPrompt; }
     
     public DatabaseConfig getDatabaseConfig() { return databaseConfig; }
-    public void setDatabaseConfig(DatabaseConfig databaseConfig) { this.databaseConfig = databaseConfig; }
+    public void setDatabaseConfig(DatabaseConfig databaseConfig) { checkMutable(); this.databaseConfig = databaseConfig; }
 
-    // --- [핵심 기능] 파일에서 불러오기 (Static Factory Method) ---
+    // --- [핵심 기능] 현재 설정 (캐시된 스냅샷, 디스크를 다시 읽지 않음) ---
     public static AppConfigService load() {
+        return ConfigHolder.getInstance().get();
+    }
+
+    // 수정용 복사본 (DB 설정까지 깊은 복사)
+    public AppConfigService copy() {
+        AppConfigService copy = gson.fromJson(gson.toJson(this), AppConfigService.class);
+        copy.systemPrompt = systemPrompt;
+        copy.databaseConfig = databaseConfig != null ? gson.fromJson(gson.toJson(databaseConfig), DatabaseConfig.class) : null;
+        return copy;
+    }
+
+    // 공유 스냅샷으로 잠금. DB 설정은 밖에서 들고 있던 참조로 바뀌지 않도록 복사본으로 바꾼 뒤 함께 잠금
+    void freeze() {
+        if (databaseConfig != null) {
+            databaseConfig = gson.fromJson(gson.toJson(databaseConfig), DatabaseConfig.class);
+            databaseConfig.freeze();
+        }
+        frozen = true;
+    }
+
+    private void checkMutable() {
+        checkMutable(frozen);
+    }
+
+    private static void checkMutable(boolean frozen) {
+        if (frozen) throw new IllegalStateException("공유 중인 설정 스냅샷은 수정할 수 없습니다. copy()로 복사해서 수정하세요.");
+    }
+
+    // --- 변경 비교 (ConfigHolder 구독자용) ---
+
+    public static boolean sameDatabaseConfig(AppConfigService a, AppConfigService b) {
+        return Objects.equals(gson.toJson(a.databaseConfig), gson.toJson(b.databaseConfig));
+    }
+
+    public static boolean sameContent(AppConfigService a, AppConfigService b) {
+        return Objects.equals(gson.toJson(a), gson.toJson(b))
+                && Objects.equals(a.systemPrompt, b.systemPrompt)
+                && sameDatabaseConfig(a, b);
+    }
+
+    // --- 파일에서 불러오기 (ConfigHolder만 호출) ---
+    // strict: 파일이 있는데 읽기/파싱에 실패하거나 비어 있으면 (저장 도중 등) 기본값 대신 예외 -> 이전 스냅샷 유지
+    static AppConfigService readFromDisk(boolean strict) throws IOException {
         AppConfigService config = null;
-        File file = new File(CONFIG_PATH);
+        File file = CONFIG_PATH.toFile();
         
         // 1. JSON 설정 로드
         if (file.exists()) {
             try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
                 config = gson.fromJson(reader, AppConfigService.class);
-            } catch (IOException e) {
+            } catch (IOException | JsonParseException e) {
+                if (strict) throw new IOException("설정 파일을 읽을 수 없습니다: " + file, e);
                 e.printStackTrace();
             }
+            if (config == null && strict) throw new IOException("설정 파일이 비어 있습니다: " + file);
         }
 
         if (config == null) {
@@ -95,7 +328,7 @@ public class AppConfigService {
         }
 
         // 2. 시스템 프롬프트 텍스트 파일 로드
-        File promptFile = new File(SYSTEM_PROMPT_PATH);
+        File promptFile = SYSTEM_PROMPT_PATH.toFile();
         if (promptFile.exists()) {
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(promptFile), StandardCharsets.UTF_8))) {
                 StringBuilder sb = new StringBuilder();
@@ -110,6 +343,7 @@ public class AppConfigService {
                 }
                 config.setSystemPrompt(loadedPrompt);
             } catch (IOException e) {
+                if (strict) throw e;
                 e.printStackTrace();
             }
         } else {
@@ -117,12 +351,17 @@ public class AppConfigService {
         }
         
         // 3. DB 설정 파일 로드
-        File dbFile = new File(DB_CONFIG_PATH);
+        File dbFile = DB_CONFIG_PATH.toFile();
         if (dbFile.exists()) {
              try (Reader reader = new InputStreamReader(new FileInputStream(dbFile), StandardCharsets.UTF_8)) {
                 DatabaseConfig dbConfig = gson.fromJson(reader, DatabaseConfig.class);
+                if (dbConfig == null && strict) throw new IOException("DB 설정 파일이 비어 있습니다: " + dbFile);
                 config.setDatabaseConfig(dbConfig);
+            } catch (JsonParseException e) {
+                if (strict) throw new IOException("DB 설정 파일을 읽을 수 없습니다: " + dbFile, e);
+                e.printStackTrace();
             } catch (IOException e) {
+                if (strict) throw e;
                 e.printStackTrace();
             }
         } else {
@@ -135,7 +374,7 @@ public class AppConfigService {
 
     // --- [핵심 기능] 파일로 저장하기 ---
     public void save() {
-        File configFile = new File(CONFIG_PATH);
+        File configFile = CONFIG_PATH.toFile();
         if (configFile.getParentFile() != null) configFile.getParentFile().mkdirs();
 
         try (Writer writer = new OutputStreamWriter(new FileOutputStream(configFile), StandardCharsets.UTF_8)) {
@@ -147,7 +386,7 @@ public class AppConfigService {
 
         // 시스템 프롬프트 저장
         if (this.systemPrompt != null) {
-            File promptFile = new File(SYSTEM_PROMPT_PATH);
+            File promptFile = SYSTEM_PROMPT_PATH.toFile();
             if (promptFile.getParentFile() != null) promptFile.getParentFile().mkdirs();
             
             try (Writer writer = new OutputStreamWriter(new FileOutputStream(promptFile), StandardCharsets.UTF_8)) {
@@ -159,7 +398,7 @@ public class AppConfigService {
         
         // DB 설정 저장
         if (this.databaseConfig != null) {
-            File dbFile = new File(DB_CONFIG_PATH);
+            File dbFile = DB_CONFIG_PATH.toFile();
             if (dbFile.getParentFile() != null) dbFile.getParentFile().mkdirs();
             
             try (Writer writer = new OutputStreamWriter(new FileOutputStream(dbFile), StandardCharsets.UTF_8)) {
@@ -168,5 +407,8 @@ public class AppConfigService {
                 e.printStackTrace();
             }
         }
+
+        // 감시 스레드를 기다리지 않고 바로 새 스냅샷 반영
+        ConfigHolder.getInstance().reload();
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,15 @@
 package com.example.service;
 
 import com.example.model.ChatMessage;
+import com.example.model.MessageSegment;
+import com.example.model.SearchHit;
+import com.example.model.ToolCall;
+import com.example.repository.BlobStore;
 import com.example.repository.ChatRepository;
+import com.example.repository.ChatWriteQueue;
+import com.example.repository.HistorySearchIndex;
 import com.example.util.HtmlUtil;
+import com.example.util.StreamingMarkdownRenderer;
 import com.example.view.ChatWebView;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
@@ -11,32 +18,83 @@ import com.google.gson.stream.JsonReader;
 import javafx.application.Platform;
 
 import java.io.StringReader;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class ChatService {
 
-    private final PythonService pythonService = new PythonService();
+    // 스트리밍 중간 저장 주기: 이 시간 또는 글자 수가 쌓이면 새로 받은 부분을 조각으로 저장
+    private static final long CHECKPOINT_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int CHECKPOINT_MAX_CHARS = 2_000;
+    // 화면(과 messageHistory)에 유지할 메시지 범위: 스크롤로 한 번에 PAGE_SIZE개씩 불러오고 WINDOW_SIZE개를 넘으면 반대쪽 끝을 버림
+    private static final int INITIAL_LOAD = 20;
+    private static final int PAGE_SIZE = 30;
+    private static final int WINDOW_SIZE = 150;
+    private static final int CONTEXT_SEED = 100; // 시작 시 모델 문맥 후보로 불러올 최근 메시지 수
+    // 도구 결과가 이 글자 수를 넘으면 BlobStore에 따로 저장하고 메시지에는 앞부분만 표시
+    private static final int TOOL_OUTPUT_INLINE_LIMIT = 4_000;
+    private static final int TOOL_OUTPUT_PREVIEW = 1_500;
+    private static final String INTERRUPTED_NOTICE = "\n\n_(앱이 종료되어 답변이 중간에 끊겼습니다)_";
+
+    private final InferenceBackend backend = createBackend();
     private final ToolManager toolManager = new ToolManager();
-    private final ChatRepository chatRepository = new ChatRepository(); // 리포지토리 추가
+    private final ChatRepository chatRepository = new ChatRepository(); // 리포지토리 추가 (조회용)
+    private final ChatWriteQueue chatWriter = ChatWriteQueue.getInstance(); // 저장/수정은 별도 스레드에서
     private final Gson gson = new Gson();
-    private final List<ChatMessage> messageHistory = new ArrayList<>();
+    // 대화/화면 상태는 FX 스레드에서만 다룸 (백엔드 콜백과 페이지 로드 결과도 Platform.runLater로 넘어옴)
+    // volatile 필드는 요약/기억 스레드가 읽기만 함 (inProgressMessageId)
+    private final List<ChatMessage> messageHistory = new ArrayList<>(); // 지금 화면에 있는 범위 (과거순)
+    private volatile ChatMessage latestMessage = null;  // 화면 범위와 상관없이 가장 최근 메시지
+    private boolean viewDetached = false;      // 위로 스크롤해서 최근 메시지가 화면 범위에서 빠진 상태
+    private volatile long viewRequest = 0;     // 화면 범위를 바꾸는 요청마다 증가 (늦게 끝난 이전 요청은 버림)
     
     private final ChatWebView chatWebView;
     private final Consumer<Boolean> onRespondingStateChange; // 버튼 제어용 콜백
 
-    private StringBuilder currentAiText = new StringBuilder();
-    private ChatMessage currentAiMessage = null;
-    private String pendingToolJson = null;
+    private final StringBuilder currentAiText = new StringBuilder();
+    private volatile ChatMessage currentAiMessage = null;
+    private StreamingMarkdownRenderer currentRenderer = null; // 스트리밍 중 점진적 마크다운 렌더러
+    private int checkpointSeq = 0;          // 현재 답변의 다음 조각 번호
+    private int checkpointedLength = 0;     // 조각으로 저장된 글자 수
+    private long lastCheckpointAt = 0;
+    private volatile String pendingToolJson = null;
     
     private boolean isAiResponding = false;
-    private boolean stopRequested = false;
+    private volatile boolean awaitingResponse = false; // 요청을 보내고 [DONE]/중단을 기다리는 중
+    private volatile boolean stopRequested = false;    // 중단 확인([CANCELLED]) 전까지 이전 생성의 토큰 무시
+    private volatile long cancelRequestedAt = 0;
+    private volatile long requestStartedAt = 0; // 첫 토큰까지 걸린 시간(TTFT) 측정용
     
-    // [NEW] 요약 관련 변수
-    private int messageSinceLastSummary = 0;
-    private boolean isSummarizing = false;
+    // 요약은 채팅과 따로 백그라운드에서 (작성 중인 메시지는 제외)
+    private final ContextBuilder contextBuilder = new ContextBuilder(); // 매 턴 모델에 보낼 문맥 (토큰 예산 안에서)
+    private volatile ContextBuilder.Context lastContext; // 마지막으로 보낸 문맥 (턴 사용량 기록용)
+    private final SummaryPipeline summaryPipeline =
+            new SummaryPipeline(chatRepository, chatWriter, this::inProgressMessageId, contextBuilder::setSummary);
+    // 과거 대화 중 이번 입력과 관련된 메시지를 찾아 문맥에 추가 (색인은 백그라운드)
+    private final SemanticMemory semanticMemory = new SemanticMemory(chatRepository, chatWriter, this::inProgressMessageId);
+    // 기억 검색(임베딩) + 문맥 구성 + 전송을 FX 스레드 밖에서 순서대로 (중단 요청도 같은 순서로 보냄)
+    private final ExecutorService turnExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chat-turn");
+        t.setDaemon(true);
+        return t;
+    });
+    // 페이지 로드/검색 이동의 저장소 조회를 한 스레드에서 순서대로 (결과는 FX 스레드에서 반영)
+    private final ExecutorService historyExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chat-history");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final BiConsumer<AppConfigService, AppConfigService> configListener = this::onConfigChanged;
 
     public ChatService(ChatWebView chatWebView, Consumer<Boolean> onRespondingStateChange) {
         this.chatWebView = chatWebView;
@@ -45,13 +103,55 @@ public class ChatService {
         // 초기화: WebView 로딩이 완료된 후 메시지 불러오기 (JS 에러 방지)
         this.chatWebView.setOnReady(this::loadRecentMessages);
         
-        startPythonService();
+        startBackend();
+        toolManager.startWatching(); // config/tools의 JAR이 바뀌면 재시작 없이 다시 읽음
+        // run_python 상주 작업자를 미리 띄워서 첫 호출도 인터프리터 시작을 기다리지 않게 함
+        if (toolManager.getRegisteredToolNames().contains("run_python")
+                && !"spawn".equalsIgnoreCase(AppConfigService.load().getPythonToolMode())) {
+            PythonWorkerPool.getInstance().prewarmAsync();
+        }
+        ConfigHolder.getInstance().subscribe(configListener);
+    }
+
+    // 설정 파일이 바뀌면 (설정 창 저장 또는 직접 수정) 모델/프롬프트는 백엔드에 바로 전달
+    private void onConfigChanged(AppConfigService previous, AppConfigService current) {
+        boolean modelChanged = !Objects.equals(previous.getModelName(), current.getModelName());
+        boolean promptChanged = !Objects.equals(previous.getSystemPrompt(), current.getSystemPrompt());
+        if (modelChanged || promptChanged) {
+            JsonObject settings = new JsonObject();
+            settings.addProperty("model_name", current.getModelName());
+            settings.addProperty("system_prompt", current.getSystemPrompt());
+            backend.sendMessage("SET_CONFIG:" + settings); // 진행 중인 답변이 끝난 뒤 적용됨
+            chatWebView.appendSystemMessage(modelChanged
+                    ? "⚙️ 모델 변경: " + current.getModelName() + " (다음 답변부터 적용)"
+                    : "⚙️ 시스템 프롬프트 변경 (다음 답변부터 적용)");
+        }
+        if (!Objects.equals(previous.getInferenceBackend(), current.getInferenceBackend())
+                || !Objects.equals(previous.getBridgeProtocol(), current.getBridgeProtocol())
+                || !Objects.equals(previous.getStorageBackend(), current.getStorageBackend())) {
+            chatWebView.appendSystemMessage("⚙️ 백엔드/저장소 설정은 앱을 다시 시작해야 적용됩니다.");
+        }
+    }
+
+    // 설정(inference_backend)에 따라 Python 브리지 또는 Ollama 직접 호출 백엔드 선택
+    private static InferenceBackend createBackend() {
+        if ("ollama".equalsIgnoreCase(AppConfigService.load().getInferenceBackend())) {
+            return new OllamaService();
+        }
+        return new PythonService();
     }
     
     private void loadRecentMessages() {
+        // 0. 지난 실행에서 답변 도중 종료되었다면 저장된 조각으로 복구
+        int recovered = chatRepository.recoverInterruptedMessages(INTERRUPTED_NOTICE);
+        if (recovered > 0) {
+            System.out.println("중단된 답변 복구: " + recovered + "건");
+        }
+
         // 1. 최근 메시지 로드 및 화면 표시
-        List<ChatMessage> recent = chatRepository.findRecentMessages(20);
+        List<ChatMessage> recent = chatRepository.findRecentMessages(INITIAL_LOAD);
         messageHistory.addAll(recent);
+        if (!recent.isEmpty()) latestMessage = recent.get(recent.size() - 1);
         
         for (ChatMessage msg : recent) {
             if ("user".equals(msg.getRole())) {
@@ -61,62 +161,39 @@ public class ChatService {
                 renderAndCheckTool(msg, msg.getContent());
             }
         }
+        chatWebView.setPaging(recent.size() == INITIAL_LOAD, false);
         
-        // 2. 마지막 요약 이후 메시지 개수 초기화
-        messageSinceLastSummary = chatRepository.countMessagesAfterLastSummary();
-        System.out.println("마지막 요약 이후 메시지 개수: " + messageSinceLastSummary);
+        // 검색 색인은 복구가 끝난 뒤 백그라운드에서 생성
+        HistorySearchIndex.getInstance().buildAsync();
+
+        // 2. 지난 실행에서 끝나지 않은 요약이 있으면 이어서 진행 (백그라운드)
+        summaryPipeline.requestIfNeeded();
+        semanticMemory.requestIndexing();
         
-        // 3. Python 모델에 기억 주입 (비동기로 실행하여 UI 블로킹 방지)
-        new Thread(this::restoreHistoryToModel).start();
+        // 3. Python 모델에 기억 주입 (chat-turn 스레드: UI를 막지 않고, 첫 대화 전송보다 먼저)
+        ChatMessage lastMsg = recent.isEmpty() ? null : recent.get(recent.size() - 1);
+        turnExecutor.execute(() -> restoreHistoryToModel(lastMsg));
     }
     
-    private void restoreHistoryToModel() {
-        if (messageHistory.isEmpty()) return;
+    private void restoreHistoryToModel(ChatMessage lastMsg) {
+        // 모델 문맥 후보: 화면 범위와 별개로 저장소의 최근 메시지 + 요약 트리에서 예산에 맞게 고른 요약
+        contextBuilder.seed(chatRepository.findRecentMessages(CONTEXT_SEED));
+        contextBuilder.setSummary(summaryPipeline.contextSummary());
+        if (lastMsg == null) return;
 
         try {
-            com.google.gson.JsonArray historyArray = new com.google.gson.JsonArray();
-            
-            // 1. 장기 기억(최신 요약본) 및 마지막 대화 시간 정보 주입
-            String lastSummary = chatRepository.getLastSummary();
-            StringBuilder systemContext = new StringBuilder();
-            
-            if (lastSummary != null && !lastSummary.isEmpty()) {
-                systemContext.append("Here is the summary of previous conversations:\n").append(lastSummary).append("\n\n");
-            }
-            
-            // 마지막 대화 시간 확인
-            if (!messageHistory.isEmpty()) {
-                ChatMessage lastMsg = messageHistory.get(messageHistory.size() - 1);
-                if (lastMsg.getTimestamp() != null) {
-                    systemContext.append("[System Info: Last conversation ended at ")
-                                 .append(lastMsg.getTimestamp().toString())
-                                 .append("]");
-                }
-            }
-            
-            if (systemContext.length() > 0) {
-                JsonObject contextObj = new JsonObject();
-                contextObj.addProperty("role", "system");
-                contextObj.addProperty("content", systemContext.toString());
-                historyArray.add(contextObj);
+            // 마지막 대화 시간 정보는 요약 뒤에 함께 주입
+            String lastTimeInfo = null;
+            if (lastMsg.getTimestamp() != null) {
+                lastTimeInfo = "[System Info: Last conversation ended at " + lastMsg.getTimestamp() + "]";
             }
-            
-            // 2. 단기 기억(최근 대화) 추가
-            for (ChatMessage msg : messageHistory) {
-                JsonObject obj = new JsonObject();
-                String role = msg.getRole();
-                if ("ai".equals(role)) role = "assistant";
-                else if ("tool".equals(role)) continue; 
-                
-                obj.addProperty("role", role);
-                // HTML 태그 제거 및 툴 결과 포맷팅 적용
-                obj.addProperty("content", cleanContentForModel(msg.getContent()));
-                
-                historyArray.add(obj);
-            }
-            
-            String jsonStr = gson.toJson(historyArray);
-            pythonService.sendMessage("RESTORE_AND_GREET:" + jsonStr);
+
+            // 장기 기억(요약) + 단기 기억(최근 대화)을 토큰 예산에 맞춰 구성
+            ContextBuilder.Context context = contextBuilder.build(AppConfigService.load().getSystemPrompt(), lastTimeInfo);
+            System.out.println("[CONTEXT] 기억 복원: " + context);
+            lastContext = context;
+            requestStartedAt = System.nanoTime();
+            backend.sendMessage("RESTORE_AND_GREET:" + gson.toJson(context.messages()));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -124,223 +201,217 @@ public class ChatService {
         }
     }
 
-    // [NEW] AI에게 보낼 텍스트 정제 (HTML 제거 및 툴 결과 변환)
-    private String cleanContentForModel(String content) {
-        if (content == null) return "";
-        
-        // 1. 툴 실행 결과 (approval-result) 추출 및 변환
-        // <div class='approval-result'...>내용</div> -> TOOL_RESULT: 내용
-        java.util.regex.Pattern resultPattern = java.util.regex.Pattern.compile(
-            "<div class='approval-result'[^>]*>(.*?)</div>", 
-            java.util.regex.Pattern.DOTALL
-        );
-        java.util.regex.Matcher matcher = resultPattern.matcher(content);
-        
-        StringBuffer sb = new StringBuffer();
-        boolean toolResultFound = false;
-        
-        while (matcher.find()) {
-            toolResultFound = true;
-            String resultText = matcher.group(1);
-            // HTML 엔티티 등 디코딩 필요시 추가 (일단 간단히 줄바꿈만 처리)
-            // 여기서는 HTML 태그가 포함된 결과일 수 있으므로, 결과 텍스트 자체는 유지하되
-            // 감싸고 있는 approval-container 전체를 날려야 함.
-            
-            // 하지만 matcher는 result만 찾으므로, 전체 컨테이너를 찾아서 교체하는 게 나음.
-            // 따라서 전략 수정: approval-container 전체를 찾음.
-        }
-        
-        // 2. approval-container 전체 덩어리를 찾아서 교체
-        java.util.regex.Pattern containerPattern = java.util.regex.Pattern.compile(
-            "<div class='approval-container'[^>]*>.*?<div class='approval-result'[^>]*>(.*?)</div>.*?</div>", 
-            java.util.regex.Pattern.DOTALL
-        );
-        java.util.regex.Matcher containerMatcher = containerPattern.matcher(content);
-        
-        String processed = containerMatcher.replaceAll(mr -> {
-            String result = mr.group(1);
-            // 결과 내의 <br> 등을 줄바꿈으로 변경
-            result = result.replaceAll("<br\\s*/?>", "\n");
-            // HTML 엔티티 디코딩 (간단하게)
-            result = result.replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&").replace("&quot;", "\"");
-            return "\n[TOOL_RESULT: " + result.trim() + "]\n";
-        });
-        
-        // 3. 나머지 자잘한 HTML 태그 제거 (마크다운은 유지)
-        // 주의: 마크다운의 <코드블록> 같은 건 건드리면 안 됨.
-        // 여기서는 툴 결과 변환이 주 목적이므로, 과도한 태그 제거는 생략하거나 신중하게 적용.
-        // 일단 approval-container만 처리해도 충분함.
-        
-        return processed;
+    // 모델에 보낼 텍스트: 답변 본문 + 도구 호출 결과 (저장된 기록을 그대로 이어 붙임, HTML 파싱 없음)
+    static String contentForModel(ChatMessage message) {
+        return contentForModel(message, Integer.MAX_VALUE);
     }
 
-    private void startPythonService() {
-        pythonService.start(
-            message -> { // System Message
-                if (stopRequested) return;
-                if ("[DONE]".equals(message)) {
-                    finishAiMessage();
-                } else {
-                    if (isAiResponding) finishAiMessage();
-                    chatWebView.appendSystemMessage(message);
-                }
-            },
-            token -> { // Streaming Token
-                if (stopRequested) return;
-                
-                if ("[Thinking]".equals(token)) {
-                    chatWebView.showSpinner();
-                    updateState(true);
-                    return;
-                }
-
-                if (!isAiResponding && !isSummarizing) { // 요약 중엔 무시
-                    chatWebView.hideSpinner();
-                    currentAiMessage = new ChatMessage("ai", "");
-                    messageHistory.add(currentAiMessage);
-                    
-                    // AI 메시지 시작 시점에 일단 빈 내용으로 저장 (ID 확보)
-                    chatRepository.save(currentAiMessage);
-                    // 메시지 추가됨 -> 카운트 증가
-                    messageSinceLastSummary++;
-                    
-                    chatWebView.startAiMessage(currentAiMessage.getId());
-                    isAiResponding = true;
-                    currentAiText.setLength(0);
-                }
-
-                if (currentAiMessage == null) return;
+    // maxToolResultChars: 문맥이 부족할 때 도구 결과를 이 길이까지 줄임 (ContextBuilder)
+    static String contentForModel(ChatMessage message, int maxToolResultChars) {
+        String content = message.getContent() != null ? message.getContent() : "";
+        List<ToolCall> calls = message.getToolCalls();
+        if (calls.isEmpty()) return content;
+
+        StringBuilder text = new StringBuilder(content);
+        for (ToolCall call : calls) {
+            String result = call.getOutput() != null ? call.getOutput() : "Cancelled by user.";
+            if (result.length() > maxToolResultChars) {
+                result = result.substring(0, maxToolResultChars) + " …(생략: 전체 " + result.length() + "자)";
+            }
+            text.append("\n\n[TOOL_RESULT: ").append(result).append("]\n");
+        }
+        return text.toString();
+    }
 
-                currentAiText.append(token);
-                currentAiMessage.setContent(currentAiText.toString());
-                chatWebView.streamAiToken(token);
-            },
-            this::handleToolRequest, // Tool Request
-            this::handleSummaryResult // [NEW] Summary Result Callback
+    // 백엔드 콜백은 리스너 스레드에서 오므로 받은 순서대로 FX 스레드로 넘김 (중지 뒤에 도착한 토큰도 같은 스레드에서 걸러짐)
+    private void startBackend() {
+        backend.start(
+            message -> Platform.runLater(() -> onSystemMessage(message)),
+            token -> Platform.runLater(() -> onToken(token)),
+            json -> Platform.runLater(() -> handleToolRequest(json)), // Tool Request
+            null // 요약은 SummaryPipeline이 백엔드를 거치지 않고 처리
         );
     }
 
-    // [NEW] 요약 요청 로직
-    private void checkAndSummarize() {
-        if (messageSinceLastSummary >= 20 && !isSummarizing) {
-            System.out.println("요약 트리거 발동! (쌓인 메시지: " + messageSinceLastSummary + ")");
-            isSummarizing = true;
-            updateState(true); // UI 잠금 (전송 버튼 비활성화 등)
-            chatWebView.showSpinner(); // 요약 중임을 알림
-            
-            new Thread(() -> {
-                try {
-                    // 1. 요약할 데이터 준비 (최근 30개 + 이전 요약)
-                    // offset은 0 (가장 오래된 것부터 가져오려면 정렬 기준 확인 필요)
-                    // 여기서는 '요약되지 않은 메시지들'을 가져오는 게 아니라, 문맥 유지를 위해 최근 30개를 가져옴
-                    List<ChatMessage> messages = chatRepository.findMessagesForSummary(0, 30); 
-                    String prevSummary = chatRepository.getLastSummary();
-                    
-                    JsonObject request = new JsonObject();
-                    request.addProperty("previous_summary", prevSummary);
-                    
-                    com.google.gson.JsonArray msgArray = new com.google.gson.JsonArray();
-                    for (ChatMessage m : messages) {
-                        JsonObject obj = new JsonObject();
-                        obj.addProperty("role", m.getRole());
-                        obj.addProperty("content", m.getContent()); // HTML 태그 포함될 수 있음 (텍스트만 추출하면 더 좋음)
-                        msgArray.add(obj);
-                    }
-                    request.add("messages", msgArray);
-                    
-                    pythonService.sendMessage("SUMMARIZE:" + gson.toJson(request));
-                    
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    Platform.runLater(() -> {
-                        chatWebView.hideSpinner();
-                        chatWebView.appendSystemMessage("⚠️ 요약 요청 실패");
-                        isSummarizing = false;
-                        updateState(false);
-                    });
-                }
-            }).start();
+    // FX 스레드: 시스템 메시지 ([DONE]/[CANCELLED] 포함)
+    private void onSystemMessage(String message) {
+        if ("[CANCELLED]".equals(message)) {
+            onCancelAcknowledged();
+            return;
+        }
+        if (stopRequested) return;
+        if ("[DONE]".equals(message)) {
+            awaitingResponse = false;
+            finishAiMessage();
+        } else {
+            if (isAiResponding) finishAiMessage();
+            chatWebView.appendSystemMessage(message);
         }
     }
 
-    // [NEW] 요약 결과 처리
-    private void handleSummaryResult(String summaryContent) {
-        System.out.println("요약 완료: " + summaryContent);
-        
-        // DB 저장 (범위 설정이 중요하지만, 일단 현재 시점 기준으로 저장)
-        // 정확한 start_msg_id, end_msg_id를 찾으려면 findMessagesForSummary의 결과를 참조해야 함.
-        // 여기서는 편의상 가장 최근 메시지 ID를 end로 잡음.
-        // TODO: 더 정교한 ID 매핑 필요
-        
-        String startId = "unknown";
-        String endId = "unknown";
-        LocalDateTime now = LocalDateTime.now();
-        
-        if (!messageHistory.isEmpty()) {
-            endId = messageHistory.get(messageHistory.size() - 1).getId();
-            // startId는 20개 전 메시지 ID... 계산 필요하지만 일단 endId와 동일하게 더미 처리
-            startId = endId; 
+    // FX 스레드: 스트리밍 토큰
+    private void onToken(String token) {
+        if (stopRequested) return;
+
+        if ("[Thinking]".equals(token)) {
+            awaitingResponse = true;
+            chatWebView.showSpinner();
+            updateState(true);
+            return;
         }
-        
-        chatRepository.saveSummary(summaryContent, startId, endId, now, now);
-        
-        // 상태 초기화
-        messageSinceLastSummary = 0; // 카운트 리셋
-        isSummarizing = false;
-        
-        Platform.runLater(() -> {
+
+        if (!isAiResponding) {
+            logTimeToFirstToken();
             chatWebView.hideSpinner();
-            // chatWebView.appendSystemMessage("✅ 대화 내용이 요약되었습니다."); // 사용자에게 굳이 안 알려줘도 됨
-            updateState(false);
-        });
+            currentAiMessage = new ChatMessage("ai", "");
+            showLatestMessages();
+            messageHistory.add(currentAiMessage);
+            contextBuilder.add(currentAiMessage);
+            latestMessage = currentAiMessage;
+
+            // AI 메시지 시작 시점에 일단 빈 내용으로 저장 (ID 확보)
+            chatWriter.save(currentAiMessage);
+
+            currentRenderer = new StreamingMarkdownRenderer();
+            chatWebView.startAiMessage(currentAiMessage.getId(), currentRenderer);
+            trimWindow(true);
+            isAiResponding = true;
+            currentAiText.setLength(0);
+            checkpointSeq = 0;
+            checkpointedLength = 0;
+            lastCheckpointAt = System.nanoTime();
+        }
+
+        StreamingMarkdownRenderer renderer = currentRenderer;
+        if (currentAiMessage == null || renderer == null) return;
+
+        // 전체 문자열 재생성은 완료 시점(renderAndCheckTool)에 한 번만 수행
+        currentAiText.append(token);
+        renderer.append(token);
+        chatWebView.streamAiToken(token);
+        checkpointStreamingAnswer();
+    }
+
+    // 답변 중간 저장: 전체 content를 다시 쓰지 않고 새로 받은 부분만 조각으로 추가
+    private void checkpointStreamingAnswer() {
+        int unsaved = currentAiText.length() - checkpointedLength;
+        if (unsaved <= 0) return;
+        long now = System.nanoTime();
+        if (unsaved < CHECKPOINT_MAX_CHARS && now - lastCheckpointAt < CHECKPOINT_INTERVAL_NANOS) return;
+
+        chatWriter.appendSegment(new MessageSegment(currentAiMessage.getId(), checkpointSeq++,
+                currentAiText.substring(checkpointedLength)));
+        checkpointedLength = currentAiText.length();
+        lastCheckpointAt = now;
+    }
+
+    // 요약에서 제외할 메시지: 스트리밍 중인 답변 또는 도구 승인을 기다리는 답변
+    private String inProgressMessageId() {
+        ChatMessage streaming = currentAiMessage;
+        if (streaming != null) return streaming.getId();
+        ChatMessage latest = latestMessage;
+        if (pendingToolJson != null && latest != null) return latest.getId();
+        return null;
     }
 
     public void sendMessage(String msg) {
-        if (msg.trim().isEmpty() || isSummarizing) return; // 요약 중엔 입력 차단
+        if (msg.trim().isEmpty()) return;
         
-        stopRequested = false;
+        // 중단 직후라도 바로 보냄: 백엔드가 중단 확인 뒤에 순서대로 처리
+        awaitingResponse = true;
         ChatMessage userMessage = new ChatMessage("user", msg);
+        showLatestMessages();
         messageHistory.add(userMessage);
+        latestMessage = userMessage;
         
         // 사용자 메시지 저장
-        chatRepository.save(userMessage);
-        // 메시지 추가됨 -> 카운트 증가
-        messageSinceLastSummary++;
+        chatWriter.save(userMessage);
         
         chatWebView.appendUserMessage(msg, userMessage.getId());
+        trimWindow(true);
         updateState(true); // 버튼: 전송 -> 중지
         isAiResponding = false; 
         
-        pythonService.sendMessage(msg);
+        contextBuilder.add(userMessage);
+        turnExecutor.execute(() -> sendTurn(msg));
+    }
+
+    // chat-turn 스레드: 시스템 프롬프트 + 요약 + 관련 기억 + 최근 대화를 예산에 맞춰 함께 보냄 (백엔드 기록은 이걸로 교체)
+    private void sendTurn(String msg) {
+        requestStartedAt = System.nanoTime();
+        AppConfigService config = AppConfigService.load();
+        String memory = semanticMemory.recall(msg, config.getMemoryTopK(), contextBuilder.recentIds());
+        ContextBuilder.Context context = contextBuilder.build(config.getSystemPrompt(), memory);
+        lastContext = context;
+        JsonObject request = new JsonObject();
+        request.add("messages", context.messages());
+        request.addProperty("num_ctx", config.getContextTokens());
+        backend.sendMessage("CHAT:" + gson.toJson(request));
+    }
+
+    // 이번 턴이 쓴 토큰 (입력: 보낸 문맥 추정치, 출력: 답변 추정치)
+    private void logTurnUsage(String reply) {
+        ContextBuilder.Context context = lastContext;
+        if (context == null) return;
+        System.out.println("[CONTEXT] 턴 사용량: " + context + ", 출력 ~"
+                + ContextBuilder.estimateTokens(reply) + " 토큰");
+    }
+
+    // 요청 전송 ~ 첫 토큰 도착까지의 시간 (백엔드 간 비교용)
+    private void logTimeToFirstToken() {
+        long startedAt = requestStartedAt;
+        if (startedAt == 0) return;
+        requestStartedAt = 0;
+        long millis = (System.nanoTime() - startedAt) / 1_000_000;
+        System.out.println("[TTFT] " + backend.getClass().getSimpleName() + ": 첫 토큰까지 " + millis + " ms");
     }
 
     public void stopGeneration() {
         stopRequested = true;
+        awaitingResponse = false;
+        cancelRequestedAt = System.nanoTime();
+        turnExecutor.execute(backend::cancel); // 백엔드의 스트림까지 실제로 닫음 (아직 보내지 않은 요청 뒤에)
+        toolManager.cancelRunningTools(); // 실행 중인 도구와 그 프로세스도 중단
+
+        finishAiMessage(); // 지금까지 받은 내용은 렌더링하고 저장
         isAiResponding = false;
-        finishAiMessage();
         chatWebView.hideSpinner();
         chatWebView.appendSystemMessage("⛔ 사용자에 의해 중단되었습니다.");
         updateState(false);
     }
 
+    // 백엔드가 생성을 멈췄음: 이후 토큰은 새 요청의 것
+    private void onCancelAcknowledged() {
+        stopRequested = false;
+        long startedAt = cancelRequestedAt;
+        if (startedAt != 0) {
+            cancelRequestedAt = 0;
+            long millis = (System.nanoTime() - startedAt) / 1_000_000;
+            System.out.println("[CANCEL] " + backend.getClass().getSimpleName() + ": 중지 후 백엔드 정지까지 " + millis + " ms");
+        }
+    }
+
     private void finishAiMessage() {
         if (isAiResponding) {
             renderAndCheckTool(currentAiMessage, currentAiText.toString());
             
-            // AI 답변 완료 시 최종 내용 DB 업데이트 (HTML 포함된 내용일 수 있음)
+            // AI 답변 완료 시 최종 내용 DB 업데이트 (HTML 포함된 내용일 수 있음) + 중간 저장 조각 정리
             if (currentAiMessage != null) {
-                chatRepository.updateContent(currentAiMessage.getId(), currentAiMessage.getContent());
+                chatWriter.completeMessage(currentAiMessage.getId(), currentAiMessage.getContent());
+                logTurnUsage(contentForModel(currentAiMessage));
             }
             
             chatWebView.finishAiMessage();
             isAiResponding = false;
             currentAiText.setLength(0);
             currentAiMessage = null;
+            currentRenderer = null;
             chatWebView.hideSpinner();
             updateState(false);
             
-            // [NEW] 응답 완료 후 요약 필요 여부 체크
-            checkAndSummarize();
+            // 응답 완료 후 요약 필요 여부 체크 (백그라운드, 입력은 막지 않음)
+            summaryPipeline.requestIfNeeded();
+            semanticMemory.requestIndexing();
         }
     }
     
@@ -373,26 +444,23 @@ public class ChatService {
         
         ChatMessage target = getCurrentOrLastAiMessage();
         if (target != null) {
-            String status = isCancel ? "취소됨" : "거절됨";
-            String color = isCancel ? "#757575" : "#FF5252";
-            String msg = isCancel ? "❌ 취소했습니다." : "🚫 거절했습니다.";
-            
-            String html = String.format(
-                "\n\n<div class='approval-container' style='border-color: %s;'>" +
-                "<div class='approval-content'><b>[%s]</b> %s</div></div>", 
-                color, status, msg
-            );
-            renderAndCheckTool(target, target.getContent() + html);
-            
-            // 거절/취소 결과도 DB 업데이트
-            chatRepository.updateContent(target.getId(), target.getContent());
+            // 거절/취소도 도구 호출 기록으로 남김 (결과 박스는 기록으로 그림)
+            JsonObject request;
+            try {
+                request = parseToolRequest(pendingToolJson);
+            } catch (RuntimeException e) {
+                request = new JsonObject(); // 깨진 요청도 거절/취소는 기록
+            }
+            ToolCall call = new ToolCall(target.getId(), toolNameOf(request), paramsOf(request),
+                    isCancel ? ToolCall.CANCELLED : ToolCall.REJECTED, isCancel ? null : "User rejected.", null, 0);
+            recordToolCall(target, call);
             
             if (!isCancel) { 
                 // 거절은 AI에게 알려줌
                 JsonObject result = new JsonObject();
                 result.addProperty("status", "Rejected");
                 result.addProperty("output", "User rejected.");
-                pythonService.sendToolResult(gson.toJson(result));
+                backend.sendToolResult(gson.toJson(result));
             } else {
                 // 취소는 그냥 끝냄
                 updateState(false);
@@ -407,18 +475,32 @@ public class ChatService {
         if (message == null) return;
         message.setContent(fullText);
 
+        ParsedReply reply = parseReply(fullText);
+        String jsonPart = reply.toolJson();
+        boolean answered = !message.getToolCalls().isEmpty();
+
+        // 도구 결과 박스는 저장된 호출 기록으로 그림
+        String renderedMarkdown = renderMarkdown(message, reply.text());
+        chatWebView.refreshMessage(message.getId(), renderedMarkdown + HtmlUtil.toolCallsHtml(message.getToolCalls()));
+
+        // 승인 박스 요청 (이미 실행/거절된 요청이면 다시 묻지 않음)
+        if (jsonPart != null && !answered) {
+            requestUserPermission(jsonPart);
+        } else if (this.pendingToolJson != null && !answered) {
+            this.pendingToolJson = null;
+            chatWebView.removeApprovalBox();
+        }
+    }
+
+    // AI 답변 원문 -> (화면용 본문, 도구 요청 JSON)
+    private record ParsedReply(String text, String toolJson) {
+    }
+
+    private static ParsedReply parseReply(String fullText) {
         String toolRequestPrefix = "TOOL_REQUEST:";
         String jsonPart = null;
         
         String userTextPart = fullText;
-        String resultHtmlPart = "";
-        
-        // 결과 HTML 분리
-        int resultIdx = fullText.indexOf("<div class='approval-container'");
-        if (resultIdx != -1) {
-            userTextPart = fullText.substring(0, resultIdx);
-            resultHtmlPart = fullText.substring(resultIdx);
-        }
 
         // 도구 요청 JSON 추출 (기존 정교한 로직 유지)
         int toolIdx = userTextPart.indexOf(toolRequestPrefix);
@@ -469,28 +551,22 @@ public class ChatService {
             }
         }
 
-        String renderedMarkdown = HtmlUtil.markdownToHtml(userTextPart);
-        chatWebView.refreshMessage(message.getId(), renderedMarkdown + resultHtmlPart);
+        return new ParsedReply(userTextPart, jsonPart);
+    }
 
-        // 승인 박스 요청
-        if (jsonPart != null && resultHtmlPart.isEmpty()) {
-            requestUserPermission(jsonPart);
-        } else {
-            if ((this.pendingToolJson != null || !resultHtmlPart.isEmpty()) && resultHtmlPart.isEmpty()) {
-                this.pendingToolJson = null;
-                chatWebView.removeApprovalBox();
-            }
+    // 스트리밍으로 이미 렌더링된 메시지면 남은 블록만 렌더링, 아니면 전체 변환
+    private String renderMarkdown(ChatMessage message, String markdown) {
+        StreamingMarkdownRenderer renderer = currentRenderer;
+        if (renderer != null && message == currentAiMessage && renderer.hasSameSource(markdown)) {
+            return renderer.finish();
         }
+        return HtmlUtil.markdownToHtml(markdown);
     }
 
     private void requestUserPermission(String jsonStr) {
         try {
-            int startIdx = jsonStr.indexOf("{");
-            int endIdx = jsonStr.lastIndexOf("}");
-            String cleanJson = jsonStr.substring(startIdx, endIdx + 1);
-            
-            JsonObject request = JsonParser.parseString(cleanJson).getAsJsonObject();
-            String toolName = request.has("tool") ? request.get("tool").getAsString() : "unknown";
+            JsonObject request = parseToolRequest(jsonStr);
+            String toolName = toolNameOf(request);
             String params = request.has("params") ? request.get("params").toString() : "{}";
             
             this.pendingToolJson = jsonStr;
@@ -504,69 +580,122 @@ public class ChatService {
 
     // --- 도구 실행 (백그라운드) ---
 
+    // 실행은 ToolManager(ToolExecutor의 가상 스레드)에서, 결과 처리는 실행이 끝난 스레드에서
     private void handleToolRequest(String jsonStr) {
-        new Thread(() -> {
-            try {
-                int startIdx = jsonStr.indexOf("{");
-                int endIdx = jsonStr.lastIndexOf("}");
-                String cleanJson = jsonStr.substring(startIdx, endIdx + 1);
-                
-                JsonReader reader = new JsonReader(new StringReader(cleanJson));
-                reader.setLenient(true);
-                JsonObject request = JsonParser.parseReader(reader).getAsJsonObject();
-                
-                String toolName = request.has("tool") ? request.get("tool").getAsString() : "unknown";
-                JsonObject params = null;
-                ToolResult resultObj;
-
-                if (request.has("params") && request.get("params").isJsonObject()) {
-                    params = request.getAsJsonObject("params");
-                    resultObj = toolManager.executeTool(toolName, params);
-                } else {
-                    String usage = toolManager.getToolUsage(toolName);
-                    resultObj = new ToolResult(false, "파라미터 오류", "올바른 사용법: " + usage);
-                }
-                
-                boolean finalSuccess = resultObj.isSuccess();
-                String finalOutput = resultObj.toAiMessage();
-
-                JsonObject result = new JsonObject();
-                result.addProperty("status", finalSuccess ? "success" : "error");
-                result.addProperty("output", finalOutput);
-                pythonService.sendToolResult(gson.toJson(result));
+        String toolName;
+        String paramsJson;
+        CompletableFuture<ToolResult> execution;
+        try {
+            JsonObject request = parseToolRequest(jsonStr);
+            toolName = toolNameOf(request);
+            if (request.has("params") && request.get("params").isJsonObject()) {
+                JsonObject params = request.getAsJsonObject("params");
+                paramsJson = params.toString();
+                execution = toolManager.submitTool(toolName, params, chatWebView::appendToolOutput); // 출력은 실행 중에 바로 화면으로
+            } else {
+                paramsJson = null;
+                String usage = toolManager.getToolUsage(toolName);
+                execution = CompletableFuture.completedFuture(new ToolResult(false, "파라미터 오류", "올바른 사용법: " + usage));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendToolError("Java Error: " + e.getMessage());
+            return;
+        }
 
+        execution.whenComplete((resultObj, error) -> {
+            if (error instanceof CancellationException) {
+                // 사용자가 중지함: 모델에는 결과를 보내지 않고 (새 생성이 시작되므로) 취소 기록만 남김
                 Platform.runLater(() -> {
                     ChatMessage target = getCurrentOrLastAiMessage();
                     if (target != null) {
-                        String oldContent = target.getContent();
-                        String statusIcon = finalSuccess ? "✅" : "❌";
-                        String statusColor = finalSuccess ? "#00FF00" : "#FF5252";
-                        String safeOutput = finalOutput.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
-                        
-                        String appendContent = "\n\n" +
-                                "<div class='approval-container' style='border-color: " + statusColor + ";'>" +
-                                    "<div class='approval-content'><b>[" + toolName + "]</b> " + statusIcon + "</div>" +
-                                    "<div class='approval-result' style='color: " + statusColor + ";'>" + safeOutput + "</div>" +
-                                "</div>";
-                        
-                        if (!oldContent.contains(finalOutput)) {
-                             renderAndCheckTool(target, oldContent + appendContent);
-                             // 도구 실행 결과 추가 후 DB 업데이트!
-                             chatRepository.updateContent(target.getId(), target.getContent());
-                        }
-                    } else {
-                        chatWebView.updateApprovalResult(finalOutput, finalSuccess);
+                        recordToolCall(target, new ToolCall(target.getId(), toolName, paramsJson, ToolCall.CANCELLED, null, null, 0));
                     }
                 });
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                JsonObject errorResult = new JsonObject();
-                errorResult.addProperty("status", "error");
-                errorResult.addProperty("output", "Java Error: " + e.getMessage());
-                pythonService.sendToolResult(gson.toJson(errorResult));
+            } else if (error != null) {
+                error.printStackTrace();
+                sendToolError("Java Error: " + error.getMessage());
+            } else {
+                deliverToolResult(toolName, paramsJson, resultObj);
             }
-        }).start();
+        });
+    }
+
+    private void deliverToolResult(String toolName, String paramsJson, ToolResult resultObj) {
+        try {
+            boolean finalSuccess = resultObj.isSuccess();
+            String finalOutput = resultObj.toAiMessage();
+
+            // 큰 결과는 BlobStore에 한 번만 저장하고, 호출 기록(DB/화면/기억 복원)에는 앞부분과 참조만 남김
+            String blobId = finalOutput.length() > TOOL_OUTPUT_INLINE_LIMIT ? BlobStore.getInstance().put(finalOutput) : null;
+            String displayOutput = blobId != null ? previewOf(finalOutput) : finalOutput;
+
+            JsonObject result = new JsonObject();
+            result.addProperty("status", finalSuccess ? "success" : "error");
+            result.addProperty("output", finalOutput);
+            backend.sendToolResult(gson.toJson(result));
+
+            Platform.runLater(() -> {
+                ChatMessage target = getCurrentOrLastAiMessage();
+                if (target != null) {
+                    // 같은 결과가 이미 기록되어 있으면 (중복 요청) 다시 붙이지 않음
+                    boolean duplicate = target.getToolCalls().stream().anyMatch(c ->
+                            c.getToolName().equals(toolName) && displayOutput.equals(c.getOutput()));
+                    if (!duplicate) {
+                        recordToolCall(target, new ToolCall(target.getId(), toolName, paramsJson,
+                                finalSuccess ? ToolCall.SUCCESS : ToolCall.ERROR, displayOutput, blobId, finalOutput.length()));
+                    }
+                } else {
+                    chatWebView.updateApprovalResult(HtmlUtil.escape(displayOutput), finalSuccess);
+                }
+            });
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendToolError("Java Error: " + e.getMessage());
+        }
+    }
+
+    private void sendToolError(String message) {
+        JsonObject errorResult = new JsonObject();
+        errorResult.addProperty("status", "error");
+        errorResult.addProperty("output", message);
+        backend.sendToolResult(gson.toJson(errorResult));
+    }
+
+    // 답변에 도구 호출 기록을 붙이고 (화면/문맥 후보/저장소) 결과 박스를 다시 그림
+    private void recordToolCall(ChatMessage target, ToolCall call) {
+        target.addToolCall(call);
+        contextBuilder.addToolCall(call);
+        chatWriter.saveToolCall(call);
+        renderAndCheckTool(target, target.getContent());
+    }
+
+    // "TOOL_REQUEST: {...}"에서 JSON 부분만 (모델이 쓴 JSON이라 느슨하게 읽음)
+    private static JsonObject parseToolRequest(String jsonStr) {
+        int startIdx = jsonStr.indexOf("{");
+        int endIdx = jsonStr.lastIndexOf("}");
+        JsonReader reader = new JsonReader(new StringReader(jsonStr.substring(startIdx, endIdx + 1)));
+        reader.setLenient(true);
+        return JsonParser.parseReader(reader).getAsJsonObject();
+    }
+
+    private static String toolNameOf(JsonObject request) {
+        return request.has("tool") ? request.get("tool").getAsString() : "unknown";
+    }
+
+    private static String paramsOf(JsonObject request) {
+        return request.has("params") ? request.get("params").toString() : null;
+    }
+
+    private static String previewOf(String output) {
+        int cut = TOOL_OUTPUT_PREVIEW;
+        if (Character.isHighSurrogate(output.charAt(cut - 1))) cut--; // 이모지 등을 반으로 자르지 않음
+        return output.substring(0, cut) + "\n… (생략됨: 전체 " + HtmlUtil.formatSize(output.length()) + ")";
+    }
+
+    public String getToolOutput(String blobId) {
+        return BlobStore.getInstance().get(blobId);
     }
 
     public String getMessageContent(String id) {
@@ -579,19 +708,183 @@ public class ChatService {
                 .findFirst().ifPresent(m -> {
                     renderAndCheckTool(m, content);
                     // DB에도 수정된 내용 반영!
-                    chatRepository.updateContent(id, content);
+                    chatWriter.updateContent(id, content);
+                    contextBuilder.update(id, content);
                 });
     }
 
+    // --- 대화 기록 검색 ---
+
+    public List<SearchHit> searchHistory(String query, int limit) {
+        return HistorySearchIndex.getInstance().search(query, limit);
+    }
+
+    // 검색 결과로 이동: 화면 범위에 없으면 그 메시지 앞뒤 한 페이지씩으로 화면을 바꾼 뒤 이동 (FX 스레드에서 호출)
+    public void jumpToMessage(String id) {
+        if (messageHistory.stream().anyMatch(m -> m.getId().equals(id))) {
+            chatWebView.scrollToMessage(id);
+            return;
+        }
+        if (!canReplaceView()) {
+            chatWebView.appendSystemMessage("🔍 답변이 끝난 뒤에 다시 눌러주세요.");
+            return;
+        }
+
+        long request = ++viewRequest;
+        historyExecutor.execute(() -> {
+            if (request != viewRequest) return; // 그 사이 다른 이동/페이지 요청이 들어옴
+            chatWriter.flush(1_000); // 아직 저장 대기 중인 최근 메시지까지 조회되도록
+            List<ChatMessage> found = chatRepository.findMessagesByIds(List.of(id));
+            if (found.isEmpty()) return;
+            ChatMessage target = found.get(0);
+            List<ChatMessage> older = chatRepository.findMessagesBefore(target, PAGE_SIZE);
+            List<ChatMessage> newer = chatRepository.findMessagesAfter(target, PAGE_SIZE);
+            List<ChatMessage> window = new ArrayList<>(older);
+            window.add(target);
+            window.addAll(newer);
+            String json = toMessagesJson(window);
+
+            Platform.runLater(() -> {
+                if (request != viewRequest || !canReplaceView()) return;
+                messageHistory.clear();
+                messageHistory.addAll(window);
+                viewDetached = newer.size() == PAGE_SIZE;
+                chatWebView.resetMessages(json, older.size() == PAGE_SIZE, viewDetached);
+                chatWebView.scrollToMessage(id);
+            });
+        });
+    }
+
+    // --- 화면 범위 페이징 (JS 스크롤 -> JavaBridge -> 여기) ---
+
+    public void loadOlder(String firstId) {
+        ChatMessage first = messageHistory.isEmpty() ? null : messageHistory.get(0);
+        if (first == null || !first.getId().equals(firstId)) {
+            chatWebView.pageLoaded();
+            return;
+        }
+        long request = ++viewRequest;
+        historyExecutor.execute(() -> {
+            if (request != viewRequest) { // 더 새로운 요청이 있음 (JS는 다음 스크롤에서 다시 요청)
+                chatWebView.pageLoaded();
+                return;
+            }
+            List<ChatMessage> page = chatRepository.findMessagesBefore(first, PAGE_SIZE);
+            String json = toMessagesJson(page);
+            Platform.runLater(() -> {
+                if (request != viewRequest || messageHistory.isEmpty() || messageHistory.get(0) != first) { // 그 사이 화면이 바뀜
+                    chatWebView.pageLoaded();
+                    return;
+                }
+                messageHistory.addAll(0, page);
+                chatWebView.prependMessages(json, page.size() == PAGE_SIZE);
+                trimWindow(false);
+            });
+        });
+    }
+
+    public void loadNewer(String lastId) {
+        ChatMessage last = messageHistory.isEmpty() ? null : messageHistory.get(messageHistory.size() - 1);
+        if (!viewDetached || last == null || !last.getId().equals(lastId)) {
+            chatWebView.pageLoaded();
+            return;
+        }
+        long request = ++viewRequest;
+        historyExecutor.execute(() -> {
+            if (request != viewRequest) {
+                chatWebView.pageLoaded();
+                return;
+            }
+            chatWriter.flush(1_000);
+            List<ChatMessage> page = chatRepository.findMessagesAfter(last, PAGE_SIZE);
+            String json = toMessagesJson(page);
+            Platform.runLater(() -> {
+                if (request != viewRequest || messageHistory.isEmpty() || messageHistory.get(messageHistory.size() - 1) != last) {
+                    chatWebView.pageLoaded();
+                    return;
+                }
+                messageHistory.addAll(page);
+                viewDetached = page.size() == PAGE_SIZE;
+                chatWebView.appendMessages(json, viewDetached);
+                trimWindow(true);
+            });
+        });
+    }
+
+    // 범위가 WINDOW_SIZE를 넘으면 반대쪽 끝을 버림 (화면 DOM과 messageHistory를 같이)
+    private void trimWindow(boolean fromTop) {
+        int excess = messageHistory.size() - WINDOW_SIZE;
+        if (excess <= 0) return;
+        if (fromTop) {
+            messageHistory.subList(0, excess).clear();
+        } else {
+            if (!canReplaceView()) return; // 답변/승인 대기 중인 마지막 메시지는 남겨둠
+            messageHistory.subList(messageHistory.size() - excess, messageHistory.size()).clear();
+            viewDetached = true;
+        }
+        chatWebView.trimMessages(fromTop, excess);
+    }
+
+    // 새 메시지를 붙이기 전에: 위로 스크롤해서 최근 범위를 벗어나 있었다면 화면을 비우고 최근 메시지로 되돌림
+    // 새 메시지는 바로 붙이고, 그 앞의 최근 메시지는 chat-history 스레드에서 조회해서 위에 채움 (FX 스레드에서 저장소를 기다리지 않음)
+    private void showLatestMessages() {
+        if (!viewDetached) return;
+        long request = ++viewRequest;
+        messageHistory.clear();
+        viewDetached = false;
+        chatWebView.resetMessages("[]", true, false);
+        historyExecutor.execute(() -> {
+            if (request != viewRequest) return; // 이미 위로 스크롤해서 페이지를 불러오는 중
+            chatWriter.flush(1_000);
+            List<ChatMessage> recent = chatRepository.findRecentMessages(INITIAL_LOAD);
+            Platform.runLater(() -> {
+                if (request != viewRequest) return;
+                Set<String> shown = new HashSet<>();
+                for (ChatMessage message : messageHistory) shown.add(message.getId());
+                List<ChatMessage> older = recent.stream().filter(m -> !shown.contains(m.getId())).toList();
+                messageHistory.addAll(0, older);
+                chatWebView.prependMessages(toMessagesJson(older), recent.size() == INITIAL_LOAD);
+            });
+        });
+    }
+
+    private boolean canReplaceView() {
+        return !isResponding() && pendingToolJson == null;
+    }
+
+    private String toMessagesJson(List<ChatMessage> messages) {
+        com.google.gson.JsonArray array = new com.google.gson.JsonArray();
+        for (ChatMessage msg : messages) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("id", msg.getId());
+            boolean user = "user".equals(msg.getRole());
+            obj.addProperty("user", user);
+            if (user) {
+                obj.addProperty("text", msg.getContent());
+            } else {
+                ParsedReply reply = parseReply(msg.getContent() != null ? msg.getContent() : "");
+                obj.addProperty("html", HtmlUtil.markdownToHtml(reply.text()) + HtmlUtil.toolCallsHtml(msg.getToolCalls()));
+            }
+            array.add(obj);
+        }
+        return gson.toJson(array);
+    }
+
     private ChatMessage getCurrentOrLastAiMessage() {
         if (currentAiMessage != null) return currentAiMessage;
-        if (!messageHistory.isEmpty()) {
-            ChatMessage last = messageHistory.get(messageHistory.size() - 1);
-            if ("ai".equals(last.getRole())) return last;
-        }
+        if (latestMessage != null && "ai".equals(latestMessage.getRole())) return latestMessage;
         return null;
     }
 
-    public boolean isResponding() { return isAiResponding || stopRequested; }
-    public void shutdown() { pythonService.stop(); }
+    public boolean isResponding() { return isAiResponding || awaitingResponse; }
+    public void shutdown() {
+        ConfigHolder.getInstance().unsubscribe(configListener);
+        summaryPipeline.shutdown();
+        semanticMemory.shutdown();
+        turnExecutor.shutdownNow();
+        historyExecutor.shutdownNow();
+        toolManager.close();
+        PythonWorkerPool.shutdownIfStarted(); // run_python 상주 작업자 종료
+        backend.stop();
+    }
 }
\ No newline at end of file
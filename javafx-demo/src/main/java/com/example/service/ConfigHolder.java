@@ -0,0 +1,165 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 현재 설정 스냅샷을 들고 있는 곳.
+ * - 처음 한 번만 디스크에서 읽고, 이후 AppConfigService.load()는 같은 (수정 불가) 객체를 돌려줌
+ * - config/modelConfig, config/database 폴더를 감시하다가 설정 파일이 바뀌면 다시 읽어서 교체
+ * - 내용이 실제로 바뀌었을 때만 구독자에게 (이전, 새) 스냅샷을 알림 (감시 스레드 또는 save()를 호출한 스레드에서 실행)
+ * 저장 도중이라 파일이 깨져 있으면 이전 스냅샷을 그대로 유지합니다.
+ */
+public final class ConfigHolder {
+
+    private static final ConfigHolder instance = new ConfigHolder();
+
+    // 에디터는 한 번 저장할 때 이벤트를 여러 번 보내므로 잠깐 모아서 한 번만 다시 읽음
+    private static final long DEBOUNCE_MS = 200;
+    private static final Set<String> WATCHED_FILES = Set.of(
+            AppConfigService.CONFIG_PATH.getFileName().toString(),
+            AppConfigService.SYSTEM_PROMPT_PATH.getFileName().toString(),
+            AppConfigService.DB_CONFIG_PATH.getFileName().toString());
+
+    private final List<BiConsumer<AppConfigService, AppConfigService>> listeners = new CopyOnWriteArrayList<>();
+    private volatile AppConfigService current;
+    private WatchService watchService;
+
+    private ConfigHolder() {
+    }
+
+    public static ConfigHolder getInstance() {
+        return instance;
+    }
+
+    public AppConfigService get() {
+        AppConfigService config = current;
+        if (config != null) return config;
+        synchronized (this) {
+            if (current == null) {
+                try {
+                    config = AppConfigService.readFromDisk(false);
+                } catch (IOException e) {
+                    e.printStackTrace(); // strict가 아니면 발생하지 않음
+                    config = new AppConfigService();
+                }
+                config.freeze();
+                current = config;
+            }
+            return current;
+        }
+    }
+
+    // (이전 스냅샷, 새 스냅샷) - 구독자는 필요한 값만 비교해서 처리
+    public void subscribe(BiConsumer<AppConfigService, AppConfigService> listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(BiConsumer<AppConfigService, AppConfigService> listener) {
+        listeners.remove(listener);
+    }
+
+    // 디스크에서 다시 읽어서 바뀌었으면 교체 후 알림 (바뀌었으면 true)
+    public boolean reload() {
+        AppConfigService previous;
+        AppConfigService next;
+        synchronized (this) {
+            previous = get();
+            try {
+                next = AppConfigService.readFromDisk(true);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[CONFIG] 설정을 다시 읽지 못해 이전 설정을 유지합니다: " + e.getMessage());
+                return false;
+            }
+            if (AppConfigService.sameContent(previous, next)) return false;
+            next.freeze();
+            current = next;
+        }
+        System.out.println("[CONFIG] 설정 변경 적용: " + next.getModelName());
+        for (BiConsumer<AppConfigService, AppConfigService> listener : listeners) {
+            try {
+                listener.accept(previous, next);
+            } catch (RuntimeException e) {
+                System.err.println("[CONFIG] 설정 변경 처리 중 오류!");
+                e.printStackTrace();
+            }
+        }
+        return true;
+    }
+
+    // 설정 폴더 감시 시작 (앱 시작 시 한 번)
+    public synchronized void startWatching() {
+        if (watchService != null) return;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path file : List.of(AppConfigService.CONFIG_PATH, AppConfigService.DB_CONFIG_PATH)) {
+                Path dir = file.toAbsolutePath().getParent();
+                Files.createDirectories(dir);
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException e) {
+            System.err.println("설정 폴더 감시 시작 실패!");
+            e.printStackTrace();
+            stopWatching();
+            return;
+        }
+
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> watchLoop(service), "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stopWatching() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        watchService = null;
+    }
+
+    private void watchLoop(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = drain(key);
+                // 이어서 들어오는 이벤트는 모아서 한 번에 처리
+                while ((key = service.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key);
+                }
+                if (changed) reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopWatching()으로 종료
+        }
+    }
+
+    private static boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (event.context() instanceof Path name && WATCHED_FILES.contains(name.toString())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -0,0 +1,516 @@
+package com.example.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 작은 크기의 JDBC 커넥션 풀.
+ * - getConnection()으로 빌린 커넥션은 close() 시 실제로 닫히지 않고 풀로 반환됩니다 (try-with-resources 사용).
+ * - 빌릴 때 검증(isValid), 유휴 커넥션 정리, 반환되지 않는 커넥션(누수) 경고, 대기 시간 통계를 제공합니다.
+ * - 커넥션에서 만든 Statement/ResultSet도 감싸서, 쿼리 실행 중 연결 오류(SQLState 08xxx)가 나면 그 커넥션은 반환 시 폐기합니다.
+ * - DB가 내려가 있으면 연결 생성을 잠시 멈춰서 (백오프) 모든 스레드가 동시에 재접속을 시도하지 않도록 합니다.
+ */
+public class ConnectionPool {
+
+    // 실제 커넥션 생성 함수 (DriverManager 호출)
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    // 풀 설정 (db_config.json의 "pool" 항목)
+    public static class Settings {
+        int minIdle = 1;
+        int maxSize = 4;
+        long borrowTimeoutMs = 5_000;
+        long idleTimeoutMs = 10 * 60_000;
+        long leakThresholdMs = 30_000;      // 0이면 누수 감지 끔
+        boolean leakStackTrace = false;     // 누수 경고에 빌려간 위치(스택) 출력 (빌릴 때마다 스택을 만들므로 디버깅용)
+        long validationBypassMs = 500;      // 최근에 오류 없이 쓴 커넥션은 검증 생략
+        long maxCreateBackoffMs = 30_000;
+
+        public Settings minIdle(int v) { minIdle = v; return this; }
+        public Settings maxSize(int v) { maxSize = v; return this; }
+        public Settings borrowTimeoutMs(long v) { borrowTimeoutMs = v; return this; }
+        public Settings idleTimeoutMs(long v) { idleTimeoutMs = v; return this; }
+        public Settings leakThresholdMs(long v) { leakThresholdMs = v; return this; }
+        public Settings leakStackTrace(boolean v) { leakStackTrace = v; return this; }
+    }
+
+    // 풀이 관리하는 실제 커넥션 하나
+    private static final class Entry {
+        final Connection raw;
+        long lastUsedAt;           // 마지막 반환 시각 (nanoTime)
+        long borrowedAt;
+        String borrowThread;       // 누수 경고 시 빌려간 스레드
+        Throwable borrowSite;      // 누수 경고 시 빌려간 위치 (leakStackTrace일 때만)
+        boolean leakReported;
+        volatile boolean broken;   // 연결 오류(SQLState 08xxx)가 난 커넥션은 반환 시 폐기
+        volatile boolean failed;   // 이번 대여 중 SQLException이 있었으면 다음 대여 때 검증 생략 안 함
+
+        Entry(Connection raw) {
+            this.raw = raw;
+            this.lastUsedAt = System.nanoTime();
+        }
+    }
+
+    private static final long HOUSEKEEPING_INTERVAL_MS = 5_000;
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final Settings settings;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+    private final Set<Entry> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int total = 0;      // idle + inUse + 생성 중
+    private boolean closed = false;
+
+    // 생성 실패 백오프
+    private long createBlockedUntil = 0;
+    private long createBackoffMs = 0;
+
+    private final ScheduledExecutorService housekeeper;
+
+    // 통계
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitNanosTotal = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ConnectionPool(String name, ConnectionFactory factory, Settings settings) {
+        this.name = name;
+        this.factory = factory;
+        this.settings = settings;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 커넥션 대여. 반드시 close()로 반환해야 합니다.
+     * @throws SQLException 풀이 닫혔거나, 대기 시간 초과, 또는 DB 연결 실패 시
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.borrowTimeoutMs);
+
+        while (true) {
+            Entry entry = null;
+            boolean shouldCreate = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) throw new SQLException("[" + name + "] 커넥션 풀이 닫혔습니다.");
+                    entry = idle.pollFirst(); // 최근에 반환된 것부터 (LIFO) -> 오래된 것은 유휴 정리 대상
+                    if (entry != null) break;
+                    long now = System.currentTimeMillis();
+                    boolean backingOff = now < createBlockedUntil;
+                    if (total < settings.maxSize && !backingOff) {
+                        total++; // 자리 예약 후 락 밖에서 생성
+                        shouldCreate = true;
+                        break;
+                    }
+                    if (backingOff && total == 0) {
+                        // 돌려받을 커넥션도 없으니 기다리지 않고 바로 실패
+                        throw new SQLException("[" + name + "] DB 연결 재시도 대기 중 ("
+                                + (createBlockedUntil - now) + " ms 남음)", "08001");
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount.incrementAndGet();
+                        throw new SQLException("[" + name + "] 커넥션 대기 시간 초과 ("
+                                + settings.borrowTimeoutMs + " ms, 사용 중 " + inUse.size() + "/" + settings.maxSize + ")");
+                    }
+                    available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("[" + name + "] 커넥션 대기 중 인터럽트", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (shouldCreate) {
+                entry = createEntry();
+            } else if (!validate(entry)) {
+                continue; // 죽은 커넥션은 폐기하고 다시 시도
+            }
+
+            return lend(entry, start);
+        }
+    }
+
+    private Entry createEntry() throws SQLException {
+        try {
+            Connection raw = factory.create();
+            if (raw == null) throw new SQLException("[" + name + "] 커넥션을 만들 수 없습니다.");
+            createdCount.incrementAndGet();
+            lock.lock();
+            try {
+                createBackoffMs = 0;
+                createBlockedUntil = 0;
+            } finally {
+                lock.unlock();
+            }
+            return new Entry(raw);
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                // 1초부터 두 배씩, 최대 maxCreateBackoffMs
+                createBackoffMs = createBackoffMs == 0 ? 1_000 : Math.min(createBackoffMs * 2, settings.maxCreateBackoffMs);
+                createBlockedUntil = System.currentTimeMillis() + createBackoffMs;
+                available.signal(); // 자리가 비었으니 기다리는 스레드 깨움
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private boolean validate(Entry entry) {
+        if (!entry.failed && System.nanoTime() - entry.lastUsedAt < TimeUnit.MILLISECONDS.toNanos(settings.validationBypassMs)) {
+            return true;
+        }
+        try {
+            if (entry.raw.isValid(2)) return true;
+        } catch (SQLException ignored) {
+            // 아래에서 폐기
+        }
+        validationFailures.incrementAndGet();
+        destroy(entry);
+        return false;
+    }
+
+    private Connection lend(Entry entry, long borrowStart) {
+        long waited = System.nanoTime() - borrowStart;
+        borrowCount.incrementAndGet();
+        waitNanosTotal.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        entry.borrowedAt = System.nanoTime();
+        entry.leakReported = false;
+        entry.failed = false;
+        entry.borrowThread = Thread.currentThread().getName();
+        entry.borrowSite = settings.leakThresholdMs > 0 && settings.leakStackTrace ? new Throwable("커넥션을 빌려간 위치") : null;
+        lock.lock();
+        try {
+            inUse.add(entry);
+        } finally {
+            lock.unlock();
+        }
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new PooledConnectionHandler(entry));
+    }
+
+    // 대여된 커넥션의 close()를 가로채서 풀로 반환
+    private final class PooledConnectionHandler implements InvocationHandler {
+        private final Entry entry;
+        private boolean returned = false;
+
+        PooledConnectionHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.raw.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "]" + entry.raw;
+                default:
+                    break;
+            }
+            if (returned) throw new SQLException("[" + name + "] 이미 반환된 커넥션입니다.");
+            return wrapResult(entry, proxy, invokeTracked(entry, entry.raw, method, args), method);
+        }
+    }
+
+    // 커넥션에서 만든 Statement/ResultSet: 실행 중 오류를 커넥션 기록에 남기고 getConnection()은 풀 커넥션을 돌려줌
+    private final class TrackedHandler implements InvocationHandler {
+        private final Entry entry;
+        private final Object target;
+        private final Object parent; // Statement면 커넥션 프록시, ResultSet이면 Statement 프록시
+
+        TrackedHandler(Entry entry, Object target, Object parent) {
+            this.entry = entry;
+            this.target = target;
+            this.parent = parent;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                case "getStatement":
+                    if (method.getParameterCount() == 0) return parent;
+                    break;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "]" + target;
+                default:
+                    break;
+            }
+            return wrapResult(entry, proxy, invokeTracked(entry, target, method, args), method);
+        }
+    }
+
+    private static Object invokeTracked(Entry entry, Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlEx) {
+                entry.failed = true;
+                if (isConnectionError(sqlEx)) entry.broken = true;
+            }
+            throw cause;
+        }
+    }
+
+    // Statement/PreparedStatement/CallableStatement/ResultSet을 돌려주는 메서드면 결과도 감쌈
+    private Object wrapResult(Entry entry, Object parent, Object result, Method method) {
+        if (result == null) return null;
+        Class<?> type = method.getReturnType();
+        if (type != Statement.class && type != PreparedStatement.class
+                && type != CallableStatement.class && type != ResultSet.class) {
+            return result;
+        }
+        if (Proxy.isProxyClass(result.getClass()) && Proxy.getInvocationHandler(result) instanceof TrackedHandler) {
+            return result; // 이미 감싼 것
+        }
+        return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { type },
+                new TrackedHandler(entry, result, parent));
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("08")) return true;
+        // 드라이버가 SQLState 없이 감싼 경우 (예: 통신 오류 -> SQLException(cause))
+        for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+            if (t instanceof SQLException nested && nested.getSQLState() != null && nested.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void release(Entry entry) {
+        boolean reusable = !entry.broken;
+        if (reusable) {
+            try {
+                // 다음 사용자에게 트랜잭션 상태가 넘어가지 않도록 정리
+                if (!entry.raw.getAutoCommit()) {
+                    entry.raw.rollback();
+                    entry.raw.setAutoCommit(true);
+                }
+                entry.raw.clearWarnings();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        lock.lock();
+        try {
+            inUse.remove(entry);
+            entry.borrowSite = null;
+            entry.borrowThread = null;
+            if (reusable && !closed) {
+                entry.lastUsedAt = System.nanoTime();
+                idle.addFirst(entry);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(entry);
+    }
+
+    private void destroy(Entry entry) {
+        try {
+            entry.raw.close();
+        } catch (SQLException ignored) {
+            // 이미 끊긴 커넥션
+        }
+        destroyedCount.incrementAndGet();
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 주기 작업: 유휴 커넥션 정리, 최소 개수 유지, 누수 경고
+    private void housekeep() {
+        try {
+            List<Entry> expired = new ArrayList<>();
+            List<Entry> leaked = new ArrayList<>();
+            int missing;
+            lock.lock();
+            try {
+                if (closed) return;
+                long now = System.nanoTime();
+                long idleLimit = TimeUnit.MILLISECONDS.toNanos(settings.idleTimeoutMs);
+                // 가장 오래 쉰 것은 덱의 뒤쪽
+                while (total - expired.size() > settings.minIdle && !idle.isEmpty()
+                        && now - idle.peekLast().lastUsedAt > idleLimit) {
+                    expired.add(idle.pollLast());
+                }
+                if (settings.leakThresholdMs > 0) {
+                    long leakLimit = TimeUnit.MILLISECONDS.toNanos(settings.leakThresholdMs);
+                    for (Entry e : inUse) {
+                        if (!e.leakReported && now - e.borrowedAt > leakLimit) {
+                            e.leakReported = true;
+                            leaked.add(e);
+                        }
+                    }
+                }
+                missing = System.currentTimeMillis() < createBlockedUntil
+                        ? 0 : settings.minIdle - (total - expired.size());
+            } finally {
+                lock.unlock();
+            }
+
+            expired.forEach(this::destroy);
+            for (Entry e : leaked) {
+                leakCount.incrementAndGet();
+                long heldMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - e.borrowedAt);
+                System.err.println("[" + name + "] 커넥션 누수 의심: " + heldMs + " ms 동안 반환되지 않음 (스레드 "
+                        + e.borrowThread + (e.borrowSite == null ? ", 위치는 leak_stack_trace로 확인" : "") + ")");
+                Throwable site = e.borrowSite;
+                if (site != null) site.printStackTrace();
+            }
+            for (int i = 0; i < missing; i++) {
+                fillOne();
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void fillOne() {
+        lock.lock();
+        try {
+            if (closed || total >= settings.maxSize) return;
+            total++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Entry entry = createEntry();
+            lock.lock();
+            try {
+                if (!closed) {
+                    idle.addLast(entry);
+                    available.signal();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            destroy(entry);
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[" + name + "] 커넥션 미리 생성 실패: " + e.getMessage());
+        }
+    }
+
+    // 최소 개수만큼 미리 연결 (앱 시작 시)
+    public void warmUp() {
+        for (int i = 0; i < settings.minIdle; i++) {
+            fillOne();
+        }
+    }
+
+    public String getStats() {
+        int idleCount;
+        int inUseCount;
+        int totalCount;
+        lock.lock();
+        try {
+            idleCount = idle.size();
+            inUseCount = inUse.size();
+            totalCount = total;
+        } finally {
+            lock.unlock();
+        }
+        long borrows = borrowCount.get();
+        double avgWaitMs = borrows == 0 ? 0 : waitNanosTotal.get() / 1e6 / borrows;
+        return String.format("[%s] 전체 %d (사용 중 %d, 유휴 %d) | 대여 %d회, 평균 대기 %.3f ms, 최대 대기 %.3f ms, 시간 초과 %d"
+                        + " | 생성 %d, 폐기 %d, 검증 실패 %d, 누수 의심 %d",
+                name, totalCount, inUseCount, idleCount, borrows, avgWaitMs, maxWaitNanos.get() / 1e6,
+                timeoutCount.get(), createdCount.get(), destroyedCount.get(), validationFailures.get(), leakCount.get());
+    }
+
+    // 풀 종료: 유휴 커넥션은 바로 닫고, 사용 중인 커넥션은 반환될 때 닫힘
+    public void close() {
+        List<Entry> toClose;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        toClose.forEach(this::destroy);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.service;
+
+import com.example.model.ChatMessage;
+import com.example.model.ToolCall;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 모델에 보낼 대화 문맥을 토큰 예산(context_tokens - reply_reserve_tokens) 안에 맞춰 만듭니다.
+ * - 이번 차례 메시지(가장 최근)는 항상 포함하고, 그다음 요약, 남은 예산에 이전 대화를 최신순으로 채움
+ * - 예산이 부족하면 먼저 도구 결과를 앞부분만 남기고 줄이며, 그래도 안 들어가는 오래된 대화부터 뺌
+ * - 이번 차례 메시지가 들어갈 자리가 없으면 요약을 줄이거나 빼고, 메시지 자체가 예산보다 크면 잘라서 넣음
+ * - 토큰 수는 글자 종류로 추정하고 메시지 ID별로 캐시 (내용이 바뀌면 다시 계산)
+ * 백엔드는 이 결과를 그대로 대화 기록으로 사용하므로 (CHAT:, RESTORE_AND_GREET:) 문맥이 예산을 넘지 않습니다.
+ */
+public class ContextBuilder {
+
+    private static final int MAX_RECENT = 200;          // 후보로 들고 있는 최근 메시지 수
+    private static final int CACHE_SIZE = 4096;
+    private static final int MESSAGE_OVERHEAD = 4;      // 역할/구분 토큰
+    private static final int TOOL_RESULT_COMPACT = 300; // 줄인 도구 결과 길이 (글자)
+    private static final int MIN_SUMMARY_TOKENS = 32;   // 요약을 이보다 짧게 줄여야 하면 아예 뺌
+    private static final String TRUNCATED_MARK = " …(생략)";
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss EEEE", Locale.ENGLISH);
+
+    private record Estimate(int hash, String full, int fullTokens, String compact, int compactTokens) {
+    }
+
+    /**
+     * @param messages  백엔드에 보낼 대화 기록 (시스템 프롬프트 제외, 요약은 첫 system 메시지)
+     * @param tokens    추정 입력 토큰 수 (시스템 프롬프트 포함)
+     * @param included  포함된 대화 메시지 수
+     * @param truncated 도구 결과를 줄인 메시지 수
+     * @param dropped   예산 때문에 뺀 메시지 수
+     */
+    public record Context(JsonArray messages, int tokens, int budget, int included, int truncated, int dropped) {
+        @Override
+        public String toString() {
+            return String.format("입력 ~%d/%d 토큰 (메시지 %d개, 도구 결과 축약 %d개, 생략 %d개)",
+                    tokens, budget, included, truncated, dropped);
+        }
+    }
+
+    private final Deque<ChatMessage> recent = new ArrayDeque<>(); // 과거순
+    private final Map<String, Estimate> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Estimate> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private String summary = "";
+
+    // 시작 시 저장소의 최근 메시지로 채움 (그 사이 추가된 메시지는 유지)
+    public synchronized void seed(List<ChatMessage> messages) {
+        Deque<ChatMessage> added = new ArrayDeque<>(recent);
+        recent.clear();
+        for (ChatMessage m : messages) {
+            if (added.stream().noneMatch(a -> a.getId().equals(m.getId()))) push(m);
+        }
+        added.forEach(this::push);
+    }
+
+    public synchronized void add(ChatMessage message) {
+        push(message);
+    }
+
+    // 화면에서 편집한 메시지가 다른 객체일 수 있으므로 ID로 찾아 내용 교체
+    public synchronized void update(String id, String content) {
+        for (ChatMessage m : recent) {
+            if (m.getId().equals(id)) m.setContent(content);
+        }
+    }
+
+    // 도구 호출 기록이 화면의 메시지 객체에만 붙었을 수 있으므로 ID로 찾아 추가
+    public synchronized void addToolCall(ToolCall call) {
+        for (ChatMessage m : recent) {
+            if (m.getId().equals(call.getMessageId()) && !m.getToolCalls().contains(call)) m.addToolCall(call);
+        }
+    }
+
+    public synchronized void setSummary(String summary) {
+        this.summary = summary != null ? summary : "";
+    }
+
+    // 최근 대화 후보 (SemanticMemory가 이미 문맥에 있는 메시지를 기억에서 뺄 때 사용)
+    public synchronized Set<String> recentIds() {
+        Set<String> ids = new HashSet<>();
+        for (ChatMessage m : recent) ids.add(m.getId());
+        return ids;
+    }
+
+    private void push(ChatMessage message) {
+        recent.addLast(message);
+        while (recent.size() > MAX_RECENT) recent.removeFirst();
+    }
+
+    /**
+     * @param systemPrompt 백엔드가 들고 있는 시스템 프롬프트 (예산 계산용, 결과에는 넣지 않음)
+     * @param extraSystem  요약 뒤에 붙일 정보 (예: 마지막 대화 시간, 관련 기억), 없으면 null
+     */
+    public synchronized Context build(String systemPrompt, String extraSystem) {
+        AppConfigService config = AppConfigService.load();
+        int budget = config.getContextTokens() - config.getReplyReserveTokens();
+        int used = estimateTokens(systemPrompt) + MESSAGE_OVERHEAD;
+
+        List<ChatMessage> candidates = new ArrayList<>(); // 최신순
+        for (Iterator<ChatMessage> it = recent.descendingIterator(); it.hasNext(); ) {
+            ChatMessage m = it.next();
+            if (modelRole(m) != null) candidates.add(m);
+        }
+        // 이번 차례 메시지는 최소한 도구 결과를 줄인 형태로 들어갈 자리를 먼저 잡아 둠
+        int newestReserve = candidates.isEmpty() ? 0 : estimate(candidates.get(0)).compactTokens();
+
+        // 1. 요약 (SummaryTree가 예산의 1/4에 맞춰 고르지만, 설정이 바뀐 경우를 위해 한 번 더 자름)
+        StringBuilder context = new StringBuilder();
+        if (!summary.isEmpty()) {
+            context.append("Here is the summary of previous conversations (oldest first):\n")
+                    .append(truncateToTokens(summary, summaryBudget(config))).append("\n\n");
+        }
+        if (extraSystem != null) context.append(extraSystem);
+        JsonObject summaryMessage = null;
+        String contextText = context.toString().strip();
+        if (!contextText.isEmpty()) {
+            int room = budget - used - newestReserve - MESSAGE_OVERHEAD;
+            if (estimateTokens(contextText) > room) {
+                contextText = room >= MIN_SUMMARY_TOKENS ? truncateToTokens(contextText, room) : "";
+            }
+            if (!contextText.isEmpty()) {
+                summaryMessage = message("system", contextText);
+                used += estimateTokens(contextText) + MESSAGE_OVERHEAD;
+            }
+        }
+
+        // 2. 최근 대화: 최신순으로 원문 -> 도구 결과 축약 순서로 시도, 둘 다 안 들어가면 거기서 멈춤
+        List<JsonObject> picked = new ArrayList<>();
+        int truncated = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            ChatMessage m = candidates.get(i);
+            String role = modelRole(m);
+            Estimate e = estimate(m);
+            if (used + e.fullTokens() <= budget) {
+                picked.add(message(role, e.full()));
+                used += e.fullTokens();
+            } else if (used + e.compactTokens() <= budget || i == 0) {
+                // 이번 차례 메시지가 줄여도 안 들어가면 (메시지가 예산보다 큼) 남은 예산만큼 잘라서라도 포함
+                String text = used + e.compactTokens() <= budget ? e.compact()
+                        : truncateToTokens(e.compact(), budget - used - MESSAGE_OVERHEAD);
+                picked.add(message(role, text));
+                used += estimateTokens(text) + MESSAGE_OVERHEAD;
+                truncated++;
+            } else {
+                break;
+            }
+        }
+
+        JsonArray messages = new JsonArray();
+        if (summaryMessage != null) messages.add(summaryMessage);
+        for (int i = picked.size() - 1; i >= 0; i--) messages.add(picked.get(i));
+        int dropped = candidates.size() - picked.size();
+        return new Context(messages, used, budget, picked.size(), truncated, dropped);
+    }
+
+    private Estimate estimate(ChatMessage m) {
+        String content = m.getContent() != null ? m.getContent() : "";
+        // 도구 호출 기록은 추가만 되므로 개수로 변경 여부를 알 수 있음
+        int hash = (content.hashCode() * 31 + content.length()) * 31 + m.getToolCalls().size();
+        Estimate cached = cache.get(m.getId());
+        if (cached != null && cached.hash() == hash) return cached;
+
+        String prefix = "user".equals(m.getRole()) ? timeInfo(m.getTimestamp()) : "";
+        String full = prefix + ChatService.contentForModel(m);
+        String compact = prefix + ChatService.contentForModel(m, TOOL_RESULT_COMPACT);
+        Estimate e = new Estimate(hash, full, estimateTokens(full) + MESSAGE_OVERHEAD,
+                compact, estimateTokens(compact) + MESSAGE_OVERHEAD);
+        cache.put(m.getId(), e);
+        return e;
+    }
+
+    // 문맥에서 요약에 쓸 수 있는 토큰 (답변 몫을 뺀 예산의 1/4)
+    public static int summaryBudget() {
+        return summaryBudget(AppConfigService.load());
+    }
+
+    private static int summaryBudget(AppConfigService config) {
+        return (config.getContextTokens() - config.getReplyReserveTokens()) / 4;
+    }
+
+    private static String modelRole(ChatMessage m) {
+        if ("user".equals(m.getRole())) return "user";
+        if ("ai".equals(m.getRole())) {
+            // 아직 첫 토큰도 오지 않은 빈 답변은 제외
+            return m.getContent() == null || m.getContent().isEmpty() ? null : "assistant";
+        }
+        return null; // tool/system 메시지는 보내지 않음
+    }
+
+    // 사용자 메시지 앞에 그 메시지를 보낸 시간 (매 턴 같은 내용이라 앞부분 문맥이 바뀌지 않음)
+    static String timeInfo(LocalDateTime time) {
+        if (time == null) return "";
+        int hour = time.getHour();
+        String period;
+        if (5 <= hour && hour < 12) period = "Morning (아침)";
+        else if (12 <= hour && hour < 18) period = "Afternoon (오후)";
+        else if (18 <= hour && hour < 22) period = "Evening (저녁)";
+        else period = "Night (밤/새벽)";
+        return "[System Info: Current Time is " + time.format(TIME_FORMAT) + ". It is currently " + period + ".]\n";
+    }
+
+    /**
+     * 토큰 수 추정 (토크나이저 없이 글자 종류로 근사, 약간 넉넉하게)
+     * - ASCII: 4글자당 1토큰
+     * - 한글/한자/가나: 1글자당 1토큰
+     * - 그 밖의 문자(이모지 등): 1글자당 2토큰
+     */
+    public static int estimateTokens(CharSequence text) {
+        if (text == null) return 0;
+        int ascii = 0;
+        int tokens = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ascii++;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c)) tokens += 2;
+            } else if (isCjk(c)) {
+                tokens++;
+            } else {
+                tokens += 2;
+            }
+        }
+        return tokens + (ascii + 3) / 4;
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= 0xAC00 && c <= 0xD7A3) || (c >= 0x1100 && c <= 0x11FF) || (c >= 0x3130 && c <= 0x318F)
+                || (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3040 && c <= 0x30FF);
+    }
+
+    // 앞에서부터 maxTokens 안에 들어가는 만큼만 (표시를 붙일 자리도 없으면 빈 문자열)
+    private static String truncateToTokens(String text, int maxTokens) {
+        if (estimateTokens(text) <= maxTokens) return text;
+        int markTokens = estimateTokens(TRUNCATED_MARK);
+        if (maxTokens < markTokens) return "";
+        int lo = 0;
+        int hi = text.length();
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (estimateTokens(text.subSequence(0, mid)) + markTokens <= maxTokens) lo = mid;
+            else hi = mid - 1;
+        }
+        if (lo > 0 && Character.isHighSurrogate(text.charAt(lo - 1))) lo--; // 이모지 등을 반으로 자르지 않음
+        return text.substring(0, lo) + TRUNCATED_MARK;
+    }
+
+    private static JsonObject message(String role, String content) {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("role", role);
+        obj.addProperty("content", content);
+        return obj;
+    }
+}
@@ -1,96 +1,151 @@
 package com.example.service;
 
+import com.example.repository.SchemaMigrator;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseService {
 
-    private static DatabaseService instance;
+    // 쿼리마다 호출되므로 락 없이 반환
+    private static final DatabaseService instance = new DatabaseService();
 
-    private Connection appConnection; // 앱 전용 (관리자)
-    private Connection aiConnection;  // AI 전용 (읽기 전용)
+    // 계정별로 풀을 따로 둠 (빌린 커넥션은 close()로 반환)
+    private volatile ConnectionPool appPool; // 앱 전용 (관리자)
+    private volatile ConnectionPool aiPool;  // AI 전용 (읽기 전용)
+    private volatile boolean schemaChecked = false;
 
     private DatabaseService() {
         // 싱글톤이므로 생성자는 private
+        // db_config.json이 바뀌면 다음 요청부터 새 설정으로 연결
+        ConfigHolder.getInstance().subscribe((previous, current) -> {
+            if (!AppConfigService.sameDatabaseConfig(previous, current)) reconnect();
+        });
     }
 
-    public static synchronized DatabaseService getInstance() {
-        if (instance == null) {
-            instance = new DatabaseService();
-        }
+    public static DatabaseService getInstance() {
         return instance;
     }
 
-    // 앱용 (관리자) 연결
-    public Connection getAppConnection() {
+    // 앱용 (관리자) 연결 - 사용 후 반드시 close() (try-with-resources)
+    public Connection getAppConnection() throws SQLException {
+        Connection conn = getPool(true).getConnection();
+        if (!schemaChecked) migrateSchema(conn);
+        return conn;
+    }
+
+    // 처음 연결될 때 한 번 스키마 마이그레이션
+    // 끝날 때까지 다른 스레드는 락에서 기다리고(마이그레이션 전 스키마를 쓰지 않음), 실패하면 다음 연결 때 다시 시도
+    private synchronized void migrateSchema(Connection conn) {
+        if (schemaChecked) return;
         try {
-            if (appConnection == null || appConnection.isClosed()) {
-                appConnection = createConnection(true);
-            }
+            SchemaMigrator.migrate(conn);
+            schemaChecked = true;
         } catch (SQLException e) {
+            System.err.println("데이터베이스 스키마 마이그레이션 실패!");
             e.printStackTrace();
         }
-        return appConnection;
     }
 
-    // AI용 (읽기 전용) 연결
-    public Connection getAiConnection() {
+    // AI용 (읽기 전용) 연결 - 사용 후 반드시 close() (try-with-resources)
+    public Connection getAiConnection() throws SQLException {
+        return getPool(false).getConnection();
+    }
+
+    // 앱 시작 시 최소 개수만큼 미리 연결
+    public void warmUp() {
         try {
-            if (aiConnection == null || aiConnection.isClosed()) {
-                aiConnection = createConnection(false);
-            }
+            getPool(true).warmUp();
+            getAppConnection().close(); // 마이그레이션도 미리 실행
         } catch (SQLException e) {
-            e.printStackTrace();
+            System.err.println("데이터베이스 연결 준비 실패: " + e.getMessage());
         }
-        return aiConnection;
     }
 
-    private Connection createConnection(boolean isAppUser) throws SQLException {
-        AppConfigService config = AppConfigService.load();
-        AppConfigService.DatabaseConfig dbConfig = config.getDatabaseConfig();
+    private ConnectionPool getPool(boolean isAppUser) throws SQLException {
+        ConnectionPool pool = isAppUser ? appPool : aiPool;
+        if (pool != null) return pool;
+        return createPool(isAppUser);
+    }
+
+    private synchronized ConnectionPool createPool(boolean isAppUser) throws SQLException {
+        ConnectionPool pool = isAppUser ? appPool : aiPool;
+        if (pool != null) return pool;
 
+        AppConfigService.DatabaseConfig dbConfig = AppConfigService.load().getDatabaseConfig();
         if (dbConfig == null || dbConfig.getUrl() == null) {
-            System.err.println("데이터베이스 설정이 없습니다.");
-            return null;
+            throw new SQLException("데이터베이스 설정이 없습니다.");
         }
 
-        String url = dbConfig.getUrl();
-        String user;
-        String password;
-
-        if (isAppUser) {
-            AppConfigService.DatabaseConfig.UserCredentials creds = dbConfig.getAppUser();
-            if (creds == null) throw new SQLException("App user credentials not found");
-            user = creds.getUser();
-            password = creds.getPassword();
-        } else {
-            AppConfigService.DatabaseConfig.UserCredentials creds = dbConfig.getAiUser();
-            if (creds == null) throw new SQLException("AI user credentials not found");
-            user = creds.getUser();
-            password = creds.getPassword();
+        AppConfigService.DatabaseConfig.UserCredentials creds = isAppUser ? dbConfig.getAppUser() : dbConfig.getAiUser();
+        if (creds == null) {
+            throw new SQLException((isAppUser ? "App" : "AI") + " user credentials not found");
         }
 
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
         } catch (ClassNotFoundException e) {
             System.err.println("MySQL Driver not found");
-            e.printStackTrace();
-            return null;
+            throw new SQLException("MySQL Driver not found", e);
         }
 
-        Connection conn = DriverManager.getConnection(url, user, password);
-        System.out.println((isAppUser ? "[APP]" : "[AI]") + " 데이터베이스 연결 성공! ❤️");
-        return conn;
+        String url = dbConfig.getUrl();
+        String label = isAppUser ? "[APP]" : "[AI]";
+        ConnectionPool.ConnectionFactory factory = () -> {
+            Connection conn = DriverManager.getConnection(url, creds.getUser(), creds.getPassword());
+            System.out.println(label + " 데이터베이스 연결 성공! ❤️");
+            return conn;
+        };
+
+        // AI 계정은 가끔 조회만 하므로 작게 유지
+        pool = isAppUser
+                ? new ConnectionPool("app", factory, toSettings(dbConfig.getAppPool(), 1, 4))
+                : new ConnectionPool("ai", factory, toSettings(dbConfig.getAiPool(), 0, 2));
+        if (isAppUser) appPool = pool;
+        else aiPool = pool;
+        return pool;
     }
 
-    public void closeAll() {
-        try {
-            if (appConnection != null && !appConnection.isClosed()) appConnection.close();
-            if (aiConnection != null && !aiConnection.isClosed()) aiConnection.close();
-            System.out.println("모든 데이터베이스 연결을 종료했습니다.");
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private static ConnectionPool.Settings toSettings(AppConfigService.DatabaseConfig.PoolConfig config,
+                                                      int defaultMinIdle, int defaultMaxSize) {
+        ConnectionPool.Settings settings = new ConnectionPool.Settings()
+                .minIdle(defaultMinIdle)
+                .maxSize(defaultMaxSize);
+        if (config == null) return settings;
+        if (config.getMinIdle() != null) settings.minIdle(config.getMinIdle());
+        if (config.getMaxSize() != null) settings.maxSize(config.getMaxSize());
+        if (config.getBorrowTimeoutMs() != null) settings.borrowTimeoutMs(config.getBorrowTimeoutMs());
+        if (config.getIdleTimeoutMs() != null) settings.idleTimeoutMs(config.getIdleTimeoutMs());
+        if (config.getLeakThresholdMs() != null) settings.leakThresholdMs(config.getLeakThresholdMs());
+        if (config.getLeakStackTrace() != null) settings.leakStackTrace(config.getLeakStackTrace());
+        return settings;
+    }
+
+    // 풀을 비워두면 다음 getConnection()에서 새 설정으로 다시 만듦 (빌려간 커넥션은 반환될 때 닫힘)
+    private synchronized void reconnect() {
+        if (appPool == null && aiPool == null) return;
+        System.out.println("[DB] 설정 변경 감지: 커넥션 풀을 다시 만듭니다.");
+        ConnectionPool oldApp = appPool;
+        ConnectionPool oldAi = aiPool;
+        appPool = null;
+        aiPool = null;
+        schemaChecked = false; // 다른 DB를 가리킬 수 있으므로 마이그레이션도 다시 확인
+        if (oldApp != null) oldApp.close();
+        if (oldAi != null) oldAi.close();
+    }
+
+    public synchronized void closeAll() {
+        if (appPool != null) {
+            System.out.println(appPool.getStats());
+            appPool.close();
+            appPool = null;
+        }
+        if (aiPool != null) {
+            System.out.println(aiPool.getStats());
+            aiPool.close();
+            aiPool = null;
         }
+        System.out.println("모든 데이터베이스 연결을 종료했습니다.");
     }
 }
@@ -0,0 +1,28 @@
+package com.example.service;
+
+import java.io.IOException;
+
+/**
+ * 텍스트 -> 임베딩 벡터 (SemanticMemory가 사용).
+ * 설정(embedding_backend)에 따라 로컬 해싱(HashingEmbedder) 또는 Ollama 임베딩 모델(OllamaEmbedder)을 사용합니다.
+ */
+public interface Embedder {
+
+    // 인덱스 폴더 이름으로도 사용 (모델이 바뀌면 다른 인덱스)
+    String name();
+
+    int dimension() throws IOException;
+
+    // 단위 벡터 (dimension() 길이)
+    float[] embed(String text) throws IOException, InterruptedException;
+
+    // 이 값보다 유사도가 낮은 기억은 문맥에 넣지 않음 (임베딩 방식마다 분포가 다름)
+    float minScore();
+
+    static Embedder fromConfig(AppConfigService config) {
+        if ("ollama".equalsIgnoreCase(config.getEmbeddingBackend())) {
+            return new OllamaEmbedder(config.getOllamaUrl(), config.getEmbeddingModel());
+        }
+        return new HashingEmbedder();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Java ↔ Python 브리지의 프레임 프로토콜.
+ * 프레임 = [타입 1바이트][페이로드 길이 4바이트, big-endian][UTF-8 페이로드]
+ * 줄바꿈 이스케이프나 접두어 검사 없이 타입 바이트만으로 메시지를 구분합니다.
+ */
+public final class FrameCodec {
+
+    // Python -> Java
+    public static final byte TOKEN = 'T';        // 스트리밍 토큰 (여러 토큰이 한 프레임에 묶일 수 있음)
+    public static final byte THINKING = 'K';     // 생성 시작 (스피너 표시)
+    public static final byte DONE = 'D';         // 답변 완료
+    public static final byte SUMMARY = 'S';      // 요약 결과
+    public static final byte MESSAGE = 'M';      // 일반 시스템 메시지
+    public static final byte CANCELLED = 'X';    // 중단(CANCEL) 확인 응답 (페이로드: 스트림을 닫기까지 걸린 ms)
+
+    // Java -> Python
+    public static final byte COMMAND = 'C';      // 명령 (텍스트 프로토콜의 한 줄과 같은 내용)
+
+    private static final int MAX_PAYLOAD = 64 * 1024 * 1024; // 깨진 스트림 방어용
+
+    private FrameCodec() {
+    }
+
+    // 재사용 버퍼로 프레임을 읽는 리더 (리스너 스레드 전용)
+    public static final class Reader {
+        private final DataInputStream in;
+        private byte[] buffer = new byte[8192];
+        private int length;
+
+        public Reader(InputStream in) {
+            this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        }
+
+        // 다음 프레임의 타입을 반환, 스트림 끝이면 -1
+        public int next() throws IOException {
+            int type = in.read();
+            if (type == -1) return -1;
+            length = in.readInt();
+            if (length < 0 || length > MAX_PAYLOAD) {
+                throw new IOException("잘못된 프레임 길이: " + length);
+            }
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            in.readFully(buffer, 0, length);
+            return type;
+        }
+
+        // 마지막으로 읽은 프레임의 페이로드
+        public String payload() {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    // 프레임 한 개를 쓰고 flush (호출 측에서 동기화)
+    public static void write(DataOutputStream out, byte type, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(type);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+}
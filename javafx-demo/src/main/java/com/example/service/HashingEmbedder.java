@@ -0,0 +1,95 @@
+package com.example.service;
+
+import com.example.repository.HistorySearchIndex;
+import com.example.util.VectorMath;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 모델 없이 동작하는 로컬 임베딩 (feature hashing).
+ * 검색 색인과 같은 방식으로 자른 항목(한국어 두 글자, 영문 단어)을 해시해서 고정 길이 벡터의 칸에 더합니다.
+ * 의미까지는 모르지만 같은 단어/표현을 쓴 과거 대화를 찾는 데 충분하고, 외부 서버 없이 1ms 안에 끝납니다.
+ * 글자 하나하나도 작은 가중치로 더합니다. 항목이 하나도 안 겹치는 문장끼리도 유사도가 0이 아니어야
+ * HNSW 그래프 탐색이 평평한 구간에서 멈추지 않고 가까운 쪽으로 이동할 수 있습니다.
+ */
+public class HashingEmbedder implements Embedder {
+
+    private static final int DIMENSION = 512;
+    private static final float CHAR_WEIGHT = 0.2f;
+    private static final float HALF = (float) Math.sqrt(0.5);
+
+    @Override
+    public String name() {
+        return "hashing-" + DIMENSION;
+    }
+
+    @Override
+    public int dimension() {
+        return DIMENSION;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[DIMENSION];
+        for (Map.Entry<String, Integer> term : HistorySearchIndex.tokenize(text).entrySet()) {
+            int hash = murmur(term.getKey());
+            // 충돌한 항목끼리 서로 상쇄되도록 부호도 해시로 정함
+            // 칸 두 개에 나눠 더해서 한 번의 충돌이 항목 하나를 통째로 지우지 않도록
+            float weight = (float) (1 + Math.log(term.getValue())) * HALF;
+            add(vector, hash, weight);
+            add(vector, fmix(hash + 0x9e3779b9), weight);
+        }
+        text.toLowerCase(Locale.ROOT).codePoints()
+                .filter(Character::isLetterOrDigit)
+                .forEach(cp -> add(vector, murmur(new String(Character.toChars(cp))) * 31, CHAR_WEIGHT));
+        VectorMath.normalize(vector);
+        return vector;
+    }
+
+    @Override
+    public float minScore() {
+        return 0.2f;
+    }
+
+    private static void add(float[] vector, int hash, float weight) {
+        vector[Math.floorMod(hash, DIMENSION)] += (hash & 0x8000_0000) != 0 ? -weight : weight;
+    }
+
+    // MurmurHash3 (32비트) - String.hashCode()는 비슷한 문자열끼리 값이 몰림
+    private static int murmur(String term) {
+        byte[] data = term.getBytes(StandardCharsets.UTF_8);
+        int h = 0x9747b28c;
+        int i = 0;
+        for (; i + 4 <= data.length; i += 4) {
+            int k = (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16 | (data[i + 3] & 0xff) << 24;
+            h ^= mixK(k);
+            h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+        }
+        int tail = data.length - i; // 남은 1~3바이트
+        if (tail > 0) {
+            int k = 0;
+            if (tail == 3) k ^= (data[i + 2] & 0xff) << 16;
+            if (tail >= 2) k ^= (data[i + 1] & 0xff) << 8;
+            k ^= data[i] & 0xff;
+            h ^= mixK(k);
+        }
+        return fmix(h ^ data.length);
+    }
+
+    private static int fmix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int mixK(int k) {
+        k *= 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        return k * 0x1b873593;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.service;
+
+import java.util.function.Consumer;
+
+/**
+ * 답변 생성 백엔드 (Python 브리지 또는 Ollama 직접 호출).
+ * ChatService는 이 인터페이스만 사용하며, 명령은 텍스트 프로토콜과 같은 형식
+ * ("CHAT:{messages, num_ctx}", "RESTORE_AND_GREET:...", "SUMMARIZE:...", "SET_CONFIG:{model_name, system_prompt}")으로 전달합니다.
+ * CHAT과 RESTORE_AND_GREET의 대화 기록은 ContextBuilder가 토큰 예산에 맞춰 만든 것이며, 백엔드는 시스템 프롬프트만 앞에 붙여 기록을 교체합니다.
+ * SET_CONFIG는 다른 명령과 같은 순서로 처리되므로 진행 중인 답변이 끝난 뒤 적용됩니다.
+ */
+public interface InferenceBackend {
+
+    /**
+     * 백엔드 시작
+     * @param onMessage       시스템 메시지, 완료 신호("[DONE]"), 중단 확인("[CANCELLED]")
+     * @param onToken         스트리밍 토큰 (생성 시작 시 "[Thinking]")
+     * @param onToolRequest   도구 사용 요청 JSON
+     * @param onSummaryResult 요약 결과
+     */
+    void start(Consumer<String> onMessage, Consumer<String> onToken,
+               Consumer<String> onToolRequest, Consumer<String> onSummaryResult);
+
+    /**
+     * 사용자 메시지 또는 명령 전송
+     */
+    void sendMessage(String message);
+
+    /**
+     * 도구 실행 결과 전송
+     * @param resultJson { "status": ..., "output": ... }
+     */
+    void sendToolResult(String resultJson);
+
+    /**
+     * 진행 중인 생성 중단.
+     * 백엔드는 스트림을 닫아 생성을 멈추고, 그 전에 받은 명령까지 정리되면 onMessage로 "[CANCELLED]"를 보냅니다.
+     * 이후에 보낸 메시지는 확인 응답 뒤에 바로 처리됩니다.
+     */
+    void cancel();
+
+    /**
+     * 백엔드 종료
+     */
+    void stop();
+}
@@ -0,0 +1,81 @@
+package com.example.service;
+
+import com.example.util.VectorMath;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Ollama 임베딩 모델(embedding_model, 예: nomic-embed-text)로 벡터 생성 (POST /api/embed).
+ * 차원은 모델마다 다르므로 처음 한 번 짧은 문장을 임베딩해서 알아냅니다.
+ */
+public class OllamaEmbedder implements Embedder {
+
+    private final String baseUrl;
+    private final String model;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private volatile int dimension = -1;
+
+    public OllamaEmbedder(String ollamaUrl, String model) {
+        this.baseUrl = ollamaUrl.replaceAll("/+$", "");
+        this.model = model;
+    }
+
+    @Override
+    public String name() {
+        return "ollama-" + model.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    @Override
+    public int dimension() throws IOException {
+        if (dimension < 0) {
+            try {
+                dimension = embed("dimension").length;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("임베딩 차원 확인 중단", e);
+            }
+        }
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) throws IOException, InterruptedException {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.addProperty("input", text);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/embed"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+        JsonArray embeddings = JsonParser.parseString(response.body()).getAsJsonObject().getAsJsonArray("embeddings");
+        if (embeddings == null || embeddings.isEmpty()) throw new IOException("빈 임베딩 응답");
+
+        JsonArray values = embeddings.get(0).getAsJsonArray();
+        float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) vector[i] = values.get(i).getAsFloat();
+        VectorMath.normalize(vector);
+        return vector;
+    }
+
+    @Override
+    public float minScore() {
+        return 0.55f;
+    }
+}
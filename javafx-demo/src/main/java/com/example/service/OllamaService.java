@@ -0,0 +1,392 @@
+package com.example.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Python 프로세스 없이 Ollama의 /api/chat 스트리밍(NDJSON) 엔드포인트를 직접 호출하는 백엔드.
+ * 대화 기록, 요약(SUMMARIZE:), 복원(RESTORE_AND_GREET:)을 모두 Java에서 처리합니다.
+ * 요청은 단일 작업 스레드에서 순서대로 처리됩니다 (test.py의 메인 루프와 동일).
+ */
+public class OllamaService implements InferenceBackend {
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss EEEE", Locale.ENGLISH);
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final Gson gson = new Gson();
+    private final List<JsonObject> history = new ArrayList<>(); // 작업 스레드 전용
+
+    private ExecutorService worker;
+    private String modelName;
+    private String systemPrompt;
+    private int numCtx = 8192;
+    private volatile boolean isRunning = false;
+
+    // 생성 중단: cancel()이 플래그를 세우고 응답 스트림을 닫으면 작업 스레드의 읽기가 바로 끝남
+    private volatile boolean cancelRequested = false;
+    private volatile long cancelRequestedAt = 0;
+    private volatile InputStream currentBody = null;
+
+    private Consumer<String> onMessage;
+    private Consumer<String> onToken;
+    private Consumer<String> onSummaryResult;
+
+    public OllamaService() {
+        this(AppConfigService.load().getOllamaUrl());
+    }
+
+    // 테스트 시 로컬 대역 서버 주소를 넘길 수 있음
+    public OllamaService(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1) // Ollama는 평문 HTTP/1.1 (h2c 업그레이드 시도 생략)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    @Override
+    public void start(Consumer<String> onMessage, Consumer<String> onToken,
+                      Consumer<String> onToolRequest, Consumer<String> onSummaryResult) {
+        this.onMessage = onMessage;
+        this.onToken = onToken;
+        this.onSummaryResult = onSummaryResult;
+
+        AppConfigService config = AppConfigService.load();
+        this.modelName = config.getModelName() != null ? config.getModelName() : "gemma3:12b";
+        this.systemPrompt = config.getSystemPrompt() != null ? config.getSystemPrompt() : "";
+        this.numCtx = config.getContextTokens();
+
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ollama-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        isRunning = true;
+        worker.submit(() -> {
+            resetHistory();
+            emitMessage("실행 준비 완료");
+        });
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        if (!isRunning) return;
+        worker.submit(() -> handleCommand(message.trim()));
+    }
+
+    @Override
+    public void sendToolResult(String resultJson) {
+        sendMessage("TOOL_RESULT: " + resultJson);
+    }
+
+    @Override
+    public void cancel() {
+        if (!isRunning) return;
+        cancelRequestedAt = System.nanoTime();
+        cancelRequested = true;
+        InputStream body = currentBody;
+        if (body != null) {
+            try {
+                body.close(); // 연결이 끊기면 Ollama도 생성을 멈춤
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        // 앞서 큐에 들어온 명령이 모두 정리된 뒤 확인 응답
+        worker.submit(() -> {
+            cancelRequested = false;
+            long millis = (System.nanoTime() - cancelRequestedAt) / 1_000_000;
+            System.out.println("[CANCEL] Ollama: 요청 후 " + millis + " ms 만에 스트림 종료");
+            emitMessage("[CANCELLED]");
+        });
+    }
+
+    @Override
+    public void stop() {
+        isRunning = false;
+        if (worker != null) worker.shutdownNow();
+    }
+
+    // --- 명령 처리 (test.py의 main 루프와 같은 분기) ---
+
+    private void handleCommand(String input) {
+        try {
+            if (input.startsWith("TOOL_RESULT:")) {
+                String resultJson = input.substring("TOOL_RESULT:".length()).trim();
+                history.add(message("user", "TOOL_RESULT:\n" + resultJson + "\n\nProceed based on this result."));
+                history.add(message("assistant", chatAndStream(history)));
+
+            } else if (input.startsWith("CHAT:")) {
+                // Java(ContextBuilder)가 토큰 예산에 맞춰 만든 문맥으로 기록 교체
+                JsonObject data = JsonParser.parseString(input.substring("CHAT:".length()).trim()).getAsJsonObject();
+                if (data.has("num_ctx")) numCtx = data.get("num_ctx").getAsInt();
+                resetHistory();
+                data.getAsJsonArray("messages").forEach(e -> history.add(e.getAsJsonObject()));
+                history.add(message("assistant", chatAndStream(history)));
+
+            } else if (input.startsWith("RESTORE_AND_GREET:")) {
+                restoreAndGreet(input.substring("RESTORE_AND_GREET:".length()).trim());
+
+            } else if (input.startsWith("SUMMARIZE:")) {
+                summarize(input.substring("SUMMARIZE:".length()).trim());
+
+            } else if (input.startsWith("SET_CONFIG:")) {
+                applyConfig(input.substring("SET_CONFIG:".length()).trim());
+
+            } else {
+                String[] now = currentTimeInfo();
+                String timedInput = "[System Info: Current Time is " + now[0] + ". It is currently " + now[1] + ".]\n" + input;
+                history.add(message("user", timedInput));
+                history.add(message("assistant", chatAndStream(history)));
+            }
+        } catch (Exception e) {
+            emitToken("Critical Java Error: " + e.getMessage());
+            emitMessage("[DONE]");
+        }
+    }
+
+    private void restoreAndGreet(String json) {
+        try {
+            JsonArray restored = JsonParser.parseString(json).getAsJsonArray();
+            resetHistory();
+            restored.forEach(e -> history.add(e.getAsJsonObject()));
+
+            String[] now = currentTimeInfo();
+            String timeInfo = "[System Info: User reconnected. Current Time is " + now[0] + " (" + now[1] + ").]";
+
+            // 인사를 위한 임시 히스토리 (Hidden Context 주입)
+            List<JsonObject> temp = new ArrayList<>(history);
+            temp.add(message("system",
+                    "[HIDDEN CONTEXT]\n" + timeInfo + "\n[/HIDDEN CONTEXT]\n\n" +
+                    "INSTRUCTION:\n" +
+                    "Based on the restored conversation history and the current time above, greet the user naturally.\n" +
+                    "If the last conversation was recent, act as if continuing.\n" +
+                    "If it was long ago, welcome them back.\n" +
+                    "IMPORTANT: Do NOT output the [System Info] or [HIDDEN CONTEXT] block. Just speak naturally."));
+
+            history.add(message("assistant", chatAndStream(temp)));
+        } catch (Exception e) {
+            emitToken("Error restoring history: " + e.getMessage());
+            emitMessage("[DONE]");
+        }
+    }
+
+    // 설정 변경: 모델은 다음 요청부터, 프롬프트는 현재 대화의 system 메시지까지 교체
+    private void applyConfig(String json) {
+        JsonObject data = JsonParser.parseString(json).getAsJsonObject();
+        if (data.has("model_name") && !data.get("model_name").isJsonNull()) {
+            modelName = data.get("model_name").getAsString();
+        }
+        if (data.has("system_prompt") && !data.get("system_prompt").isJsonNull()) {
+            systemPrompt = data.get("system_prompt").getAsString();
+            if (!history.isEmpty() && "system".equals(history.get(0).get("role").getAsString())) {
+                history.set(0, message("system", systemPrompt));
+            }
+        }
+        System.out.println("[CONFIG] Ollama 설정 적용: " + modelName);
+    }
+
+    private void summarize(String json) {
+        try {
+            JsonObject data = JsonParser.parseString(json).getAsJsonObject();
+            String prevSummary = data.has("previous_summary") && !data.get("previous_summary").isJsonNull()
+                    ? data.get("previous_summary").getAsString() : "";
+
+            StringBuilder conversation = new StringBuilder();
+            if (data.has("messages")) {
+                data.getAsJsonArray("messages").forEach(e -> {
+                    JsonObject m = e.getAsJsonObject();
+                    String role = m.has("role") ? m.get("role").getAsString() : "unknown";
+                    String content = m.has("content") && !m.get("content").isJsonNull() ? m.get("content").getAsString() : "";
+                    conversation.append(role).append(": ").append(content).append("\n");
+                });
+            }
+
+            String prompt = SummaryPipeline.summaryPrompt(prevSummary, conversation.toString());
+
+            JsonObject body = chatRequest(AppConfigService.load().getSummaryModel(), List.of(message("user", prompt)), false, 8192);
+            HttpResponse<String> response = httpClient.send(post(body), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+            }
+            JsonObject result = JsonParser.parseString(response.body()).getAsJsonObject();
+            emitSummary(result.getAsJsonObject("message").get("content").getAsString());
+        } catch (Exception e) {
+            emitSummary("Error summarizing: " + e.getMessage());
+        }
+    }
+
+    // --- Ollama 스트리밍 ---
+
+    /**
+     * /api/chat을 스트리밍으로 호출하고, 응답 NDJSON을 한 줄씩 기다리지 않고
+     * JsonReader로 점진적으로 파싱하면서 토큰을 전달합니다.
+     * @return 전체 답변 (에러 시 에러 메시지)
+     */
+    private String chatAndStream(List<JsonObject> messages) {
+        if (cancelRequested) return ""; // 중단 요청 전에 큐에 들어와 있던 명령은 시작하지 않음
+        emitToken("[Thinking]");
+        StringBuilder fullResponse = new StringBuilder();
+        try {
+            JsonObject body = chatRequest(modelName, messages, true, numCtx);
+            HttpResponse<InputStream> response = httpClient.send(post(body), HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                try (InputStream err = response.body()) {
+                    throw new IOException("HTTP " + response.statusCode() + ": "
+                            + new String(err.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+
+            currentBody = response.body();
+            if (cancelRequested) currentBody.close(); // 헤더를 기다리는 사이에 중단된 경우
+            try (JsonReader reader = new JsonReader(new InputStreamReader(currentBody, StandardCharsets.UTF_8))) {
+                reader.setLenient(true); // 여러 개의 최상위 JSON 객체(NDJSON) 허용
+                boolean done = false;
+                while (!done && reader.peek() != JsonToken.END_DOCUMENT) {
+                    if (cancelRequested) return fullResponse.toString();
+                    String content = null;
+                    String error = null;
+                    int promptTokens = -1;
+                    int replyTokens = -1;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "message" -> content = readMessageContent(reader);
+                            case "done" -> done = reader.nextBoolean();
+                            case "error" -> error = reader.nextString();
+                            // 마지막 줄에만 있는 실제 토큰 수
+                            case "prompt_eval_count" -> promptTokens = reader.nextInt();
+                            case "eval_count" -> replyTokens = reader.nextInt();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    if (error != null) throw new IOException(error);
+                    if (promptTokens >= 0) {
+                        System.out.println("[CONTEXT] Ollama 실제 사용량: 입력 " + promptTokens + " 토큰, 출력 "
+                                + replyTokens + " 토큰 (num_ctx " + numCtx + ")");
+                    }
+                    if (content != null && !content.isEmpty()) {
+                        fullResponse.append(content);
+                        emitToken(content);
+                    }
+                }
+            }
+            emitMessage("[DONE]");
+            return fullResponse.toString();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fullResponse.toString();
+        } catch (Exception e) {
+            if (cancelRequested) return fullResponse.toString(); // 스트림을 닫아서 난 예외
+
+            String errorMsg = "Ollama Error: " + e.getMessage();
+            emitToken(errorMsg);
+            emitMessage("[DONE]");
+            return errorMsg;
+        } finally {
+            currentBody = null;
+        }
+    }
+
+    // { "role": "assistant", "content": "..." } 에서 content만 추출
+    private String readMessageContent(JsonReader reader) throws IOException {
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("content".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                content = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    private JsonObject chatRequest(String model, List<JsonObject> messages, boolean stream, int numCtx) {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        JsonArray array = new JsonArray();
+        messages.forEach(array::add);
+        body.add("messages", array);
+        body.addProperty("stream", stream);
+        JsonObject options = new JsonObject();
+        options.addProperty("num_ctx", numCtx);
+        options.addProperty("temperature", 0.1);
+        body.add("options", options);
+        if (stream) body.addProperty("keep_alive", "0s");
+        return body;
+    }
+
+    private HttpRequest post(JsonObject body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/chat"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body), StandardCharsets.UTF_8))
+                .build();
+    }
+
+    // --- Helpers ---
+
+    private void resetHistory() {
+        history.clear();
+        history.add(message("system", systemPrompt));
+    }
+
+    private static JsonObject message(String role, String content) {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("role", role);
+        obj.addProperty("content", content);
+        return obj;
+    }
+
+    // [현재 시간 문자열, 시간대] (test.py의 get_current_time_info와 동일)
+    private static String[] currentTimeInfo() {
+        LocalDateTime now = LocalDateTime.now();
+        int hour = now.getHour();
+        String period;
+        if (hour >= 5 && hour < 12) period = "Morning (아침)";
+        else if (hour >= 12 && hour < 18) period = "Afternoon (오후)";
+        else if (hour >= 18 && hour < 22) period = "Evening (저녁)";
+        else period = "Night (밤/새벽)";
+        return new String[] { now.format(TIME_FORMAT), period };
+    }
+
+    private void emitToken(String token) {
+        if (isRunning && onToken != null) onToken.accept(token);
+    }
+
+    private void emitMessage(String msg) {
+        if (isRunning && onMessage != null) onMessage.accept(msg);
+    }
+
+    private void emitSummary(String summary) {
+        if (isRunning && onSummaryResult != null) onSummaryResult.accept(summary);
+    }
+}
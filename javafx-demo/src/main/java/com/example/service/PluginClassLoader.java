@@ -0,0 +1,58 @@
+package com.example.service;
+
+import com.example.service.tools.Tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Set;
+
+/**
+ * 플러그인 JAR 하나(한 버전)만 읽는 클래스 로더.
+ * JAR 안에 있는 클래스는 부모(앱)보다 먼저 JAR에서 읽습니다 (child-first).
+ * 기본 도구 JAR은 같은 클래스가 앱 classpath에도 있어서, 부모 먼저 읽으면 JAR을 바꿔도 예전 클래스가 계속 쓰이고
+ * 클래스가 앱 로더에 묶여 메타스페이스에서 내려가지 않습니다.
+ * 앱과 주고받는 타입(Tool, ToolManager, ToolResult, Gson, JDK)은 항상 부모 것을 써야 형변환이 됩니다.
+ */
+final class PluginClassLoader extends URLClassLoader {
+
+    private static final Set<String> SHARED_CLASSES = Set.of(
+            Tool.class.getName(), ToolManager.class.getName(), ToolResult.class.getName());
+    private static final String[] SHARED_PACKAGES = {"java.", "javax.", "jdk.", "sun.", "com.google.gson."};
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    PluginClassLoader(File jarFile, ClassLoader parent) throws IOException {
+        super("plugin:" + jarFile.getName(), new URL[]{jarFile.toURI().toURL()}, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null && !isShared(name)) {
+                try {
+                    clazz = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    // JAR에 없으면 앱에서 찾음
+                }
+            }
+            if (clazz == null) {
+                return super.loadClass(name, resolve);
+            }
+            if (resolve) resolveClass(clazz);
+            return clazz;
+        }
+    }
+
+    private static boolean isShared(String name) {
+        if (SHARED_CLASSES.contains(name)) return true;
+        for (String prefix : SHARED_PACKAGES) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+}
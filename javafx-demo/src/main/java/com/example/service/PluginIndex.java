@@ -0,0 +1,215 @@
+package com.example.service;
+
+import com.example.service.tools.Tool;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * 플러그인 JAR마다 어떤 도구가 들어 있는지 기억하는 색인 (config/tools/.index.json).
+ * - 키: JAR 파일 이름 + 크기 + 수정 시각 + 내용 해시(SHA-256)
+ *   크기/수정 시각이 그대로면 파일을 열지 않고 색인을 그대로 씀
+ *   둘 중 하나만 바뀌었으면 해시를 비교해서 내용이 같으면(복사/touch) 다시 검사하지 않음
+ * - 도구 이름/설명/사용법/기한/동시 실행 수까지 저장하므로 시작할 때와 help/사용법 안내에는 클래스를 읽지 않음
+ * JAR 안의 도구 클래스 찾기 순서:
+ * 1. META-INF/services/com.example.service.tools.Tool (ServiceLoader 형식)
+ * 2. MANIFEST의 Tool-Classes 속성 (공백/쉼표 구분)
+ * 3. 둘 다 없으면 모든 .class를 초기화 없이(Class.forName(.., false, ..)) 읽어서 Tool 구현체만 고름
+ */
+public class PluginIndex {
+
+    static final String SERVICE_FILE = "META-INF/services/" + Tool.class.getName();
+    static final Attributes.Name MANIFEST_ATTRIBUTE = new Attributes.Name("Tool-Classes");
+    private static final String INDEX_FILE = ".index.json";
+    private static final int VERSION = 2; // 2: 도구 기한/동시 실행 수 추가
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    // 색인에 저장되는 도구 한 개 (기한/동시 실행 수는 ToolExecutor가 클래스를 읽기 전에 씀)
+    public record ToolEntry(String className, String name, String description, String usage,
+                            int timeoutSeconds, int maxConcurrency) {
+
+        public static ToolEntry of(String className, Tool tool) {
+            return new ToolEntry(className, tool.getName(), tool.getDescription(), tool.getUsage(),
+                    tool.getTimeoutSeconds(), tool.getMaxConcurrency());
+        }
+    }
+
+    // 색인에 저장되는 JAR 한 개
+    record JarRecord(long size, long modified, String sha256, List<ToolEntry> tools) {
+    }
+
+    private record IndexFile(int version, Map<String, JarRecord> jars) {
+    }
+
+    private final Path file;
+    private final Map<String, JarRecord> jars = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private PluginIndex(Path file) {
+        this.file = file;
+    }
+
+    // 색인 파일을 읽음 (없거나 깨졌거나 버전이 다르면 빈 색인 -> 모든 JAR을 다시 검사)
+    public static PluginIndex load(File pluginsDirectory) {
+        PluginIndex index = new PluginIndex(pluginsDirectory.toPath().resolve(INDEX_FILE));
+        if (!Files.exists(index.file)) return index;
+        try (Reader reader = Files.newBufferedReader(index.file, StandardCharsets.UTF_8)) {
+            IndexFile saved = gson.fromJson(reader, IndexFile.class);
+            if (saved != null && saved.version() == VERSION && saved.jars() != null) {
+                index.jars.putAll(saved.jars());
+            }
+        } catch (IOException | JsonSyntaxException e) {
+            System.err.println("플러그인 색인 읽기 실패, 다시 검사합니다: " + e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * @return 색인에 있는 그대로면 그 도구 목록, JAR이 바뀌었거나 처음 보는 JAR이면 null (다시 검사 필요)
+     */
+    public List<ToolEntry> lookup(File jarFile) {
+        JarRecord cached = jars.get(jarFile.getName());
+        if (cached == null) return null;
+        long size = jarFile.length();
+        long modified = jarFile.lastModified();
+        if (cached.size() == size && cached.modified() == modified) return cached.tools();
+
+        // 크기나 시각만 다르면 내용 비교 (내용이 같으면 새 크기/시각으로 갱신)
+        String hash = sha256(jarFile);
+        if (hash == null || !hash.equals(cached.sha256())) return null;
+        jars.put(jarFile.getName(), new JarRecord(size, modified, hash, cached.tools()));
+        dirty = true;
+        return cached.tools();
+    }
+
+    public void put(File jarFile, List<ToolEntry> tools) {
+        String hash = sha256(jarFile);
+        if (hash == null) return; // 읽을 수 없는 파일은 기억하지 않음 (다음 시작 때 다시 검사)
+        jars.put(jarFile.getName(), new JarRecord(jarFile.length(), jarFile.lastModified(), hash, List.copyOf(tools)));
+        dirty = true;
+    }
+
+    // 폴더에서 사라진 JAR의 기록 제거
+    public void retain(Collection<File> jarFiles) {
+        Set<String> names = new HashSet<>();
+        for (File jarFile : jarFiles) names.add(jarFile.getName());
+        if (jars.keySet().retainAll(names)) dirty = true;
+    }
+
+    // 바뀐 내용이 있을 때만 임시 파일에 쓴 뒤 교체
+    public void save() {
+        if (!dirty) return;
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(file.getParent(), INDEX_FILE, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(new IndexFile(VERSION, Map.copyOf(jars)), writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("플러그인 색인 저장 실패: " + e.getMessage());
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * JAR 안에서 Tool 구현 클래스 이름을 찾습니다. 클래스는 초기화하지 않습니다 (static 블록 실행 없음).
+     * 선언(서비스 파일/MANIFEST)이 있으면 그것만 믿고, 없을 때만 전체 .class를 훑습니다.
+     */
+    public static List<String> findToolClasses(JarFile jar, ClassLoader loader) throws IOException {
+        Set<String> declared = new LinkedHashSet<>();
+        JarEntry service = jar.getJarEntry(SERVICE_FILE);
+        if (service != null) {
+            try (InputStream in = jar.getInputStream(service);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String name = (comment >= 0 ? line.substring(0, comment) : line).strip();
+                    if (!name.isEmpty()) declared.add(name);
+                }
+            }
+        }
+        Manifest manifest = jar.getManifest();
+        String attribute = manifest != null ? manifest.getMainAttributes().getValue(MANIFEST_ATTRIBUTE) : null;
+        if (attribute != null) {
+            for (String name : attribute.split("[\\s,]+")) {
+                if (!name.isBlank()) declared.add(name.strip());
+            }
+        }
+        if (!declared.isEmpty()) return new ArrayList<>(declared);
+
+        List<String> found = new ArrayList<>();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String entryName = entry.getName();
+            if (entry.isDirectory() || !entryName.endsWith(".class")
+                    || entryName.endsWith("module-info.class") || entryName.contains("$")) {
+                continue; // 내부/익명 클래스는 도구가 될 수 없음 (public 생성자 필요)
+            }
+            // 클래스 이름 변환 (com/example/MyTool.class -> com.example.MyTool)
+            String className = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+            if (isToolClass(className, loader)) found.add(className);
+        }
+        return found;
+    }
+
+    static boolean isToolClass(String className, ClassLoader loader) {
+        try {
+            Class<?> clazz = Class.forName(className, false, loader);
+            return Tool.class.isAssignableFrom(clazz) && !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers());
+        } catch (Throwable t) {
+            return false; // 의존 클래스가 없는 등 읽을 수 없는 클래스는 무시
+        }
+    }
+
+    private static String sha256(File jarFile) {
+        try (InputStream in = Files.newInputStream(jarFile.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) digest.update(buffer, 0, read);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            System.err.println("JAR 해시 계산 실패 (" + jarFile.getName() + "): " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -4,61 +4,68 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
-public class PythonService {
+public class PythonService implements InferenceBackend {
 
     // 경로 설정
     private static final String PYTHON_SCRIPT_PATH = "config/python/test.py";
     private static final String PYTHON_EXE = "python";
 
+    // 브리지 프로토콜: FRAMED(길이 접두 프레임, 기본값) 또는 TEXT(줄 단위, 구버전 호환)
+    public enum Protocol {
+        TEXT, FRAMED;
+
+        public static Protocol from(String value) {
+            return "text".equalsIgnoreCase(value) ? TEXT : FRAMED;
+        }
+    }
+
+    private final Protocol protocol;
     private Process process;
-    private BufferedWriter writer;
+    private BufferedWriter writer;          // TEXT 모드
+    private DataOutputStream frameWriter;   // FRAMED 모드
     private BufferedReader reader;
+    private InputStream frameInput;
     private Thread listenerThread;
-    private boolean isRunning = false;
+    private volatile boolean isRunning = false;
+
+    public PythonService() {
+        this(Protocol.from(AppConfigService.load().getBridgeProtocol()));
+    }
+
+    public PythonService(Protocol protocol) {
+        this.protocol = protocol;
+    }
 
     // 파이썬 프로세스 시작
+    @Override
     public void start(Consumer<String> onMessage, Consumer<String> onToken, Consumer<String> onToolRequest, Consumer<String> onSummaryResult) {
         try {
-            ProcessBuilder pb = new ProcessBuilder(PYTHON_EXE, "-u", PYTHON_SCRIPT_PATH);
-            pb.redirectErrorStream(true);
+            ProcessBuilder pb = new ProcessBuilder(PYTHON_EXE, "-u", PYTHON_SCRIPT_PATH,
+                    "--protocol=" + protocol.name().toLowerCase());
+            if (protocol == Protocol.FRAMED) {
+                // stderr가 섞이면 프레임이 깨지므로 콘솔로 따로 보냄
+                pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            } else {
+                pb.redirectErrorStream(true);
+            }
             process = pb.start();
             isRunning = true;
-            writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
-            reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+
+            if (protocol == Protocol.FRAMED) {
+                frameWriter = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                frameInput = process.getInputStream();
+            } else {
+                writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+                reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            }
 
             // 백그라운드에서 메시지 수신 대기
             listenerThread = new Thread(() -> {
                 try {
-                    String line;
-                    while (isRunning && (line = reader.readLine()) != null) {
-
-                        // 1. 스트리밍 토큰 (AI 답변)
-                        if (line.startsWith("TOKEN:")) {
-                            String token = line.substring(6).replace("[NEWLINE]", "\n");
-                            // [NEW] 종료 신호 감지
-                            if ("[DONE]".equals(token)) {
-                                if (onMessage != null) onMessage.accept("[DONE]");
-                            } else {
-                                if (onToken != null) onToken.accept(token);
-                            }
-                        }
-                        // 2. [NEW] 요약 결과 수신
-                        else if (line.startsWith("SUMMARY_RESULT:")) {
-                            String summary = line.substring(15).replace("[NEWLINE]", "\n");
-                            if (onSummaryResult != null) onSummaryResult.accept(summary);
-                        }
-                        // 3. [NEW] 도구 사용 요청 (JSON)
-                        else if (line.contains("TOOL_REQUEST:")) {
-                            // "TOOL_REQUEST: { ... }" 형태에서 JSON만 추출
-                            int idx = line.indexOf("TOOL_REQUEST:");
-                            String json = line.substring(idx + 13).trim();
-                            if (onToolRequest != null) onToolRequest.accept(json);
-                        }
-                        // 4. 일반 시스템 메시지
-                        else {
-                            String finalLine = line.replace("[NEWLINE]", "\n");
-                            if (onMessage != null) onMessage.accept(finalLine);
-                        }
+                    if (protocol == Protocol.FRAMED) {
+                        readFrames(onMessage, onToken, onToolRequest, onSummaryResult);
+                    } else {
+                        readLines(onMessage, onToken, onToolRequest, onSummaryResult);
                     }
                 } catch (IOException e) {
                     if (isRunning) e.printStackTrace();
@@ -73,36 +80,123 @@ public class PythonService {
         }
     }
 
+    // FRAMED 모드: 타입 바이트로 바로 분기 (이스케이프/접두어 검사 없음)
+    private void readFrames(Consumer<String> onMessage, Consumer<String> onToken,
+                            Consumer<String> onToolRequest, Consumer<String> onSummaryResult) throws IOException {
+        FrameCodec.Reader frames = new FrameCodec.Reader(frameInput);
+        int type;
+        while (isRunning && (type = frames.next()) != -1) {
+            // 프레임은 이미 끝까지 읽었으므로 처리 중 예외(콜백 등)가 나도 다음 프레임부터 계속 읽음
+            try {
+                switch (type) {
+                    case FrameCodec.TOKEN -> { if (onToken != null) onToken.accept(frames.payload()); }
+                    case FrameCodec.THINKING -> { if (onToken != null) onToken.accept("[Thinking]"); }
+                    case FrameCodec.DONE -> { if (onMessage != null) onMessage.accept("[DONE]"); }
+                    case FrameCodec.SUMMARY -> { if (onSummaryResult != null) onSummaryResult.accept(frames.payload()); }
+                    case FrameCodec.MESSAGE -> { if (onMessage != null) onMessage.accept(frames.payload()); }
+                    case FrameCodec.CANCELLED -> onCancelled(frames.payload(), onMessage);
+                    default -> System.err.println("알 수 없는 프레임 타입: " + (char) type);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("프레임 처리 중 오류 (타입 " + (char) type + "), 다음 프레임부터 계속 읽습니다.");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // TEXT 모드: 기존 줄 단위 프로토콜
+    private void readLines(Consumer<String> onMessage, Consumer<String> onToken,
+                           Consumer<String> onToolRequest, Consumer<String> onSummaryResult) throws IOException {
+        String line;
+        while (isRunning && (line = reader.readLine()) != null) {
+            try {
+                // 1. 스트리밍 토큰 (AI 답변)
+                if (line.startsWith("TOKEN:")) {
+                    String token = line.substring(6).replace("[NEWLINE]", "\n");
+                    // [NEW] 종료 신호 감지
+                    if ("[DONE]".equals(token)) {
+                        if (onMessage != null) onMessage.accept("[DONE]");
+                    } else {
+                        if (onToken != null) onToken.accept(token);
+                    }
+                }
+                // 2. [NEW] 요약 결과 수신
+                else if (line.startsWith("SUMMARY_RESULT:")) {
+                    String summary = line.substring(15).replace("[NEWLINE]", "\n");
+                    if (onSummaryResult != null) onSummaryResult.accept(summary);
+                }
+                // 3. [NEW] 도구 사용 요청 (JSON)
+                else if (line.contains("TOOL_REQUEST:")) {
+                    // "TOOL_REQUEST: { ... }" 형태에서 JSON만 추출
+                    int idx = line.indexOf("TOOL_REQUEST:");
+                    String json = line.substring(idx + 13).trim();
+                    if (onToolRequest != null) onToolRequest.accept(json);
+                }
+                // 4. 중단 확인 응답
+                else if (line.startsWith("CANCELLED:")) {
+                    onCancelled(line.substring(10), onMessage);
+                }
+                // 5. 일반 시스템 메시지
+                else {
+                    String finalLine = line.replace("[NEWLINE]", "\n");
+                    if (onMessage != null) onMessage.accept(finalLine);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("메시지 처리 중 오류, 다음 줄부터 계속 읽습니다: " + line);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void onCancelled(String elapsedMs, Consumer<String> onMessage) {
+        System.out.println("[CANCEL] Python: 요청 수신 후 " + elapsedMs.trim() + " ms 만에 스트림 종료");
+        if (onMessage != null) onMessage.accept("[CANCELLED]");
+    }
+
     // 일반 사용자 메시지 전송
+    @Override
     public void sendMessage(String message) {
         sendRaw(message);
     }
 
     // [NEW] 도구 실행 결과 전송
+    @Override
     public void sendToolResult(String resultJson) {
         // 파이썬이 "TOOL_RESULT: " 접두어로 인식하도록 약속됨
         sendRaw("TOOL_RESULT: " + resultJson);
     }
 
-    // 내부 전송 로직
-    private void sendRaw(String text) {
-        if (writer != null && isRunning) {
-            try {
+    // 생성 중단: 파이썬 입력 스레드가 바로 받아 스트림을 닫음 (대기 중인 명령보다 먼저 처리됨)
+    @Override
+    public void cancel() {
+        sendRaw("CANCEL");
+    }
+
+    // 내부 전송 로직 (여러 스레드에서 호출되므로 동기화)
+    private synchronized void sendRaw(String text) {
+        if (!isRunning) return;
+        try {
+            if (protocol == Protocol.FRAMED) {
+                if (frameWriter != null) FrameCodec.write(frameWriter, FrameCodec.COMMAND, text);
+            } else if (writer != null) {
                 writer.write(text);
                 writer.newLine();
                 writer.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
     // 프로세스 종료
+    @Override
     public void stop() {
         isRunning = false;
         try {
             if (writer != null) writer.close();
             if (reader != null) reader.close();
+            if (frameWriter != null) frameWriter.close();
+            if (frameInput != null) frameInput.close();
             if (process != null && process.isAlive()) process.destroy();
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,438 @@
+package com.example.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * run_python용 상주 파이썬 작업자 풀 (config/python/tool_worker.py).
+ * 호출마다 인터프리터를 띄우고 모듈을 import하는 대신, 띄워 둔 작업자에게 코드를 JSON 한 줄로 보내고 결과를 받습니다.
+ * - 일반 호출: 쉬는 작업자를 빌려 빈 namespace에서 실행 (변수는 남지 않고 import한 모듈만 캐시로 남음)
+ * - 세션 호출: 세션 이름마다 전용 작업자, 호출 사이에 변수 유지
+ *   오래 쓰지 않았거나 세션 수가 넘치면 가장 오래 안 쓴 세션부터 정리
+ * - 실행 횟수/메모리 기준을 넘긴 작업자는 버리고 새로 띄움 (세션은 변수가 사라지므로 메모리 기준만 적용,
+ *   작업자가 메모리를 잴 수 없는 환경이면 실행 횟수 기준)
+ * - 호출마다 기한: 넘기면 작업자를 종료하고 다음 호출은 새 작업자로 실행
+ *   도구 실행기(ToolExecutor) 안에서 호출하면 실행기의 기한/취소로도 지금 쓰는 작업자만 종료됨
+ */
+public class PythonWorkerPool {
+
+    private static final String PYTHON_EXE = "python";
+    private static final String WORKER_SCRIPT = "config/python/tool_worker.py";
+    private static final int MAX_IDLE_WORKERS = 2;              // run_python 동시 실행 수와 같게
+    private static final int MAX_SESSIONS = 4;
+    private static final long SESSION_IDLE_MILLIS = 30 * 60 * 1000L;
+    private static final int STARTUP_TIMEOUT_SECONDS = 60;      // preload(pandas 등) 포함
+    private static final int READ_CHUNK = 8 * 1024;
+    private static final Gson gson = new Gson();
+
+    private static PythonWorkerPool instance;
+
+    private final Deque<Worker> idle = new ArrayDeque<>();
+    private final Map<String, Worker> sessions = new LinkedHashMap<>(16, 0.75f, true); // 접근 순서 (앞이 가장 오래 안 쓴 세션)
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "python-worker-timeout");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong startedCount = new AtomicLong();
+    private final AtomicLong recycledCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong runCount = new AtomicLong();
+    private boolean closed;
+
+    /**
+     * 실행 결과
+     * @param success   예외 없이 끝났으면 true (오류 메시지/traceback은 output에 들어 있음)
+     * @param timedOut  기한을 넘겨 작업자를 종료했으면 true
+     * @param freshSession 세션 호출인데 이전 변수가 없는 새 작업자였으면 true (처음이거나 작업자가 다시 시작됨)
+     */
+    public record Result(boolean success, boolean timedOut, boolean freshSession, ToolOutputBuffer output) {
+    }
+
+    private PythonWorkerPool() {
+    }
+
+    public static synchronized PythonWorkerPool getInstance() {
+        if (instance == null) {
+            instance = new PythonWorkerPool();
+        }
+        return instance;
+    }
+
+    // 앱 종료: 풀을 쓴 적이 있을 때만 작업자 정리
+    public static synchronized void shutdownIfStarted() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * 코드를 실행합니다. 출력은 받는 대로 sink로 넘기고 결과에는 앞/뒤만 남긴 버퍼를 담습니다.
+     * @param session null이면 일반 호출, 아니면 그 이름의 세션 작업자에서 실행 (변수 유지)
+     * 코드를 보낸 뒤의 실패(작업자 종료, 파이프 오류)는 예외가 아니라 실패 결과로 돌려줍니다 (코드가 일부 실행됐을 수 있음).
+     * @throws IOException 코드를 보내기 전에 실패했을 때만 (파이썬 없음, 작업자 시작 실패, 풀 종료) - 다른 방법으로 실행해도 안전함
+     */
+    public Result execute(String code, String session, File cwd, int timeoutSeconds, ToolOutputSink sink) throws IOException {
+        AppConfigService config = AppConfigService.load();
+        runCount.incrementAndGet();
+        if (session == null) {
+            Worker worker = borrow(config);
+            Result result = worker.run(code, cwd, false, timeoutSeconds, sink);
+            giveBack(worker, config);
+            return result;
+        }
+
+        Worker worker = sessionWorker(session, config);
+        Result result = worker.run(code, cwd, true, timeoutSeconds, sink);
+        if (!worker.isAlive() || worker.worn(config)) {
+            if (worker.isAlive()) recycledCount.incrementAndGet();
+            dropSession(session, worker);
+        }
+        return result;
+    }
+
+    // --- 일반 작업자 ---
+
+    private Worker borrow(AppConfigService config) throws IOException {
+        synchronized (this) {
+            if (closed) throw new IOException("파이썬 작업자 풀이 종료되었습니다.");
+            Worker worker;
+            while ((worker = idle.pollFirst()) != null) {
+                if (worker.isAlive()) return worker;
+            }
+        }
+        return startWorker(config); // 쉬는 작업자가 없으면 지금 띄움 (첫 호출, 동시 호출)
+    }
+
+    private void giveBack(Worker worker, AppConfigService config) {
+        boolean recycle = worker.isAlive() && (worker.runs >= config.getPythonWorkerMaxRuns() || worker.overMemory(config));
+        synchronized (this) {
+            if (!closed && worker.isAlive() && !recycle && idle.size() < MAX_IDLE_WORKERS) {
+                idle.addFirst(worker);
+                return;
+            }
+        }
+        worker.kill();
+        if (recycle) {
+            recycledCount.incrementAndGet();
+            // 다음 호출이 시작 비용을 내지 않도록 대신할 작업자를 미리 띄워 둠
+            Thread.ofVirtual().name("python-worker-start").start(() -> prewarm(config));
+        }
+    }
+
+    /**
+     * 앱 시작 시 작업자 하나를 미리 띄워 둡니다 (첫 run_python 호출이 인터프리터 시작/preload를 기다리지 않도록).
+     * 백그라운드에서 띄우며, 실패하면 첫 호출 때 다시 시도합니다.
+     */
+    public void prewarmAsync() {
+        Thread.ofVirtual().name("python-worker-start").start(() -> prewarm(AppConfigService.load()));
+    }
+
+    private void prewarm(AppConfigService config) {
+        synchronized (this) {
+            if (closed || idle.size() >= MAX_IDLE_WORKERS) return;
+        }
+        try {
+            Worker worker = startWorker(config);
+            synchronized (this) {
+                if (!closed && idle.size() < MAX_IDLE_WORKERS) {
+                    idle.addLast(worker);
+                    return;
+                }
+            }
+            worker.kill();
+        } catch (IOException e) {
+            System.err.println("[python] 작업자 미리 띄우기 실패: " + e.getMessage());
+        }
+    }
+
+    // --- 세션 작업자 ---
+
+    private Worker sessionWorker(String session, AppConfigService config) throws IOException {
+        List<Worker> expired = new ArrayList<>();
+        synchronized (this) {
+            if (closed) throw new IOException("파이썬 작업자 풀이 종료되었습니다.");
+            long now = System.currentTimeMillis();
+            for (Iterator<Map.Entry<String, Worker>> it = sessions.entrySet().iterator(); it.hasNext(); ) {
+                Worker worker = it.next().getValue();
+                if (!worker.isAlive() || (!worker.busy && now - worker.lastUsed > SESSION_IDLE_MILLIS)) {
+                    expired.add(worker);
+                    it.remove();
+                }
+            }
+            Worker existing = sessions.get(session);
+            if (existing != null) {
+                killAll(expired);
+                return existing;
+            }
+        }
+        killAll(expired);
+
+        Worker started = startWorker(config);
+        List<Worker> evicted = new ArrayList<>();
+        Worker winner;
+        synchronized (this) {
+            winner = sessions.putIfAbsent(session, started);
+            if (winner == null) {
+                winner = started;
+                // 세션 수가 넘치면 쉬고 있는 세션 중 가장 오래 안 쓴 것부터 정리
+                for (Iterator<Map.Entry<String, Worker>> it = sessions.entrySet().iterator();
+                     it.hasNext() && sessions.size() > MAX_SESSIONS; ) {
+                    Map.Entry<String, Worker> entry = it.next();
+                    if (entry.getValue() != started && !entry.getValue().busy) {
+                        System.out.println("[python] 세션 정리 (최대 " + MAX_SESSIONS + "개): " + entry.getKey());
+                        evicted.add(entry.getValue());
+                        it.remove();
+                    }
+                }
+            }
+        }
+        if (winner != started) started.kill(); // 같은 세션을 동시에 처음 부른 경우
+        killAll(evicted);
+        return winner;
+    }
+
+    private void dropSession(String session, Worker worker) {
+        synchronized (this) {
+            sessions.remove(session, worker);
+        }
+        worker.kill();
+    }
+
+    private static void killAll(List<Worker> workers) {
+        for (Worker worker : workers) worker.kill();
+    }
+
+    // --- 작업자 프로세스 ---
+
+    private Worker startWorker(AppConfigService config) throws IOException {
+        Worker worker = new Worker(config.getPythonWorkerPreload());
+        startedCount.incrementAndGet();
+        return worker;
+    }
+
+    // 실행 중인 호출의 출력 (프로토콜 out 메시지 + 작업자 stderr가 함께 씀)
+    private static final class CallOutput {
+        private final ToolOutputBuffer buffer = new ToolOutputBuffer();
+        private final ToolOutputSink sink;
+
+        CallOutput(ToolOutputSink sink) {
+            this.sink = sink;
+        }
+
+        synchronized void write(String text) {
+            buffer.append(text);
+            sink.write(text);
+        }
+    }
+
+    private final class Worker {
+        private final Process process;
+        private final BufferedWriter requests;
+        private final BufferedReader replies;
+        private final Thread stderrDrain;
+        private volatile CallOutput current;
+        private volatile boolean busy;
+        private volatile boolean killed;   // 종료 요청 후 프로세스가 아직 살아 있어도 다시 쓰지 않음
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile long rssBytes;
+        private volatile int runs;
+        private long nextId;
+
+        Worker(String preload) throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(PYTHON_EXE, "-u", WORKER_SCRIPT, "--preload=" + preload);
+            pb.environment().put("PYTHONIOENCODING", "utf-8");
+            process = pb.start();
+            requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            replies = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            stderrDrain = Thread.ofVirtual().name("python-worker-stderr").start(this::drainStderr);
+
+            // 시작 완료(ready) 대기, preload가 멈추면 종료
+            ScheduledFuture<?> startup = timer.schedule(this::kill, STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            try {
+                String line;
+                while ((line = replies.readLine()) != null) {
+                    JsonObject message = parse(line);
+                    if (message != null && "ready".equals(text(message, "type"))) return;
+                }
+                throw new IOException("파이썬 작업자 시작 실패 (exit " + exitCode() + "): " + WORKER_SCRIPT);
+            } catch (IOException e) {
+                kill();
+                throw e;
+            } finally {
+                startup.cancel(false);
+            }
+        }
+
+        // 작업자가 직접 stderr(또는 fd 1)로 쓴 출력: 실행 중이면 그 호출의 출력으로, 아니면 로그로
+        private void drainStderr() {
+            try (Reader reader = new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8)) {
+                char[] chunk = new char[READ_CHUNK];
+                int read;
+                while ((read = reader.read(chunk)) != -1) {
+                    String text = new String(chunk, 0, read);
+                    CallOutput out = current;
+                    if (out != null) {
+                        out.write(text);
+                    } else {
+                        System.err.print("[python-worker] " + text);
+                    }
+                }
+            } catch (IOException e) {
+                // 작업자 종료
+            }
+        }
+
+        // 보낸 뒤에는 예외 없이 항상 결과로 끝남 (다시 실행하면 코드의 부작용이 두 번 생길 수 있으므로)
+        synchronized Result run(String code, File cwd, boolean session, int timeoutSeconds, ToolOutputSink sink) {
+            long id = ++nextId;
+            boolean freshSession = session && runs == 0;
+            CallOutput out = new CallOutput(sink);
+            AtomicBoolean timedOut = new AtomicBoolean();
+            busy = true;
+            current = out;
+            ScheduledFuture<?> deadline = timer.schedule(() -> {
+                timedOut.set(true);
+                timeoutCount.incrementAndGet();
+                kill();
+            }, timeoutSeconds, TimeUnit.SECONDS);
+            // 실행기의 기한/취소가 먼저 오면 이 작업자만 종료 (쉬는 동안에는 연결하지 않음)
+            ToolExecutor.Attachment attachment = ToolExecutor.attachProcess(process);
+            try {
+                JsonObject request = new JsonObject();
+                request.addProperty("id", id);
+                request.addProperty("code", code);
+                if (cwd != null) request.addProperty("cwd", cwd.getAbsolutePath());
+                request.addProperty("session", session);
+                requests.write(gson.toJson(request));
+                requests.newLine();
+                requests.flush();
+
+                String line;
+                while ((line = replies.readLine()) != null) {
+                    JsonObject reply = parse(line);
+                    if (reply == null || !reply.has("id") || reply.get("id").getAsLong() != id) continue; // 이전 호출이 남긴 출력
+                    String type = text(reply, "type");
+                    if ("out".equals(type)) {
+                        out.write(text(reply, "data"));
+                    } else if ("done".equals(type)) {
+                        runs++;
+                        if (reply.has("rss")) rssBytes = reply.get("rss").getAsLong();
+                        return new Result(reply.get("ok").getAsBoolean(), false, freshSession, out.buffer);
+                    }
+                }
+                return lost(out, timedOut.get(), freshSession, timeoutSeconds);
+            } catch (IOException e) {
+                // 요청을 쓰는 중에 종료됐거나 파이프 오류: 작업자를 버림
+                System.err.println("[python] 작업자 통신 실패: " + e.getMessage());
+                return lost(out, timedOut.get(), freshSession, timeoutSeconds);
+            } finally {
+                attachment.close();
+                deadline.cancel(false);
+                lastUsed = System.currentTimeMillis();
+                busy = false;
+                current = null;
+            }
+        }
+
+        // 응답 없이 파이프가 닫힘: 기한 초과로 종료했거나 작업자가 죽음 (os._exit, 메모리 부족 등)
+        private Result lost(CallOutput out, boolean timedOut, boolean freshSession, int timeoutSeconds) {
+            kill();
+            try {
+                stderrDrain.join(500); // 죽기 직전 stderr 출력까지 모음
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.write(timedOut ? "\n[실행 시간 초과 (" + timeoutSeconds + "초): 파이썬 작업자를 종료했습니다]\n"
+                    : "\n[파이썬 작업자가 종료되었습니다 (exit " + exitCode() + ")]\n");
+            return new Result(false, timedOut, freshSession, out.buffer);
+        }
+
+        boolean isAlive() {
+            return !killed && process.isAlive();
+        }
+
+        boolean overMemory(AppConfigService config) {
+            return rssBytes > config.getPythonWorkerMaxMemoryMb() * 1024L * 1024L;
+        }
+
+        // 세션 작업자 교체 기준: 메모리, 작업자가 메모리를 알려주지 못하면(rss 0) 실행 횟수
+        boolean worn(AppConfigService config) {
+            return rssBytes > 0 ? overMemory(config) : runs >= config.getPythonWorkerMaxRuns();
+        }
+
+        private String exitCode() {
+            try {
+                return process.waitFor(1, TimeUnit.SECONDS) ? String.valueOf(process.exitValue()) : "?";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "?";
+            }
+        }
+
+        void kill() {
+            killed = true;
+            ToolExecutor.killTree(process);
+        }
+    }
+
+    private static JsonObject parse(String line) {
+        try {
+            JsonElement element = JsonParser.parseString(line);
+            return element.isJsonObject() ? element.getAsJsonObject() : null;
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static String text(JsonObject object, String key) {
+        JsonElement element = object.get(key);
+        return element != null && !element.isJsonNull() ? element.getAsString() : "";
+    }
+
+    public synchronized String getStats() {
+        return String.format("[python] 작업자 시작 %d, 교체 %d, 시간 초과 %d | 실행 %d | 쉬는 작업자 %d, 세션 %d",
+                startedCount.get(), recycledCount.get(), timeoutCount.get(), runCount.get(), idle.size(), sessions.size());
+    }
+
+    // 작업자를 모두 종료 (실행 중인 호출은 작업자 종료 결과로 끝남)
+    public void shutdown() {
+        List<Worker> workers;
+        synchronized (this) {
+            System.out.println(getStats());
+            closed = true;
+            workers = new ArrayList<>(idle);
+            workers.addAll(sessions.values());
+            idle.clear();
+            sessions.clear();
+        }
+        killAll(workers);
+        timer.shutdownNow();
+    }
+}
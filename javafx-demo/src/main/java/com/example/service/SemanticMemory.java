@@ -0,0 +1,262 @@
+package com.example.service;
+
+import com.example.model.ChatMessage;
+import com.example.model.ChatSummary;
+import com.example.repository.ChatRepository;
+import com.example.repository.ChatWriteQueue;
+import com.example.repository.VectorIndex;
+import com.example.util.VectorMath;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 과거 대화 장기 기억: 모든 메시지와 메시지 묶음 요약을 임베딩해서 VectorIndex에 넣고, 매 턴 사용자 입력과 가까운 것을 문맥에 넣습니다.
+ * - 색인은 백그라운드(memory-indexer)에서 저장소의 메시지를 오래된 순으로 이어서 진행 (진행 위치는 인덱스와 함께 저장)
+ * - 요약은 가장 작은 단위(메시지 묶음)만 색인: 일/주/월/년 요약은 SummaryTree가 기간 전체를 덮도록 문맥에 넣지만,
+ *   오래된 기간의 묶음 요약은 문맥에서 빠지므로 기억으로 다시 찾을 수 있게 함
+ * - 작성 중인 메시지(스트리밍 중인 답변 등)는 끝난 뒤에 색인
+ * - 임베딩 방식(embedding_backend/embedding_model)마다 config/data/memory 아래 별도 인덱스
+ * 이미 최근 대화로 문맥에 들어가는 메시지는 다시 넣지 않습니다.
+ */
+public class SemanticMemory {
+
+    private static final Path ROOT = Paths.get("config", "data", "memory");
+    private static final int BATCH = 200;           // 한 번에 읽어서 색인할 메시지 수 (이만큼마다 진행 위치 저장)
+    private static final int SEARCH_EF = 64;        // 제외할 메시지를 빼고도 k개가 남도록 넉넉히 찾음
+    private static final int SNIPPET_CHARS = 300;
+    private static final String START_ID = "00000000-0000-0000-0000-000000000000";
+    private static final String SUMMARY_MARK = "#"; // 진행 위치: "메시지ID|시각" + "#" + "요약 끝ID|시작 시각" (예전 인덱스는 앞부분만)
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final ChatRepository chatRepository;
+    private final ChatWriteQueue chatWriter;
+    private final Supplier<String> inProgressId;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "memory-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    // 임베딩 방식과 그 인덱스는 항상 짝으로 교체 (검색 도중 설정이 바뀌어도 차원이 섞이지 않도록)
+    private record Opened(Embedder embedder, VectorIndex index) {
+    }
+
+    // 색인 스레드가 열고, 검색은 열려 있을 때만 사용 (설정이 바뀌면 다른 인덱스로 교체)
+    private volatile Opened opened;
+    private AppConfigService openedWith;
+
+    public SemanticMemory(ChatRepository chatRepository, ChatWriteQueue chatWriter, Supplier<String> inProgressId) {
+        this.chatRepository = chatRepository;
+        this.chatWriter = chatWriter;
+        this.inProgressId = inProgressId;
+    }
+
+    // 앱 시작 시, 그리고 답변이 끝날 때마다 호출 (이미 예약되어 있으면 무시)
+    public void requestIndexing() {
+        if (scheduled.compareAndSet(false, true)) {
+            worker.submit(this::run);
+        }
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+        Opened current = opened;
+        opened = null;
+        if (current != null) {
+            try {
+                current.index().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void run() {
+        scheduled.set(false);
+        try {
+            Opened current = ensureOpen();
+            if (current == null) return;
+            VectorIndex index = current.index();
+            chatWriter.flush(5_000);
+
+            long startedAt = System.nanoTime();
+            String checkpoint = index.getCheckpoint();
+            int mark = checkpoint.indexOf(SUMMARY_MARK);
+            String messageCheckpoint = mark < 0 ? checkpoint : checkpoint.substring(0, mark);
+            String summaryCheckpoint = mark < 0 ? "" : checkpoint.substring(mark + 1);
+            int added = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<ChatMessage> fetched = chatRepository.findMessagesAfter(cursor(messageCheckpoint), BATCH);
+                List<ChatMessage> batch = completedPrefix(fetched);
+                if (batch.isEmpty()) break;
+
+                for (ChatMessage m : batch) {
+                    if (!"user".equals(m.getRole()) && !"ai".equals(m.getRole())) continue;
+                    String text = SummaryPipeline.toPlainText(m);
+                    if (text.isBlank()) continue;
+                    index.add(VectorIndex.TYPE_MESSAGE, m.getId(), toMillis(m.getTimestamp()), current.embedder().embed(text));
+                    added++;
+                }
+                ChatMessage last = batch.get(batch.size() - 1);
+                messageCheckpoint = last.getId() + "|" + last.getTimestamp();
+                index.flush(messageCheckpoint + SUMMARY_MARK + summaryCheckpoint);
+                if (batch.size() < fetched.size() || fetched.size() < BATCH) break;
+            }
+
+            // 메시지 묶음 요약 (시작 시각순, 마지막으로 색인한 요약 이후)
+            int summariesAdded = 0;
+            ChatMessage summaryCursor = cursor(summaryCheckpoint);
+            for (ChatSummary summary : chatRepository.findSummaries(ChatSummary.CHUNK, summaryCursor.getTimestamp(), null)) {
+                if (Thread.currentThread().isInterrupted()) break;
+                if (summary.getStartTs() == null || summary.getEndId() == null || summary.getEndId().equals(summaryCursor.getId())) continue;
+                if (summary.getContent() == null || summary.getContent().isBlank()) continue;
+                index.add(VectorIndex.TYPE_SUMMARY, summary.getEndId(), toMillis(summary.getStartTs()),
+                        current.embedder().embed(summary.getContent()));
+                summaryCheckpoint = summary.getEndId() + "|" + summary.getStartTs();
+                summariesAdded++;
+            }
+            if (summariesAdded > 0) index.flush(messageCheckpoint + SUMMARY_MARK + summaryCheckpoint);
+
+            if (added > 0 || summariesAdded > 0) {
+                System.out.printf("[MEMORY] 메시지 %d개, 요약 %d개 색인 (총 %d개, %d ms, SIMD=%s)%n", added, summariesAdded,
+                        index.size(), (System.nanoTime() - startedAt) / 1_000_000, VectorMath.isSimd());
+            }
+        } catch (IOException e) {
+            System.err.println("[MEMORY] 색인 실패 (다음 답변 후 이어서 진행): " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("[MEMORY] 색인 중 오류!");
+            e.printStackTrace();
+        }
+    }
+
+    // 설정에 맞는 임베딩/인덱스 열기 (색인 스레드에서만 호출)
+    private Opened ensureOpen() throws IOException {
+        AppConfigService config = AppConfigService.load();
+        Opened current = opened;
+        if (config == openedWith && current != null) return current;
+        if (config.getMemoryTopK() <= 0) return null;
+
+        Embedder next = Embedder.fromConfig(config);
+        if (current == null || !current.embedder().name().equals(next.name())) {
+            Opened replaced = current;
+            current = new Opened(next, VectorIndex.open(ROOT.resolve(next.name()), next.dimension()));
+            opened = current;
+            if (replaced != null) replaced.index().close(); // 진행 중인 검색은 매핑이 유지되므로 그대로 끝남
+            System.out.println("[MEMORY] 기억 인덱스 열기: " + next.name() + " (" + current.index().size() + "개)");
+        }
+        openedWith = config;
+        return current;
+    }
+
+    private List<ChatMessage> completedPrefix(List<ChatMessage> messages) {
+        String openId = inProgressId.get();
+        if (openId == null) return messages;
+        List<ChatMessage> result = new ArrayList<>();
+        for (ChatMessage m : messages) {
+            if (openId.equals(m.getId())) break;
+            result.add(m);
+        }
+        return result;
+    }
+
+    private static ChatMessage cursor(String checkpoint) {
+        if (checkpoint == null || checkpoint.isEmpty()) {
+            return new ChatMessage(START_ID, null, null, LocalDateTime.of(1970, 1, 1, 0, 0));
+        }
+        int split = checkpoint.indexOf('|');
+        return new ChatMessage(checkpoint.substring(0, split), null, null, LocalDateTime.parse(checkpoint.substring(split + 1)));
+    }
+
+    // 요약 노드는 시작 시각과 끝 메시지 ID로 저장되어 있음
+    private ChatSummary findChunkSummary(LocalDateTime startTs, String endId) {
+        for (ChatSummary summary : chatRepository.findSummaries(ChatSummary.CHUNK, startTs, startTs)) {
+            if (endId.equals(summary.getEndId())) return summary;
+        }
+        return null;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+
+    /**
+     * 사용자 입력과 가까운 과거 메시지를 문맥에 넣을 형태로 (없거나 아직 인덱스가 없으면 null).
+     * 실패해도 예외 대신 null - 기억 없이 답변은 계속됩니다.
+     *
+     * @param excludeIds 이미 최근 대화로 문맥 후보에 있는 메시지
+     */
+    public String recall(String query, int k, Set<String> excludeIds) {
+        Opened current = opened;
+        if (k <= 0 || current == null || query == null || query.isBlank()) return null;
+        Embedder currentEmbedder = current.embedder();
+
+        try {
+            long startedAt = System.nanoTime();
+            List<VectorIndex.Hit> hits = new ArrayList<>();
+            for (VectorIndex.Hit hit : current.index().search(currentEmbedder.embed(query), SEARCH_EF, SEARCH_EF)) {
+                if (hit.score() < currentEmbedder.minScore() || excludeIds.contains(hit.id())) continue;
+                hits.add(hit);
+                if (hits.size() == k) break;
+            }
+            if (hits.isEmpty()) return null;
+
+            Map<String, ChatMessage> messages = chatRepository.findMessagesByIds(hits.stream()
+                    .filter(hit -> hit.type() == VectorIndex.TYPE_MESSAGE).map(VectorIndex.Hit::id).toList()).stream()
+                    .collect(Collectors.toMap(ChatMessage::getId, Function.identity(), (a, b) -> a));
+            StringBuilder memory = new StringBuilder(
+                    "Possibly relevant earlier conversation (recalled from long-term memory, may be outdated):\n");
+            int count = 0;
+            // 시간순으로 보여줘야 모델이 앞뒤 관계를 헷갈리지 않음
+            hits.sort(Comparator.comparingLong(VectorIndex.Hit::timeMs));
+            for (VectorIndex.Hit hit : hits) {
+                LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(hit.timeMs()), ZoneId.systemDefault());
+                String speaker;
+                String text;
+                if (hit.type() == VectorIndex.TYPE_SUMMARY) {
+                    ChatSummary summary = findChunkSummary(time, hit.id());
+                    if (summary == null) continue; // 지워진 요약
+                    speaker = "summary";
+                    text = summary.getContent();
+                } else {
+                    ChatMessage m = messages.get(hit.id());
+                    if (m == null) continue; // 지워진 메시지
+                    speaker = "ai".equals(m.getRole()) ? "assistant" : m.getRole();
+                    text = SummaryPipeline.toPlainText(m);
+                }
+                text = text.replace('\n', ' ');
+                if (text.length() > SNIPPET_CHARS) text = text.substring(0, SNIPPET_CHARS) + " …";
+                memory.append("- [").append(time.format(TIME_FORMAT)).append("] ")
+                        .append(speaker).append(": ").append(text).append("\n");
+                count++;
+            }
+            System.out.printf("[MEMORY] 관련 기억 %d개 (%.1f ms)%n", count, (System.nanoTime() - startedAt) / 1e6);
+            return count > 0 ? memory.toString() : null;
+        } catch (IOException e) {
+            System.err.println("[MEMORY] 기억 검색 실패: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
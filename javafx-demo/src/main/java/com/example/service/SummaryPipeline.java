@@ -0,0 +1,280 @@
+package com.example.service;
+
+import com.example.model.ChatMessage;
+import com.example.model.ChatSummary;
+import com.example.repository.ChatRepository;
+import com.example.repository.ChatWriteQueue;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 대화 요약을 채팅과 따로 백그라운드에서 만드는 파이프라인 (요약 트리).
+ * - 0단계: 마지막 묶음 요약의 end_msg_id 이후, 아직 요약되지 않은 메시지만 오래된 순서로 최대 WINDOW개씩 요약
+ *   (이전 요약은 참고로만 주고 이번 묶음만 요약 - 예전 내용을 매번 다시 요약하며 잃지 않도록)
+ * - 1~4단계: 끝난 하루/주/달/해의 아래 단계 요약을 모아 다시 요약 (더 이어질 수 있는 마지막 기간은 기다림)
+ * - 각 요약에 실제로 포함된 첫/마지막 메시지 ID와 시간을 저장 (다음 요약은 그 다음부터)
+ * - 요약 범위가 저장소에 남으므로 앱을 다시 켜도 이어서 진행
+ * - 채팅 백엔드(명령을 순서대로 처리)를 거치지 않고 Ollama에 요약 모델(summary_model)로 직접 요청하므로
+ *   답변 생성과 동시에 실행되고, 사용자 입력을 막지 않음
+ * 실패하면 아무것도 저장하지 않으므로 다음 요청 때 같은 범위부터 다시 시도합니다.
+ */
+public class SummaryPipeline {
+
+    static final int TRIGGER = 20;            // 요약되지 않은 메시지가 이만큼 쌓이면 요약
+    static final int WINDOW = 30;             // 한 번에 요약할 최대 메시지 수
+    private static final int MAX_CALLS_PER_RUN = 10; // 오래 쌓인 경우에도 한 번에 너무 오래 돌지 않도록 (모델 호출 수)
+    private static final int MAX_MESSAGE_CHARS = 2000; // 긴 도구 결과 등이 문맥을 다 차지하지 않도록
+    private static final int ROLLUP_FAN_IN = 12;       // 한 번에 합칠 최대 요약 수 (넘으면 나눠서 차례로 합침)
+
+    private final ChatRepository chatRepository;
+    private final ChatWriteQueue chatWriter;
+    private final Supplier<String> inProgressId; // 아직 작성 중인 메시지 (이 메시지부터는 요약하지 않음)
+    private final Consumer<String> onSummarySaved; // 새 요약이 생기면 다시 고른 문맥용 요약 (다음 턴 문맥에 반영)
+    private final SummaryTree summaryTree;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "summary-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    public SummaryPipeline(ChatRepository chatRepository, ChatWriteQueue chatWriter,
+                           Supplier<String> inProgressId, Consumer<String> onSummarySaved) {
+        this.chatRepository = chatRepository;
+        this.chatWriter = chatWriter;
+        this.inProgressId = inProgressId;
+        this.onSummarySaved = onSummarySaved;
+        this.summaryTree = new SummaryTree(chatRepository);
+    }
+
+    // 답변이 끝날 때마다, 그리고 앱 시작 시 호출 (이미 예약되어 있으면 무시)
+    public void requestIfNeeded() {
+        if (scheduled.compareAndSet(false, true)) {
+            worker.submit(this::run);
+        }
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // 현재 토큰 예산에 맞게 요약 트리에서 고른 문맥용 요약 (시작 시 기억 복원용)
+    public String contextSummary() {
+        return summaryTree.contextSummary(ContextBuilder.summaryBudget());
+    }
+
+    private void run() {
+        scheduled.set(false); // 실행 중에 들어온 요청은 끝난 뒤 한 번 더 실행
+        chatWriter.flush(5_000); // 아직 큐에 있는 메시지까지 포함되도록
+
+        int[] callsLeft = {MAX_CALLS_PER_RUN};
+        boolean changed = false;
+        try {
+            changed = summarizeChunks(callsLeft);
+            for (int level = ChatSummary.DAY; level <= ChatSummary.YEAR && callsLeft[0] > 0; level++) {
+                changed |= rollUp(level, callsLeft);
+            }
+        } catch (IOException e) {
+            System.err.println("[SUMMARY] 요약 실패 (다음 답변 후 다시 시도): " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (changed && onSummarySaved != null) onSummarySaved.accept(contextSummary());
+    }
+
+    // 0단계: 쌓인 메시지를 WINDOW개씩
+    private boolean summarizeChunks(int[] callsLeft) throws IOException, InterruptedException {
+        boolean saved = false;
+        while (callsLeft[0] > 0 && chatRepository.countMessagesAfterLastSummary() >= TRIGGER) {
+            List<ChatMessage> window = completedPrefix(chatRepository.findUnsummarizedMessages(WINDOW));
+            if (window.isEmpty()) break;
+
+            long startedAt = System.nanoTime();
+            String summary = complete(chunkPrompt(chatRepository.getLastSummary(), conversation(window)));
+            callsLeft[0]--;
+
+            ChatMessage first = window.get(0);
+            ChatMessage last = window.get(window.size() - 1);
+            chatRepository.saveSummary(ChatSummary.CHUNK, summary, first.getId(), last.getId(),
+                    first.getTimestamp(), last.getTimestamp());
+            saved = true;
+            System.out.printf("[SUMMARY] 메시지 %d개 요약 완료 (%s ~ %s, %d ms)%n", window.size(),
+                    first.getId(), last.getId(), (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        return saved;
+    }
+
+    // 1~4단계: 마지막 상위 요약 이후의 아래 단계 요약을 기간별로 묶어, 끝난 기간만 합침
+    private boolean rollUp(int level, int[] callsLeft) throws IOException, InterruptedException {
+        ChatSummary lastParent = chatRepository.findLastSummary(level);
+        LocalDateTime coveredUntil = lastParent != null ? lastParent.getEndTs() : null;
+
+        List<List<ChatSummary>> periods = new ArrayList<>();
+        LocalDate currentPeriod = null;
+        for (ChatSummary child : chatRepository.findSummaries(level - 1, coveredUntil, null)) {
+            if (child.getEndTs() == null) continue; // 범위를 모르는 예전 요약
+            if (coveredUntil != null && !child.getEndTs().isAfter(coveredUntil)) continue;
+            LocalDate period = SummaryTree.periodStart(level, child.getStartTs());
+            if (!period.equals(currentPeriod)) {
+                periods.add(new ArrayList<>());
+                currentPeriod = period;
+            }
+            periods.get(periods.size() - 1).add(child);
+        }
+
+        boolean saved = false;
+        // 마지막 기간은 아직 이어질 수 있으므로 다음 기간의 요약이 생길 때까지 기다림
+        for (int i = 0; i < periods.size() - 1 && callsLeft[0] > 0; i++) {
+            List<ChatSummary> children = periods.get(i);
+            ChatSummary first = children.get(0);
+            ChatSummary last = children.get(children.size() - 1);
+            String label = SummaryTree.label(new ChatSummary(level, "", first.getStartId(), last.getEndId(),
+                    first.getStartTs(), last.getEndTs()));
+
+            long startedAt = System.nanoTime();
+            List<String> parts = new ArrayList<>();
+            for (ChatSummary child : children) parts.add(child.getContent());
+            // 하나뿐이면 그대로 올림 (모델 호출 없음)
+            while (parts.size() > 1) {
+                List<String> batch = parts.subList(0, Math.min(ROLLUP_FAN_IN, parts.size()));
+                String merged = complete(rollUpPrompt(level, label, batch));
+                callsLeft[0]--;
+                batch.clear();
+                parts.add(0, merged);
+            }
+
+            chatRepository.saveSummary(level, parts.get(0), first.getStartId(), last.getEndId(),
+                    first.getStartTs(), last.getEndTs());
+            saved = true;
+            System.out.printf("[SUMMARY] %s 요약 완료 (하위 요약 %d개, %d ms)%n", label, children.size(),
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        return saved;
+    }
+
+    // 작성 중인 메시지(스트리밍 중인 답변, 승인 대기 중인 도구 요청) 앞까지만
+    private List<ChatMessage> completedPrefix(List<ChatMessage> messages) {
+        String openId = inProgressId.get();
+        if (openId == null) return messages;
+        List<ChatMessage> result = new ArrayList<>();
+        for (ChatMessage m : messages) {
+            if (openId.equals(m.getId())) break;
+            result.add(m);
+        }
+        return result;
+    }
+
+    private static String conversation(List<ChatMessage> window) {
+        StringBuilder conversation = new StringBuilder();
+        for (ChatMessage m : window) {
+            String role = "ai".equals(m.getRole()) ? "assistant" : m.getRole();
+            conversation.append(role).append(": ").append(toPlainText(m)).append("\n");
+        }
+        return conversation.toString();
+    }
+
+    // 요약 모델에 프롬프트 하나를 보내고 답변 전체를 받음
+    private String complete(String prompt) throws IOException, InterruptedException {
+        AppConfigService config = AppConfigService.load();
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", prompt);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", config.getSummaryModel());
+        body.add("messages", messages);
+        body.addProperty("stream", false);
+        JsonObject options = new JsonObject();
+        options.addProperty("num_ctx", 8192);
+        options.addProperty("temperature", 0.1);
+        body.add("options", options);
+
+        String baseUrl = config.getOllamaUrl().replaceAll("/+$", "");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/chat"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(5))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+        String summary = JsonParser.parseString(response.body()).getAsJsonObject()
+                .getAsJsonObject("message").get("content").getAsString().trim();
+        if (summary.isEmpty()) throw new IOException("빈 요약");
+        return summary;
+    }
+
+    // 모델에 보내는 텍스트(본문 + 도구 결과)에서 태그/엔티티를 걷어내고 요약에 필요한 텍스트만
+    static String toPlainText(ChatMessage message) {
+        String text = ChatService.contentForModel(message)
+                .replaceAll("<br\\s*/?>", "\n")
+                .replaceAll("<[^>]+>", "")
+                .replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&#39;", "'")
+                .replace("&amp;", "&")
+                .strip();
+        if (text.length() > MAX_MESSAGE_CHARS) {
+            text = text.substring(0, MAX_MESSAGE_CHARS) + " …(생략)";
+        }
+        return text;
+    }
+
+    // 0단계: 이번 묶음만 요약 (이전 요약은 대명사/맥락 파악용)
+    static String chunkPrompt(String previousSummary, String conversation) {
+        return "You are an expert summarizer.\n" +
+                "Earlier context (for reference only, do not repeat it):\n" + (previousSummary != null ? previousSummary : "") + "\n\n" +
+                "Conversation:\n" + conversation + "\n" +
+                "Task:\n" +
+                "Summarize only the conversation above.\n" +
+                "Focus on key decisions, user preferences, facts about the user, and important events.\n" +
+                "Keep it under 5 sentences. Korean language is preferred if the conversation is in Korean.";
+    }
+
+    // 1~4단계: 이어지는 기간의 요약들을 한 기간의 요약으로
+    static String rollUpPrompt(int level, String label, List<String> summaries) {
+        StringBuilder parts = new StringBuilder();
+        for (String summary : summaries) parts.append("- ").append(summary.strip().replace("\n", " ")).append("\n");
+        return "You are an expert summarizer.\n" +
+                "Below are summaries of consecutive parts of the conversation during " + label + ", oldest first.\n\n" +
+                parts + "\n" +
+                "Task:\n" +
+                "Merge them into a single summary of " + label + ".\n" +
+                "Keep key decisions, user preferences, facts about the user, and important events; drop details that no longer matter.\n" +
+                "Keep it under " + (4 + 2 * level) + " sentences. Korean language is preferred if the summaries are in Korean.";
+    }
+
+    // OllamaService(SUMMARIZE: 명령)와 같은 프롬프트
+    static String summaryPrompt(String previousSummary, String conversation) {
+        return "You are an expert summarizer.\n" +
+                "Previous Summary:\n" + (previousSummary != null ? previousSummary : "") + "\n\n" +
+                "Recent Conversation:\n" + conversation + "\n" +
+                "Task:\n" +
+                "Summarize the recent conversation, merging it with the previous summary to create a concise, updated summary of the entire context.\n" +
+                "Focus on key decisions, user preferences, and important events.\n" +
+                "Keep it under 5 sentences. Korean language is preferred if the conversation is in Korean.";
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.service;
+
+import com.example.model.ChatSummary;
+import com.example.repository.ChatRepository;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 요약 트리에서 토큰 예산에 맞는 요약 목록을 골라 문맥용 문자열로 만듭니다.
+ * 1. 가장 굵은 단위부터 겹치지 않게 이어 붙여 전체 기간을 덮음 (년 -> 월 -> 주 -> 일 -> 메시지 묶음)
+ *    기록이 몇 달이든 노드 수는 대략 년 수 + 11 + 4 + 6 + 오늘의 묶음 수로 거의 일정
+ * 2. 예산이 남으면 최근 노드부터 한 단계 아래 요약으로 펼침 (최근일수록 자세히)
+ * 3. 그래도 넘치면 가장 오래된 노드부터 뺌
+ * 조회는 단계별 시작 시각 범위 검색이라 기록 길이와 상관없이 쿼리 수가 정해져 있습니다.
+ */
+public class SummaryTree {
+
+    private static final int MAX_EXPANSIONS = 8;   // 한 번에 펼쳐 볼 최대 노드 수 (쿼리 수 제한)
+    private static final int LINE_OVERHEAD = 8;    // 기간 표시 + 줄바꿈
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter MINUTE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final ChatRepository chatRepository;
+
+    public SummaryTree(ChatRepository chatRepository) {
+        this.chatRepository = chatRepository;
+    }
+
+    /**
+     * @param budgetTokens 요약에 쓸 수 있는 토큰 (ContextBuilder.summaryBudget())
+     * @return 오래된 것부터 "[기간] 요약" 한 줄씩, 요약이 없으면 빈 문자열
+     */
+    public String contextSummary(int budgetTokens) {
+        List<ChatSummary> cover = select(budgetTokens);
+        StringBuilder text = new StringBuilder();
+        for (ChatSummary s : cover) {
+            text.append('[').append(label(s)).append("] ").append(s.getContent().strip()).append('\n');
+        }
+        return text.toString().strip();
+    }
+
+    List<ChatSummary> select(int budgetTokens) {
+        // 1. 굵은 단위부터 덮기: 위 단계가 끝난 시각 이후만 아래 단계에서 가져옴
+        List<ChatSummary> cover = new ArrayList<>();
+        LocalDateTime coveredUntil = null;
+        for (int level = ChatSummary.YEAR; level >= ChatSummary.CHUNK; level--) {
+            for (ChatSummary s : chatRepository.findSummaries(level, coveredUntil, null)) {
+                if (s.getEndTs() == null) continue; // 범위를 모르는 예전 요약
+                if (coveredUntil == null || s.getEndTs().isAfter(coveredUntil)) cover.add(s);
+            }
+            if (!cover.isEmpty()) coveredUntil = cover.get(cover.size() - 1).getEndTs();
+        }
+
+        // 2. 최근 노드부터 펼치기 (펼친 자식 중 가장 최근 것부터 다시)
+        int used = 0;
+        for (ChatSummary s : cover) used += tokens(s);
+        int i = cover.size() - 1;
+        int expansions = 0;
+        while (i >= 0 && expansions < MAX_EXPANSIONS) {
+            ChatSummary node = cover.get(i);
+            if (node.getLevel() == ChatSummary.CHUNK) {
+                i--;
+                continue;
+            }
+            List<ChatSummary> children = chatRepository.findSummaries(node.getLevel() - 1, node.getStartTs(), node.getEndTs());
+            expansions++;
+            int delta = -tokens(node);
+            for (ChatSummary child : children) delta += tokens(child);
+            if (children.isEmpty() || used + delta > budgetTokens) break;
+            cover.remove(i);
+            cover.addAll(i, children);
+            used += delta;
+            i += children.size() - 1;
+        }
+
+        // 3. 예산 초과분은 오래된 것부터 제외
+        while (used > budgetTokens && cover.size() > 1) {
+            used -= tokens(cover.remove(0));
+        }
+        return cover;
+    }
+
+    private static int tokens(ChatSummary s) {
+        return ContextBuilder.estimateTokens(s.getContent()) + LINE_OVERHEAD;
+    }
+
+    // 요약 단계에 맞는 기간 시작일 (같은 값이면 같은 상위 노드로 묶임)
+    static LocalDate periodStart(int level, LocalDateTime time) {
+        LocalDate date = time.toLocalDate();
+        return switch (level) {
+            case ChatSummary.DAY -> date;
+            case ChatSummary.WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case ChatSummary.MONTH -> date.withDayOfMonth(1);
+            case ChatSummary.YEAR -> date.withDayOfYear(1);
+            default -> throw new IllegalArgumentException("기간 단위가 아닌 단계: " + level);
+        };
+    }
+
+    static String label(ChatSummary s) {
+        LocalDateTime start = s.getStartTs();
+        if (start == null) return "earlier";
+        return switch (s.getLevel()) {
+            case ChatSummary.DAY -> start.format(DAY);
+            case ChatSummary.WEEK -> "week of " + periodStart(ChatSummary.WEEK, start).format(DAY);
+            case ChatSummary.MONTH -> start.getYear() + "-" + String.format("%02d", start.getMonthValue());
+            case ChatSummary.YEAR -> String.valueOf(start.getYear());
+            default -> start.format(MINUTE) + (s.getEndTs() != null ? " ~ " + s.getEndTs().format(
+                    s.getEndTs().toLocalDate().equals(start.toLocalDate()) ? TIME : MINUTE) : "");
+        };
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 모든 도구 실행이 거쳐 가는 실행기 (ToolManager.executeTool / submitTool).
+ * - 호출마다 가상 스레드 하나 (멈춘 도구가 있어도 플랫폼 스레드를 잡아 두지 않음)
+ * - 도구별 동시 실행 수 제한 (Tool.getMaxConcurrency), 넘치면 대기
+ * - 호출마다 기한 (Tool.getTimeoutSeconds, 대기 시간 포함): 넘기면 시간 초과 결과로 바로 끝내고 실행을 강제 종료
+ * - 취소(사용자 중지)도 같은 방식으로 강제 종료, 결과 future는 CancellationException으로 끝남
+ * 강제 종료는 스레드 인터럽트 + 도구가 startProcess()로 띄운 프로세스와 그 자식 프로세스 전체 종료입니다.
+ * (readLine/waitFor는 인터럽트로 풀리지 않으므로 프로세스를 죽여서 파이프를 닫아야 함)
+ */
+public class ToolExecutor {
+
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tool-", 0).factory());
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tool-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, ToolStats> stats = new ConcurrentHashMap<>();
+    private final Set<Call> active = ConcurrentHashMap.newKeySet();
+
+    // 실행 중인 호출 한 건
+    private static final class Call {
+        private final String toolName;
+        private final CompletableFuture<ToolResult> result = new CompletableFuture<>();
+        private final List<Process> processes = new CopyOnWriteArrayList<>();
+        private volatile Future<?> worker;
+        private volatile boolean aborted;
+
+        Call(String toolName) {
+            this.toolName = toolName;
+        }
+
+        void register(Process process) {
+            processes.add(process);
+            if (aborted) killTree(process); // 종료 요청 뒤에 띄운 프로세스
+        }
+
+        void unregister(Process process) {
+            processes.remove(process);
+        }
+
+        // 기한 초과/취소: 결과를 먼저 확정하고 실행 중인 것을 모두 정리
+        boolean abort(ToolResult timeoutResult) {
+            boolean first = timeoutResult != null ? result.complete(timeoutResult)
+                    : result.completeExceptionally(new CancellationException(toolName + " 취소됨"));
+            if (!first) return false;
+            aborted = true;
+            for (Process process : processes) killTree(process);
+            Future<?> f = worker;
+            if (f != null) f.cancel(true);
+            return true;
+        }
+    }
+
+    // 허가 수를 줄일 수 있는 세마포어 (reducePermits는 protected)
+    private static final class Limit extends Semaphore {
+        Limit(int permits) {
+            super(permits, true);
+        }
+
+        void reduce(int permits) {
+            reducePermits(permits);
+        }
+    }
+
+    // 도구별 동시 실행 제한 + 지표 (지표의 대기/실행 시간은 실제로 실행된 호출만)
+    private static final class ToolStats {
+        private volatile int permits;
+        private final Limit limit;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong cancels = new AtomicLong();
+        private final AtomicLong queueNanosTotal = new AtomicLong();
+        private final AtomicLong queueNanosMax = new AtomicLong();
+        private final AtomicLong runNanosTotal = new AtomicLong();
+        private final AtomicLong runNanosMax = new AtomicLong();
+        private final AtomicLong runs = new AtomicLong();
+
+        ToolStats(int permits) {
+            this.permits = permits;
+            this.limit = new Limit(permits);
+        }
+
+        // 플러그인이 바뀌어 제한이 달라지면 같은 세마포어의 허가 수를 조정
+        // (줄이면 실행 중인 호출이 끝나 새 제한 아래로 내려갈 때까지 새 호출은 대기)
+        synchronized void resize(int newPermits) {
+            int delta = newPermits - permits;
+            if (delta > 0) limit.release(delta);
+            else if (delta < 0) limit.reduce(-delta);
+            permits = newPermits;
+        }
+    }
+
+    /**
+     * 도구 실행 예약. 결과 future는 도구 결과, 시간 초과 결과(실패), 또는 취소 시 CancellationException으로 끝납니다.
+     * @param timeoutSeconds 대기 + 실행을 합친 기한
+     * @param maxConcurrency 이 도구를 동시에 실행할 수 있는 호출 수
+     */
+    public CompletableFuture<ToolResult> submit(String toolName, int timeoutSeconds, int maxConcurrency, Callable<ToolResult> task) {
+        ToolStats toolStats = stats.computeIfAbsent(toolName, name -> new ToolStats(maxConcurrency));
+        if (toolStats.permits != maxConcurrency) toolStats.resize(maxConcurrency);
+        toolStats.calls.incrementAndGet();
+        Call call = new Call(toolName);
+        active.add(call);
+
+        ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+            if (call.abort(new ToolResult(false, "도구 실행 시간 초과 (" + timeoutSeconds + "초): " + toolName,
+                    "작업을 더 작게 나누거나, 오래 걸리는 명령은 백그라운드로 실행해 보세요."))) {
+                toolStats.timeouts.incrementAndGet();
+                System.err.println("[TOOL] 시간 초과로 강제 종료: " + toolName + " (" + timeoutSeconds + "초)");
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        call.result.whenComplete((r, e) -> {
+            deadline.cancel(false);
+            active.remove(call);
+        });
+
+        long submittedAt = System.nanoTime();
+        toolStats.queued.incrementAndGet();
+        call.worker = workers.submit(() -> {
+            boolean acquired = false;
+            try {
+                toolStats.limit.acquire();
+                acquired = true;
+            } catch (InterruptedException e) {
+                // 대기 중에 시간 초과/취소됨
+            } finally {
+                toolStats.queued.decrementAndGet();
+            }
+            if (!acquired || call.result.isDone()) {
+                if (acquired) toolStats.limit.release();
+                return; // 대기 중에 끝난 호출은 대기/실행 시간에 넣지 않음
+            }
+            long startedAt = System.nanoTime();
+            record(toolStats.queueNanosTotal, toolStats.queueNanosMax, startedAt - submittedAt);
+
+            toolStats.running.incrementAndGet();
+            CURRENT.set(call);
+            try {
+                call.result.complete(task.call());
+            } catch (Exception e) {
+                if (!call.aborted) {
+                    e.printStackTrace();
+                    call.result.complete(new ToolResult(false, "도구 실행 중 예외 발생: " + e.getMessage(),
+                            "파라미터 형식이나 시스템 상태를 확인해주세요."));
+                }
+            } finally {
+                CURRENT.remove();
+                toolStats.running.decrementAndGet();
+                toolStats.runs.incrementAndGet();
+                record(toolStats.runNanosTotal, toolStats.runNanosMax, System.nanoTime() - startedAt);
+                toolStats.limit.release();
+            }
+        });
+        return call.result;
+    }
+
+    // 실행 중/대기 중인 호출을 모두 취소 (사용자 중지)
+    public int cancelAll() {
+        int cancelled = 0;
+        for (Call call : active) {
+            if (call.abort(null)) {
+                cancelled++;
+                ToolStats toolStats = stats.get(call.toolName);
+                if (toolStats != null) toolStats.cancels.incrementAndGet();
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * 도구가 외부 프로세스를 띄울 때 ProcessBuilder.start() 대신 사용합니다.
+     * 실행기 안에서 호출하면 그 호출에 등록되어, 시간 초과/취소 시 자식 프로세스까지 함께 종료됩니다.
+     */
+    public static Process startProcess(ProcessBuilder builder) throws IOException {
+        Process process = builder.start();
+        Call call = CURRENT.get();
+        if (call != null) call.register(process);
+        return process;
+    }
+
+    // attachProcess()의 연결 해제 (try-with-resources용, 예외 없음)
+    public interface Attachment extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * 이미 떠 있는 프로세스(상주 파이썬 작업자 등)를 지금 실행 중인 호출에 잠시 연결합니다.
+     * 연결된 동안 시간 초과/취소되면 그 프로세스도 함께 종료되고, 연결을 풀면 호출이 끝나도 살아 있습니다.
+     */
+    public static Attachment attachProcess(Process process) {
+        Call call = CURRENT.get();
+        if (call == null) return () -> {
+        };
+        call.register(process);
+        return () -> call.unregister(process);
+    }
+
+    // 자식(손자 포함)부터 종료한 뒤 본 프로세스 종료
+    static void killTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("[tools] 실행 중 ").append(active.size()).append("건");
+        for (Map.Entry<String, ToolStats> entry : new TreeMap<>(stats).entrySet()) {
+            ToolStats s = entry.getValue();
+            long runs = Math.max(1, s.runs.get());
+            sb.append(String.format("%n  %s: 호출 %d (완료 %d, 실행 중 %d, 대기 %d) | 시간 초과 %d, 취소 %d"
+                            + " | 대기 평균 %.1f ms, 최대 %.1f ms | 실행 평균 %.1f ms, 최대 %.1f ms",
+                    entry.getKey(), s.calls.get(), s.runs.get(), s.running.get(), s.queued.get(), s.timeouts.get(), s.cancels.get(),
+                    s.queueNanosTotal.get() / 1e6 / runs, s.queueNanosMax.get() / 1e6,
+                    s.runNanosTotal.get() / 1e6 / runs, s.runNanosMax.get() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    // 앱 종료: 남은 호출을 모두 강제 종료
+    public void shutdown() {
+        cancelAll();
+        workers.shutdownNow();
+        deadlines.shutdownNow();
+        System.out.println(getStats());
+    }
+}
@@ -1,115 +1,321 @@
 package com.example.service;
 
 import com.example.service.tools.HelpTool;
+import com.example.service.tools.SearchHistoryTool;
 import com.example.service.tools.Tool;
 import com.google.gson.JsonObject;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Modifier;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.util.Enumeration;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarFile;
 
+/**
+ * 도구 등록/실행 관리.
+ * 기본 도구(help, search_history)는 바로 만들고, config/tools의 플러그인은 PluginIndex에 저장된 이름/설명/사용법만 등록해 둡니다.
+ * 플러그인 클래스는 getTool/executeTool로 처음 쓸 때 읽고 인스턴스를 만듭니다.
+ * 플러그인 폴더를 감시하다가 JAR이 생기거나 바뀌거나 지워지면 앱을 다시 시작하지 않고 다시 읽습니다.
+ * - JAR마다(버전마다) 따로 닫을 수 있는 클래스 로더 (PluginClassLoader)
+ * - 새 도구 목록을 다 만든 뒤 한 번에 교체 (실행 중인 호출은 보던 목록 그대로)
+ * - 교체된 버전은 실행 중인 호출이 모두 끝나면 로더를 닫음 -> 클래스가 GC되어 메타스페이스 반환
+ * 실행은 모두 ToolExecutor를 거칩니다 (가상 스레드, 도구별 동시 실행 제한, 기한, 취소).
+ */
 public class ToolManager {
 
-    private final Map<String, Tool> tools = new HashMap<>();
+    // JAR 복사는 이벤트가 여러 번 오므로 잠깐 모아서 한 번만 다시 읽음
+    private static final long DEBOUNCE_MS = 500;
+
+    private final Map<String, ToolHandle> coreTools = new LinkedHashMap<>();
+    private volatile Map<String, ToolHandle> tools = Map.of();   // 현재 도구 목록 (바뀔 때 통째로 교체)
+    private final Map<String, Plugin> plugins = new HashMap<>();  // JAR 이름 -> 현재 버전 (reloadPlugins 안에서만 변경)
+    private final ClassLoader parentLoader = Thread.currentThread().getContextClassLoader();
     private File currentWorkingDirectory;
     private final File pluginsDirectory;
+    private final PluginIndex pluginIndex;
+    private final ToolExecutor toolExecutor = new ToolExecutor();
+    private WatchService watchService;
+
+    // 등록된 도구 한 개: 기본 도구는 처음부터 인스턴스가 있고, 플러그인은 색인 정보만 있다가 처음 쓸 때 생성
+    private final class ToolHandle {
+        private final PluginIndex.ToolEntry entry;   // 기본 도구는 null
+        private final Plugin plugin;                 // 기본 도구는 null
+        private volatile Tool instance;
+
+        ToolHandle(Tool instance) {
+            this(null, null, instance);
+        }
+
+        ToolHandle(PluginIndex.ToolEntry entry, Plugin plugin, Tool instance) {
+            this.entry = entry;
+            this.plugin = plugin;
+            this.instance = instance;
+        }
+
+        String name() {
+            return entry != null ? entry.name() : instance.getName();
+        }
+
+        Tool get() {
+            Tool tool = instance;
+            if (tool != null) return tool;
+            synchronized (this) {
+                if (instance == null) {
+                    try {
+                        instance = instantiate(entry.className(), plugin.loader());
+                    } catch (IOException e) {
+                        System.err.println("플러그인 로드 실패 (" + entry.name() + "): " + e.getMessage());
+                    }
+                }
+                return instance;
+            }
+        }
+
+        String usage() {
+            Tool tool = instance;
+            return tool != null ? tool.getUsage() : entry.usage();
+        }
+
+        // 기한/동시 실행 수는 색인 값 (클래스를 읽지 않고 실행 예약)
+        int timeoutSeconds() {
+            int seconds = entry != null ? entry.timeoutSeconds() : instance.getTimeoutSeconds();
+            return seconds > 0 ? seconds : 60;
+        }
+
+        int maxConcurrency() {
+            int permits = entry != null ? entry.maxConcurrency() : instance.getMaxConcurrency();
+            return permits > 0 ? permits : 1;
+        }
+    }
+
+    // 플러그인 JAR 한 버전: 자기 클래스 로더를 갖고, 교체되면 실행 중인 호출이 모두 끝난 뒤 로더를 닫음
+    private final class Plugin {
+        private final File jarFile;
+        private final long size;
+        private final long modified;
+        private final List<ToolHandle> handles = new ArrayList<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean retired;
+        private PluginClassLoader loader;   // 처음 클래스가 필요할 때 생성
+        private boolean closed;
+
+        Plugin(File jarFile) {
+            this.jarFile = jarFile;
+            this.size = jarFile.length();
+            this.modified = jarFile.lastModified();
+        }
+
+        boolean isUnchanged() {
+            return jarFile.length() == size && jarFile.lastModified() == modified;
+        }
+
+        synchronized ClassLoader loader() throws IOException {
+            if (closed) throw new IOException("이미 교체된 플러그인입니다: " + jarFile.getName());
+            if (loader == null) loader = new PluginClassLoader(jarFile, parentLoader);
+            return loader;
+        }
+
+        // 실행 시작 (이미 교체된 버전이면 false -> 새 목록에서 다시 찾음)
+        boolean acquire() {
+            inFlight.incrementAndGet();
+            if (!retired) return true;
+            release();
+            return false;
+        }
+
+        void release() {
+            if (inFlight.decrementAndGet() == 0 && retired) close();
+        }
+
+        // 목록에서 빠진 버전: 실행 중인 호출이 없으면 바로, 있으면 마지막 호출이 끝날 때 닫음
+        void retire() {
+            retired = true;
+            if (inFlight.get() == 0) close();
+        }
+
+        synchronized void close() {
+            if (closed) return;
+            closed = true;
+            if (loader == null) return;
+            try {
+                loader.close();
+            } catch (IOException e) {
+                System.err.println("클래스 로더 닫기 실패 (" + jarFile.getName() + "): " + e.getMessage());
+            }
+            loader = null;
+        }
+    }
 
     public ToolManager() {
+        // 플러그인 디렉토리 설정 (현재 작업 디렉토리 하위 'config/tools')
+        this(new File(System.getProperty("user.dir"), "config/tools"));
+    }
+
+    // 플러그인 디렉토리를 직접 지정 (테스트용)
+    ToolManager(File pluginsDirectory) {
         // 초기 작업 디렉토리 설정 (프로젝트 루트 or 사용자 홈)
         this.currentWorkingDirectory = new File(System.getProperty("user.dir"));
-        
-        // 플러그인 디렉토리 설정 (현재 작업 디렉토리 하위 'plugins')
-        this.pluginsDirectory = new File(this.currentWorkingDirectory, "config/tools");
+
+        this.pluginsDirectory = pluginsDirectory;
         if (!this.pluginsDirectory.exists()) {
             boolean created = this.pluginsDirectory.mkdirs();
             if (created) {
                 System.out.println("플러그인 디렉토리가 생성되었습니다: " + this.pluginsDirectory.getAbsolutePath());
             }
         }
+        this.pluginIndex = PluginIndex.load(pluginsDirectory);
 
         registerTools();
     }
 
     private void registerTools() {
         addTool(new HelpTool(this));
-        loadExternalPlugins();
+        addTool(new SearchHistoryTool()); // 앱 내부 색인을 쓰므로 플러그인이 아닌 기본 도구
+        reloadPlugins();
     }
-    
-    private void loadExternalPlugins() {
-        File[] jarFiles = pluginsDirectory.listFiles((dir, name) -> name.toLowerCase().endsWith(".jar"));
-        if (jarFiles == null || jarFiles.length == 0) return;
 
+    /**
+     * 플러그인 폴더를 다시 읽어서 도구 목록을 교체합니다 (감시 스레드가 호출, 시작할 때도 한 번).
+     * 크기/수정 시각이 그대로인 JAR은 이전 버전을 그대로 쓰고, 바뀐 JAR만 새 로더로 (색인에 없으면 병렬 검사) 읽습니다.
+     * 바뀐 JAR을 읽지 못하면(복사 중 등) 이전 버전을 유지하고 다음 변경 이벤트 때 다시 시도합니다.
+     */
+    public synchronized void reloadPlugins() {
+        File[] listed = pluginsDirectory.listFiles((dir, name) -> name.toLowerCase().endsWith(".jar"));
+        List<File> jarFiles = listed != null ? new ArrayList<>(Arrays.asList(listed)) : new ArrayList<>();
+        jarFiles.sort(Comparator.comparing(File::getName)); // 같은 이름의 도구가 있으면 항상 같은 쪽이 이기도록
+
+        Map<String, Plugin> next = new HashMap<>();
+        List<File> changed = new ArrayList<>();
         for (File jarFile : jarFiles) {
-            try (JarFile jar = new JarFile(jarFile)) {
-                URL[] urls = { new URL("jar:file:" + jarFile.getAbsolutePath() + "!/") };
-                URLClassLoader loader = URLClassLoader.newInstance(urls, Thread.currentThread().getContextClassLoader());
-
-                Enumeration<JarEntry> entries = jar.entries();
-                while (entries.hasMoreElements()) {
-                    JarEntry entry = entries.nextElement();
-                    if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
-                        continue;
-                    }
+            Plugin current = plugins.get(jarFile.getName());
+            if (current != null && current.isUnchanged()) {
+                next.put(jarFile.getName(), current);
+            } else {
+                changed.add(jarFile);
+            }
+        }
 
-                    // 클래스 이름 변환 (com/example/MyTool.class -> com.example.MyTool)
-                    String className = entry.getName().substring(0, entry.getName().length() - 6).replace('/', '.');
-                    
-                    try {
-                        loadToolClass(className, loader);
-                    } catch (Throwable t) {
-                        // 개별 클래스 로드 실패는 무시하고 계속 진행
-                        // System.err.println("클래스 검사 실패 (" + className + "): " + t.getMessage());
-                    }
-                }
-            } catch (IOException e) {
-                System.err.println("JAR 파일 읽기 실패 (" + jarFile.getName() + "): " + e.getMessage());
+        // 바뀐 JAR만 병렬로 (JAR마다 클래스 로더가 따로라 서로 막지 않음)
+        Map<File, Plugin> loaded = new ConcurrentHashMap<>();
+        changed.parallelStream().forEach(jarFile -> {
+            Plugin plugin = loadJar(jarFile);
+            if (plugin != null) loaded.put(jarFile, plugin);
+        });
+        for (File jarFile : changed) {
+            Plugin plugin = loaded.get(jarFile);
+            if (plugin == null) plugin = plugins.get(jarFile.getName());
+            if (plugin != null) next.put(jarFile.getName(), plugin);
+        }
+
+        // 새 목록을 다 만든 뒤 한 번에 교체
+        Map<String, ToolHandle> registry = new LinkedHashMap<>(coreTools);
+        for (File jarFile : jarFiles) {
+            Plugin plugin = next.get(jarFile.getName());
+            if (plugin == null) continue;
+            for (ToolHandle handle : plugin.handles) {
+                ToolHandle existing = registry.get(handle.name());
+                // 이미 수동 등록된 Core 도구(HelpTool)는 플러그인으로 덮어쓰지 않음
+                if (existing != null && existing.instance instanceof HelpTool) continue;
+                registry.put(handle.name(), handle);
+            }
+        }
+        tools = Collections.unmodifiableMap(registry);
+
+        // 빠지거나 바뀐 이전 버전 정리 (실행 중인 호출은 끝난 뒤 닫힘)
+        int retired = 0;
+        for (Plugin old : plugins.values()) {
+            if (next.get(old.jarFile.getName()) != old) {
+                old.retire();
+                retired++;
             }
         }
+        boolean initial = plugins.isEmpty();
+        plugins.clear();
+        plugins.putAll(next);
+        pluginIndex.retain(jarFiles);
+        pluginIndex.save();
+        if (!initial && (!loaded.isEmpty() || retired > 0)) {
+            System.out.println("[PLUGIN] 도구 목록 갱신: 새로 읽은 JAR " + loaded.size() + "개, 내린 버전 " + retired + "개");
+        }
+    }
+
+    // 새로 생기거나 바뀐 JAR 하나 읽기: 색인에 있으면(내용이 같으면) 그대로, 없으면 도구 클래스를 찾아 인스턴스를 만들어 이름/설명/사용법을 얻음
+    private Plugin loadJar(File jarFile) {
+        Plugin plugin = new Plugin(jarFile);
+        List<PluginIndex.ToolEntry> indexed = pluginIndex.lookup(jarFile);
+        if (indexed != null) {
+            for (PluginIndex.ToolEntry entry : indexed) {
+                plugin.handles.add(new ToolHandle(entry, plugin, null));
+            }
+            return plugin;
+        }
+
+        try (JarFile jar = new JarFile(jarFile)) {
+            ClassLoader loader = plugin.loader();
+            List<PluginIndex.ToolEntry> entries = new ArrayList<>();
+            for (String className : PluginIndex.findToolClasses(jar, loader)) {
+                Tool tool = instantiate(className, loader); // 검사하면서 만든 인스턴스는 버리지 않고 그대로 씀
+                if (tool == null) continue;
+                PluginIndex.ToolEntry entry = PluginIndex.ToolEntry.of(className, tool);
+                entries.add(entry);
+                plugin.handles.add(new ToolHandle(entry, plugin, tool));
+            }
+            pluginIndex.put(jarFile, entries);
+            if (entries.isEmpty()) plugin.close(); // 도구가 없는 JAR은 로더를 들고 있을 필요 없음
+            return plugin;
+        } catch (IOException e) {
+            System.err.println("JAR 파일 읽기 실패 (" + jarFile.getName() + "): " + e.getMessage());
+            plugin.close();
+            return null;
+        }
     }
 
-    private void loadToolClass(String className, ClassLoader loader) {
+    private Tool instantiate(String className, ClassLoader loader) {
         try {
-            Class<?> clazz = (loader != null) ? Class.forName(className, true, loader) : Class.forName(className);
-
-            // Tool 인터페이스 구현 여부, 인터페이스/추상클래스 제외
-            if (Tool.class.isAssignableFrom(clazz) && !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers())) {
-                // 이미 등록된 도구(예: 수동 등록한 HelpTool)는 건너뛰거나 덮어쓰기
-                // 여기서는 인스턴스를 생성해보고 이름을 확인합니다.
-                
-                try {
-                    Constructor<?> constructor = clazz.getConstructor(ToolManager.class);
-                    Tool tool = (Tool) constructor.newInstance(this);
-                    
-                    // 중복 등록 방지 로직 (선택 사항)
-                    if (tools.containsKey(tool.getName())) {
-                         // 이미 수동 등록된 Core 도구라면 스킵 (HelpTool 등)
-                         // 만약 플러그인으로 덮어쓰고 싶다면 제거 후 추가
-                         if (tool instanceof HelpTool) return; 
-                    }
-                    
-                    addTool(tool);
-                } catch (NoSuchMethodException e) {
-                    // ToolManager를 받는 생성자가 없는 경우 무시
-                }
+            Class<?> clazz = Class.forName(className, true, loader);
+            if (!Tool.class.isAssignableFrom(clazz)) {
+                System.err.println("Tool 구현 클래스가 아닙니다: " + className);
+                return null;
             }
-        } catch (ClassNotFoundException | NoClassDefFoundError e) {
-            // 로드할 수 없는 클래스 무시
+            Constructor<?> constructor = clazz.getConstructor(ToolManager.class);
+            return (Tool) constructor.newInstance(this);
+        } catch (NoSuchMethodException e) {
+            // ToolManager를 받는 생성자가 없는 경우 무시
+            return null;
+        } catch (ClassNotFoundException | LinkageError e) {
+            System.err.println("도구 클래스 로드 실패 (" + className + "): " + e);
+            return null;
         } catch (Exception e) {
             System.err.println("도구 인스턴스화 실패 (" + className + "): " + e.getMessage());
+            return null;
         }
     }
 
     private void addTool(Tool tool) {
-        tools.put(tool.getName(), tool);
+        ToolHandle handle = new ToolHandle(tool);
+        coreTools.put(tool.getName(), handle);
+        tools = Collections.unmodifiableMap(new LinkedHashMap<>(coreTools));
     }
 
     // [NEW] 도구 목록 반환
@@ -117,29 +323,157 @@ public class ToolManager {
         return tools.keySet();
     }
 
-    // [NEW] 특정 도구 반환 (public으로 변경)
+    // [NEW] 특정 도구 반환 (public으로 변경) - 플러그인은 여기서 처음 클래스를 읽음
+    // 설명/사용법 확인용 (실행은 교체 중에도 안전한 executeTool로)
     public Tool getTool(String toolName) {
-        return tools.get(toolName);
+        ToolHandle handle = tools.get(toolName);
+        return handle != null ? handle.get() : null;
+    }
+
+    public CompletableFuture<ToolResult> submitTool(String toolName, JsonObject params) {
+        return submitTool(toolName, params, ToolOutputSink.NONE);
+    }
+
+    /**
+     * 도구 실행 예약 (ToolExecutor의 가상 스레드에서 실행).
+     * 결과 future는 도구 결과, 시간 초과 결과, 또는 cancelRunningTools()로 취소되면 CancellationException으로 끝납니다.
+     * @param output 실행 중 출력 조각을 받는 곳 (출력을 나눠 내보내는 도구만 사용)
+     */
+    public CompletableFuture<ToolResult> submitTool(String toolName, JsonObject params, ToolOutputSink output) {
+        ToolHandle handle = tools.get(toolName);
+        if (handle == null) {
+            return CompletableFuture.completedFuture(new ToolResult(false, "알 수 없는 도구입니다: " + toolName,
+                "사용 가능한 도구인지 확인해주세요. help 도구를 사용하세요"));
+        }
+        return toolExecutor.submit(toolName, handle.timeoutSeconds(), handle.maxConcurrency(), () -> runTool(toolName, params, output));
     }
 
+    // 끝날 때까지 기다리는 실행 (취소되면 실패 결과)
     public ToolResult executeTool(String toolName, JsonObject params) {
-        Tool tool = tools.get(toolName);
-        if (tool == null) {
-            return new ToolResult(false, "알 수 없는 도구입니다: " + toolName, 
-                "사용 가능한 도구인지 확인해주세요. help 도구를 사용하세요");
+        try {
+            return submitTool(toolName, params).join();
+        } catch (CancellationException | CompletionException e) {
+            return new ToolResult(false, "도구 실행이 취소되었습니다: " + toolName);
+        }
+    }
+
+    // 실행 중/대기 중인 도구를 모두 중단 (띄운 프로세스까지 종료)
+    public int cancelRunningTools() {
+        return toolExecutor.cancelAll();
+    }
+
+    public String getExecutionStats() {
+        return toolExecutor.getStats();
+    }
+
+    // 실행기 스레드에서 실제 실행: 실행 중에는 그 버전의 플러그인이 닫히지 않도록 잡아 둠
+    private ToolResult runTool(String toolName, JsonObject params, ToolOutputSink output) throws Exception {
+        while (true) {
+            ToolHandle handle = tools.get(toolName);
+            if (handle == null) {
+                return new ToolResult(false, "알 수 없는 도구입니다: " + toolName,
+                    "사용 가능한 도구인지 확인해주세요. help 도구를 사용하세요");
+            }
+            Plugin plugin = handle.plugin;
+            if (plugin != null && !plugin.acquire()) continue; // 방금 새 버전으로 교체됨 -> 새 목록에서 다시 찾음
+            try {
+                Tool tool = handle.get();
+                if (tool == null) {
+                    return new ToolResult(false, "도구를 불러오지 못했습니다: " + toolName,
+                        "플러그인 JAR(config/tools)을 확인해주세요.");
+                }
+                return tool.execute(params, output);
+            } finally {
+                if (plugin != null) plugin.release();
+            }
         }
+    }
+
+    // 색인에 있는 사용법을 쓰므로 플러그인 클래스를 읽지 않음
+    public String getToolUsage(String toolName) {
+        ToolHandle handle = tools.get(toolName);
+        return handle != null ? handle.usage() : "정보 없음";
+    }
+
+    // --- [Plugin Folder Watching] ---
+
+    // 플러그인 폴더 감시 시작 (JAR 추가/변경/삭제 시 reloadPlugins)
+    public synchronized void startWatching() {
+        if (watchService != null) return;
         try {
-            return tool.execute(params);
-        } catch (Exception e) {
+            watchService = FileSystems.getDefault().newWatchService();
+            pluginsDirectory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("플러그인 폴더 감시 시작 실패!");
             e.printStackTrace();
-            return new ToolResult(false, "도구 실행 중 예외 발생: " + e.getMessage(), 
-                "파라미터 형식이나 시스템 상태를 확인해주세요.");
+            stopWatching();
+            return;
         }
+
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> watchLoop(service), "plugin-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
     }
 
-    public String getToolUsage(String toolName) {
-        Tool tool = tools.get(toolName);
-        return tool != null ? tool.getUsage() : "정보 없음";
+    public synchronized void stopWatching() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        watchService = null;
+    }
+
+    private void watchLoop(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = drain(key);
+                // 이어서 들어오는 이벤트는 모아서 한 번에 처리
+                while ((key = service.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key);
+                }
+                if (changed) {
+                    try {
+                        reloadPlugins();
+                    } catch (RuntimeException e) {
+                        System.err.println("[PLUGIN] 플러그인 다시 읽기 실패!");
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopWatching()으로 종료
+        }
+    }
+
+    // JAR 파일 이벤트만 (색인 파일 .index.json 저장은 무시)
+    private static boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (event.context() instanceof Path name && name.toString().toLowerCase().endsWith(".jar")) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    // 앱 종료 시 감시 중지 + 실행 중인 도구 종료 + 플러그인 클래스 로더(열린 JAR 파일) 정리
+    public synchronized void close() {
+        stopWatching();
+        toolExecutor.shutdown();
+        tools = Collections.unmodifiableMap(new LinkedHashMap<>(coreTools));
+        for (Plugin plugin : plugins.values()) {
+            plugin.retire();
+        }
+        plugins.clear();
     }
 
     // --- [State Management & Helpers] ---
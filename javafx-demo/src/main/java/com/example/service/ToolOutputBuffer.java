@@ -0,0 +1,122 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 도구 출력을 앞부분 + 뒷부분만 남기는 고정 크기 버퍼.
+ * 출력이 아무리 길어도 메모리는 HEAD + TAIL 글자로 일정하고, 전체 크기(바이트/줄)는 세어 둡니다.
+ * 모델에는 전체 대신 digest()(앞/뒤 + 생략 표시 + 전체 크기)를 보냅니다. 오류는 보통 끝에 나오므로 뒤를 더 길게 남깁니다.
+ */
+public class ToolOutputBuffer {
+
+    static final int HEAD_CHARS = 2_000;
+    static final int TAIL_CHARS = 6_000;
+    private static final int READ_CHUNK = 8 * 1024;
+
+    private final StringBuilder head = new StringBuilder();
+    private final char[] tail;
+    private final int headLimit;
+    private int tailStart = 0;      // 링 버퍼에서 가장 오래된 글자 위치
+    private int tailLength = 0;
+    private long totalChars = 0;
+    private long totalBytes = 0;    // UTF-8 기준
+    private long lines = 0;
+
+    public ToolOutputBuffer() {
+        this(HEAD_CHARS, TAIL_CHARS);
+    }
+
+    ToolOutputBuffer(int headChars, int tailChars) {
+        this.headLimit = headChars;
+        this.tail = new char[tailChars];
+    }
+
+    /**
+     * 프로세스 출력 등을 끝까지 읽으면서 조각마다 sink로 넘기고 버퍼에 쌓습니다.
+     * readLine과 달리 줄바꿈 없는 진행 표시도 바로 전달됩니다.
+     */
+    public static ToolOutputBuffer pump(Reader reader, ToolOutputSink sink) throws IOException {
+        ToolOutputBuffer buffer = new ToolOutputBuffer();
+        char[] chunk = new char[READ_CHUNK];
+        int carry = 0; // 앞 조각 끝에 걸친 서로게이트 (다음 조각과 함께 보냄)
+        int read;
+        while ((read = reader.read(chunk, carry, chunk.length - carry)) != -1) {
+            int end = carry + read;
+            if (end == 0) continue;
+            int cut = Character.isHighSurrogate(chunk[end - 1]) ? end - 1 : end;
+            if (cut > 0) {
+                String text = new String(chunk, 0, cut);
+                buffer.append(text);
+                sink.write(text);
+            }
+            carry = end - cut;
+            if (carry > 0) chunk[0] = chunk[end - 1];
+        }
+        if (carry > 0) {
+            String text = String.valueOf(chunk[0]);
+            buffer.append(text);
+            sink.write(text);
+        }
+        return buffer;
+    }
+
+    public synchronized void append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            totalBytes += c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isSurrogate(c) ? 2 : 3; // 서로게이트 쌍 = 4바이트
+            if (c == '\n') lines++;
+            if (head.length() < headLimit || completesPairAtHeadEnd(c)) {
+                head.append(c);
+            } else if (tail.length > 0) {
+                tail[(tailStart + tailLength) % tail.length] = c;
+                if (tailLength < tail.length) {
+                    tailLength++;
+                } else {
+                    tailStart = (tailStart + 1) % tail.length;
+                }
+            }
+        }
+        totalChars += text.length();
+    }
+
+    // 앞부분 끝에 걸친 서로게이트 쌍은 한 글자 넘치더라도 앞부분에 함께 둠
+    private boolean completesPairAtHeadEnd(char c) {
+        return Character.isLowSurrogate(c) && head.length() == headLimit
+                && headLimit > 0 && Character.isHighSurrogate(head.charAt(headLimit - 1));
+    }
+
+    public synchronized boolean isTruncated() {
+        return totalChars > head.length() + tailLength;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getTotalChars() {
+        return totalChars;
+    }
+
+    // 모델/기록용 요약: 잘리지 않았으면 전체, 잘렸으면 앞 + 생략 표시 + 뒤
+    public synchronized String digest() {
+        String tailText = tailText();
+        if (!isTruncated()) return head + tailText;
+        long omitted = totalChars - head.length() - tailText.length();
+        long lineCount = lines + (totalChars > 0 ? 1 : 0);
+        return head
+                + "\n\n… (중간 " + omitted + "자 생략 | 전체 출력 " + totalBytes + "바이트, 약 " + lineCount + "줄 중 앞 "
+                + head.length() + "자와 뒤 " + tailText.length() + "자만 표시) …\n\n"
+                + tailText;
+    }
+
+    // 링 버퍼가 서로게이트 쌍의 앞쪽을 이미 밀어냈으면 남은 뒤쪽 반도 버림
+    private String tailText() {
+        StringBuilder sb = new StringBuilder(tailLength);
+        int first = tailLength > 0 && Character.isLowSurrogate(tail[tailStart]) ? 1 : 0;
+        for (int i = first; i < tailLength; i++) {
+            sb.append(tail[(tailStart + i) % tail.length]);
+        }
+        return sb.toString();
+    }
+}
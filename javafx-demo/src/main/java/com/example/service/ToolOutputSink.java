@@ -0,0 +1,14 @@
+package com.example.service;
+
+/**
+ * 도구가 실행 중에 내보내는 출력 조각을 받는 곳 (화면에 실시간 표시).
+ * 도구의 실행 스레드에서 호출되므로 구현은 빨리 반환해야 합니다.
+ */
+@FunctionalInterface
+public interface ToolOutputSink {
+
+    ToolOutputSink NONE = chunk -> {
+    };
+
+    void write(String chunk);
+}
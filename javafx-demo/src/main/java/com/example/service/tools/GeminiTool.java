@@ -1,5 +1,6 @@
 package com.example.service.tools;
 
+import com.example.service.ToolExecutor;
 import com.example.service.ToolManager;
 import com.example.service.ToolResult;
 import com.google.gson.JsonObject;
@@ -30,6 +31,17 @@ public class GeminiTool implements Tool {
         return "{ \"prompt\": \"(질문 내용)\" }";
     }
 
+    // 외부 CLI 응답을 기다리므로 길게, 한 번에 하나씩
+    @Override
+    public int getTimeoutSeconds() {
+        return 180;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return 1;
+    }
+
     @Override
     public ToolResult execute(JsonObject params) {
         if (!params.has("prompt")) {
@@ -53,7 +65,7 @@ public class GeminiTool implements Tool {
             
             pb.directory(toolManager.getCurrentWorkingDirectory());
             pb.redirectErrorStream(true);
-            Process process = pb.start();
+            Process process = ToolExecutor.startProcess(pb); // 시간 초과/취소 시 자식 프로세스까지 종료
             
             Charset charset = Charset.forName("UTF-8");
                               
@@ -1,9 +1,15 @@
 package com.example.service.tools;
 
+import com.example.service.AppConfigService;
+import com.example.service.PythonWorkerPool;
+import com.example.service.ToolExecutor;
 import com.example.service.ToolManager;
+import com.example.service.ToolOutputBuffer;
+import com.example.service.ToolOutputSink;
 import com.example.service.ToolResult;
 import com.google.gson.JsonObject;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 
@@ -27,21 +33,68 @@ public class RunPythonTool implements Tool {
 
     @Override
     public String getUsage() {
-        return "{ \"code\": \"(실행할 파이썬 코드)\" }";
+        return "{ \"code\": \"(실행할 파이썬 코드)\", \"session\": \"(선택) 세션 이름 - 같은 이름으로 실행하면 변수가 유지됨\" }";
+    }
+
+    // 계산/데이터 처리용이라 넉넉하게, 동시에 2개까지
+    @Override
+    public int getTimeoutSeconds() {
+        return 120;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return 2;
     }
 
     @Override
     public ToolResult execute(JsonObject params) {
+        return execute(params, ToolOutputSink.NONE);
+    }
+
+    // 출력은 읽는 대로 화면에 보내고, 결과에는 앞/뒤만 남긴 요약과 전체 크기만 담음
+    @Override
+    public ToolResult execute(JsonObject params, ToolOutputSink outputSink) {
         if (!params.has("code")) {
             return new ToolResult(false, "파라미터 오류: 'code' 필드가 없습니다.", getUsage());
         }
 
         String code = params.get("code").getAsString();
+        String session = params.has("session") && !params.get("session").isJsonNull()
+                ? params.get("session").getAsString().strip() : "";
+        // 기본은 상주 작업자 재사용, "spawn"이면 예전처럼 호출마다 새 프로세스 (세션 없음)
+        if (!"spawn".equalsIgnoreCase(AppConfigService.load().getPythonToolMode())) {
+            try {
+                PythonWorkerPool.Result result = PythonWorkerPool.getInstance().execute(code, session.isEmpty() ? null : session,
+                        toolManager.getCurrentWorkingDirectory(), getTimeoutSeconds(), outputSink);
+                String output = result.output().digest();
+                if (result.freshSession()) {
+                    output = "[새 세션 '" + session + "': 이전 변수 없음]\n" + output;
+                }
+                if (result.timedOut()) {
+                    return new ToolResult(false, "파이썬 실행 시간 초과 (" + getTimeoutSeconds() + "초):\n" + output,
+                            "작업을 더 작게 나누거나 반복 횟수를 줄여보세요. 세션을 썼다면 변수는 초기화되었습니다.");
+                }
+                if (!result.success()) {
+                    return new ToolResult(false, "Python Error:\n" + output,
+                            "코드에 문법 오류(SyntaxError)나 런타임 에러가 있습니다. print() 문을 추가해서 디버깅해보거나, 코드를 단순화해보세요.");
+                }
+                return new ToolResult(true, output);
+            } catch (IOException e) {
+                // 코드를 보내기 전에 실패한 경우만 (작업자 시작 실패 등): 아직 실행되지 않았으므로 새 프로세스로 실행
+                System.err.println("[run_python] 상주 작업자 사용 불가, 새 프로세스로 실행: " + e.getMessage());
+            }
+        }
+        return executeSpawn(code, outputSink);
+    }
+
+    // 호출마다 새 파이썬 프로세스 (python_tool_mode가 "spawn"이거나 작업자를 띄울 수 없을 때)
+    private ToolResult executeSpawn(String code, ToolOutputSink outputSink) {
         try {
-            ProcessBuilder pb = new ProcessBuilder("python", "-c", "import sys; exec(sys.stdin.read())");
+            ProcessBuilder pb = new ProcessBuilder("python", "-u", "-c", "import sys; exec(sys.stdin.read())"); // -u: print가 바로 보이도록 버퍼링 끔
             pb.directory(toolManager.getCurrentWorkingDirectory());
             pb.redirectErrorStream(true);
-            Process process = pb.start();
+            Process process = ToolExecutor.startProcess(pb); // 시간 초과/취소 시 자식 프로세스까지 종료
 
             try (java.io.OutputStream os = process.getOutputStream();
                  java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(os, Charset.forName("UTF-8"))) {
@@ -51,13 +104,9 @@ public class RunPythonTool implements Tool {
 
             Charset charset = Charset.forName("UTF-8");
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), charset));
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append("\n");
-            }
+            ToolOutputBuffer buffer = ToolOutputBuffer.pump(reader, outputSink);
             int exitCode = process.waitFor();
-            String output = sb.toString();
+            String output = buffer.digest();
 
             if (exitCode != 0) {
                  return new ToolResult(false, "Python Error (Exit Code " + exitCode + "):\n" + output, 
@@ -1,6 +1,9 @@
 package com.example.service.tools;
 
+import com.example.service.ToolExecutor;
 import com.example.service.ToolManager;
+import com.example.service.ToolOutputBuffer;
+import com.example.service.ToolOutputSink;
 import com.example.service.ToolResult;
 import com.google.gson.JsonObject;
 import java.io.BufferedReader;
@@ -30,8 +33,25 @@ public class RunShellTool implements Tool {
         return "{ \"command\": \"(실행할 쉘 명령어)\" }";
     }
 
+    // 오래 걸리는 빌드/설치 명령도 있으므로 넉넉하게, 동시에 여러 개 돌면 서로 느려지므로 2개까지
+    @Override
+    public int getTimeoutSeconds() {
+        return 120;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return 2;
+    }
+
     @Override
     public ToolResult execute(JsonObject params) {
+        return execute(params, ToolOutputSink.NONE);
+    }
+
+    // 출력은 읽는 대로 화면에 보내고, 결과에는 앞/뒤만 남긴 요약과 전체 크기만 담음
+    @Override
+    public ToolResult execute(JsonObject params, ToolOutputSink outputSink) {
         if (!params.has("command")) {
             return new ToolResult(false, "파라미터 오류: 'command' 필드가 없습니다.", getUsage());
         }
@@ -50,18 +70,14 @@ public class RunShellTool implements Tool {
             // ToolManager가 관리하는 현재 디렉토리 사용
             pb.directory(toolManager.getCurrentWorkingDirectory());
             pb.redirectErrorStream(true);
-            Process process = pb.start();
+            Process process = ToolExecutor.startProcess(pb); // 시간 초과/취소 시 자식 프로세스까지 종료
             
             Charset charset = isWindows ? Charset.forName("MS949") : Charset.forName("UTF-8");
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), charset));
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append("\n");
-            }
+            ToolOutputBuffer buffer = ToolOutputBuffer.pump(reader, outputSink);
             int exitCode = process.waitFor();
             
-            String output = sb.toString();
+            String output = buffer.digest();
             if (exitCode != 0) {
                 return new ToolResult(false, "Exit Code " + exitCode + ":\n" + output, "명령어 스펠링이나 옵션을 확인해보세요.");
             }
@@ -0,0 +1,63 @@
+package com.example.service.tools;
+
+import com.example.model.SearchHit;
+import com.example.repository.HistorySearchIndex;
+import com.example.service.ToolResult;
+import com.google.gson.JsonObject;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class SearchHistoryTool implements Tool {
+
+    private static final int DEFAULT_LIMIT = 5;
+    private static final int MAX_LIMIT = 20;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @Override
+    public String getName() {
+        return "search_history";
+    }
+
+    @Override
+    public String getDescription() {
+        return "지금까지의 전체 대화 기록에서 키워드로 관련 메시지를 찾아 관련도 순으로 보여줍니다.";
+    }
+
+    @Override
+    public String getUsage() {
+        return "{ \"query\": \"(검색어)\", \"limit\": (결과 개수, 생략 시 5, 최대 20) }";
+    }
+
+    @Override
+    public ToolResult execute(JsonObject params) {
+        if (!params.has("query") || params.get("query").getAsString().isBlank()) {
+            return new ToolResult(false, "검색어가 없습니다.", "{ \"query\": \"...\" } 형식으로 검색어를 입력해주세요.");
+        }
+        String query = params.get("query").getAsString().trim();
+        int limit = DEFAULT_LIMIT;
+        try {
+            if (params.has("limit")) limit = Math.max(1, Math.min(MAX_LIMIT, params.get("limit").getAsInt()));
+        } catch (Exception e) {
+            return new ToolResult(false, "limit는 숫자여야 합니다.", getUsage());
+        }
+
+        HistorySearchIndex index = HistorySearchIndex.getInstance();
+        List<SearchHit> hits = index.search(query, limit);
+
+        StringBuilder sb = new StringBuilder();
+        if (!index.isReady()) sb.append("(검색 색인을 만드는 중이라 최근 대화 위주로만 검색되었습니다)\n");
+        if (hits.isEmpty()) {
+            sb.append("'").append(query).append("'에 대한 대화 기록이 없습니다.");
+            return new ToolResult(true, sb.toString());
+        }
+
+        sb.append("🔍 '").append(query).append("' 검색 결과 ").append(hits.size()).append("건\n\n");
+        for (SearchHit hit : hits) {
+            String time = hit.getTimestamp() != null ? hit.getTimestamp().format(TIME_FORMAT) : "?";
+            String role = "user".equals(hit.getRole()) ? "주인님" : "AI";
+            sb.append("[").append(time).append("] ").append(role).append(": ").append(hit.getSnippet()).append("\n");
+        }
+        return new ToolResult(true, sb.toString());
+    }
+}
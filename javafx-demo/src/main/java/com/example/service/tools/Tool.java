@@ -1,5 +1,6 @@
 package com.example.service.tools;
 
+import com.example.service.ToolOutputSink;
 import com.example.service.ToolResult;
 import com.google.gson.JsonObject;
 
@@ -27,4 +28,29 @@ public interface Tool {
      * @return 실행 결과 (성공 여부, 출력, 가이드 포함)
      */
     ToolResult execute(JsonObject params);
+
+    /**
+     * 출력을 실행 중에 조금씩 내보내는 실행 (화면에 실시간 표시)
+     * 오래 걸리는 도구는 이것을 구현하고, 결과에는 전체 대신 ToolOutputBuffer.digest()를 담습니다.
+     * 기본 구현은 기존 execute를 그대로 호출합니다.
+     * @param output 출력 조각을 받는 곳 (도구의 실행 스레드에서 호출됨)
+     */
+    default ToolResult execute(JsonObject params, ToolOutputSink output) {
+        return execute(params);
+    }
+
+    /**
+     * 한 번 호출의 기한 (초, 대기 시간 포함)
+     * 넘기면 ToolExecutor가 실행을 중단하고 띄운 프로세스를 모두 종료합니다.
+     */
+    default int getTimeoutSeconds() {
+        return 60;
+    }
+
+    /**
+     * 이 도구를 동시에 실행할 수 있는 호출 수 (넘치면 대기)
+     */
+    default int getMaxConcurrency() {
+        return 4;
+    }
 }
@@ -1,20 +1,63 @@
 package com.example.util;
 
+import com.example.model.ToolCall;
 import org.commonmark.node.Node;
 import org.commonmark.parser.Parser;
 import org.commonmark.renderer.html.HtmlRenderer;
 
+import java.util.List;
+
 public class HtmlUtil {
 
+    // Parser/HtmlRenderer는 불변이고 스레드 안전하므로 한 번만 만들어 재사용
+    private static final Parser PARSER = Parser.builder().build();
+    private static final HtmlRenderer RENDERER = HtmlRenderer.builder()
+            .softbreak("<br>") // 엔터 한 번도 줄바꿈으로 처리
+            .build();
+
     // 마크다운을 HTML로 변환 (Java 처리)
     public static String markdownToHtml(String markdown) {
         if (markdown == null) return "";
-        Parser parser = Parser.builder().build();
-        Node document = parser.parse(markdown);
-        HtmlRenderer renderer = HtmlRenderer.builder()
-                .softbreak("<br>") // 엔터 한 번도 줄바꿈으로 처리
-                .build();
-        return renderer.render(document);
+        Node document = PARSER.parse(markdown);
+        return RENDERER.render(document);
+    }
+
+    // 도구 호출 기록 -> 답변 아래에 붙는 결과 박스 (저장은 기록으로만 하고 HTML은 그릴 때마다 만듦)
+    public static String toolCallsHtml(List<ToolCall> calls) {
+        if (calls.isEmpty()) return "";
+        StringBuilder html = new StringBuilder();
+        for (ToolCall call : calls) html.append(toolCallHtml(call));
+        return html.toString();
+    }
+
+    private static String toolCallHtml(ToolCall call) {
+        if (!call.hasResult()) {
+            boolean rejected = ToolCall.REJECTED.equals(call.getStatus());
+            String color = rejected ? "#FF5252" : "#757575";
+            return "<div class='approval-container' style='border-color: " + color + ";'>" +
+                    "<div class='approval-content'><b>[" + (rejected ? "거절됨" : "취소됨") + "]</b> " +
+                    (rejected ? "🚫 거절했습니다." : "❌ 취소했습니다.") + "</div></div>";
+        }
+        String color = call.isSuccess() ? "#00FF00" : "#FF5252";
+        String expandButton = call.getBlobId() != null
+                ? "<button class='blob-expand' onclick=\"toggleBlob(this, '" + call.getBlobId() + "')\">전체 보기 ("
+                    + formatSize(call.getOutputLength()) + ")</button>"
+                : "";
+        return "<div class='approval-container' style='border-color: " + color + ";'>" +
+                "<div class='approval-content'><b>[" + escape(call.getToolName()) + "]</b> " + (call.isSuccess() ? "✅" : "❌") + "</div>" +
+                "<div class='approval-result' style='color: " + color + ";'>" + escape(call.getOutput() != null ? call.getOutput() : "") + "</div>" +
+                expandButton +
+                "</div>";
+    }
+
+    public static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    public static String formatSize(int chars) {
+        return chars >= 1024 * 1024
+                ? String.format("%.1f MB", chars / (1024.0 * 1024))
+                : String.format("%.1f KB", chars / 1024.0);
     }
 
     public static String getSkeletonHtml() {
@@ -38,6 +81,7 @@ public class HtmlUtil {
                 "   transform: translateZ(0);" +           // 3. GPU 가속을 강제하여 렌더링 품질 향상
                 "   -webkit-font-smoothing: antialiased;" + // (옵션) 폰트도 부드럽게
                 "}" +
+                ".search-hit .user-msg, .search-hit .ai-msg { box-shadow: 0 0 0 2px #4CAF50; transition: box-shadow 0.3s; }" + // 검색 결과로 이동한 메시지 강조
                 
                 // AI Message Wrapper & Style
                 ".ai-wrapper { display: flex; flex-direction: column; align-items: flex-start; max-width: 85%; }" +
@@ -62,6 +106,7 @@ public class HtmlUtil {
                 // Markdown Styles (Dark)
                 ".ai-msg code { background-color: #424242; padding: 2px 5px; border-radius: 4px; font-family: 'Consolas', monospace; color: #FF80AB; }" +
                 ".ai-msg p { margin: 0 0 10px 0; }" +
+                ".ai-msg.streaming { white-space: pre-wrap; }" +
                 ".ai-msg p:last-child { margin-bottom: 0; }" +
                 ".code-wrapper { margin: 10px 0; border: 1px solid #444; border-radius: 8px; overflow: hidden; background-color: #1E1E1E; }" +
                 ".code-header { display: flex; justify-content: space-between; align-items: center; background-color: #2D2D2D; padding: 6px 12px; border-bottom: 1px solid #444; }" +
@@ -74,6 +119,9 @@ public class HtmlUtil {
                 ".code-content.collapsed { display: none; }" +
                 // Approval Box Styles
                 ".approval-container { margin-top: 15px; background-color: #1E1E1E; border: 1px solid #FFD54F; color: #E0E0E0; padding: 12px; border-radius: 8px; display: flex; flex-direction: column; gap: 8px; }" +
+                ".approval-result.expanded { max-height: 600px; }" +
+                ".blob-expand { align-self: flex-start; background-color: #333; color: #BDBDBD; border: 1px solid #555; border-radius: 4px; padding: 4px 10px; font-size: 11px; cursor: pointer; }" +
+                ".blob-expand:hover { background-color: #444; color: #FFF; }" +
                 ".approval-result { width: 100%; box-sizing: border-box; background-color: #000000; color: #00FF00; padding: 10px; border-radius: 5px; font-family: 'Consolas', monospace; font-size: 12px; margin-top: 10px; white-space: pre-wrap; word-break: break-all; max-height: 200px; overflow-y: auto; }" +
                 ".status-running { color: #FFF176; font-weight: bold; font-style: italic; }" +
                 ".approval-content { font-size: 13px; line-height: 1.4; font-family: 'Consolas', monospace; color: #FFF59D; word-break: break-all; }" + 
@@ -124,7 +172,9 @@ public class HtmlUtil {
                 "</style>" +
                 "<script>" +
                 "  let currentAiDiv = null;" +
-                "  let rawAiText = '';" +
+                "  let currentTextNode = null;" +
+                "  let committedDiv = null;" +
+                "  let tailDiv = null;" +
                 "" +                
                 // [NEW] Spinner Functions (Standalone)
                 "  function showLoadingSpinner() {" +
@@ -180,23 +230,47 @@ public class HtmlUtil {
                 "      wrapper.className = 'ai-wrapper';" +
                 "      wrapper.dataset.id = msgId;" +
                 "      currentAiDiv = document.createElement('div');" +
-                "      currentAiDiv.className = 'ai-msg';" +
+                "      currentAiDiv.className = 'ai-msg streaming';" +
+                "      committedDiv = null;" +
+                "      tailDiv = null;" +
+                "      currentTextNode = document.createTextNode('');" +
+                "      currentAiDiv.appendChild(currentTextNode);" +
                 "      wrapper.appendChild(currentAiDiv);" +
                 "      container.appendChild(wrapper);" +
-                "      rawAiText = '';" +
                 "      scrollToBottom();" +
                 "  }" +
                 "" +
-                "  function streamAiToken(token) {" +
+                // 누적된 토큰 묶음(delta)만 텍스트 노드 뒤에 이어 붙임 (전체 재설정 X)
+                "  function streamAiToken(delta) {" +
+                "      if (!currentTextNode) return;" +
+                "      currentTextNode.appendData(delta);" +
+                "      scrollToBottom();" +
+                "  }" +
+                "" +
+                // 확정된 블록 HTML은 이어 붙이고, 열린 마지막 블록만 교체
+                "  function streamAiHtml(committedHtml, tailHtml, pendingText) {" +
                 "      if (!currentAiDiv) return;" +
-                "      rawAiText += token;" +
-                "      currentAiDiv.innerText = rawAiText;" +
+                "      if (!committedDiv) {" +
+                "          currentAiDiv.classList.remove('streaming');" +
+                "          currentAiDiv.innerHTML = '';" +
+                "          currentTextNode = null;" +
+                "          committedDiv = document.createElement('div');" +
+                "          tailDiv = document.createElement('div');" +
+                "          currentAiDiv.appendChild(committedDiv);" +
+                "          currentAiDiv.appendChild(tailDiv);" +
+                "      }" +
+                "      if (committedHtml) committedDiv.insertAdjacentHTML('beforeend', committedHtml);" +
+                "      if (tailHtml !== null) tailDiv.innerHTML = tailHtml + '<span style=\"white-space: pre-wrap\"></span>';" +
+                "      tailDiv.lastChild.textContent = pendingText;" +
                 "      scrollToBottom();" +
                 "  }" +
                 "" +
                 "  function finishAiMessage() {" +
+                "      if (currentAiDiv) currentAiDiv.classList.remove('streaming');" +
                 "      currentAiDiv = null;" +
-                "      rawAiText = '';" +
+                "      currentTextNode = null;" +
+                "      committedDiv = null;" +
+                "      tailDiv = null;" +
                 "      setTimeout(enhanceCodeBlocks, 50);" + 
                 "      scrollToBottom();" +
                 "  }" +
@@ -211,7 +285,7 @@ public class HtmlUtil {
                 "              msgDiv.innerHTML = htmlContent;" +
                 "              lastWrapper.dataset.id = msgId;" + 
                 "              addMessageActions(lastWrapper, msgId);" + 
-                "              enhanceCodeBlocks();" +
+                "              enhanceCodeBlocks(lastWrapper);" +
                 "          }" +
                 "      }" +
                 "  }" +
@@ -285,15 +359,123 @@ public class HtmlUtil {
                 "      if (!wrapper) return;" +
                 "      const msgDiv = wrapper.querySelector('.ai-msg') || wrapper.querySelector('.user-msg');" +
                 "      if (msgDiv) {" +
+                "          msgDiv.classList.remove('streaming');" +
+                "          if (msgDiv === currentAiDiv) { currentTextNode = null; committedDiv = null; tailDiv = null; }" +
                 "          msgDiv.innerHTML = newHtml;" +
                 "          addMessageActions(wrapper, id);" + 
-                "          enhanceCodeBlocks();" +
+                "          enhanceCodeBlocks(wrapper);" +
+                "      }" +
+                "  }" +
+                "" +
+                // --- [가상화된 메시지 목록] ---
+                // 화면에는 ChatService가 가진 범위(최대 수백 개)만 두고, 위/아래 끝에 가까워지면 app.loadOlder/loadNewer로 다음 페이지 요청
+                "  let hasOlder = false;" +
+                "  let hasNewer = false;" +
+                "  let pageLoading = false;" +
+                "  let scrollTicking = false;" +
+                "" +
+                "  function setPaging(older, newer) { hasOlder = older; hasNewer = newer; pageLoading = false; }" +
+                "  function pageLoaded() { pageLoading = false; }" +
+                "" +
+                "  function messageWrappers() { return document.querySelectorAll('#chat-container > div[data-id]'); }" +
+                "" +
+                "  function checkPaging() {" +
+                "      if (pageLoading) return;" +
+                "      const margin = window.innerHeight * 1.5;" +
+                "      const wrappers = messageWrappers();" +
+                "      if (wrappers.length === 0) return;" +
+                "      if (hasOlder && window.scrollY < margin) {" +
+                "          pageLoading = true;" +
+                "          app.loadOlder(wrappers[0].dataset.id);" +
+                "      } else if (hasNewer && document.body.scrollHeight - window.scrollY - window.innerHeight < margin) {" +
+                "          pageLoading = true;" +
+                "          app.loadNewer(wrappers[wrappers.length - 1].dataset.id);" +
+                "      }" +
+                "  }" +
+                "" +
+                "  window.addEventListener('scroll', function() {" +
+                "      if (scrollTicking) return;" +
+                "      scrollTicking = true;" +
+                "      requestAnimationFrame(function() { scrollTicking = false; checkPaging(); });" +
+                "  });" +
+                "" +
+                "  function buildMessageNode(item) {" +
+                "      const wrapper = document.createElement('div');" +
+                "      wrapper.className = item.user ? 'user-wrapper' : 'ai-wrapper';" +
+                "      wrapper.dataset.id = item.id;" +
+                "      const msgDiv = document.createElement('div');" +
+                "      msgDiv.className = item.user ? 'user-msg' : 'ai-msg';" +
+                "      if (item.user) msgDiv.innerText = item.text; else msgDiv.innerHTML = item.html;" +
+                "      wrapper.appendChild(msgDiv);" +
+                "      addMessageActions(wrapper, item.id);" +
+                "      return wrapper;" +
+                "  }" +
+                "" +
+                // 이전 페이지를 맨 위에 추가 (보던 위치는 그대로 유지)
+                "  function prependMessages(json, older) {" +
+                "      const container = document.getElementById('chat-container');" +
+                "      const oldHeight = document.body.scrollHeight;" +
+                "      const oldTop = window.scrollY;" +
+                "      const fragment = document.createDocumentFragment();" +
+                "      JSON.parse(json).forEach(function(item) { fragment.appendChild(buildMessageNode(item)); });" +
+                "      container.insertBefore(fragment, container.firstChild);" +
+                "      window.scrollTo(0, oldTop + document.body.scrollHeight - oldHeight);" +
+                "      hasOlder = older;" +
+                "      pageLoading = false;" +
+                "  }" +
+                "" +
+                // 다음 페이지를 맨 아래에 추가 (위로 올라갔다가 다시 내려오는 중)
+                "  function appendMessages(json, newer) {" +
+                "      const container = document.getElementById('chat-container');" +
+                "      const fragment = document.createDocumentFragment();" +
+                "      JSON.parse(json).forEach(function(item) { fragment.appendChild(buildMessageNode(item)); });" +
+                "      container.appendChild(fragment);" +
+                "      hasNewer = newer;" +
+                "      pageLoading = false;" +
+                "  }" +
+                "" +
+                "  function resetMessages(json, older, newer) {" +
+                "      const container = document.getElementById('chat-container');" +
+                "      container.innerHTML = '';" +
+                "      currentAiDiv = null; currentTextNode = null; committedDiv = null; tailDiv = null;" +
+                "      appendMessages(json, newer);" +
+                "      hasOlder = older;" +
+                "  }" +
+                "" +
+                // 범위를 벗어난 메시지 count개를 위(fromTop) 또는 아래에서 제거 (사이의 시스템 메시지도 함께)
+                "  function trimMessages(fromTop, count) {" +
+                "      const wrappers = messageWrappers();" +
+                "      if (count <= 0 || wrappers.length === 0) return;" +
+                "      const container = document.getElementById('chat-container');" +
+                "      if (fromTop) {" +
+                "          const last = wrappers[Math.min(count, wrappers.length) - 1];" +
+                "          const oldHeight = document.body.scrollHeight;" +
+                "          const oldTop = window.scrollY;" +
+                "          while (container.firstChild && container.firstChild !== last) container.removeChild(container.firstChild);" +
+                "          container.removeChild(last);" +
+                "          window.scrollTo(0, oldTop - (oldHeight - document.body.scrollHeight));" +
+                "          hasOlder = true;" +
+                "      } else {" +
+                "          const first = wrappers[Math.max(0, wrappers.length - count)];" +
+                "          while (container.lastChild && container.lastChild !== first) container.removeChild(container.lastChild);" +
+                "          container.removeChild(first);" +
+                "          hasNewer = true;" +
                 "      }" +
                 "  }" +
                 "" +
+                "  function scrollToMessage(id) {" +
+                "      const wrapper = document.querySelector('div[data-id=\"' + id + '\"]');" +
+                "      if (!wrapper) return;" +
+                "      wrapper.scrollIntoView({ block: 'center' });" +
+                "      wrapper.classList.add('search-hit');" +
+                "      setTimeout(function() { wrapper.classList.remove('search-hit'); }, 2000);" +
+                "  }" +
+                "" +
                 // --- [코드 블록 꾸미기 로직] ---
-                "  function enhanceCodeBlocks() {" +
-                "      const pres = document.querySelectorAll('pre:not(.enhanced)');" +
+                // root가 주어지면 그 안만 검사 (변경된 부분만 보도록 해서 메시지가 많아도 느려지지 않게)
+                "  function enhanceCodeBlocks(root) {" +
+                "      const scope = (root && root.querySelectorAll) ? root : document;" +
+                "      const pres = scope.querySelectorAll('pre:not(.enhanced)');" +
                 "      " +
                 "      pres.forEach(function(pre) {" +
                 "          if (pre.closest('.code-wrapper')) return;" + 
@@ -375,13 +557,36 @@ public class HtmlUtil {
                 "      aiMsgDiv.appendChild(div);" +
                 "      scrollToBottom();" +
                 "  }" +
+                // 큰 도구 결과: 처음에는 미리보기만, 누를 때 Java(BlobStore)에서 전체 내용을 읽어와 펼침
+                "  function toggleBlob(btn, id) {" +
+                "      const result = btn.parentNode.querySelector('.approval-result');" +
+                "      if (!result) return;" +
+                "      if (btn.dataset.expanded === '1') {" +
+                "          result.textContent = btn.dataset.preview;" +
+                "          result.classList.remove('expanded');" +
+                "          btn.innerText = btn.dataset.label;" +
+                "          btn.dataset.expanded = '';" +
+                "          return;" +
+                "      }" +
+                "      const full = app.getBlob(id);" +
+                "      if (full === null || full === undefined) { btn.innerText = '원본을 찾을 수 없습니다'; return; }" +
+                "      btn.dataset.preview = result.textContent;" +
+                "      btn.dataset.label = btn.innerText;" +
+                "      result.textContent = full;" +
+                "      result.classList.add('expanded');" +
+                "      btn.innerText = '접기';" +
+                "      btn.dataset.expanded = '1';" +
+                "  }" +
                 "  function removeApprovalBox() { const div = document.getElementById('approval-box'); if (div) div.remove(); }" +
                 "  function setApprovalRunning() { const div = document.getElementById('approval-box'); if (!div) return; const btnDiv = div.getElementsByClassName('approval-buttons')[0]; btnDiv.innerHTML = '<span class=\"status-running\">⏳ 도구를 실행하고 있습니다...</span>'; }" +
+                "  function appendToolOutput(text, limit) { const div = document.getElementById('approval-box'); if (!div) return; let live = div.querySelector('.tool-live'); if (!live) { live = document.createElement('div'); live.className = 'approval-result tool-live'; div.appendChild(live); } const follow = live.scrollTop + live.clientHeight >= live.scrollHeight - 4; const next = live.textContent + text; live.textContent = next.length > limit ? next.slice(next.length - limit) : next; if (follow) live.scrollTop = live.scrollHeight; scrollToBottom(); }" +
                 "  function updateApprovalResult(output, isSuccess) { const div = document.getElementById('approval-box'); if (!div) return; const btnDiv = div.getElementsByClassName('approval-buttons')[0]; btnDiv.style.display = 'block'; btnDiv.style.width = '100%'; const color = isSuccess ? '#00FF00' : '#FF5252'; btnDiv.innerHTML = '<div class=\"approval-result\" style=\"color:' + color + '\">' + output + '</div>'; div.id = 'approval-box-done'; scrollToBottom(); }" +
                 "" +
                 // --- [자동 감시자 (MutationObserver)] ---
                 "  const observer = new MutationObserver(function(mutations) {" +
-                "      enhanceCodeBlocks();" +
+                "      const targets = new Set();" +
+                "      mutations.forEach(function(m) { m.addedNodes.forEach(function(n) { if (n.nodeType === 1) targets.add(n.tagName === 'PRE' ? n.parentNode : n); }); });" +
+                "      targets.forEach(function(node) { if (node.isConnected) enhanceCodeBlocks(node); });" +
                 "  });" +
                 "  observer.observe(document.body, { childList: true, subtree: true });" +
 
@@ -0,0 +1,59 @@
+package com.example.util;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * 시간순으로 정렬되는 메시지 ID (UUID 버전 7, RFC 9562).
+ * 앞 48비트가 밀리초 시각이라 새 ID는 항상 기존 ID보다 커서, DB 기본 키 인덱스의 끝에만 추가됩니다.
+ * 같은 밀리초 안에서는 rand_a(12비트)를 카운터로 써서 생성 순서를 유지합니다.
+ *
+ * 화면(data-id)과 자바 코드에서는 기존처럼 36자 문자열로 다루고, DB에는 BINARY(16)으로 저장합니다.
+ */
+public final class IdGenerator {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private static long lastMillis = -1;
+    private static int counter;
+
+    private IdGenerator() {
+    }
+
+    public static String newId() {
+        return newUuid().toString();
+    }
+
+    public static synchronized UUID newUuid() {
+        long now = System.currentTimeMillis();
+        if (now > lastMillis) {
+            lastMillis = now;
+            counter = random.nextInt(1 << 11); // 위쪽 절반을 비워 두어 같은 밀리초에 여유 확보
+        } else if (++counter >= (1 << 12)) {
+            // 한 밀리초에 4096개를 넘기거나 시계가 뒤로 가면 다음 밀리초를 빌려 씀
+            lastMillis++;
+            counter = 0;
+        }
+
+        long msb = (lastMillis << 16) | (0x7L << 12) | counter;
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // variant 10
+        return new UUID(msb, lsb);
+    }
+
+    // "xxxxxxxx-xxxx-..." -> BINARY(16) 저장용 바이트
+    public static byte[] toBytes(String id) {
+        UUID uuid = UUID.fromString(id);
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    // BINARY(16) -> 문자열 ID (null은 그대로)
+    public static String fromBytes(byte[] bytes) {
+        if (bytes == null) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
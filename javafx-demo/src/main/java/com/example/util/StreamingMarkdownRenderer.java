@@ -0,0 +1,211 @@
+package com.example.util;
+
+/**
+ * 스트리밍 중인 마크다운을 점진적으로 HTML로 변환합니다.
+ * 이미 닫힌 블록(빈 줄로 끝난 문단, 닫힌 코드 펜스)은 한 번만 렌더링해서 보관하고,
+ * 아직 열려 있는 마지막 블록만 다시 파싱합니다.
+ * - 리스트는 빈 줄이 있어도 다음 항목이 이어지면 닫지 않음 (항목 사이 빈 줄은 리스트 전체를 loose로 바꾸므로 통째로 파싱)
+ * - 열린 블록이 길면 매 프레임 다시 파싱하지 않고, 어느 정도 늘었을 때만 파싱 (그 사이 새 글자는 원문으로 표시)
+ * 그래서 finish() 결과는 전체 원문을 한 번에 파싱한 결과와 같습니다.
+ *
+ * append()는 리스너 스레드, render()는 FX 스레드에서 호출되므로 모든 메서드는 동기화됩니다.
+ * 블록 단위로 나누어 파싱하므로 문서 전체에 걸친 링크 참조 정의([x]: url) 등은 지원하지 않습니다.
+ */
+public class StreamingMarkdownRenderer {
+
+    private static final int TAIL_REPARSE_CHARS = 4_000; // 열린 블록이 이보다 짧으면 매번 다시 파싱
+    private static final int TAIL_REPARSE_GROWTH = 8;    // 길면 마지막 파싱 이후 1/8 이상 늘었을 때만 다시 파싱
+
+    // render() 결과: 새로 확정된 HTML(이어 붙이기용), 열린 블록의 HTML(교체용, 그대로면 null), 그 뒤 아직 파싱하지 않은 원문
+    public static final class Update {
+        private final String committedHtml;
+        private final String tailHtml;
+        private final String pendingText;
+
+        Update(String committedHtml, String tailHtml, String pendingText) {
+            this.committedHtml = committedHtml;
+            this.tailHtml = tailHtml;
+            this.pendingText = pendingText;
+        }
+
+        public String getCommittedHtml() { return committedHtml; }
+        public String getTailHtml() { return tailHtml; }
+        public String getPendingText() { return pendingText; }
+    }
+
+    private final StringBuilder source = new StringBuilder();
+    private final StringBuilder committedHtml = new StringBuilder();
+    private int committedEnd = 0;      // source에서 확정(렌더링 완료)된 위치
+    private int drainedHtml = 0;       // committedHtml 중 render()로 이미 내보낸 길이
+    private int scanPos = 0;           // 다음에 검사할 줄의 시작 위치
+    private int pendingBlankEnd = -1;  // 확정 후보인 빈 줄의 끝 위치 (다음 줄을 보고 결정)
+    private boolean inFence = false;
+    private char fenceChar;
+    private int fenceLength;
+    private boolean fenceInList = false; // 리스트 항목 안의 (들여쓴) 코드 펜스: 닫혀도 블록이 끝나지 않음
+    private char listMarker = 0;         // 열린 블록이 리스트면 글머리 문자('-', '*', '+') 또는 번호 구분자('.', ')')
+    private int tailParsedFrom = -1;     // 마지막으로 파싱한 열린 블록 범위
+    private int tailParsedTo = -1;
+    private boolean finished = false;
+
+    public synchronized void append(String delta) {
+        if (finished || delta == null) return;
+        source.append(delta);
+    }
+
+    // 현재 원문이 주어진 텍스트와 같은지 (완료 시 전체 재파싱을 건너뛸 수 있는지 판단)
+    public synchronized boolean hasSameSource(String markdown) {
+        return markdown != null && markdown.contentEquals(source);
+    }
+
+    /**
+     * 마지막 호출 이후 새로 확정된 HTML과, 열린 블록의 HTML을 반환합니다.
+     * finish() 이후에는 null을 반환합니다.
+     */
+    public synchronized Update render() {
+        if (finished) return null;
+        commitClosedBlocks();
+        String newlyCommitted = committedHtml.substring(drainedHtml);
+        drainedHtml = committedHtml.length();
+
+        int end = source.length();
+        int tailLength = end - committedEnd;
+        String tailHtml = null;
+        if (committedEnd != tailParsedFrom || (end != tailParsedTo
+                && (tailLength <= TAIL_REPARSE_CHARS || end - tailParsedTo >= tailLength / TAIL_REPARSE_GROWTH))) {
+            tailHtml = HtmlUtil.markdownToHtml(source.substring(committedEnd, end));
+            tailParsedFrom = committedEnd;
+            tailParsedTo = end;
+        }
+        return new Update(newlyCommitted, tailHtml, source.substring(tailParsedTo, end));
+    }
+
+    // 스트리밍 종료: 남은 블록까지 렌더링한 전체 HTML 반환 (확정된 블록은 다시 파싱하지 않음)
+    public synchronized String finish() {
+        if (!finished) {
+            commitClosedBlocks();
+            if (committedEnd < source.length()) {
+                committedHtml.append(HtmlUtil.markdownToHtml(source.substring(committedEnd)));
+                committedEnd = source.length();
+            }
+            finished = true;
+        }
+        return committedHtml.toString();
+    }
+
+    // 완성된 줄들을 훑어 닫힌 블록 경계를 찾고, 그 앞부분을 렌더링해서 확정
+    private void commitClosedBlocks() {
+        int boundary = -1;
+        int lineEnd;
+        while ((lineEnd = source.indexOf("\n", scanPos)) != -1) {
+            int lineStart = scanPos;
+            scanPos = lineEnd + 1;
+
+            if (inFence) {
+                if (isFenceLine(lineStart, lineEnd, fenceChar, fenceLength)) {
+                    inFence = false;
+                    if (!fenceInList) boundary = scanPos; // 닫힌 코드 블록은 그 자체로 완결
+                }
+                continue;
+            }
+
+            if (isBlank(lineStart, lineEnd)) {
+                pendingBlankEnd = scanPos;
+                continue;
+            }
+
+            boolean indented = Character.isWhitespace(source.charAt(lineStart));
+            char marker = indented ? 0 : listMarkerOf(lineStart, lineEnd);
+            if (pendingBlankEnd != -1 && !indented) {
+                // 빈 줄 다음 줄이 들여쓰기 없이 시작하면 앞 블록 확정
+                // (단, 같은 종류의 리스트 항목이면 리스트가 이어지므로 그대로 둠)
+                if (listMarker == 0 || marker != listMarker) {
+                    boundary = pendingBlankEnd;
+                    listMarker = marker;
+                }
+            } else if (listMarker == 0 && marker != 0) {
+                listMarker = marker; // 문단 바로 뒤에 시작한 리스트
+            }
+            pendingBlankEnd = -1;
+
+            int fence = fenceOpenLength(lineStart, lineEnd);
+            if (fence > 0) {
+                fenceInList = listMarker != 0 && indented;
+                if (!fenceInList) {
+                    // 코드 펜스가 열리면 앞 문단(리스트)은 닫힌 것으로 처리
+                    boundary = lineStart;
+                    listMarker = 0;
+                }
+                inFence = true;
+                fenceChar = source.charAt(firstNonSpace(lineStart, lineEnd));
+                fenceLength = fence;
+            }
+        }
+
+        if (boundary > committedEnd) {
+            committedHtml.append(HtmlUtil.markdownToHtml(source.substring(committedEnd, boundary)));
+            committedEnd = boundary;
+        }
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(source.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // 리스트 항목으로 시작하는 줄이면 글머리 문자 또는 번호 뒤 구분자, 아니면 0 (들여쓰지 않은 줄만)
+    private char listMarkerOf(int start, int end) {
+        char c = source.charAt(start);
+        if (c == '-' || c == '*' || c == '+') {
+            if (c != '+' && isThematicBreak(start, end)) return 0; // "- - -", "***"는 구분선
+            return start + 1 == end || Character.isWhitespace(source.charAt(start + 1)) ? c : 0;
+        }
+        int i = start;
+        while (i < end && i - start < 9 && source.charAt(i) >= '0' && source.charAt(i) <= '9') i++;
+        if (i == start || i >= end) return 0;
+        char delimiter = source.charAt(i);
+        if (delimiter != '.' && delimiter != ')') return 0;
+        return i + 1 == end || Character.isWhitespace(source.charAt(i + 1)) ? delimiter : 0;
+    }
+
+    // 같은 문자(-, *) 3개 이상과 공백만 있는 줄
+    private boolean isThematicBreak(int start, int end) {
+        char c = source.charAt(start);
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char ch = source.charAt(i);
+            if (ch == c) count++;
+            else if (!Character.isWhitespace(ch)) return false;
+        }
+        return count >= 3;
+    }
+
+    private int firstNonSpace(int start, int end) {
+        int i = start;
+        while (i < end && source.charAt(i) == ' ') i++;
+        return i;
+    }
+
+    // ``` 또는 ~~~ (3개 이상, 들여쓰기 최대 3칸)로 시작하는 줄이면 펜스 길이, 아니면 0
+    private int fenceOpenLength(int start, int end) {
+        int i = firstNonSpace(start, end);
+        if (i - start > 3 || i >= end) return 0;
+        char c = source.charAt(i);
+        if (c != '`' && c != '~') return 0;
+        int n = 0;
+        while (i + n < end && source.charAt(i + n) == c) n++;
+        return n >= 3 ? n : 0;
+    }
+
+    // 여는 펜스와 같은 문자로, 같거나 더 길게, 뒤에 공백만 오는 줄이면 닫는 펜스
+    private boolean isFenceLine(int start, int end, char c, int minLength) {
+        int i = firstNonSpace(start, end);
+        if (i - start > 3) return false;
+        int n = 0;
+        while (i + n < end && source.charAt(i + n) == c) n++;
+        if (n < minLength) return false;
+        return isBlank(i + n, end);
+    }
+}
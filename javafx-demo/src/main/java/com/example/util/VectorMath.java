@@ -0,0 +1,65 @@
+package com.example.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * 임베딩 벡터 계산 (내적, 정규화).
+ * simd 프로필로 빌드하고 jdk.incubator.vector 모듈과 함께 실행하면 (mvn -Psimd javafx:run) SIMD로, 아니면 일반 반복문으로 계산합니다.
+ * SIMD 구현 클래스는 이름으로 찾아서 쓰므로, 기본 빌드(클래스 없음)나 모듈 없이 실행해도 문제없습니다.
+ */
+public final class VectorMath {
+
+    private static final MethodHandle SIMD_DOT = findSimdDot();
+
+    private VectorMath() {
+    }
+
+    private static MethodHandle findSimdDot() {
+        if (Boolean.getBoolean("vectormath.scalar") || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            Class<?> simd = Class.forName("com.example.util.SimdVectorMath");
+            return MethodHandles.lookup().findStatic(simd, "dot",
+                    MethodType.methodType(float.class, float[].class, float[].class, int.class));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null; // simd 프로필 없이 빌드됨
+        }
+    }
+
+    public static boolean isSimd() {
+        return SIMD_DOT != null;
+    }
+
+    // 단위 벡터끼리면 코사인 유사도
+    public static float dot(float[] a, float[] b, int length) {
+        if (SIMD_DOT == null) return scalarDot(a, b, length);
+        try {
+            return (float) SIMD_DOT.invokeExact(a, b, length);
+        } catch (Throwable e) {
+            throw new IllegalStateException("SIMD 내적 실패", e);
+        }
+    }
+
+    static float scalarDot(float[] a, float[] b, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) s0 += a[i] * b[i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // 길이 1로 정규화 (영벡터는 그대로)
+    public static void normalize(float[] v) {
+        float norm = (float) Math.sqrt(scalarDot(v, v, v.length));
+        if (norm == 0) return;
+        for (int i = 0; i < v.length; i++) v[i] /= norm;
+    }
+}
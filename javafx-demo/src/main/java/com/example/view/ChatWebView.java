@@ -1,8 +1,10 @@
 package com.example.view; // 패키지 분리 권장
 
 import com.example.controller.AiController; // 또는 인터페이스 사용
+import com.example.service.AppConfigService;
 import com.example.service.ChatService; 
 import com.example.util.HtmlUtil;
+import com.example.util.StreamingMarkdownRenderer;
 import javafx.application.Platform;
 import javafx.concurrent.Worker;
 import javafx.scene.input.Clipboard;
@@ -18,10 +20,18 @@ public class ChatWebView {
     private ChatService chatService; // 로직 처리를 위해 필요
     private JavaBridge javaBridge;
     private Runnable onReady; // 로딩 완료 콜백
+    private final RenderQueue renderQueue; // 스크립트/토큰 일괄 반영
+    private StreamingMarkdownRenderer streamRenderer; // 현재 스트리밍 중인 메시지의 렌더러 (FX 스레드 전용)
+    private final StringBuilder pendingToolOutput = new StringBuilder(); // 아직 화면에 안 붙인 도구 출력 (자신으로 동기화)
+
+    // 화면이 못 따라갈 만큼 출력이 빠르면 오래된 부분은 버림 (화면 쪽도 같은 길이만 유지)
+    private static final int TOOL_OUTPUT_LIVE_LIMIT = 20_000;
 
     public ChatWebView(WebView webView) {
         this.webView = webView;
         this.webEngine = webView.getEngine();
+        long flushIntervalMs = AppConfigService.load().getStreamFlushIntervalMs();
+        this.renderQueue = new RenderQueue(this::flushStreamedTokens, flushIntervalMs);
         initialize();
     }
 
@@ -57,21 +67,78 @@ public class ChatWebView {
     }
 
     public void startAiMessage(String msgId) {
-        runScript("startAiMessage('" + msgId + "')");
+        startAiMessage(msgId, null);
     }
 
+    // renderer가 주어지면 스트리밍 중에도 마크다운을 렌더링해서 보여줌 (null이면 원문 텍스트)
+    public void startAiMessage(String msgId, StreamingMarkdownRenderer renderer) {
+        String script = "startAiMessage('" + msgId + "')";
+        renderQueue.submit(() -> {
+            streamRenderer = renderer;
+            webEngine.executeScript(script);
+        });
+    }
+
+    // 토큰은 바로 실행하지 않고 누적했다가 프레임 단위로 한 번에 반영
     public void streamAiToken(String token) {
-        runScript("streamAiToken('" + escapeJs(token) + "')");
+        renderQueue.appendToken(token);
+    }
+
+    // FX 스레드: 프레임마다 한 번, 누적된 토큰(delta)을 화면에 반영
+    private void flushStreamedTokens(String delta) {
+        if (streamRenderer == null) {
+            webEngine.executeScript("streamAiToken('" + escapeJs(delta) + "')");
+            return;
+        }
+        // 원문은 ChatService가 이미 renderer에 넣어두었으므로 여기서는 렌더링만
+        StreamingMarkdownRenderer.Update update = streamRenderer.render();
+        if (update == null) return; // 이미 완료된 메시지
+        String tail = update.getTailHtml() != null ? "'" + escapeJs(update.getTailHtml()) + "'" : "null";
+        webEngine.executeScript("streamAiHtml('" + escapeJs(update.getCommittedHtml()) + "', " + tail
+                + ", '" + escapeJs(update.getPendingText()) + "')");
     }
 
     public void finishAiMessage() {
-        runScript("finishAiMessage()");
+        renderQueue.submit(() -> {
+            streamRenderer = null;
+            webEngine.executeScript("finishAiMessage()");
+        });
     }
 
     public void refreshMessage(String msgId, String html) {
         runScript("refreshMessage('" + msgId + "', '" + escapeJs(html) + "')");
     }
 
+    // --- 가상화된 메시지 목록 (messagesJson: [{id, user, text|html}, ...] 과거순) ---
+
+    public void prependMessages(String messagesJson, boolean hasOlder) {
+        runScript("prependMessages('" + escapeJs(messagesJson) + "', " + hasOlder + ")");
+    }
+
+    public void appendMessages(String messagesJson, boolean hasNewer) {
+        runScript("appendMessages('" + escapeJs(messagesJson) + "', " + hasNewer + ")");
+    }
+
+    public void resetMessages(String messagesJson, boolean hasOlder, boolean hasNewer) {
+        runScript("resetMessages('" + escapeJs(messagesJson) + "', " + hasOlder + ", " + hasNewer + ")");
+    }
+
+    public void trimMessages(boolean fromTop, int count) {
+        runScript("trimMessages(" + fromTop + ", " + count + ")");
+    }
+
+    public void setPaging(boolean hasOlder, boolean hasNewer) {
+        runScript("setPaging(" + hasOlder + ", " + hasNewer + ")");
+    }
+
+    public void pageLoaded() {
+        runScript("pageLoaded()");
+    }
+
+    public void scrollToMessage(String msgId) {
+        runScript("scrollToMessage('" + msgId + "')");
+    }
+
     public void showApprovalBox(String msg) {
         runScript("showApprovalBox('" + escapeJs(msg) + "')");
     }
@@ -95,8 +162,32 @@ public class ChatWebView {
         runScript("setApprovalRunning()");
     }
 
+    // 도구 실행 중 출력 (도구 실행 스레드에서 호출): 모아 두었다가 FX 스레드에서 한 번에 붙임
+    public void appendToolOutput(String chunk) {
+        if (chunk == null || chunk.isEmpty()) return;
+        boolean schedule;
+        synchronized (pendingToolOutput) {
+            schedule = pendingToolOutput.length() == 0;
+            pendingToolOutput.append(chunk);
+            int overflow = pendingToolOutput.length() - TOOL_OUTPUT_LIVE_LIMIT;
+            if (overflow > 0) pendingToolOutput.delete(0, overflow);
+        }
+        if (schedule) renderQueue.submit(this::flushToolOutput);
+    }
+
+    private void flushToolOutput() {
+        String text;
+        synchronized (pendingToolOutput) {
+            text = pendingToolOutput.toString();
+            pendingToolOutput.setLength(0);
+        }
+        if (!text.isEmpty()) {
+            webEngine.executeScript("appendToolOutput('" + escapeJs(text) + "', " + TOOL_OUTPUT_LIVE_LIMIT + ")");
+        }
+    }
+
     private void runScript(String script) {
-        Platform.runLater(() -> webEngine.executeScript(script));
+        renderQueue.submit(() -> webEngine.executeScript(script));
     }
 
     private String escapeJs(String text) {
@@ -135,5 +226,19 @@ public class ChatWebView {
         public void updateMessageContent(String id, String newContent) {
             if (chatService != null) chatService.updateMessageContent(id, newContent);
         }
+
+        // 도구 결과 "전체 보기": BlobStore에서 압축을 풀어 전체 내용 반환 (없으면 null)
+        public String getBlob(String blobId) {
+            return chatService != null ? chatService.getToolOutput(blobId) : null;
+        }
+
+        // 스크롤이 위/아래 끝에 가까워지면 호출 (한 번에 하나씩, 응답으로 prepend/appendMessages 또는 pageLoaded)
+        public void loadOlder(String firstId) {
+            if (chatService != null) chatService.loadOlder(firstId);
+        }
+
+        public void loadNewer(String lastId) {
+            if (chatService != null) chatService.loadNewer(lastId);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.example.view;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * WebView로 보내는 작업(스크립트 등)과 스트리밍 토큰을 순서대로 모아 FX 스레드에서 한 번에 실행합니다.
+ * 토큰은 리스너 스레드에서 누적되고, FX 펄스(프레임)당 최대 한 번만 flush 됩니다.
+ * 일반 작업은 즉시 flush를 요청하되, 그 앞에 쌓인 토큰이 먼저 반영되도록 순서를 보장합니다.
+ */
+public class RenderQueue {
+
+    // 큐에 쌓이는 작업 (Runnable 또는 이어 붙여진 토큰 묶음)
+    private static final class TokenChunk {
+        final StringBuilder text = new StringBuilder();
+    }
+
+    private final Object lock = new Object();
+    private List<Object> pending = new ArrayList<>();
+    private boolean drainScheduled = false;  // Platform.runLater 예약 여부
+    private boolean timerRequested = false;  // 토큰 flush 타이머 예약 여부
+
+    private final Consumer<String> tokenSink;
+    private final long flushIntervalNanos;
+
+    // 아래 필드는 FX 스레드에서만 접근
+    private long lastFlushNanos = 0;
+    private boolean timerRunning = false;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (now - lastFlushNanos < flushIntervalNanos) return;
+            if (!drain()) {
+                synchronized (lock) {
+                    // 멈추기 직전에 토큰이 들어왔다면 다음 펄스에서 처리
+                    if (!pending.isEmpty()) return;
+                    timerRequested = false;
+                }
+                stop();
+                timerRunning = false;
+            }
+        }
+    };
+
+    /**
+     * @param tokenSink      FX 스레드에서 누적된 토큰 묶음을 화면에 반영하는 함수
+     * @param flushIntervalMs 토큰 flush 최소 간격 (= 최대 지연 시간), 0이면 매 펄스마다
+     */
+    public RenderQueue(Consumer<String> tokenSink, long flushIntervalMs) {
+        this.tokenSink = tokenSink;
+        this.flushIntervalNanos = Math.max(0, flushIntervalMs) * 1_000_000L;
+    }
+
+    // 일반 작업: 순서를 유지한 채 가능한 빨리 FX 스레드에서 실행
+    public void submit(Runnable task) {
+        synchronized (lock) {
+            pending.add(task);
+            if (drainScheduled) return;
+            drainScheduled = true;
+        }
+        Platform.runLater(() -> {
+            synchronized (lock) {
+                drainScheduled = false;
+            }
+            drain();
+        });
+    }
+
+    // 스트리밍 토큰: 직전 작업이 토큰 묶음이면 이어 붙이고, 다음 펄스에서 flush
+    public void appendToken(String token) {
+        if (token == null || token.isEmpty()) return;
+        synchronized (lock) {
+            Object last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+            TokenChunk chunk;
+            if (last instanceof TokenChunk) {
+                chunk = (TokenChunk) last;
+            } else {
+                chunk = new TokenChunk();
+                pending.add(chunk);
+            }
+            chunk.text.append(token);
+            if (timerRequested) return;
+            timerRequested = true;
+        }
+        Platform.runLater(this::startTimer);
+    }
+
+    private void startTimer() {
+        if (timerRunning) return;
+        timerRunning = true;
+        timer.start();
+    }
+
+    // FX 스레드 전용: 쌓인 작업을 순서대로 실행. 실행한 작업이 있으면 true
+    private boolean drain() {
+        List<Object> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) return false;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        for (Object op : batch) {
+            try {
+                if (op instanceof TokenChunk) {
+                    tokenSink.accept(((TokenChunk) op).text.toString());
+                } else {
+                    ((Runnable) op).run();
+                }
+            } catch (Exception e) {
+                // 작업 하나가 실패해도 나머지는 계속 반영
+                e.printStackTrace();
+            }
+        }
+        lastFlushNanos = System.nanoTime();
+        return true;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.repository;
+
+import com.example.model.ChatMessage;
+import com.example.model.ChatSummary;
+import com.example.model.MessageSegment;
+import com.example.model.ToolCall;
+import com.example.util.IdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ChatStore 구현이 모두 같은 결과를 내는지 확인하는 공통 시나리오.
+ * 구현마다 이 클래스를 상속해서 빈 저장소를 여는 방법(open)만 정합니다.
+ */
+abstract class ChatStoreConformanceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 9, 0);
+    private static final String MISSING_ID = "01900000-0000-7000-8000-000000000000";
+
+    protected ChatStore store;
+
+    // 같은 저장 위치를 여는 새 인스턴스 (처음에는 비어 있어야 함)
+    protected abstract ChatStore open() throws Exception;
+
+    @BeforeEach
+    void openStore() throws Exception {
+        store = open();
+    }
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) store.close();
+    }
+
+    // 닫았다가 다시 열기 (영속성 확인)
+    protected void reopen() throws Exception {
+        store.close();
+        store = open();
+    }
+
+    // 50개: 두 개씩 같은 시각 (같은 시각이면 ID 순서), 10개는 save, 40개는 writeBatch
+    private List<ChatMessage> saveMessages() throws Exception {
+        List<ChatMessage> all = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ChatMessage message = new ChatMessage(i % 2 == 0 ? "user" : "ai", "내용 " + i + " 😀");
+            message.setTimestamp(BASE.plusSeconds(i / 2 * 2));
+            all.add(message);
+        }
+        for (int i = 0; i < 10; i++) store.save(all.get(i));
+        store.writeBatch(all.subList(10, 50), List.of(), List.of(), List.of(), List.of());
+        all.sort(Comparator.comparing(ChatMessage::getTimestamp).thenComparing(ChatMessage::getId));
+        return all;
+    }
+
+    private static List<String> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    void emptyStore() {
+        assertEquals(0, store.getMessageCount());
+        assertTrue(store.findRecentMessages(20).isEmpty());
+        assertNull(store.findLastSummary(ChatSummary.CHUNK));
+        assertEquals(0, store.countMessagesAfterLastSummary());
+        assertEquals(0, store.recoverInterruptedMessages(" [중단]"));
+    }
+
+    @Test
+    void recentMessagesAreOldestFirstWithIdTieBreak() throws Exception {
+        List<ChatMessage> all = saveMessages();
+        assertEquals(50, store.getMessageCount());
+
+        List<ChatMessage> recent = store.findRecentMessages(20);
+        assertEquals(ids(all.subList(30, 50)), ids(recent));
+        ChatMessage first = recent.get(0);
+        assertEquals(all.get(30).getContent(), first.getContent());
+        assertEquals(all.get(30).getRole(), first.getRole());
+        assertEquals(all.get(30).getTimestamp(), first.getTimestamp());
+    }
+
+    @Test
+    void keysetPagesBeforeAndAfter() throws Exception {
+        List<ChatMessage> all = saveMessages();
+
+        assertEquals(ids(all.subList(10, 30)), ids(store.findMessagesBefore(all.get(30), 20)));
+        assertEquals(ids(all.subList(0, 5)), ids(store.findMessagesBefore(all.get(5), 20)));
+        assertTrue(store.findMessagesBefore(all.get(0), 5).isEmpty());
+
+        assertEquals(ids(all.subList(11, 16)), ids(store.findMessagesAfter(all.get(10), 5)));
+        assertTrue(store.findMessagesAfter(all.get(49), 5).isEmpty());
+    }
+
+    // 방금 만든 메시지(LocalDateTime.now())를 커서로 써도 자기 자신이나 이웃을 다시/빠뜨려 가져오지 않음
+    @Test
+    void keysetPagesFromFreshlyCreatedMessages() throws Exception {
+        List<ChatMessage> fresh = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            fresh.add(new ChatMessage(i % 2 == 0 ? "user" : "ai", "새 메시지 " + i));
+            if (i % 3 == 0) Thread.sleep(1); // 같은 밀리초와 다른 밀리초가 섞이도록
+        }
+        // 밀리초 아래가 있는 시각 (반올림하면 다음 밀리초로 넘어가는 값)
+        ChatMessage subMillis = new ChatMessage("ai", "밀리초 아래");
+        subMillis.setTimestamp(fresh.get(11).getTimestamp().plusNanos(999_900));
+        fresh.add(subMillis);
+
+        for (int i = 0; i < 6; i++) store.save(fresh.get(i));
+        store.writeBatch(fresh.subList(6, fresh.size()), List.of(), List.of(), List.of(), List.of());
+        fresh.sort(Comparator.comparing((ChatMessage m) -> m.getTimestamp().truncatedTo(ChronoUnit.MILLIS))
+                .thenComparing(ChatMessage::getId));
+
+        for (int i = 0; i < fresh.size(); i++) {
+            ChatMessage cursor = fresh.get(i);
+            assertEquals(ids(fresh.subList(i + 1, fresh.size())), ids(store.findMessagesAfter(cursor, 50)), "after " + i);
+            assertEquals(ids(fresh.subList(0, i)), ids(store.findMessagesBefore(cursor, 50)), "before " + i);
+        }
+    }
+
+    @Test
+    void findByIdsSkipsMissing() throws Exception {
+        List<ChatMessage> all = saveMessages();
+        List<ChatMessage> found = store.findMessagesByIds(List.of(all.get(3).getId(), MISSING_ID));
+        assertEquals(List.of(all.get(3).getId()), ids(found));
+        assertTrue(store.findMessagesByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void updateContent() throws Exception {
+        List<ChatMessage> all = saveMessages();
+        store.updateContent(all.get(5).getId(), "수정됨");
+        store.updateContent(MISSING_ID, "없음"); // 없는 ID는 무시
+
+        assertEquals("수정됨", store.findMessagesByIds(List.of(all.get(5).getId())).get(0).getContent());
+        assertEquals(50, store.getMessageCount());
+    }
+
+    @Test
+    void summariesAndUnsummarizedMessages() throws Exception {
+        List<ChatMessage> all = saveMessages();
+        assertEquals(50, store.countMessagesAfterLastSummary());
+
+        store.saveSummary(ChatSummary.CHUNK, "요약1", all.get(0).getId(), all.get(29).getId(),
+                all.get(0).getTimestamp(), all.get(29).getTimestamp());
+        store.saveSummary(ChatSummary.DAY, "하루 요약", all.get(0).getId(), all.get(29).getId(),
+                BASE, BASE.plusHours(23));
+
+        ChatSummary last = store.findLastSummary(ChatSummary.CHUNK);
+        assertNotNull(last);
+        assertEquals("요약1", last.getContent());
+        assertEquals(all.get(29).getId(), last.getEndId());
+        assertEquals("하루 요약", store.findLastSummary(ChatSummary.DAY).getContent());
+        assertNull(store.findLastSummary(ChatSummary.WEEK));
+        assertEquals(1, store.findSummaries(ChatSummary.DAY, BASE.minusDays(1), BASE.plusDays(1)).size());
+        assertTrue(store.findSummaries(ChatSummary.DAY, BASE.plusDays(1), null).isEmpty());
+
+        // 0단계 요약 이후만 남음
+        assertEquals(20, store.countMessagesAfterLastSummary());
+        assertEquals(ids(all.subList(30, 50)), ids(store.findUnsummarizedMessages(30)));
+        assertEquals(ids(all.subList(30, 35)), ids(store.findUnsummarizedMessages(5)));
+    }
+
+    @Test
+    void completedStreamingAnswerNeedsNoRecovery() {
+        ChatMessage ai = new ChatMessage("ai", "");
+        ai.setTimestamp(BASE.plusHours(1));
+        store.save(ai);
+        store.appendSegment(new MessageSegment(ai.getId(), 0, "안녕"));
+        store.appendSegment(new MessageSegment(ai.getId(), 1, "하세요"));
+        store.completeMessage(ai.getId(), "안녕하세요!");
+
+        assertEquals(0, store.recoverInterruptedMessages(" [중단]"));
+        assertEquals("안녕하세요!", store.findRecentMessages(1).get(0).getContent());
+    }
+
+    @Test
+    void interruptedAnswersAreRecoveredOnce() throws Exception {
+        ChatMessage ai = new ChatMessage("ai", "");
+        ai.setTimestamp(BASE.plusHours(2));
+        store.save(ai);
+        store.appendSegment(new MessageSegment(ai.getId(), 0, "부분"));
+        store.writeBatch(List.of(), List.of(new MessageSegment(ai.getId(), 1, " 답변")), List.of(), List.of(), List.of());
+        // 메시지 행이 저장되기 전에 끊긴 답변 (조각만 있음)
+        String orphan = IdGenerator.newId();
+        store.appendSegment(new MessageSegment(orphan, 0, "고아"));
+        reopen();
+
+        assertEquals(1, store.getMessageCount());
+        assertEquals(2, store.recoverInterruptedMessages(" [중단]"));
+        assertEquals(2, store.getMessageCount());
+        assertEquals("부분 답변 [중단]", store.findMessagesByIds(List.of(ai.getId())).get(0).getContent());
+        assertEquals("고아 [중단]", store.findMessagesByIds(List.of(orphan)).get(0).getContent());
+        assertEquals(0, store.recoverInterruptedMessages(" [중단]"));
+    }
+
+    @Test
+    void toolCallsAreAttachedInRequestOrder() throws Exception {
+        ChatMessage ai = new ChatMessage("ai", "도구를 씁니다");
+        ai.setTimestamp(BASE.plusHours(3));
+        store.save(ai);
+        ToolCall first = new ToolCall(ai.getId(), "run_shell", "{\"command\":\"ls\"}", ToolCall.SUCCESS, "a.txt", null, 5);
+        ToolCall second = new ToolCall(ai.getId(), "run_python", null, ToolCall.REJECTED, "User rejected.", null, 0);
+        store.saveToolCall(first);
+        store.writeBatch(List.of(), List.of(), List.of(), List.of(), List.of(second));
+        reopen();
+
+        List<ToolCall> calls = store.findRecentMessages(1).get(0).getToolCalls();
+        assertEquals(2, calls.size());
+        assertEquals(first.getId(), calls.get(0).getId());
+        assertEquals("run_shell", calls.get(0).getToolName());
+        assertEquals("{\"command\":\"ls\"}", calls.get(0).getParams());
+        assertEquals(ToolCall.SUCCESS, calls.get(0).getStatus());
+        assertEquals("a.txt", calls.get(0).getOutput());
+        assertEquals(5, calls.get(0).getOutputLength());
+        assertEquals(second.getId(), calls.get(1).getId());
+        assertEquals(ToolCall.REJECTED, calls.get(1).getStatus());
+        assertNull(calls.get(1).getParams());
+        // 다른 조회 경로에도 같은 기록이 붙음
+        assertEquals(2, store.findMessagesByIds(List.of(ai.getId())).get(0).getToolCalls().size());
+    }
+
+    @Test
+    void dataSurvivesReopen() throws Exception {
+        List<ChatMessage> all = saveMessages();
+        store.updateContent(all.get(5).getId(), "수정됨");
+        store.saveSummary(ChatSummary.CHUNK, "요약1", all.get(0).getId(), all.get(9).getId(),
+                all.get(0).getTimestamp(), all.get(9).getTimestamp());
+        reopen();
+
+        assertEquals(50, store.getMessageCount());
+        assertEquals(ids(all.subList(30, 50)), ids(store.findRecentMessages(20)));
+        assertEquals("수정됨", store.findMessagesByIds(List.of(all.get(5).getId())).get(0).getContent());
+        assertEquals("요약1", store.findLastSummary(ChatSummary.CHUNK).getContent());
+        assertEquals(40, store.countMessagesAfterLastSummary());
+    }
+}
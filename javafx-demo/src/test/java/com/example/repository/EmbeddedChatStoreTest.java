@@ -0,0 +1,52 @@
+package com.example.repository;
+
+import com.example.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmbeddedChatStoreTest extends ChatStoreConformanceTest {
+
+    @TempDir
+    Path dir;
+
+    @Override
+    protected ChatStore open() throws Exception {
+        return EmbeddedChatStore.open(dir.resolve("chat_history.log").toString());
+    }
+
+    // 기록 도중 끊긴 마지막 레코드는 버리고, 그 뒤에 이어서 쓸 수 있음
+    @Test
+    void tornTailRecordIsDropped() throws Exception {
+        store.save(new ChatMessage("user", "앞 메시지"));
+        store.save(new ChatMessage("user", "x".repeat(5_000)));
+        store.close();
+
+        Path file = dir.resolve("chat_history.log");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // 레코드: [본문 길이][CRC32][본문], 길이 0이 기록의 끝 (헤더 16바이트 뒤부터)
+            long pos = 16;
+            long last = pos;
+            while (true) {
+                raf.seek(pos);
+                int length = raf.readInt();
+                if (length <= 0) break;
+                last = pos;
+                pos += 8 + length;
+            }
+            raf.seek(last + 8 + 100);
+            raf.write(new byte[200]); // 마지막 레코드 본문 일부 손상
+        }
+
+        store = open();
+        assertEquals(1, store.getMessageCount());
+        store.save(new ChatMessage("user", "복구 후"));
+        reopen();
+        assertEquals(2, store.getMessageCount());
+        assertEquals("복구 후", store.findRecentMessages(1).get(0).getContent());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.repository;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * MySQL 저장소에 같은 시나리오 실행. 서버가 필요하므로 지정했을 때만 실행됩니다.
+ *   mvn test -Dchatstore.mysql.url=jdbc:mysql://localhost:3306/ai_test -Dchatstore.mysql.user=... -Dchatstore.mysql.password=...
+ * 주의: 테스트마다 chat_* 테이블을 비우므로 테스트 전용 데이터베이스를 지정하세요.
+ */
+@EnabledIfSystemProperty(named = "chatstore.mysql.url", matches = ".+")
+class MySqlChatStoreTest extends ChatStoreConformanceTest {
+
+    // database_create_example.sql과 같은 초기 테이블 (나머지는 SchemaMigrator가 만듦)
+    private static final String CREATE_HISTORY_SQL = "CREATE TABLE IF NOT EXISTS chat_history (" +
+            " id BINARY(16) PRIMARY KEY," +
+            " role VARCHAR(10) NOT NULL," +
+            " content TEXT NOT NULL," +
+            " timestamp DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3)," +
+            " INDEX idx_history_ts_id (timestamp, id))";
+    private static final String[] TABLES = {"chat_tool_calls", "chat_message_segments", "chat_summaries", "chat_history"};
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void connect() throws SQLException {
+        connection = DriverManager.getConnection(System.getProperty("chatstore.mysql.url"),
+                System.getProperty("chatstore.mysql.user"), System.getProperty("chatstore.mysql.password"));
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(CREATE_HISTORY_SQL);
+        }
+        SchemaMigrator.migrate(connection);
+    }
+
+    @AfterAll
+    static void disconnect() throws SQLException {
+        if (connection != null) connection.close();
+    }
+
+    @Override
+    protected ChatStore open() throws Exception {
+        if (store == null) { // 테스트 시작: 빈 테이블에서 (reopen은 그대로 둠)
+            try (Statement stmt = connection.createStatement()) {
+                for (String table : TABLES) stmt.execute("DELETE FROM " + table);
+            }
+        }
+        // 저장소는 작업마다 커넥션을 받아서 닫으므로 매번 새로 연결 (앱에서는 풀이 이 역할)
+        return new MySqlChatStore(() -> DriverManager.getConnection(System.getProperty("chatstore.mysql.url"),
+                System.getProperty("chatstore.mysql.user"), System.getProperty("chatstore.mysql.password")));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AppConfigServiceTest {
+
+    private static AppConfigService.DatabaseConfig databaseConfig() {
+        AppConfigService.DatabaseConfig.UserCredentials appUser = new AppConfigService.DatabaseConfig.UserCredentials();
+        appUser.setUser("app");
+        appUser.setPassword("secret");
+        AppConfigService.DatabaseConfig.PoolConfig pool = new AppConfigService.DatabaseConfig.PoolConfig();
+        pool.setMaxSize(8);
+
+        AppConfigService.DatabaseConfig db = new AppConfigService.DatabaseConfig();
+        db.setUrl("jdbc:mysql://localhost/chat");
+        db.setAppUser(appUser);
+        db.setAppPool(pool);
+        return db;
+    }
+
+    // 공유 스냅샷은 DB 설정과 그 안의 계정/풀 설정까지 수정할 수 없음
+    @Test
+    void frozenSnapshotLocksNestedConfig() {
+        AppConfigService config = new AppConfigService();
+        config.setDatabaseConfig(databaseConfig());
+        config.freeze();
+
+        AppConfigService.DatabaseConfig db = config.getDatabaseConfig();
+        assertThrows(IllegalStateException.class, () -> config.setModelName("x"));
+        assertThrows(IllegalStateException.class, () -> db.setUrl("jdbc:mysql://other/chat"));
+        assertThrows(IllegalStateException.class, () -> db.setAiUser(null));
+        assertThrows(IllegalStateException.class, () -> db.getAppUser().setPassword("changed"));
+        assertThrows(IllegalStateException.class, () -> db.getAppPool().setMaxSize(100));
+    }
+
+    // 잠그기 전에 넘긴 객체를 밖에서 바꿔도 스냅샷은 그대로
+    @Test
+    void freezeDetachesFromCallerReferences() {
+        AppConfigService.DatabaseConfig original = databaseConfig();
+        AppConfigService config = new AppConfigService();
+        config.setDatabaseConfig(original);
+        config.freeze();
+
+        assertNotSame(original, config.getDatabaseConfig());
+        original.setUrl("jdbc:mysql://other/chat");
+        original.getAppUser().setPassword("changed");
+        assertEquals("jdbc:mysql://localhost/chat", config.getDatabaseConfig().getUrl());
+        assertEquals("secret", config.getDatabaseConfig().getAppUser().getPassword());
+    }
+
+    // copy()는 하위 설정까지 다시 수정 가능한 복사본
+    @Test
+    void copyOfFrozenSnapshotIsMutable() {
+        AppConfigService config = new AppConfigService();
+        config.setDatabaseConfig(databaseConfig());
+        config.freeze();
+
+        AppConfigService copy = config.copy();
+        copy.getDatabaseConfig().getAppPool().setMaxSize(16);
+        copy.getDatabaseConfig().getAppUser().setUser("other");
+        assertEquals(8, config.getDatabaseConfig().getAppPool().getMaxSize());
+        assertEquals("app", config.getDatabaseConfig().getAppUser().getUser());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.service;
+
+import com.example.model.ChatMessage;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextBuilderTest {
+
+    private static final String SYSTEM_PROMPT = "You are a helpful assistant.";
+
+    private static JsonObject last(JsonArray messages) {
+        return messages.get(messages.size() - 1).getAsJsonObject();
+    }
+
+    private static String content(JsonObject message) {
+        return message.get("content").getAsString();
+    }
+
+    // 요약/기억이 예산을 거의 다 차지해도 이번 차례 메시지는 원문 그대로, 요약 쪽을 줄임
+    @Test
+    void currentTurnWinsOverSummary() {
+        ContextBuilder builder = new ContextBuilder();
+        int budget = builder.build(SYSTEM_PROMPT, null).budget();
+        String question = "질문".repeat(300);
+        for (int i = 0; i < 10; i++) builder.add(new ChatMessage(i % 2 == 0 ? "user" : "ai", "예전 대화 " + i));
+        builder.add(new ChatMessage("user", question));
+        builder.setSummary("요약".repeat(budget));
+
+        ContextBuilder.Context context = builder.build(SYSTEM_PROMPT, "기억".repeat(budget));
+
+        assertTrue(content(last(context.messages())).endsWith(question));
+        assertEquals("system", context.messages().get(0).getAsJsonObject().get("role").getAsString());
+        assertTrue(context.tokens() <= budget, context.toString());
+    }
+
+    // 이번 차례 메시지 자체가 예산보다 크면 잘라서라도 넣고, 합계는 예산 안
+    @Test
+    void oversizedCurrentTurnIsTruncatedToBudget() {
+        ContextBuilder builder = new ContextBuilder();
+        int budget = builder.build(SYSTEM_PROMPT, null).budget();
+        builder.add(new ChatMessage("user", "이전 질문"));
+        builder.add(new ChatMessage("user", "가".repeat(budget * 2)));
+        builder.setSummary("요약 내용");
+
+        ContextBuilder.Context context = builder.build(SYSTEM_PROMPT, null);
+
+        JsonObject newest = last(context.messages());
+        assertEquals("user", newest.get("role").getAsString());
+        assertTrue(content(newest).contains("가".repeat(100)));
+        assertEquals(1, context.included());
+        assertEquals(1, context.truncated());
+        assertTrue(context.tokens() <= budget, context.toString());
+    }
+
+    // 예산이 모자라면 오래된 대화부터 빠짐
+    @Test
+    void olderHistoryIsDroppedFirst() {
+        ContextBuilder builder = new ContextBuilder();
+        int budget = builder.build(SYSTEM_PROMPT, null).budget();
+        for (int i = 0; i < 20; i++) builder.add(new ChatMessage("user", i + ":" + "말".repeat(budget / 10)));
+        builder.add(new ChatMessage("user", "마지막 질문"));
+
+        ContextBuilder.Context context = builder.build(SYSTEM_PROMPT, null);
+
+        assertTrue(content(last(context.messages())).endsWith("마지막 질문"));
+        assertTrue(context.dropped() > 0);
+        assertTrue(context.included() < 21);
+        assertTrue(context.tokens() <= budget, context.toString());
+        // 남은 것은 가장 최근 것들
+        String oldestKept = content(context.messages().get(0).getAsJsonObject());
+        assertTrue(oldestKept.contains((21 - context.included()) + ":"), oldestKept);
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * OllamaService를 실제 Ollama 대신 정해진 NDJSON 조각을 보내는 로컬 대역 서버에 붙여서 검사합니다.
+ * 마지막 테스트는 첫 토큰까지의 시간(TTFT)을 Python 브리지(test.py)와 비교합니다
+ * (Python 쪽은 ollama 패키지가 설치된 경우에만 측정).
+ */
+class OllamaServiceTest {
+
+    private static final int SAMPLES = 20;
+
+    private HttpServer server;
+    private String baseUrl;
+    private final List<JsonObject> requests = new CopyOnWriteArrayList<>();
+    private volatile Script script = Script.reply("Hel", "lo");
+
+    private OllamaService service;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    // 대역 서버가 /api/chat 요청마다 보낼 응답
+    private record Script(List<String> lines, long delayMillis, int splitAt) {
+        static Script reply(String... tokens) {
+            List<String> lines = new ArrayList<>();
+            for (String token : tokens) lines.add(chunk(token, false));
+            lines.add(chunk("", true));
+            return new Script(lines, 0, -1);
+        }
+
+        Script slow(long delayMillis) {
+            return new Script(lines, delayMillis, splitAt);
+        }
+
+        // 각 줄을 이 바이트 위치에서 둘로 나누어 따로 전송
+        Script split(int splitAt) {
+            return new Script(lines, delayMillis, splitAt);
+        }
+    }
+
+    private static String chunk(String content, boolean done) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject line = new JsonObject();
+        line.addProperty("model", "stand-in");
+        line.add("message", message);
+        line.addProperty("done", done);
+        if (done) {
+            line.addProperty("prompt_eval_count", 12);
+            line.addProperty("eval_count", 3);
+        }
+        return line.toString();
+    }
+
+    @BeforeAll
+    static void disableNagle() {
+        // 작은 NDJSON 조각이 Nagle/지연 ACK로 묶이면 TTFT가 ~40 ms씩 늘어남 (실제 Ollama는 TCP_NODELAY)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/chat", this::handleChat);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopAll() {
+        if (service != null) service.stop();
+        server.stop(0);
+    }
+
+    private void handleChat(HttpExchange exchange) throws IOException {
+        JsonObject request = JsonParser.parseString(
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+        requests.add(request);
+        Script current = script;
+        try (exchange) {
+            if (!request.get("stream").getAsBoolean()) {
+                byte[] body = chunk("요약 결과", true).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0); // chunked
+            OutputStream out = exchange.getResponseBody();
+            for (String line : current.lines()) {
+                byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                if (current.splitAt() > 0 && current.splitAt() < bytes.length) {
+                    out.write(bytes, 0, current.splitAt());
+                    out.flush();
+                    sleep(5);
+                    out.write(bytes, current.splitAt(), bytes.length - current.splitAt());
+                } else {
+                    out.write(bytes);
+                }
+                out.flush();
+                if (current.delayMillis() > 0) sleep(current.delayMillis());
+            }
+        } catch (IOException e) {
+            // 클라이언트가 스트림을 닫은 경우 (중단)
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startService() throws InterruptedException {
+        service = new OllamaService(baseUrl);
+        service.start(m -> events.add("MSG:" + m), t -> events.add("TOK:" + t),
+                q -> events.add("TOOL:" + q), s -> events.add("SUM:" + s));
+        assertEquals("MSG:실행 준비 완료", next());
+    }
+
+    private String next() throws InterruptedException {
+        String event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event, "10초 안에 이벤트 없음");
+        return event;
+    }
+
+    // [DONE]까지의 토큰 (생각 중 표시 제외)
+    private String replyText() throws InterruptedException {
+        assertEquals("TOK:[Thinking]", next());
+        StringBuilder text = new StringBuilder();
+        String event;
+        while (!(event = next()).equals("MSG:[DONE]")) {
+            assertTrue(event.startsWith("TOK:"), event);
+            text.append(event.substring(4));
+        }
+        return text.toString();
+    }
+
+    private static List<String> roles(JsonObject request) {
+        List<String> roles = new ArrayList<>();
+        request.getAsJsonArray("messages").forEach(e -> roles.add(e.getAsJsonObject().get("role").getAsString()));
+        return roles;
+    }
+
+    private static String content(JsonObject request, int index) {
+        return request.getAsJsonArray("messages").get(index).getAsJsonObject().get("content").getAsString();
+    }
+
+    @Test
+    void streamsTokensAndKeepsHistoryInJava() throws Exception {
+        startService();
+        service.sendMessage("안녕");
+        assertEquals("Hello", replyText());
+
+        script = Script.reply("두 번째");
+        service.sendMessage("또 안녕");
+        assertEquals("두 번째", replyText());
+
+        JsonObject second = requests.get(1);
+        assertTrue(second.get("stream").getAsBoolean());
+        assertEquals(List.of("system", "user", "assistant", "user"), roles(second));
+        assertEquals("Hello", content(second, 2));
+        assertTrue(content(second, 3).endsWith("또 안녕"));
+    }
+
+    // 한 줄(JSON 객체)이 여러 TCP 조각으로, 한글 바이트 중간에서 끊겨 와도 그대로 이어 붙임
+    @Test
+    void parsesObjectsSplitAcrossWrites() throws Exception {
+        script = Script.reply("가나다", "라마").split(65);
+        startService();
+        service.sendMessage("hi");
+        assertEquals("가나다라마", replyText());
+    }
+
+    @Test
+    void chatCommandReplacesHistoryAndNumCtx() throws Exception {
+        startService();
+        JsonArray messages = new JsonArray();
+        JsonObject user = new JsonObject();
+        user.addProperty("role", "user");
+        user.addProperty("content", "문맥 질문");
+        messages.add(user);
+        JsonObject data = new JsonObject();
+        data.add("messages", messages);
+        data.addProperty("num_ctx", 4096);
+
+        service.sendMessage("CHAT:" + data);
+        assertEquals("Hello", replyText());
+
+        JsonObject request = requests.get(0);
+        assertEquals(List.of("system", "user"), roles(request));
+        assertEquals("문맥 질문", content(request, 1));
+        assertEquals(4096, request.getAsJsonObject("options").get("num_ctx").getAsInt());
+    }
+
+    // 복원 인사: 숨은 지시문은 이번 요청에만 쓰이고 기록에는 남지 않음
+    @Test
+    void restoreAndGreetDoesNotKeepHiddenContext() throws Exception {
+        startService();
+        script = Script.reply("다시 오셨네요");
+        service.sendMessage("RESTORE_AND_GREET:[{\"role\":\"user\",\"content\":\"예전 질문\"},"
+                + "{\"role\":\"assistant\",\"content\":\"예전 답\"}]");
+        assertEquals("다시 오셨네요", replyText());
+
+        script = Script.reply("네");
+        service.sendMessage("다음 질문");
+        assertEquals("네", replyText());
+
+        JsonObject greet = requests.get(0);
+        assertEquals(List.of("system", "user", "assistant", "system"), roles(greet));
+        assertTrue(content(greet, 3).contains("[HIDDEN CONTEXT]"));
+
+        JsonObject next = requests.get(1);
+        assertEquals(List.of("system", "user", "assistant", "assistant", "user"), roles(next));
+        assertEquals("다시 오셨네요", content(next, 3));
+    }
+
+    @Test
+    void summarizeUsesNonStreamingRequest() throws Exception {
+        startService();
+        service.sendMessage("SUMMARIZE:{\"previous_summary\":\"이전 요약\","
+                + "\"messages\":[{\"role\":\"user\",\"content\":\"요약할 대화\"}]}");
+        assertEquals("SUM:요약 결과", next());
+
+        JsonObject request = requests.get(0);
+        assertFalse(request.get("stream").getAsBoolean());
+        assertTrue(content(request, 0).contains("요약할 대화"));
+        assertTrue(content(request, 0).contains("이전 요약"));
+    }
+
+    @Test
+    void errorLineEndsReply() throws Exception {
+        script = new Script(List.of("{\"error\":\"model 'x' not found\"}"), 0, -1);
+        startService();
+        service.sendMessage("hi");
+        assertEquals("Ollama Error: model 'x' not found", replyText());
+    }
+
+    // 중단하면 스트림을 닫고 확인 응답, 다음 메시지는 바로 처리
+    @Test
+    void cancelStopsStreamAndNextMessageRuns() throws Exception {
+        String[] tokens = new String[1_000];
+        Arrays.fill(tokens, "x");
+        script = Script.reply(tokens).slow(20);
+        startService();
+        service.sendMessage("긴 답변");
+        assertEquals("TOK:[Thinking]", next());
+        assertEquals("TOK:x", next());
+
+        long cancelledAt = System.nanoTime();
+        service.cancel();
+        String event;
+        while (!(event = next()).equals("MSG:[CANCELLED]")) {
+            assertEquals("TOK:x", event);
+        }
+        assertTrue(System.nanoTime() - cancelledAt < TimeUnit.SECONDS.toNanos(2));
+
+        script = Script.reply("바로");
+        service.sendMessage("다음");
+        assertEquals("바로", replyText());
+    }
+
+    /**
+     * TTFT 비교: 메시지를 보낸 뒤 첫 답변 토큰이 도착하기까지 (대역 서버는 즉시 응답).
+     * 백엔드 시작부터 첫 토큰까지(cold)와, 시작된 뒤 이어지는 요청의 중앙값(warm)을 콘솔에 출력합니다.
+     */
+    @Test
+    void timeToFirstTokenAgainstPythonBridge() throws Exception {
+        long javaCold = System.nanoTime();
+        startService();
+        service.sendMessage("hi");
+        assertEquals("TOK:[Thinking]", next());
+        assertEquals("TOK:Hel", next());
+        javaCold = System.nanoTime() - javaCold;
+        finishReply("lo");
+
+        long[] javaWarm = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long started = System.nanoTime();
+            service.sendMessage("hi");
+            assertEquals("TOK:[Thinking]", next());
+            assertEquals("TOK:Hel", next());
+            javaWarm[i] = System.nanoTime() - started;
+            finishReply("lo");
+        }
+        System.out.printf("[ttft] Java(OllamaService): 시작 포함 %.1f ms, 이후 %s%n", javaCold / 1e6, summary(javaWarm));
+
+        assumeTrue(pythonHasOllama(), "python ollama 패키지 없음: Python 브리지 TTFT는 건너뜀");
+        long pythonCold = System.nanoTime();
+        ProcessBuilder builder = new ProcessBuilder("python", "-u", "config/python/test.py", "--protocol=framed");
+        builder.environment().put("OLLAMA_HOST", baseUrl);
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = builder.start();
+        try {
+            DataOutputStream commands = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            FrameCodec.Reader frames = new FrameCodec.Reader(process.getInputStream());
+            FrameCodec.write(commands, FrameCodec.COMMAND, "hi");
+            commands.flush();
+            awaitFrame(frames, FrameCodec.TOKEN);
+            pythonCold = System.nanoTime() - pythonCold;
+            awaitFrame(frames, FrameCodec.DONE);
+
+            long[] pythonWarm = new long[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                long started = System.nanoTime();
+                FrameCodec.write(commands, FrameCodec.COMMAND, "hi");
+                commands.flush();
+                awaitFrame(frames, FrameCodec.TOKEN);
+                pythonWarm[i] = System.nanoTime() - started;
+                awaitFrame(frames, FrameCodec.DONE);
+            }
+            System.out.printf("[ttft] Python(test.py): 시작 포함 %.1f ms, 이후 %s%n", pythonCold / 1e6, summary(pythonWarm));
+            assertTrue(javaCold < pythonCold, "시작 포함 TTFT: Java가 더 느림");
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    private void finishReply(String rest) throws InterruptedException {
+        assertEquals("TOK:" + rest, next());
+        assertEquals("MSG:[DONE]", next());
+    }
+
+    // 시스템 메시지 등은 건너뛰고 원하는 타입의 프레임까지 읽음
+    private static void awaitFrame(FrameCodec.Reader frames, byte type) throws IOException {
+        int read;
+        while ((read = frames.next()) != type) {
+            if (read == -1) throw new IOException("test.py 종료됨");
+        }
+    }
+
+    private static boolean pythonHasOllama() {
+        try {
+            Process process = new ProcessBuilder("python", "-c", "import ollama")
+                    .redirectErrorStream(true).start();
+            return process.waitFor(20, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String summary(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return String.format("중앙값 %.2f ms, p95 %.2f ms", sorted[sorted.length / 2] / 1e6,
+                sorted[(int) (sorted.length * 0.95)] / 1e6);
+    }
+}
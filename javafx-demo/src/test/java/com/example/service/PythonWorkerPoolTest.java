@@ -0,0 +1,159 @@
+package com.example.service;
+
+import com.example.service.tools.RunPythonTool;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * run_python 상주 작업자 풀: 세션/기한/작업자 종료 처리와, 호출마다 새 프로세스를 띄우는 방식과의 지연 시간 비교.
+ * PATH에 python이 없으면 건너뜁니다.
+ */
+class PythonWorkerPoolTest {
+
+    private static final int SAMPLES = 20;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void requirePython() {
+        try {
+            Process process = new ProcessBuilder("python", "--version").redirectErrorStream(true).start();
+            assumeTrue(process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0, "python 실행 불가");
+        } catch (Exception e) {
+            assumeTrue(false, "python 없음: " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void shutdownPool() {
+        PythonWorkerPool.shutdownIfStarted();
+    }
+
+    private static PythonWorkerPool.Result run(String code, String session) throws Exception {
+        return PythonWorkerPool.getInstance().execute(code, session, new File("."), 30, ToolOutputSink.NONE);
+    }
+
+    @Test
+    void sessionsKeepVariablesAndPlainCallsDoNot() throws Exception {
+        PythonWorkerPool.Result first = run("x = 41", "s1");
+        assertTrue(first.success());
+        assertTrue(first.freshSession());
+
+        PythonWorkerPool.Result second = run("x += 1\nprint(x)", "s1");
+        assertFalse(second.freshSession());
+        assertEquals("42", second.output().digest().strip());
+        assertEquals("False", run("print('x' in globals())", null).output().digest().strip());
+        assertEquals("False", run("print('x' in globals())", "s2").output().digest().strip());
+    }
+
+    @Test
+    void errorsAndTimeoutsAreResults() throws Exception {
+        PythonWorkerPool.Result error = run("1/0", null);
+        assertFalse(error.success());
+        assertTrue(error.output().digest().contains("ZeroDivisionError"));
+
+        PythonWorkerPool.Result timedOut = PythonWorkerPool.getInstance()
+                .execute("while True: pass", null, new File("."), 1, ToolOutputSink.NONE);
+        assertTrue(timedOut.timedOut());
+        assertEquals("ok", run("print('ok')", null).output().digest().strip());
+    }
+
+    // 보낸 코드가 실행되다가 작업자가 죽으면 실패로 끝나야 하고, 다른 프로세스로 다시 실행하면 안 됨
+    @Test
+    void workerDeathAfterSendDoesNotRunCodeTwice() throws Exception {
+        Path marker = dir.resolve("runs.txt");
+        String code = "import os\n"
+                + "with open(r'" + marker + "', 'a') as f: f.write('run\\n')\n"
+                + "os._exit(3)";
+
+        PythonWorkerPool.Result direct = run(code, null);
+        assertFalse(direct.success());
+        assertFalse(direct.timedOut());
+        assertEquals(1, Files.readAllLines(marker).size());
+
+        ToolManager toolManager = new ToolManager(dir.resolve("tools").toFile());
+        try {
+            JsonObject params = new JsonObject();
+            params.addProperty("code", code);
+            ToolResult result = new RunPythonTool(toolManager).execute(params);
+            assertFalse(result.isSuccess());
+            assertEquals(2, Files.readAllLines(marker).size());
+        } finally {
+            toolManager.close();
+        }
+    }
+
+    /**
+     * 지연 시간 비교: 호출마다 새 인터프리터 vs 미리 띄워 둔 작업자 (첫 호출 포함).
+     * 결과는 콘솔에 출력하고, 작업자 쪽 중앙값이 더 작은지만 확인합니다.
+     */
+    @Test
+    void pooledCallsAreFasterThanSpawning() throws Exception {
+        String code = "import json, statistics, decimal, csv, sqlite3, email.mime.text, xml.dom.minidom\n"
+                + "print(statistics.mean([1, 2, 3]))";
+
+        long[] spawn = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long started = System.nanoTime();
+            Process process = new ProcessBuilder("python", "-u", "-c", "import sys; exec(sys.stdin.read())")
+                    .redirectErrorStream(true).start();
+            process.getOutputStream().write(code.getBytes(StandardCharsets.UTF_8));
+            process.getOutputStream().close();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0, process.waitFor());
+            assertEquals("2", output.strip());
+            spawn[i] = System.nanoTime() - started;
+        }
+
+        // 앱 시작 때처럼 미리 띄워 두고 첫 호출부터 측정
+        PythonWorkerPool pool = PythonWorkerPool.getInstance();
+        pool.prewarmAsync();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!pool.getStats().contains("쉬는 작업자 1") && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        long[] pooled = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long started = System.nanoTime();
+            PythonWorkerPool.Result result = run(code, null);
+            assertTrue(result.success());
+            assertEquals("2", result.output().digest().strip());
+            pooled[i] = System.nanoTime() - started;
+        }
+        long firstPooled = pooled[0];
+
+        System.out.printf("[python] 새 프로세스: %s%n[python] 상주 작업자: %s (첫 호출 %.2f ms)%n",
+                summary(spawn), summary(pooled), firstPooled / 1e6);
+        assertTrue(median(pooled) < median(spawn), "작업자 " + summary(pooled) + " / 새 프로세스 " + summary(spawn));
+        assertTrue(firstPooled < median(spawn), "미리 띄운 작업자의 첫 호출 " + firstPooled / 1e6 + " ms");
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static String summary(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return String.format("중앙값 %.2f ms, p95 %.2f ms, 최대 %.2f ms", sorted[sorted.length / 2] / 1e6,
+                sorted[(int) (sorted.length * 0.95)] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolExecutorTest {
+
+    private final ToolExecutor executor = new ToolExecutor();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    // 동시에 실행 중인 수를 기록하며 gate가 열릴 때까지 대기
+    private CompletableFuture<ToolResult> submit(int timeoutSeconds, int maxConcurrency, CountDownLatch gate) {
+        return executor.submit("sleep", timeoutSeconds, maxConcurrency, () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                gate.await();
+                return new ToolResult(true, "ok");
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "시간 초과");
+            Thread.sleep(10);
+        }
+    }
+
+    // 제한을 줄여도 같은 세마포어를 쓰므로, 이미 실행 중인 호출이 끝날 때까지 새 호출은 대기
+    @Test
+    void shrinkingLimitWaitsForRunningCalls() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        CompletableFuture<ToolResult> a = submit(10, 2, first);
+        CompletableFuture<ToolResult> b = submit(10, 2, second);
+        waitFor(() -> running.get() == 2);
+
+        CompletableFuture<ToolResult> c = submit(10, 1, new CountDownLatch(0));
+        Thread.sleep(200);
+        assertFalse(c.isDone());
+
+        first.countDown();
+        a.get(5, TimeUnit.SECONDS);
+        Thread.sleep(200);
+        assertFalse(c.isDone(), "실행 중 1건이 새 제한 1에 이미 닿아 있음");
+
+        second.countDown();
+        b.get(5, TimeUnit.SECONDS);
+        assertTrue(c.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(2, maxRunning.get());
+    }
+
+    // 제한을 늘리면 기다리던 호출이 바로 실행됨
+    @Test
+    void growingLimitReleasesWaitingCalls() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        submit(10, 1, gate);
+        CompletableFuture<ToolResult> waiting = submit(10, 1, gate);
+        waitFor(() -> running.get() == 1);
+
+        submit(10, 3, gate);
+        waitFor(() -> running.get() == 3);
+        assertFalse(waiting.isDone());
+        gate.countDown();
+        assertTrue(waiting.get(5, TimeUnit.SECONDS).isSuccess());
+    }
+
+    // 대기 중에 시간 초과된 호출은 완료 수와 대기 시간에 넣지 않음
+    @Test
+    void abortedWhileQueuedIsNotCounted() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        CompletableFuture<ToolResult> a = submit(10, 1, gate);
+        waitFor(() -> running.get() == 1);
+        CompletableFuture<ToolResult> b = submit(1, 1, gate);
+        assertFalse(b.get(5, TimeUnit.SECONDS).isSuccess());
+
+        gate.countDown();
+        a.get(5, TimeUnit.SECONDS);
+        waitFor(() -> executor.getStats().contains("완료 1,"));
+
+        String stats = executor.getStats();
+        assertTrue(stats.contains("호출 2 (완료 1,"), stats);
+        Matcher queue = Pattern.compile("대기 평균 ([\\d.]+) ms, 최대 ([\\d.]+) ms").matcher(stats);
+        assertTrue(queue.find(), stats);
+        assertTrue(Double.parseDouble(queue.group(2)) < 500, stats);
+    }
+}
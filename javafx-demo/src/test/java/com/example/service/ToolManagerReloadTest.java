@@ -0,0 +1,178 @@
+package com.example.service;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.OutputStream;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 플러그인 핫 리로드: 실행 중 교체와, 수천 번 교체해도 옛 클래스 로더가 풀려서 메타스페이스가 늘지 않는지 확인.
+ * 시험용 플러그인 JAR(v1/v2)은 테스트 시작 때 직접 컴파일해서 만듭니다.
+ */
+class ToolManagerReloadTest {
+
+    private static final int HELPERS = 20;     // 버전마다 도구 1개 + 보조 클래스 20개
+    private static final int RELOADS = 2_000;
+    private static final long MAX_METASPACE_GROWTH = 8L * 1024 * 1024;
+
+    @TempDir
+    static Path workDir;
+    private static Path[] versions;
+
+    @TempDir
+    Path pluginsDir;
+    private ToolManager manager;
+    private long stamp = 1_600_000_000_000L;
+
+    @BeforeAll
+    static void buildPlugins() throws Exception {
+        versions = new Path[]{buildJar(1), buildJar(2)};
+    }
+
+    @AfterEach
+    void closeManager() {
+        if (manager != null) manager.close();
+    }
+
+    @Test
+    void inFlightCallFinishesOnOldVersion() throws Exception {
+        install(1);
+        manager = new ToolManager(pluginsDir.toFile());
+        assertTrue(manager.executeTool("soak", new JsonObject()).getOutput().startsWith("v1"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            JsonObject slow = new JsonObject();
+            slow.addProperty("sleep", 300);
+            Future<ToolResult> inFlight = executor.submit(() -> manager.executeTool("soak", slow));
+            Thread.sleep(50);
+            install(2);
+            manager.reloadPlugins();
+
+            assertTrue(manager.executeTool("soak", new JsonObject()).getOutput().startsWith("v2"));
+            ToolResult old = inFlight.get();
+            assertTrue(old.isSuccess());
+            assertTrue(old.getOutput().startsWith("v1"), old.getOutput());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void repeatedReloadsKeepMetaspaceBounded() throws Exception {
+        install(1);
+        manager = new ToolManager(pluginsDir.toFile());
+        manager.executeTool("soak", new JsonObject());
+
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        long base = metaspaceUsed();
+        long unloadedBefore = classLoading.getUnloadedClassCount();
+        for (int i = 1; i <= RELOADS; i++) {
+            int version = i % 2 + 1;
+            install(version);
+            manager.reloadPlugins();
+            ToolResult result = manager.executeTool("soak", new JsonObject());
+            assertTrue(result.getOutput().startsWith("v" + version), "반복 " + i + ": " + result.getOutput());
+        }
+        long growth = metaspaceUsed() - base;
+        long unloaded = classLoading.getUnloadedClassCount() - unloadedBefore;
+        System.out.printf("[soak] %d회 교체: 메타스페이스 증가 %.1f MB, 해제된 클래스 %d%n",
+                RELOADS, growth / 1048576.0, unloaded);
+
+        assertTrue(growth < MAX_METASPACE_GROWTH, "메타스페이스 증가 " + growth + " bytes");
+        // 교체된 버전의 클래스(도구 + 보조)가 대부분 해제되어야 함
+        assertTrue(unloaded >= (long) (RELOADS - 10) * (HELPERS + 1), "해제된 클래스 " + unloaded);
+    }
+
+    // 교체: 복사만으로는 수정 시각이 같을 수 있으므로 매번 다른 시각으로
+    private void install(int version) throws Exception {
+        Path target = pluginsDir.resolve("soak.jar");
+        Files.copy(versions[version - 1], target, StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(target.toFile().setLastModified(stamp += 2_000));
+    }
+
+    private static long metaspaceUsed() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace")) return pool.getUsage().getUsed();
+        }
+        throw new IllegalStateException("Metaspace 메모리 풀 없음");
+    }
+
+    private static Path buildJar(int version) throws Exception {
+        Path src = Files.createDirectories(workDir.resolve("v" + version + "/src/soak"));
+        Path classes = Files.createDirectories(workDir.resolve("v" + version + "/classes"));
+        List<String> files = new ArrayList<>();
+        StringBuilder touch = new StringBuilder();
+        for (int i = 0; i < HELPERS; i++) {
+            Path helper = src.resolve("Helper" + i + ".java");
+            Files.writeString(helper, "package soak; class Helper" + i + " { static final long[] T = new long[" + (100 + i + version)
+                    + "]; static String a() { return \"" + version + "\"; } }");
+            files.add(helper.toString());
+            touch.append("s += Helper").append(i).append(".T.length; ");
+        }
+        Path tool = src.resolve("SoakTool.java");
+        Files.writeString(tool, """
+                package soak;
+                import com.example.service.ToolManager;
+                import com.example.service.ToolResult;
+                import com.google.gson.JsonObject;
+                public class SoakTool implements com.example.service.tools.Tool {
+                    public SoakTool(ToolManager manager) {}
+                    public String getName() { return "soak"; }
+                    public String getDescription() { return "soak v%1$d"; }
+                    public String getUsage() { return "{}"; }
+                    public ToolResult execute(JsonObject p) {
+                        long s = 0; %2$s
+                        if (p.has("sleep")) { try { Thread.sleep(p.get("sleep").getAsLong()); } catch (InterruptedException e) {} }
+                        return new ToolResult(true, "v%1$d:" + s);
+                    }
+                }
+                """.formatted(version, touch));
+        files.add(tool.toString());
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "JDK 컴파일러가 필요합니다");
+        List<String> args = new ArrayList<>(List.of("-cp", System.getProperty("java.class.path"), "-d", classes.toString()));
+        args.addAll(files);
+        assertEquals(0, compiler.run(null, null, null, args.toArray(new String[0])));
+
+        Path jar = workDir.resolve("soak-v" + version + ".jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out);
+             Stream<Path> walk = Files.walk(classes)) {
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                jarOut.putNextEntry(new JarEntry(classes.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, jarOut);
+                jarOut.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
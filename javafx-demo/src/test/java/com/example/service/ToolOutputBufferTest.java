@@ -0,0 +1,73 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolOutputBufferTest {
+
+    private static final String EMOJI = "😀"; // 서로게이트 쌍 (2 char)
+
+    // 짝이 없는 서로게이트가 있으면 true
+    private static boolean hasLoneSurrogate(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isHighSurrogate(c)) {
+                if (i + 1 >= text.length() || !Character.isLowSurrogate(text.charAt(i + 1))) return true;
+                i++;
+            } else if (Character.isLowSurrogate(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void digestNeverSplitsSurrogatePairs() {
+        // 앞/뒤 경계가 쌍의 가운데에 오는 경우를 모두 거치도록 길이를 바꿔 가며 확인
+        for (int prefix = 0; prefix < 4; prefix++) {
+            for (int count = 1; count < 20; count++) {
+                String text = "x".repeat(prefix) + ("a" + EMOJI).repeat(count);
+                ToolOutputBuffer buffer = new ToolOutputBuffer(3, 5);
+                buffer.append(text);
+                String digest = buffer.digest();
+                assertFalse(hasLoneSurrogate(digest), prefix + "/" + count + ": " + digest);
+                assertTrue(text.endsWith(digest.substring(digest.lastIndexOf('\n') + 1)), digest);
+                if (!buffer.isTruncated()) assertEquals(text, digest);
+            }
+        }
+    }
+
+    @Test
+    void headKeepsWholePairAtLimit() {
+        ToolOutputBuffer buffer = new ToolOutputBuffer(3, 4);
+        buffer.append("ab" + EMOJI + "cdefghij");
+        assertTrue(buffer.digest().startsWith("ab" + EMOJI + "\n"), buffer.digest());
+    }
+
+    // 읽기 조각 경계에 걸친 쌍은 다음 조각으로 넘겨서, sink에도 반쪽 글자가 가지 않음
+    @Test
+    void pumpDoesNotSplitPairsAcrossChunks() throws Exception {
+        String text = ("가" + EMOJI).repeat(5_000);
+        Reader reader = new StringReader(text) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+                return super.read(buffer, offset, Math.min(length, 7));
+            }
+        };
+        List<String> chunks = new ArrayList<>();
+        ToolOutputBuffer buffer = ToolOutputBuffer.pump(reader, chunks::add);
+
+        assertEquals(text, String.join("", chunks));
+        chunks.forEach(chunk -> assertFalse(hasLoneSurrogate(chunk), chunk));
+        assertEquals(text.length(), buffer.getTotalChars());
+        assertFalse(hasLoneSurrogate(buffer.digest()));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingMarkdownRendererTest {
+
+    private static final List<String> DOCUMENTS = List.of(
+            "첫 문단 **굵게**\n\n둘째 문단 `code`\n",
+            "- a\n- b\n- c\n\n다음 문단\n",
+            // 항목 사이 빈 줄: 리스트 하나 (loose)
+            "- a\n\n- b\n\n- c\n\n끝\n",
+            "1. 하나\n\n2. 둘\n\n3. 셋\n",
+            "1) 하나\n\n2) 둘\n\n1. 다른 리스트\n",
+            "- a\n\n* 다른 글머리\n\n+ 또 다른\n",
+            "문단 바로 뒤\n- 리스트\n\n- 이어짐\n",
+            "- 항목\n\n  이어지는 문단\n\n- 다음 항목\n\n    들여쓴 코드\n",
+            "- 항목\n\n  ```java\n  int x = 1;\n\n  int y = 2;\n  ```\n\n- 다음\n\n밖\n",
+            "- 항목\n```\n펜스가 리스트를 끝냄\n```\n- 새 리스트\n",
+            "- a\n  - 중첩\n\n  - 중첩 2\n\n- b\n",
+            "- a\n\n- - -\n\n* * *\n\n+ + +\n",
+            "> 인용\n> 계속\n\n> 다른 인용\n\n# 제목\n\n본문\n---\n",
+            "    코드 1\n\n    코드 2\n\n문단\n",
+            "~~~\n물결 펜스\n```\n안쪽\n~~~\n\n````\n```\n````\n",
+            "- 게으른\n이어짐\n\n- 항목\n\n12345678. 긴 번호\n\n1234567890. 번호 아님\n",
+            "끝에 줄바꿈 없음\n\n- a\n\n- b"
+    );
+
+    // 원문을 조각내어 넣으면서 render()를 부른 뒤 finish()
+    private static String stream(String markdown, int chunk) {
+        StreamingMarkdownRenderer renderer = new StreamingMarkdownRenderer();
+        for (int i = 0; i < markdown.length(); i += chunk) {
+            renderer.append(markdown.substring(i, Math.min(markdown.length(), i + chunk)));
+            renderer.render();
+        }
+        return renderer.finish();
+    }
+
+    @Test
+    void finishMatchesFullParse() {
+        for (String markdown : DOCUMENTS) {
+            String expected = HtmlUtil.markdownToHtml(markdown);
+            for (int chunk : new int[]{1, 2, 3, 7, 16, 1_000}) {
+                assertEquals(expected, stream(markdown, chunk), "chunk=" + chunk + "\n" + markdown);
+            }
+        }
+    }
+
+    @Test
+    void looseListStaysOneList() {
+        String html = stream("- a\n\n- b\n\n- c\n", 1);
+        assertEquals(1, html.split("<ul>", -1).length - 1, html);
+        assertTrue(html.contains("<li>\n<p>b</p>"), html);
+    }
+
+    @Test
+    void committedAndTailAddUpToFullParse() {
+        StreamingMarkdownRenderer renderer = new StreamingMarkdownRenderer();
+        // 마지막 빈 줄은 다음 줄이 완성되어야 경계가 확정되므로 "문단 2"는 아직 열린 블록
+        renderer.append("문단 1\n\n문단 2\n\n- 열린");
+        StreamingMarkdownRenderer.Update update = renderer.render();
+        assertEquals(HtmlUtil.markdownToHtml("문단 1\n\n"), update.getCommittedHtml());
+        assertEquals(HtmlUtil.markdownToHtml("문단 2\n\n- 열린"), update.getTailHtml());
+        assertEquals("", update.getPendingText());
+
+        // 바뀐 것이 없으면 다시 파싱하지 않음
+        update = renderer.render();
+        assertEquals("", update.getCommittedHtml());
+        assertNull(update.getTailHtml());
+    }
+
+    // 긴 열린 블록은 매 프레임 다시 파싱하지 않고, 그 사이 글자는 원문으로 넘김
+    @Test
+    void longOpenBlockIsNotReparsedEveryFrame() {
+        StreamingMarkdownRenderer renderer = new StreamingMarkdownRenderer();
+        renderer.append("```\n" + "x".repeat(8_000) + "\n");
+        assertTrue(renderer.render().getTailHtml() != null);
+
+        int reparsed = 0;
+        StringBuilder added = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String token = "tok" + i + " ";
+            added.append(token);
+            renderer.append(token);
+            StreamingMarkdownRenderer.Update update = renderer.render();
+            if (update.getTailHtml() != null) {
+                reparsed++;
+                assertEquals("", update.getPendingText());
+            } else {
+                assertTrue(added.toString().endsWith(update.getPendingText()));
+                assertTrue(!update.getPendingText().isEmpty());
+            }
+        }
+        assertTrue(reparsed < 10, "다시 파싱 " + reparsed + "회");
+    }
+
+    /**
+     * 성능 비교: 프레임마다 전체를 다시 파싱 vs 점진적 렌더링 (결과는 콘솔에 출력).
+     * 문단/코드 블록 문서와 항목 사이에 빈 줄이 있는 긴 리스트 문서로 측정합니다.
+     */
+    @Test
+    void incrementalRenderingBenchmark() {
+        StringBuilder paragraphs = new StringBuilder();
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; paragraphs.length() < 20_000; i++) {
+            paragraphs.append("문단 ").append(i).append(" 입니다. **굵게** 그리고 `code` 조금, 그리고 긴 설명 문장이 이어집니다.\n\n");
+            if (i % 5 == 0) paragraphs.append("```java\nint x = ").append(i).append(";\nSystem.out.println(x);\n```\n\n");
+            list.append("- 항목 ").append(i).append(": **굵게** 그리고 `code`, 설명 문장이 이어집니다.\n\n");
+        }
+        for (String markdown : List.of(paragraphs.toString(), list.toString())) {
+            for (int warmup = 0; warmup < 3; warmup++) compare(markdown, false);
+            compare(markdown, true);
+        }
+    }
+
+    private static void compare(String markdown, boolean print) {
+        int token = 6;     // 토큰 하나 ~6글자
+        int perFrame = 8;  // 프레임마다 토큰 8개
+        long startedAt = System.nanoTime();
+        for (int end = token * perFrame; end < markdown.length() + token * perFrame; end += token * perFrame) {
+            HtmlUtil.markdownToHtml(markdown.substring(0, Math.min(end, markdown.length())));
+        }
+        long fullNanos = System.nanoTime() - startedAt;
+
+        startedAt = System.nanoTime();
+        StreamingMarkdownRenderer renderer = new StreamingMarkdownRenderer();
+        for (int pos = 0; pos < markdown.length(); ) {
+            for (int k = 0; k < perFrame && pos < markdown.length(); k++) {
+                int end = Math.min(pos + token, markdown.length());
+                renderer.append(markdown.substring(pos, end));
+                pos = end;
+            }
+            renderer.render();
+        }
+        String html = renderer.finish();
+        long incrementalNanos = System.nanoTime() - startedAt;
+
+        assertEquals(HtmlUtil.markdownToHtml(markdown), html);
+        if (print) {
+            System.out.printf("[markdown] %,d자: 프레임마다 전체 파싱 %.1f ms, 점진적 %.1f ms%n",
+                    markdown.length(), fullNanos / 1e6, incrementalNanos / 1e6);
+            assertTrue(incrementalNanos < fullNanos, "점진적 렌더링이 더 느림");
+        }
+    }
+}